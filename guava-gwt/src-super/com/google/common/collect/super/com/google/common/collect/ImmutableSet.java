@@ -137,6 +137,28 @@ public abstract class ImmutableSet<E> extends ImmutableCollection<E> implements
     }
   }
 
+  static <E> ImmutableSet<E> copyOfIntersection(Set<E> set1, Set<?> set2) {
+    return copyOfFiltered(set1, set2, true);
+  }
+
+  static <E> ImmutableSet<E> copyOfDifference(Set<E> set1, Set<?> set2) {
+    return copyOfFiltered(set1, set2, false);
+  }
+
+  private static <E> ImmutableSet<E> copyOfFiltered(Set<E> set1, Set<?> set2, boolean retain) {
+    Builder<E> builder = new Builder<E>();
+    for (E element : set1) {
+      if (set2.contains(element) == retain) {
+        builder.add(element);
+      }
+    }
+    return builder.build();
+  }
+
+  static <E> ImmutableSet<E> copyOfUnion(Set<? extends E> set1, Set<? extends E> set2) {
+    return new Builder<E>().addAll(set1).addAll(set2).build();
+  }
+
   private static <E> ImmutableSet<E> create(E... elements) {
     // Create the set first, to remove duplicates if necessary.
     Set<E> set = Sets.newLinkedHashSet();
@@ -25,6 +25,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -379,6 +380,30 @@ public abstract class ImmutableSortedSet<E>
     return tailSet(fromElement);
   }
 
+  public ImmutableSortedSet<E> intersection(Set<?> other) {
+    Builder<E> builder = new Builder<E>(comparator());
+    for (E element : this) {
+      if (other.contains(element)) {
+        builder.add(element);
+      }
+    }
+    return builder.build();
+  }
+
+  public ImmutableSortedSet<E> difference(Set<?> other) {
+    Builder<E> builder = new Builder<E>(comparator());
+    for (E element : this) {
+      if (!other.contains(element)) {
+        builder.add(element);
+      }
+    }
+    return builder.build();
+  }
+
+  public ImmutableSortedSet<E> union(Set<? extends E> other) {
+    return new Builder<E>(comparator()).addAll(this).addAll(other).build();
+  }
+
   public static <E> Builder<E> orderedBy(Comparator<E> comparator) {
     return new Builder<E>(comparator);
   }
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.concurrent.TimeUnit.HOURS;
+
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Param;
+import com.google.caliper.api.Footprint;
+import com.google.common.cache.LocalCache.EntryFactory;
+import com.google.common.cache.LocalCache.ReferenceEntry;
+import com.google.common.cache.LocalCache.Strength;
+
+import java.lang.ref.ReferenceQueue;
+
+/**
+ * Measures the size of a single {@code LocalCache} entry, including its value reference, for each
+ * {@link EntryFactory} and value strength.
+ */
+public class EntryFootprintBenchmark {
+
+  @Param EntryFactory entryFactory;
+  @Param Strength valueStrength;
+
+  private LocalCache<Payload, Payload> map;
+
+  /** The key and value type, which is excluded from the measurement. */
+  static final class Payload {}
+
+  @BeforeExperiment
+  void setUp() {
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().concurrencyLevel(1);
+    if (entryFactory.name().startsWith("WEAK")) {
+      builder.weakKeys();
+    }
+    if (entryFactory.name().contains("ACCESS")) {
+      builder.expireAfterAccess(1, HOURS);
+    }
+    if (entryFactory.name().contains("WRITE")) {
+      builder.expireAfterWrite(1, HOURS);
+    }
+    if (valueStrength == Strength.WEAK) {
+      builder.weakValues();
+    } else if (valueStrength == Strength.SOFT) {
+      builder.softValues();
+    }
+    map = new LocalCache<Payload, Payload>(builder, null);
+    checkState(map.entryFactory == entryFactory);
+    checkState(map.valueStrength == valueStrength);
+  }
+
+  // The entries of a weak-keyed or weak- or soft-valued cache share its reference queues, which
+  // are excluded along with the key and value.
+  @Footprint(exclude = {Payload.class, ReferenceQueue.class})
+  public Object entry() {
+    Payload key = new Payload();
+    ReferenceEntry<Payload, Payload> entry = map.newEntry(key, map.hash(key), null);
+    entry.setValueReference(map.newValueReference(entry, new Payload(), 1));
+    return entry;
+  }
+}
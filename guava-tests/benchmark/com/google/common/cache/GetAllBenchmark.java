@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.cache;
+
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Benchmarks {@link LoadingCache#getAll} and {@link Cache#putAll} for large batches of keys,
+ * against the equivalent loops of single-key operations.
+ */
+public class GetAllBenchmark {
+  @Param("1000") int batchSize;
+  @Param({"1", "4", "16"}) int segments;
+
+  // the fraction of each batch which is already present in the cache
+  @Param({"1.0", "0.9"}) double hitRate;
+
+  private LoadingCache<Integer, Integer> cache;
+  private final Random random = new Random();
+  private final List<List<Integer>> batches = new ArrayList<List<Integer>>();
+  private final List<Map<Integer, Integer>> maps = new ArrayList<Map<Integer, Integer>>();
+
+  @BeforeExperiment void setUp() {
+    int present = 16 * batchSize;
+    cache = CacheBuilder.newBuilder()
+        .concurrencyLevel(segments)
+        .maximumSize(2 * present)
+        .build(
+            new CacheLoader<Integer, Integer>() {
+              @Override public Integer load(Integer key) {
+                return key;
+              }
+            });
+    for (int i = 0; i < present; i++) {
+      cache.put(i, i);
+    }
+
+    // misses are drawn from a range large enough that they rarely repeat between batches
+    int missBound = Integer.MAX_VALUE - present;
+    for (int b = 0; b < 16; b++) {
+      ImmutableList.Builder<Integer> batch = ImmutableList.builder();
+      Map<Integer, Integer> map = new LinkedHashMap<Integer, Integer>();
+      for (int i = 0; i < batchSize; i++) {
+        int key = (random.nextDouble() < hitRate)
+            ? random.nextInt(present)
+            : present + random.nextInt(missBound);
+        batch.add(key);
+        map.put(random.nextInt(present), i);
+      }
+      batches.add(batch.build());
+      maps.add(map);
+    }
+  }
+
+  @Benchmark int getAll(int reps) throws Exception {
+    int dummy = 0;
+    for (int i = 0; i < reps; i++) {
+      dummy += cache.getAll(batches.get(i & 15)).size();
+    }
+    return dummy;
+  }
+
+  @Benchmark int getAllByKey(int reps) throws Exception {
+    int dummy = 0;
+    for (int i = 0; i < reps; i++) {
+      for (Integer key : batches.get(i & 15)) {
+        dummy += cache.get(key);
+      }
+    }
+    return dummy;
+  }
+
+  @Benchmark int getAllPresent(int reps) {
+    int dummy = 0;
+    for (int i = 0; i < reps; i++) {
+      dummy += cache.getAllPresent(batches.get(i & 15)).size();
+    }
+    return dummy;
+  }
+
+  @Benchmark int putAll(int reps) {
+    int dummy = 0;
+    for (int i = 0; i < reps; i++) {
+      Map<Integer, Integer> map = maps.get(i & 15);
+      cache.putAll(map);
+      dummy += map.size();
+    }
+    return dummy;
+  }
+
+  @Benchmark int putAllByKey(int reps) {
+    int dummy = 0;
+    for (int i = 0; i < reps; i++) {
+      Map<Integer, Integer> map = maps.get(i & 15);
+      for (Map.Entry<Integer, Integer> entry : map.entrySet()) {
+        cache.put(entry.getKey(), entry.getValue());
+      }
+      dummy += map.size();
+    }
+    return dummy;
+  }
+}
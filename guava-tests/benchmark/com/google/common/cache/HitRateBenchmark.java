@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.cache;
+
+import com.google.caliper.AfterExperiment;
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+import com.google.common.primitives.Ints;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Trace-driven benchmark comparing the hit rate (and throughput) of {@link LoadingCache} under
+ * each {@link AdmissionPolicy}. A fixed, seeded trace is generated once per experiment and then
+ * replayed, so that every policy sees exactly the same sequence of keys.
+ */
+public class HitRateBenchmark {
+  @Param({"ALWAYS", "TINY_LFU"}) AdmissionPolicy admissionPolicy;
+  @Param({"SKEWED", "SKEWED_WITH_SCANS", "LOOP"}) Trace trace;
+  @Param("1000") int maximumSize;
+  @Param("100000") int distinctKeys;
+  @Param("1000000") int traceLength;
+  @Param("1") int segments;
+
+  enum Trace {
+    /** A skewed distribution where a few keys are very popular and most are rarely requested. */
+    SKEWED {
+      @Override
+      int[] generate(Random random, int distinctKeys, int length) {
+        int[] trace = new int[length];
+        for (int i = 0; i < length; i++) {
+          trace[i] = skewed(random, distinctKeys);
+        }
+        return trace;
+      }
+    },
+
+    /**
+     * The SKEWED workload interleaved with long scans of keys that are each requested only once,
+     * which flush a pure LRU cache.
+     */
+    SKEWED_WITH_SCANS {
+      @Override
+      int[] generate(Random random, int distinctKeys, int length) {
+        int[] trace = new int[length];
+        int nextScanKey = distinctKeys;
+        for (int i = 0; i < length; ) {
+          if (random.nextInt(10) == 0) {
+            int scanLength =
+                Math.min(length - i, 1 + random.nextInt(Math.max(1, distinctKeys / 50)));
+            for (int j = 0; j < scanLength; j++) {
+              trace[i++] = nextScanKey++;
+            }
+          } else {
+            trace[i++] = skewed(random, distinctKeys);
+          }
+        }
+        return trace;
+      }
+    },
+
+    /**
+     * Repeatedly cycles through a key range that is larger than a typical cache, which is the
+     * worst case for LRU.
+     */
+    LOOP {
+      @Override
+      int[] generate(Random random, int distinctKeys, int length) {
+        int[] trace = new int[length];
+        int loopLength = Math.min(distinctKeys, 1 + distinctKeys / 50);
+        for (int i = 0; i < length; i++) {
+          trace[i] = i % loopLength;
+        }
+        return trace;
+      }
+    };
+
+    abstract int[] generate(Random random, int distinctKeys, int length);
+
+    /** Returns a key in {@code [0, distinctKeys)}, favoring low keys. */
+    static int skewed(Random random, int distinctKeys) {
+      // cubing a uniform variable concentrates its density near zero
+      double u = random.nextDouble();
+      return Ints.saturatedCast((long) (u * u * u * distinctKeys));
+    }
+  }
+
+  int[] keys;
+  LoadingCache<Integer, Integer> cache;
+
+  static AtomicLong requests = new AtomicLong(0);
+  static AtomicLong misses = new AtomicLong(0);
+
+  @BeforeExperiment void setUp() {
+    keys = trace.generate(new Random(0), distinctKeys, traceLength);
+    cache = CacheBuilder.newBuilder()
+        .concurrencyLevel(segments)
+        .maximumSize(maximumSize)
+        .admissionPolicy(admissionPolicy)
+        .build(
+            new CacheLoader<Integer, Integer>() {
+              @Override public Integer load(Integer from) {
+                misses.incrementAndGet();
+                return from;
+              }
+            });
+
+    requests.set(0);
+    misses.set(0);
+  }
+
+  @Benchmark int replay(int reps) {
+    int dummy = 0;
+    int[] keys = this.keys;
+    for (int i = 0; i < reps; i++) {
+      dummy += cache.getUnchecked(keys[i % keys.length]);
+    }
+    requests.addAndGet(reps);
+    return dummy;
+  }
+
+  @AfterExperiment void tearDown() {
+    double req = requests.get();
+    double hit = req - misses.get();
+
+    System.out.println(admissionPolicy + " on " + trace + " hit rate: " + hit / req);
+  }
+}
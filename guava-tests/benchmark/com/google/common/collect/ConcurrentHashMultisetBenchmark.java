@@ -47,7 +47,7 @@ import javax.annotation.Nullable;
  * @author mike nonemacher
  */
 public class ConcurrentHashMultisetBenchmark {
-  @Param({"1", "2", "4", "8"}) int threads;
+  @Param({"1", "2", "4", "8", "32"}) int threads;
   @Param({"3", "30", "300"}) int size;
   @Param MultisetSupplier implSupplier;
 
@@ -84,6 +84,19 @@ public class ConcurrentHashMultisetBenchmark {
         });
   }
 
+  /**
+   * Has every thread add single occurrences of the same element, as when counting events with a
+   * heavily skewed distribution. This is where striped counts pay off.
+   */
+  @Benchmark long addHotKey(final int reps) throws ExecutionException, InterruptedException {
+    return doMultithreadedLoop(
+        new Callable<Long>() {
+          @Override public Long call() {
+            return runAddHotKeySingleThread(reps);
+          }
+        });
+  }
+
   private long doMultithreadedLoop(Callable<Long> task)
       throws InterruptedException, ExecutionException {
 
@@ -111,6 +124,14 @@ public class ConcurrentHashMultisetBenchmark {
     return blah;
   }
 
+  private long runAddHotKeySingleThread(int reps) {
+    Integer key = keys.get(0);
+    for (int i = 0; i < reps; i++) {
+      multiset.add(key);
+    }
+    return reps;
+  }
+
   private long runAddRemoveSingleThread(int reps) {
     Random random = new Random();
     int nKeys = keys.size();
@@ -136,6 +157,11 @@ public class ConcurrentHashMultisetBenchmark {
         return ConcurrentHashMultiset.create();
       }
     },
+    STRIPED_CONCURRENT_HASH_MULTISET() {
+      @Override Multiset<Integer> get() {
+        return StripedConcurrentHashMultiset.create();
+      }
+    },
     BOXED_ATOMIC_REPLACE() {
       @Override Multiset<Integer> get() {
         return OldConcurrentHashMultiset.create();
@@ -16,6 +16,7 @@ package com.google.common.collect;
 
 import com.google.caliper.BeforeExperiment;
 import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
 import com.google.common.collect.HashMultiset;
 import com.google.common.collect.Multiset;
 
@@ -24,7 +25,8 @@ import java.util.List;
 import java.util.Random;
 
 /**
- * Benchmark for HashMultiset.add for an already-present element.
+ * Benchmark for HashMultiset.add for an already-present element, and for the same operation on
+ * ObjectCountHashMultiset.
  *
  * @author Louis Wasserman
  */
@@ -34,12 +36,31 @@ public class HashMultisetAddPresentBenchmark {
   List<Multiset<Integer>> multisets = new ArrayList<Multiset<Integer>>(0x10000);
   int[] queries = new int[ARRAY_SIZE];
 
+  enum Impl {
+    HASH {
+      @Override
+      Multiset<Integer> create() {
+        return HashMultiset.create();
+      }
+    },
+    OBJECT_COUNT_HASH {
+      @Override
+      Multiset<Integer> create() {
+        return ObjectCountHashMultiset.create();
+      }
+    };
+
+    abstract Multiset<Integer> create();
+  }
+
+  @Param Impl impl;
+
   @BeforeExperiment
   void setUp() {
     Random random = new Random();
     multisets.clear();
     for (int i = 0; i < ARRAY_SIZE; i++) {
-      HashMultiset<Integer> multiset = HashMultiset.<Integer>create();
+      Multiset<Integer> multiset = impl.create();
       multisets.add(multiset);
       queries[i] = random.nextInt();
       multiset.add(queries[i]);
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.hash;
+
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+
+import java.util.Random;
+
+/**
+ * Benchmarks for comparing the lookup throughput of {@link CuckooFilter} and {@link BloomFilter}.
+ *
+ * <p>Parameters for the benchmark are:
+ * <ul>
+ * <li>size: The number of elements put in the filter, which is also its expected insertions.
+ * <li>fpp: The false positive probability the filter is created with.
+ * <li>impl: The kind of filter.
+ * </ul>
+ *
+ * <p>Caliper only measures time, so the space side of the comparison is in {@link
+ * #bitsPerElement}, which the benchmark computes for each experiment and which {@code
+ * CuckooFilterTest} checks. For one million elements, a cuckoo filter takes 9.5 bits per element
+ * at an fpp of 3%, 13.7 at 0.1% and 17.9 at 0.01%, against 7.3, 14.4 and 19.2 for a Bloom filter.
+ */
+public class CuckooFilterBenchmark {
+  private static final int QUERY_COUNT = 1 << 12;
+
+  @Param({"1000", "1000000"})
+  private int size;
+
+  @Param({"0.03", "0.001", "0.0001"})
+  private double fpp;
+
+  @Param private Impl impl;
+
+  enum Impl {
+    BLOOM {
+      @Override
+      Filter create(int size, double fpp) {
+        final BloomFilter<Integer> filter = BloomFilter.create(Funnels.integerFunnel(), size, fpp);
+        return new Filter() {
+          @Override
+          void put(int element) {
+            filter.put(element);
+          }
+
+          @Override
+          boolean mightContain(int element) {
+            return filter.mightContain(element);
+          }
+
+          @Override
+          long bitSize() {
+            return filter.bitSize();
+          }
+        };
+      }
+    },
+    BLOOM_BLOCKED {
+      @Override
+      Filter create(int size, double fpp) {
+        final BloomFilter<Integer> filter =
+            BloomFilter.createBlocked(Funnels.integerFunnel(), size, fpp);
+        return new Filter() {
+          @Override
+          void put(int element) {
+            filter.put(element);
+          }
+
+          @Override
+          boolean mightContain(int element) {
+            return filter.mightContain(element);
+          }
+
+          @Override
+          long bitSize() {
+            return filter.bitSize();
+          }
+        };
+      }
+    },
+    CUCKOO {
+      @Override
+      Filter create(int size, double fpp) {
+        final CuckooFilter<Integer> filter =
+            CuckooFilter.create(Funnels.integerFunnel(), size, fpp);
+        return new Filter() {
+          @Override
+          void put(int element) {
+            filter.put(element);
+          }
+
+          @Override
+          boolean mightContain(int element) {
+            return filter.mightContain(element);
+          }
+
+          @Override
+          long bitSize() {
+            return filter.bitSize();
+          }
+        };
+      }
+    };
+
+    abstract Filter create(int size, double fpp);
+  }
+
+  abstract static class Filter {
+    abstract void put(int element);
+
+    abstract boolean mightContain(int element);
+
+    abstract long bitSize();
+  }
+
+  private Filter filter;
+  private int[] present;
+  private int[] absent;
+  double bitsPerElement;
+
+  @BeforeExperiment
+  void setUp() {
+    Random random = new Random(0);
+    filter = impl.create(size, fpp);
+    for (int i = 0; i < size; i++) {
+      // even numbers are put, odd ones are not
+      filter.put(2 * i);
+    }
+    present = new int[QUERY_COUNT];
+    absent = new int[QUERY_COUNT];
+    for (int i = 0; i < QUERY_COUNT; i++) {
+      present[i] = 2 * random.nextInt(size);
+      absent[i] = 2 * random.nextInt(size) + 1;
+    }
+    bitsPerElement = (double) filter.bitSize() / size;
+  }
+
+  @Benchmark
+  int mightContainPresent(int reps) {
+    return mightContain(reps, present);
+  }
+
+  @Benchmark
+  int mightContainAbsent(int reps) {
+    return mightContain(reps, absent);
+  }
+
+  private int mightContain(int reps, int[] queries) {
+    int mask = QUERY_COUNT - 1;
+    int result = 0;
+    for (int i = 0; i < reps; i++) {
+      if (filter.mightContain(queries[i & mask])) {
+        result++;
+      }
+    }
+    return result;
+  }
+}
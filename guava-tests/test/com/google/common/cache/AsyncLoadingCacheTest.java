@@ -0,0 +1,312 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+
+import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for {@link AsyncLoadingCache}.
+ */
+public class AsyncLoadingCacheTest extends TestCase {
+
+  /** An executor which queues tasks until they are explicitly run. */
+  static class QueuingExecutor implements Executor {
+    final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+    @Override
+    public void execute(Runnable task) {
+      tasks.add(task);
+    }
+
+    void runAll() {
+      Runnable task;
+      while ((task = tasks.poll()) != null) {
+        task.run();
+      }
+    }
+  }
+
+  /** Loads each key as its own string representation, counting calls. */
+  static class CountingLoader extends CacheLoader<Integer, String> {
+    final AtomicInteger loadCount = new AtomicInteger();
+    final List<ImmutableSet<Integer>> loadAllCalls = Lists.newArrayList();
+
+    @Override
+    public String load(Integer key) {
+      loadCount.incrementAndGet();
+      return key.toString();
+    }
+  }
+
+  static class BatchingLoader extends CountingLoader {
+    @Override
+    public Map<Integer, String> loadAll(Iterable<? extends Integer> keys) {
+      loadAllCalls.add(ImmutableSet.copyOf(keys));
+      Map<Integer, String> result = Maps.newHashMap();
+      for (Integer key : keys) {
+        result.put(key, key.toString());
+      }
+      return result;
+    }
+  }
+
+  public void testGet_loadsOnExecutor() throws Exception {
+    QueuingExecutor executor = new QueuingExecutor();
+    CountingLoader loader = new CountingLoader();
+    AsyncLoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder().recordStats().buildAsync(loader, executor);
+
+    ListenableFuture<String> future = cache.get(1);
+    assertFalse(future.isDone());
+    assertEquals(0, loader.loadCount.get());
+
+    executor.runAll();
+    assertTrue(future.isDone());
+    assertEquals("1", future.get());
+    assertEquals(1, loader.loadCount.get());
+    assertEquals("1", cache.synchronous().getIfPresent(1));
+
+    ListenableFuture<String> hit = cache.get(1);
+    assertTrue(hit.isDone());
+    assertEquals("1", hit.get());
+    assertTrue(executor.tasks.isEmpty());
+
+    CacheStats stats = cache.synchronous().stats();
+    assertEquals(2, stats.hitCount()); // including getIfPresent
+    assertEquals(1, stats.missCount());
+    assertEquals(1, stats.loadSuccessCount());
+  }
+
+  public void testGet_dedupesConcurrentLoads() throws Exception {
+    QueuingExecutor executor = new QueuingExecutor();
+    CountingLoader loader = new CountingLoader();
+    AsyncLoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder().buildAsync(loader, executor);
+
+    ListenableFuture<String> first = cache.get(1);
+    ListenableFuture<String> second = cache.get(1);
+    assertEquals(1, executor.tasks.size());
+
+    executor.runAll();
+    assertEquals("1", first.get());
+    assertEquals("1", second.get());
+    assertEquals(1, loader.loadCount.get());
+  }
+
+  public void testGet_cancellationDoesNotAffectOtherCallers() throws Exception {
+    QueuingExecutor executor = new QueuingExecutor();
+    CountingLoader loader = new CountingLoader();
+    AsyncLoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder().buildAsync(loader, executor);
+
+    ListenableFuture<String> first = cache.get(1);
+    ListenableFuture<String> second = cache.get(1);
+    assertTrue(first.cancel(true));
+
+    executor.runAll();
+    assertTrue(first.isCancelled());
+    assertEquals("1", second.get());
+    assertEquals("1", cache.synchronous().getIfPresent(1));
+  }
+
+  public void testGet_loaderThrows() throws Exception {
+    final RuntimeException failure = new IllegalStateException();
+    AsyncLoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder()
+            .recordStats()
+            .buildAsync(
+                new CacheLoader<Integer, String>() {
+                  @Override
+                  public String load(Integer key) {
+                    throw failure;
+                  }
+                },
+                directExecutor());
+
+    ListenableFuture<String> future = cache.get(1);
+    assertTrue(future.isDone());
+    try {
+      future.get();
+      fail();
+    } catch (ExecutionException expected) {
+      assertSame(failure, expected.getCause());
+    }
+    assertNull(cache.synchronous().getIfPresent(1));
+    assertEquals(1, cache.synchronous().stats().loadExceptionCount());
+  }
+
+  public void testGet_loaderReturnsNull() throws Exception {
+    AsyncLoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder()
+            .buildAsync(
+                new CacheLoader<Integer, String>() {
+                  @Override
+                  public String load(Integer key) {
+                    return null;
+                  }
+                },
+                directExecutor());
+
+    try {
+      cache.get(1).get();
+      fail();
+    } catch (ExecutionException expected) {
+      assertTrue(expected.getCause() instanceof InvalidCacheLoadException);
+    }
+    assertNull(cache.synchronous().getIfPresent(1));
+  }
+
+  public void testGet_executorRejects() throws Exception {
+    final RejectedExecutionException rejection = new RejectedExecutionException();
+    AsyncLoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder()
+            .buildAsync(
+                new CountingLoader(),
+                new Executor() {
+                  @Override
+                  public void execute(Runnable command) {
+                    throw rejection;
+                  }
+                });
+
+    try {
+      cache.get(1).get();
+      fail();
+    } catch (ExecutionException expected) {
+      assertSame(rejection, expected.getCause());
+    }
+    assertEquals(0, cache.synchronous().size());
+  }
+
+  public void testGetAll_batchesMissesThroughLoadAll() throws Exception {
+    QueuingExecutor executor = new QueuingExecutor();
+    BatchingLoader loader = new BatchingLoader();
+    AsyncLoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder().buildAsync(loader, executor);
+    cache.synchronous().put(2, "two");
+
+    ListenableFuture<ImmutableMap<Integer, String>> future =
+        cache.getAll(ImmutableList.of(3, 1, 2, 3, 4));
+    assertFalse(future.isDone());
+    assertEquals(1, executor.tasks.size());
+
+    executor.runAll();
+    assertEquals(ImmutableMap.of(3, "3", 1, "1", 2, "two", 4, "4"), future.get());
+    assertEquals(ImmutableList.of(ImmutableSet.of(3, 1, 4)), loader.loadAllCalls);
+    assertEquals(0, loader.loadCount.get());
+    assertEquals(4, cache.synchronous().size());
+  }
+
+  public void testGetAll_sharesPendingLoads() throws Exception {
+    QueuingExecutor executor = new QueuingExecutor();
+    BatchingLoader loader = new BatchingLoader();
+    AsyncLoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder().buildAsync(loader, executor);
+
+    ListenableFuture<String> single = cache.get(1);
+    ListenableFuture<ImmutableMap<Integer, String>> all = cache.getAll(ImmutableList.of(1, 2, 3));
+    executor.runAll();
+
+    assertEquals("1", single.get());
+    assertEquals(ImmutableMap.of(1, "1", 2, "2", 3, "3"), all.get());
+    assertEquals(1, loader.loadCount.get());
+    assertEquals(ImmutableList.of(ImmutableSet.of(2, 3)), loader.loadAllCalls);
+  }
+
+  public void testGetAll_loadAllUnsupported() throws Exception {
+    QueuingExecutor executor = new QueuingExecutor();
+    CountingLoader loader = new CountingLoader();
+    AsyncLoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder().buildAsync(loader, executor);
+
+    ListenableFuture<ImmutableMap<Integer, String>> future = cache.getAll(ImmutableList.of(1, 2));
+    assertEquals(1, executor.tasks.size());
+    executor.runAll();
+
+    assertEquals(ImmutableMap.of(1, "1", 2, "2"), future.get());
+    assertEquals(2, loader.loadCount.get());
+  }
+
+  public void testGetAll_missingValue() throws Exception {
+    AsyncLoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder()
+            .buildAsync(
+                new CacheLoader<Integer, String>() {
+                  @Override
+                  public String load(Integer key) {
+                    return key.toString();
+                  }
+
+                  @Override
+                  public Map<Integer, String> loadAll(Iterable<? extends Integer> keys) {
+                    return ImmutableMap.of(1, "1", 5, "5");
+                  }
+                },
+                directExecutor());
+
+    try {
+      cache.getAll(ImmutableList.of(1, 2)).get();
+      fail();
+    } catch (ExecutionException expected) {
+      assertTrue(expected.getCause() instanceof InvalidCacheLoadException);
+    }
+    assertEquals(ImmutableMap.of(1, "1", 5, "5"), ImmutableMap.copyOf(cache.synchronous().asMap()));
+  }
+
+  public void testSynchronous_waitsForAsyncLoad() throws Exception {
+    QueuingExecutor executor = new QueuingExecutor();
+    CountingLoader loader = new CountingLoader();
+    final AsyncLoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder().buildAsync(loader, executor);
+
+    ListenableFuture<String> future = cache.get(1);
+    final AtomicInteger done = new AtomicInteger();
+    Thread waiter =
+        new Thread() {
+          @Override
+          public void run() {
+            if ("1".equals(cache.synchronous().getUnchecked(1))) {
+              done.incrementAndGet();
+            }
+          }
+        };
+    waiter.start();
+    executor.runAll();
+    waiter.join();
+
+    assertEquals("1", future.get());
+    assertEquals(1, done.get());
+    assertEquals(1, loader.loadCount.get());
+  }
+}
@@ -228,6 +228,36 @@ public class CacheBuilderTest extends TestCase {
     } catch (IllegalStateException expected) {}
   }
 
+  @GwtIncompatible // admissionPolicy
+  public void testAdmissionPolicy_setTwice() {
+    CacheBuilder<Object, Object> builder = new CacheBuilder<Object, Object>()
+        .admissionPolicy(AdmissionPolicy.TINY_LFU);
+    try {
+      // even to the same value is not allowed
+      builder.admissionPolicy(AdmissionPolicy.TINY_LFU);
+      fail();
+    } catch (IllegalStateException expected) {}
+  }
+
+  @GwtIncompatible // admissionPolicy
+  public void testAdmissionPolicy_withoutMaximumSize() {
+    CacheBuilder<Object, Object> builder = new CacheBuilder<Object, Object>()
+        .admissionPolicy(AdmissionPolicy.TINY_LFU);
+    try {
+      builder.build(identityLoader());
+      fail();
+    } catch (IllegalStateException expected) {}
+    try {
+      builder.build();
+      fail();
+    } catch (IllegalStateException expected) {}
+  }
+
+  @GwtIncompatible // admissionPolicy
+  public void testAdmissionPolicy_alwaysWithoutMaximumSize() {
+    CacheBuilder.newBuilder().admissionPolicy(AdmissionPolicy.ALWAYS).build(identityLoader());
+  }
+
   @GwtIncompatible // weakKeys
   public void testKeyStrengthSetTwice() {
     CacheBuilder<Object, Object> builder1 = new CacheBuilder<Object, Object>().weakKeys();
@@ -318,6 +348,50 @@ public class CacheBuilderTest extends TestCase {
     // well, it didn't blow up.
   }
 
+  @GwtIncompatible // expireAfter
+  public void testExpiry_setTwice() {
+    Expiry<Object, Object> expiry =
+        new Expiry<Object, Object>() {
+          @Override
+          public long expireAfterCreate(Object key, Object value, long currentTime) {
+            return 1;
+          }
+        };
+    CacheBuilder<Object, Object> builder = new CacheBuilder<Object, Object>().expireAfter(expiry);
+    try {
+      // even to the same value is not allowed
+      builder.expireAfter(expiry);
+      fail();
+    } catch (IllegalStateException expected) {}
+  }
+
+  @GwtIncompatible // expireAfter
+  public void testExpiry_withFixedExpiration() {
+    Expiry<Object, Object> expiry =
+        new Expiry<Object, Object>() {
+          @Override
+          public long expireAfterCreate(Object key, Object value, long currentTime) {
+            return 1;
+          }
+        };
+    try {
+      new CacheBuilder<Object, Object>().expireAfterWrite(1, SECONDS).expireAfter(expiry);
+      fail();
+    } catch (IllegalStateException expected) {}
+    try {
+      new CacheBuilder<Object, Object>().expireAfterAccess(1, SECONDS).expireAfter(expiry);
+      fail();
+    } catch (IllegalStateException expected) {}
+    try {
+      new CacheBuilder<Object, Object>().expireAfter(expiry).expireAfterWrite(1, SECONDS);
+      fail();
+    } catch (IllegalStateException expected) {}
+    try {
+      new CacheBuilder<Object, Object>().expireAfter(expiry).expireAfterAccess(1, SECONDS);
+      fail();
+    } catch (IllegalStateException expected) {}
+  }
+
   @GwtIncompatible // refreshAfterWrite
   public void testRefresh_zero() {
     CacheBuilder<Object, Object> builder = new CacheBuilder<Object, Object>();
@@ -600,6 +674,7 @@ public class CacheBuilderTest extends TestCase {
   @GwtIncompatible // NullPointerTester
   public void testNullParameters() throws Exception {
     NullPointerTester tester = new NullPointerTester();
+    tester.setDefault(CacheLoader.class, identityLoader());
     CacheBuilder<Object, Object> builder = new CacheBuilder<Object, Object>();
     tester.testAllPublicInstanceMethods(builder);
   }
@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.cache.TestingCacheLoaders.identityLoader;
+import static com.google.common.cache.TestingCacheLoaders.incrementingLoader;
+import static com.google.common.cache.TestingRemovalListeners.queuingRemovalListener;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.cache.TestingCacheLoaders.IncrementingLoader;
+import com.google.common.cache.TestingRemovalListeners.QueuingRemovalListener;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.testing.FakeTicker;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests relating to the bulk operations {@link Cache#getAllPresent}, {@link LoadingCache#getAll}
+ * and {@link Cache#putAll}, which process their keys segment by segment.
+ */
+public class CacheBulkTest extends TestCase {
+
+  public void testGroupBySegment() {
+    LocalCache<Object, Object> map =
+        new LocalCache<Object, Object>(CacheBuilder.newBuilder().concurrencyLevel(4), null);
+    int[] hashes = new int[100];
+    for (int i = 0; i < hashes.length; i++) {
+      hashes[i] = map.hash(i);
+    }
+    int[] starts = new int[map.segments.length + 1];
+    int[] order = map.groupBySegment(hashes, starts);
+
+    assertEquals(0, starts[0]);
+    assertEquals(hashes.length, starts[map.segments.length]);
+    boolean[] seen = new boolean[hashes.length];
+    for (int s = 0; s < map.segments.length; s++) {
+      for (int i = starts[s]; i < starts[s + 1]; i++) {
+        assertSame(map.segments[s], map.segmentFor(hashes[order[i]]));
+        if (i > starts[s]) {
+          assertTrue(order[i - 1] < order[i]);
+        }
+        assertFalse(seen[order[i]]);
+        seen[order[i]] = true;
+      }
+    }
+  }
+
+  public void testGetAllPresent_manySegments() {
+    Cache<Integer, Integer> cache =
+        CacheBuilder.newBuilder().concurrencyLevel(16).recordStats().build();
+    for (int i = 0; i < 1000; i += 2) {
+      cache.put(i, -i);
+    }
+    List<Integer> keys = Lists.newArrayList();
+    for (int i = 999; i >= 0; i--) {
+      keys.add(i);
+    }
+
+    Map<Integer, Integer> expected = Maps.newLinkedHashMap();
+    for (int i = 998; i >= 0; i -= 2) {
+      expected.put(i, -i);
+    }
+    ImmutableMap<Integer, Integer> result = cache.getAllPresent(keys);
+    assertEquals(expected, result);
+    assertEquals(ImmutableList.copyOf(expected.keySet()), result.keySet().asList());
+    assertEquals(500, cache.stats().hitCount());
+    assertEquals(500, cache.stats().missCount());
+  }
+
+  public void testGetAll_loadsMissesInOrder() throws Exception {
+    LoadingCache<Integer, Integer> cache =
+        CacheBuilder.newBuilder().concurrencyLevel(8).recordStats().build(identityLoader());
+    cache.put(5, 50);
+    cache.put(7, 70);
+
+    ImmutableMap<Integer, Integer> result = cache.getAll(Arrays.asList(9, 7, 5, 3, 7, 1));
+    assertEquals(ImmutableList.of(9, 7, 5, 3, 1), result.keySet().asList());
+    assertEquals(ImmutableList.of(9, 70, 50, 3, 1), result.values().asList());
+    assertEquals(2, cache.stats().hitCount());
+    assertEquals(3, cache.stats().missCount());
+  }
+
+  public void testGetAll_bulkLoadStoresNonNullEntries() throws Exception {
+    QueuingRemovalListener<Integer, Integer> removalListener = queuingRemovalListener();
+    LoadingCache<Integer, Integer> cache =
+        CacheBuilder.newBuilder()
+            .concurrencyLevel(16)
+            .removalListener(removalListener)
+            .build(
+                new CacheLoader<Integer, Integer>() {
+                  @Override
+                  public Integer load(Integer key) {
+                    return key;
+                  }
+
+                  @Override
+                  public Map<Integer, Integer> loadAll(Iterable<? extends Integer> keys) {
+                    Map<Integer, Integer> result = Maps.newLinkedHashMap();
+                    for (int i = 0; i < 1000; i++) {
+                      result.put(i, -i);
+                    }
+                    result.put(1000, null);
+                    return result;
+                  }
+                });
+    cache.put(3, 30);
+
+    try {
+      cache.getAll(ImmutableList.of(1, 2, 1000));
+      fail();
+    } catch (CacheLoader.InvalidCacheLoadException expected) {}
+    assertEquals(1000, cache.size());
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(Integer.valueOf(-i), cache.getIfPresent(i));
+    }
+    assertEquals(1, removalListener.size());
+    assertEquals(RemovalCause.REPLACED, removalListener.poll().getCause());
+  }
+
+  public void testGetAll_recordsAccessOrder() throws Exception {
+    LoadingCache<Integer, Integer> cache =
+        CacheBuilder.newBuilder().concurrencyLevel(1).maximumSize(10).build(identityLoader());
+    for (int i = 0; i < 10; i++) {
+      cache.getUnchecked(i);
+    }
+    cache.getAll(ImmutableList.of(0, 1, 2, 3, 4));
+    for (int i = 10; i < 15; i++) {
+      cache.getUnchecked(i);
+    }
+    assertEquals(
+        ImmutableMap.of(0, 0, 1, 1, 2, 2, 3, 3, 4, 4),
+        cache.getAllPresent(ImmutableList.of(0, 1, 2, 3, 4)));
+    assertTrue(cache.getAllPresent(ImmutableList.of(5, 6, 7, 8, 9)).isEmpty());
+  }
+
+  public void testGetAllPresent_refreshesStaleEntries() {
+    FakeTicker ticker = new FakeTicker();
+    IncrementingLoader loader = incrementingLoader();
+    LoadingCache<Integer, Integer> cache =
+        CacheBuilder.newBuilder().refreshAfterWrite(1, SECONDS).ticker(ticker).build(loader);
+    cache.getUnchecked(1);
+    cache.getUnchecked(2);
+    ticker.advance(2, SECONDS);
+
+    assertEquals(
+        ImmutableMap.of(1, 2, 2, 3), cache.getAllPresent(ImmutableList.of(1, 2, 3)));
+    assertEquals(2, loader.getReloadCount());
+  }
+
+  public void testGetAllPresent_skipsExpiredEntries() {
+    FakeTicker ticker = new FakeTicker();
+    Cache<Integer, Integer> cache =
+        CacheBuilder.newBuilder().expireAfterWrite(10, SECONDS).ticker(ticker).build();
+    cache.put(1, 1);
+    ticker.advance(5, SECONDS);
+    cache.put(2, 2);
+    ticker.advance(6, SECONDS);
+    assertEquals(ImmutableMap.of(2, 2), cache.getAllPresent(ImmutableList.of(1, 2)));
+  }
+
+  public void testPutAll_manySegments() {
+    QueuingRemovalListener<Integer, Integer> removalListener = queuingRemovalListener();
+    Cache<Integer, Integer> cache =
+        CacheBuilder.newBuilder().concurrencyLevel(16).removalListener(removalListener).build();
+    cache.put(3, 30);
+
+    Map<Integer, Integer> entries = Maps.newLinkedHashMap();
+    for (int i = 0; i < 1000; i++) {
+      entries.put(i, -i);
+    }
+    cache.putAll(entries);
+    assertEquals(1000, cache.size());
+    assertEquals(entries, cache.asMap());
+    assertEquals(1, removalListener.size());
+    RemovalNotification<Integer, Integer> notification = removalListener.poll();
+    assertEquals(Integer.valueOf(3), notification.getKey());
+    assertEquals(Integer.valueOf(30), notification.getValue());
+    assertEquals(RemovalCause.REPLACED, notification.getCause());
+  }
+
+  public void testPutAll_evicts() {
+    Cache<Integer, Integer> cache =
+        CacheBuilder.newBuilder().concurrencyLevel(1).maximumSize(10).build();
+    Map<Integer, Integer> entries = Maps.newLinkedHashMap();
+    for (int i = 0; i < 100; i++) {
+      entries.put(i, i);
+    }
+    cache.putAll(entries);
+    assertEquals(10, cache.size());
+    assertEquals(10, cache.getAllPresent(entries.keySet()).size());
+  }
+
+  public void testPutAll_nullValue() {
+    Cache<Integer, Integer> cache = CacheBuilder.newBuilder().build();
+    Map<Integer, Integer> entries = Maps.newLinkedHashMap();
+    entries.put(1, 1);
+    entries.put(2, null);
+    try {
+      cache.putAll(entries);
+      fail();
+    } catch (NullPointerException expected) {}
+    assertEquals(0, cache.size());
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.cache.TestingCacheLoaders.identityLoader;
+
+import junit.framework.TestCase;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests relating to caches which {@linkplain CacheBuilder#recordDetailedStats record detailed
+ * stats}.
+ */
+public class CacheDetailedStatsTest extends TestCase {
+
+  /** Loads each key after sleeping for as many milliseconds as the key. */
+  static class SleepingLoader extends CacheLoader<Integer, Integer> {
+    @Override
+    public Integer load(Integer key) throws InterruptedException {
+      Thread.sleep(Math.abs(key));
+      if (key < 0) {
+        throw new IllegalArgumentException();
+      }
+      return key;
+    }
+  }
+
+  public void testSnapshot_empty() {
+    Cache<Integer, Integer> cache = CacheBuilder.newBuilder().recordDetailedStats().build();
+    DetailedCacheStats<Integer> snapshot = DetailedCacheStats.snapshot(cache);
+    assertEquals(cache.stats(), snapshot.stats());
+    assertTrue(snapshot.loadLatencyHistogram().isEmpty());
+    assertEquals(0, snapshot.loadLatencyPercentile(99));
+    assertTrue(snapshot.hotKeys().isEmpty());
+  }
+
+  public void testSnapshot_recordsOrdinaryStats() {
+    LoadingCache<Integer, Integer> cache =
+        CacheBuilder.newBuilder().recordDetailedStats().build(identityLoader());
+    cache.getUnchecked(1);
+    cache.getUnchecked(1);
+    CacheStats stats = DetailedCacheStats.snapshot(cache).stats();
+    assertEquals(1, stats.hitCount());
+    assertEquals(1, stats.missCount());
+    assertEquals(1, stats.loadSuccessCount());
+    assertEquals(stats, cache.stats());
+  }
+
+  public void testLoadLatencyHistogram() {
+    LoadingCache<Integer, Integer> cache =
+        CacheBuilder.newBuilder().recordDetailedStats().build(new SleepingLoader());
+    for (int i = 0; i < 8; i++) {
+      cache.getUnchecked(i);
+    }
+    cache.getUnchecked(20);
+    try {
+      cache.getUnchecked(-20);
+      fail();
+    } catch (RuntimeException expected) {}
+
+    DetailedCacheStats<Integer> snapshot = DetailedCacheStats.snapshot(cache);
+    long total = 0;
+    for (long count : snapshot.loadLatencyHistogram().values()) {
+      total += count;
+    }
+    assertEquals(10, total);
+    assertTrue(snapshot.loadLatencyPercentile(50) < TimeUnit.MILLISECONDS.toNanos(20));
+    assertTrue(snapshot.loadLatencyPercentile(80) < TimeUnit.MILLISECONDS.toNanos(20));
+    assertTrue(snapshot.loadLatencyPercentile(90) >= TimeUnit.MILLISECONDS.toNanos(20));
+    assertTrue(snapshot.loadLatencyPercentile(100) >= TimeUnit.MILLISECONDS.toNanos(20));
+    assertTrue(snapshot.loadLatencyPercentile(100) >= snapshot.loadLatencyPercentile(90));
+  }
+
+  public void testLoadLatencyPercentile_outOfRange() {
+    Cache<Integer, Integer> cache = CacheBuilder.newBuilder().recordDetailedStats().build();
+    DetailedCacheStats<Integer> snapshot = DetailedCacheStats.snapshot(cache);
+    try {
+      snapshot.loadLatencyPercentile(100.5);
+      fail();
+    } catch (IllegalArgumentException expected) {}
+    try {
+      snapshot.loadLatencyPercentile(-1);
+      fail();
+    } catch (IllegalArgumentException expected) {}
+  }
+
+  public void testHotKeys_unbounded() {
+    LoadingCache<Integer, Integer> cache =
+        CacheBuilder.newBuilder().recordDetailedStats().build(identityLoader());
+    for (int round = 0; round < 100; round++) {
+      for (int i = 0; i < 100; i++) {
+        cache.getUnchecked(i);
+      }
+      for (int i = 0; i < 10; i++) {
+        cache.getUnchecked(1000);
+        cache.getUnchecked(2000);
+      }
+    }
+    cache.cleanUp();
+
+    Map<Integer, Long> hotKeys = DetailedCacheStats.snapshot(cache).hotKeys();
+    assertTrue(hotKeys.size() <= 16);
+    assertTrue(hotKeys.containsKey(1000));
+    assertTrue(hotKeys.containsKey(2000));
+    long previous = Long.MAX_VALUE;
+    for (long count : hotKeys.values()) {
+      assertTrue(count <= previous);
+      previous = count;
+    }
+  }
+
+  public void testHotKeys_bounded() {
+    Cache<Integer, Integer> cache =
+        CacheBuilder.newBuilder().recordDetailedStats().maximumSize(1000).build();
+    for (int i = 0; i < 100; i++) {
+      cache.put(i, i);
+    }
+    for (int round = 0; round < 100; round++) {
+      cache.getIfPresent(round % 100);
+      cache.getIfPresent(7);
+    }
+    cache.cleanUp();
+    assertEquals(7, (int) DetailedCacheStats.snapshot(cache).hotKeys().keySet().iterator().next());
+  }
+
+  public void testSnapshot_notRecordingDetailedStats() {
+    Cache<Integer, Integer> cache = CacheBuilder.newBuilder().recordStats().build();
+    try {
+      DetailedCacheStats.snapshot(cache);
+      fail();
+    } catch (IllegalArgumentException expected) {}
+  }
+
+  public void testSnapshot_notBuiltByCacheBuilder() {
+    Cache<Integer, Integer> cache =
+        new AbstractCache<Integer, Integer>() {
+          final Map<Integer, Integer> map = new ConcurrentHashMap<Integer, Integer>();
+
+          @Override
+          public Integer getIfPresent(Object key) {
+            return map.get(key);
+          }
+        };
+    try {
+      DetailedCacheStats.snapshot(cache);
+      fail();
+    } catch (IllegalArgumentException expected) {}
+  }
+}
@@ -299,22 +299,22 @@ public class CacheEvictionTest extends TestCase {
 
     // re-order
     getAll(cache, asList(0, 1, 2));
-    CacheTesting.drainRecencyQueues(cache);
+    CacheTesting.drainReadBuffers(cache);
     assertThat(keySet).containsExactly(3, 4, 5, 6, 7, 8, 9, 0, 1, 2);
 
     // evict 3, 4, 5
     getAll(cache, asList(10, 11, 12));
-    CacheTesting.drainRecencyQueues(cache);
+    CacheTesting.drainReadBuffers(cache);
     assertThat(keySet).containsExactly(6, 7, 8, 9, 0, 1, 2, 10, 11, 12);
 
     // re-order
     getAll(cache, asList(6, 7, 8));
-    CacheTesting.drainRecencyQueues(cache);
+    CacheTesting.drainReadBuffers(cache);
     assertThat(keySet).containsExactly(9, 0, 1, 2, 10, 11, 12, 6, 7, 8);
 
     // evict 9, 0, 1
     getAll(cache, asList(13, 14, 15));
-    CacheTesting.drainRecencyQueues(cache);
+    CacheTesting.drainReadBuffers(cache);
     assertThat(keySet).containsExactly(2, 10, 11, 12, 6, 7, 8, 13, 14, 15);
   }
 
@@ -332,32 +332,32 @@ public class CacheEvictionTest extends TestCase {
 
     // re-order
     getAll(cache, asList(0, 1, 2));
-    CacheTesting.drainRecencyQueues(cache);
+    CacheTesting.drainReadBuffers(cache);
     assertThat(keySet).containsExactly(3, 4, 5, 6, 7, 8, 9, 0, 1, 2);
 
     // evict 3, 4, 5
     getAll(cache, asList(10));
-    CacheTesting.drainRecencyQueues(cache);
+    CacheTesting.drainReadBuffers(cache);
     assertThat(keySet).containsExactly(6, 7, 8, 9, 0, 1, 2, 10);
 
     // re-order
     getAll(cache, asList(6, 7, 8));
-    CacheTesting.drainRecencyQueues(cache);
+    CacheTesting.drainReadBuffers(cache);
     assertThat(keySet).containsExactly(9, 0, 1, 2, 10, 6, 7, 8);
 
     // evict 9, 1, 2, 10
     getAll(cache, asList(15));
-    CacheTesting.drainRecencyQueues(cache);
+    CacheTesting.drainReadBuffers(cache);
     assertThat(keySet).containsExactly(0, 6, 7, 8, 15);
 
     // fill empty space
     getAll(cache, asList(9));
-    CacheTesting.drainRecencyQueues(cache);
+    CacheTesting.drainReadBuffers(cache);
     assertThat(keySet).containsExactly(0, 6, 7, 8, 15, 9);
 
     // evict 6
     getAll(cache, asList(1));
-    CacheTesting.drainRecencyQueues(cache);
+    CacheTesting.drainReadBuffers(cache);
     assertThat(keySet).containsExactly(0, 7, 8, 15, 9, 1);
   }
 
@@ -375,15 +375,92 @@ public class CacheEvictionTest extends TestCase {
 
     // add an at-the-maximum-weight entry
     getAll(cache, asList(45));
-    CacheTesting.drainRecencyQueues(cache);
+    CacheTesting.drainReadBuffers(cache);
     assertThat(keySet).containsExactly(0, 45);
 
     // add an over-the-maximum-weight entry
     getAll(cache, asList(46));
-    CacheTesting.drainRecencyQueues(cache);
+    CacheTesting.drainReadBuffers(cache);
     assertThat(keySet).contains(0);
   }
 
+  public void testEviction_tinyLfu() {
+    // test frequency-based admission within a single segment
+    IdentityLoader<Integer> loader = identityLoader();
+    CountingRemovalListener<Integer, Integer> removalListener = countingRemovalListener();
+    LoadingCache<Integer, Integer> cache = CacheBuilder.newBuilder()
+        .concurrencyLevel(1)
+        .maximumSize(10)
+        .admissionPolicy(AdmissionPolicy.TINY_LFU)
+        .removalListener(removalListener)
+        .build(loader);
+    CacheTesting.warmUp(cache, 0, 10);
+    Set<Integer> keySet = cache.asMap().keySet();
+    assertThat(keySet).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+
+    // make the resident entries popular
+    getAll(cache, asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9));
+    getAll(cache, asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9));
+    CacheTesting.drainReadBuffers(cache);
+
+    // a scan of one-hit wonders is rejected
+    getAll(cache, asList(10, 11, 12, 13, 14, 15, 16, 17, 18, 19));
+    CacheTesting.drainReadBuffers(cache);
+    assertThat(keySet).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+    assertEquals(10, removalListener.getCount());
+    assertEquals(10, cache.size());
+
+    // a key that becomes more popular than the victim is admitted
+    getAll(cache, asList(20, 20, 20, 20));
+    CacheTesting.drainReadBuffers(cache);
+    assertTrue(keySet.contains(20));
+    assertEquals(10, cache.size());
+    CacheTesting.checkValidState(cache);
+  }
+
+  public void testEviction_tinyLfuLoadedValueReturned() {
+    IdentityLoader<Integer> loader = identityLoader();
+    LoadingCache<Integer, Integer> cache = CacheBuilder.newBuilder()
+        .concurrencyLevel(1)
+        .maximumSize(10)
+        .admissionPolicy(AdmissionPolicy.TINY_LFU)
+        .build(loader);
+    for (int i = 0; i < 2 * MAX_SIZE; i++) {
+      // even a rejected value is returned to the caller which loaded it
+      assertEquals(i, (int) cache.getUnchecked(i));
+      assertTrue(cache.size() <= 10);
+    }
+    CacheTesting.checkValidState(cache);
+  }
+
+  public void testEviction_tinyLfuRecordsMisses() {
+    Cache<Integer, Integer> cache = CacheBuilder.newBuilder()
+        .concurrencyLevel(1)
+        .maximumSize(10)
+        .admissionPolicy(AdmissionPolicy.TINY_LFU)
+        .build();
+    for (int i = 0; i < 10; i++) {
+      cache.put(i, i);
+      cache.getIfPresent(i);
+      cache.getIfPresent(i);
+    }
+    CacheTesting.drainReadBuffers(cache);
+    Set<Integer> keySet = cache.asMap().keySet();
+
+    // a key that was never looked up is rejected
+    cache.put(20, 20);
+    assertFalse(keySet.contains(20));
+
+    // a key whose lookups missed is as popular as one whose lookups hit
+    for (int i = 0; i < 4; i++) {
+      assertNull(cache.getIfPresent(21));
+    }
+    cache.put(21, 21);
+    assertTrue(keySet.contains(21));
+    assertEquals(10, cache.size());
+    CacheTesting.checkValidState(cache);
+  }
+
   public void testEviction_invalidateAll() {
     // test that .invalidateAll() resets total weight state correctly
     IdentityLoader<Integer> loader = identityLoader();
@@ -397,17 +474,17 @@ public class CacheEvictionTest extends TestCase {
 
     // add 0, 1, 2, 3, 4
     getAll(cache, asList(0, 1, 2, 3, 4));
-    CacheTesting.drainRecencyQueues(cache);
+    CacheTesting.drainReadBuffers(cache);
     assertThat(keySet).containsExactly(0, 1, 2, 3, 4);
 
     // invalidate all
     cache.invalidateAll();
-    CacheTesting.drainRecencyQueues(cache);
+    CacheTesting.drainReadBuffers(cache);
     assertThat(keySet).isEmpty();
 
     // add 5, 6, 7, 8, 9, 10, 11, 12
     getAll(cache, asList(5, 6, 7, 8, 9, 10, 11, 12));
-    CacheTesting.drainRecencyQueues(cache);
+    CacheTesting.drainReadBuffers(cache);
     assertThat(keySet).containsExactly(5, 6, 7, 8, 9, 10, 11, 12);
   }
 
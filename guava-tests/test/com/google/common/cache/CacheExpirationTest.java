@@ -270,7 +270,7 @@ public class CacheExpirationTest extends TestCase {
 
     // reorder
     getAll(cache, asList(0, 1, 2));
-    CacheTesting.drainRecencyQueues(cache);
+    CacheTesting.drainReadBuffers(cache);
     ticker.advance(2, MILLISECONDS);
     assertThat(keySet).containsExactly(3, 4, 5, 6, 7, 8, 9, 0, 1, 2);
 
@@ -280,7 +280,7 @@ public class CacheExpirationTest extends TestCase {
 
     // reorder
     getAll(cache, asList(5, 7, 9));
-    CacheTesting.drainRecencyQueues(cache);
+    CacheTesting.drainReadBuffers(cache);
     assertThat(keySet).containsExactly(4, 6, 8, 0, 1, 2, 5, 7, 9);
 
     // 4 expires
@@ -322,13 +322,13 @@ public class CacheExpirationTest extends TestCase {
 
     // get doesn't stop 1 from expiring
     getAll(cache, asList(0, 1, 2));
-    CacheTesting.drainRecencyQueues(cache);
+    CacheTesting.drainReadBuffers(cache);
     ticker.advance(1, MILLISECONDS);
     assertThat(keySet).containsExactly(2, 3, 4, 5, 6, 7, 8, 9, 0);
 
     // get(K, Callable) doesn't stop 2 from expiring
     cache.get(2, Callables.returning(-2));
-    CacheTesting.drainRecencyQueues(cache);
+    CacheTesting.drainReadBuffers(cache);
     ticker.advance(1, MILLISECONDS);
     assertThat(keySet).containsExactly(3, 4, 5, 6, 7, 8, 9, 0);
 
@@ -371,27 +371,27 @@ public class CacheExpirationTest extends TestCase {
 
     // get saves 1, 3; 0, 2, 4 expire
     getAll(cache, asList(1, 3));
-    CacheTesting.drainRecencyQueues(cache);
+    CacheTesting.drainReadBuffers(cache);
     ticker.advance(1, MILLISECONDS);
     assertThat(keySet).containsExactly(5, 6, 7, 8, 9, 1, 3);
 
     // get saves 6, 8; 5, 7, 9 expire
     getAll(cache, asList(6, 8));
-    CacheTesting.drainRecencyQueues(cache);
+    CacheTesting.drainReadBuffers(cache);
     ticker.advance(1, MILLISECONDS);
     assertThat(keySet).containsExactly(1, 3, 6, 8);
 
     // get fails to save 1, put saves 3
     cache.asMap().put(3, -3);
     getAll(cache, asList(1));
-    CacheTesting.drainRecencyQueues(cache);
+    CacheTesting.drainReadBuffers(cache);
     ticker.advance(1, MILLISECONDS);
     assertThat(keySet).containsExactly(6, 8, 3);
 
     // get(K, Callable) fails to save 8, replace saves 6
     cache.asMap().replace(6, -6);
     cache.get(8, Callables.returning(-8));
-    CacheTesting.drainRecencyQueues(cache);
+    CacheTesting.drainReadBuffers(cache);
     ticker.advance(1, MILLISECONDS);
     assertThat(keySet).containsExactly(3, 6);
   }
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.cache.TestingCacheLoaders.identityLoader;
+import static com.google.common.cache.TestingRemovalListeners.countingRemovalListener;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.cache.TestingRemovalListeners.CountingRemovalListener;
+import com.google.common.testing.FakeTicker;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests relating to variable, per-entry expiration: entries expiring after the duration calculated
+ * by an {@link Expiry}.
+ */
+public class CacheExpiryTest extends TestCase {
+
+  /** Expires each entry after as many seconds as its value, extended by a second on each read. */
+  static class ValueSecondsExpiry extends Expiry<Integer, Integer> {
+    @Override
+    public long expireAfterCreate(Integer key, Integer value, long currentTime) {
+      return SECONDS.toNanos(value);
+    }
+
+    @Override
+    public long expireAfterRead(
+        Integer key, Integer value, long currentTime, long currentDuration) {
+      return currentDuration + SECONDS.toNanos(1);
+    }
+  }
+
+  public void testExpiry_perEntryDuration() {
+    FakeTicker ticker = new FakeTicker();
+    CountingRemovalListener<Integer, Integer> removalListener = countingRemovalListener();
+    Cache<Integer, Integer> cache =
+        CacheBuilder.newBuilder()
+            .expireAfter(
+                new Expiry<Integer, Integer>() {
+                  @Override
+                  public long expireAfterCreate(Integer key, Integer value, long currentTime) {
+                    return SECONDS.toNanos(value);
+                  }
+                })
+            .removalListener(removalListener)
+            .ticker(ticker)
+            .build();
+    cache.put(1, 10);
+    cache.put(2, 60);
+    cache.put(3, 3600);
+
+    ticker.advance(9, SECONDS);
+    assertEquals(Integer.valueOf(10), cache.getIfPresent(1));
+    ticker.advance(2, SECONDS);
+    assertNull(cache.getIfPresent(1));
+    assertEquals(Integer.valueOf(60), cache.getIfPresent(2));
+
+    ticker.advance(50, SECONDS);
+    cache.cleanUp();
+    assertEquals(1, cache.size());
+    assertEquals(2, removalListener.getCount());
+    assertEquals(Integer.valueOf(3600), cache.getIfPresent(3));
+
+    ticker.advance(1, DAYS);
+    cache.cleanUp();
+    assertEquals(0, cache.size());
+    assertEquals(3, removalListener.getCount());
+  }
+
+  public void testExpiry_zeroDurationExpiresImmediately() {
+    FakeTicker ticker = new FakeTicker();
+    Cache<Integer, Integer> cache =
+        CacheBuilder.newBuilder().expireAfter(new ValueSecondsExpiry()).ticker(ticker).build();
+    cache.put(1, 0);
+    assertNull(cache.getIfPresent(1));
+    cache.put(1, -5);
+    assertNull(cache.getIfPresent(1));
+  }
+
+  public void testExpiry_readExtendsDuration() {
+    FakeTicker ticker = new FakeTicker();
+    Cache<Integer, Integer> cache =
+        CacheBuilder.newBuilder().expireAfter(new ValueSecondsExpiry()).ticker(ticker).build();
+    cache.put(1, 2);
+
+    for (int i = 0; i < 5; i++) {
+      ticker.advance(900, MILLISECONDS);
+      assertEquals(Integer.valueOf(2), cache.getIfPresent(1));
+    }
+    ticker.advance(3, SECONDS);
+    assertNull(cache.getIfPresent(1));
+  }
+
+  public void testExpiry_updateRecalculates() {
+    FakeTicker ticker = new FakeTicker();
+    Cache<Integer, Integer> cache =
+        CacheBuilder.newBuilder().expireAfter(new ValueSecondsExpiry()).ticker(ticker).build();
+    cache.put(1, 5);
+    ticker.advance(4, SECONDS);
+    cache.put(1, 100);
+    ticker.advance(50, SECONDS);
+    assertEquals(Integer.valueOf(100), cache.getIfPresent(1));
+
+    cache.put(1, 1);
+    ticker.advance(2, SECONDS);
+    cache.cleanUp();
+    assertEquals(0, cache.size());
+  }
+
+  public void testExpiry_readExceptionKeepsDuration() {
+    FakeTicker ticker = new FakeTicker();
+    Cache<Integer, Integer> cache =
+        CacheBuilder.newBuilder()
+            .expireAfter(
+                new Expiry<Integer, Integer>() {
+                  @Override
+                  public long expireAfterCreate(Integer key, Integer value, long currentTime) {
+                    return SECONDS.toNanos(value);
+                  }
+
+                  @Override
+                  public long expireAfterRead(
+                      Integer key, Integer value, long currentTime, long currentDuration) {
+                    throw new IllegalStateException();
+                  }
+                })
+            .ticker(ticker)
+            .build();
+    cache.put(1, 2);
+
+    ticker.advance(1, SECONDS);
+    assertEquals(Integer.valueOf(2), cache.getIfPresent(1));
+    ticker.advance(900, MILLISECONDS);
+    assertEquals(Integer.valueOf(2), cache.getIfPresent(1));
+    ticker.advance(100, MILLISECONDS);
+    assertNull(cache.getIfPresent(1));
+  }
+
+  public void testExpiry_loadingCache() {
+    FakeTicker ticker = new FakeTicker();
+    IdentityLoaderCounter loader = new IdentityLoaderCounter();
+    LoadingCache<Integer, Integer> cache =
+        CacheBuilder.newBuilder()
+            .expireAfter(new ValueSecondsExpiry())
+            .ticker(ticker)
+            .build(loader);
+
+    assertEquals(Integer.valueOf(30), cache.getUnchecked(30));
+    assertEquals(Integer.valueOf(90), cache.getUnchecked(90));
+    ticker.advance(60, SECONDS);
+    assertEquals(Integer.valueOf(30), cache.getUnchecked(30));
+    assertEquals(Integer.valueOf(90), cache.getUnchecked(90));
+    assertEquals(3, loader.count);
+  }
+
+  public void testExpiry_withMaximumSize() {
+    FakeTicker ticker = new FakeTicker();
+    LoadingCache<Integer, Integer> cache =
+        CacheBuilder.newBuilder()
+            .expireAfter(new ValueSecondsExpiry())
+            .maximumSize(10)
+            .concurrencyLevel(1)
+            .ticker(ticker)
+            .build(identityLoader());
+    for (int i = 1; i <= 100; i++) {
+      cache.getUnchecked(i);
+      ticker.advance(1, SECONDS);
+    }
+    assertTrue(cache.size() <= 10);
+    ticker.advance(200, SECONDS);
+    cache.cleanUp();
+    assertEquals(0, cache.size());
+  }
+
+  static class IdentityLoaderCounter extends CacheLoader<Integer, Integer> {
+    int count;
+
+    @Override
+    public Integer load(Integer key) {
+      count++;
+      return key;
+    }
+  }
+}
@@ -19,14 +19,19 @@ package com.google.common.cache;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 
 import junit.framework.TestCase;
 
+import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -101,4 +106,121 @@ public class CacheLoaderTest extends TestCase {
     assertEquals(2, reloadCount.get());
     assertEquals(2, loadAllCount.get());
   }
+
+  /** Runs each task immediately, counting them. */
+  private static class CountingExecutor implements Executor {
+    int count;
+
+    @Override
+    public void execute(Runnable task) {
+      count++;
+      task.run();
+    }
+  }
+
+  /** Records the keys of each call to {@code loadAll}, loading each key as itself. */
+  private static class BatchRecordingLoader extends CacheLoader<Integer, Integer> {
+    final List<List<Integer>> batches =
+        Collections.synchronizedList(Lists.<List<Integer>>newArrayList());
+
+    @Override
+    public Integer load(Integer key) {
+      return key;
+    }
+
+    @Override
+    public Map<Integer, Integer> loadAll(Iterable<? extends Integer> keys) {
+      batches.add(ImmutableList.<Integer>copyOf(keys));
+      Map<Integer, Integer> result = Maps.newLinkedHashMap();
+      for (Integer key : keys) {
+        result.put(key, key);
+      }
+      return result;
+    }
+  }
+
+  public void testAsyncParallel_batches() throws Exception {
+    BatchRecordingLoader baseLoader = new BatchRecordingLoader();
+    CountingExecutor executor = new CountingExecutor();
+    CacheLoader<Integer, Integer> loader = CacheLoader.asyncParallel(baseLoader, executor, 3);
+
+    Map<Integer, Integer> result = loader.loadAll(ImmutableList.of(1, 2, 3, 4, 5, 6, 7));
+    assertEquals(ImmutableList.of(1, 2, 3, 4, 5, 6, 7), ImmutableList.copyOf(result.keySet()));
+    assertEquals(ImmutableList.copyOf(result.keySet()), ImmutableList.copyOf(result.values()));
+    assertEquals(
+        ImmutableList.of(ImmutableList.of(4, 5, 6), ImmutableList.of(7), ImmutableList.of(1, 2, 3)),
+        baseLoader.batches);
+    assertEquals(2, executor.count);
+
+    assertEquals(ImmutableMap.of(1, 1, 2, 2), loader.loadAll(ImmutableList.of(1, 2)));
+    assertEquals(2, executor.count);
+    assertEquals(Integer.valueOf(8), loader.load(8));
+  }
+
+  public void testAsyncParallel_loadAllNotImplemented() throws Exception {
+    CountingExecutor executor = new CountingExecutor();
+    CacheLoader<Integer, Integer> loader =
+        CacheLoader.asyncParallel(TestingCacheLoaders.<Integer>identityLoader(), executor, 2);
+
+    try {
+      loader.loadAll(ImmutableList.of(1, 2));
+      fail();
+    } catch (UnsupportedOperationException expected) {}
+
+    assertEquals(
+        ImmutableMap.of(1, 1, 2, 2, 3, 3, 4, 4, 5, 5),
+        loader.loadAll(ImmutableList.of(1, 2, 3, 4, 5)));
+    assertEquals(2, executor.count);
+  }
+
+  public void testAsyncParallel_failure() throws Exception {
+    final Exception failure = new Exception();
+    CacheLoader<Integer, Integer> baseLoader =
+        new CacheLoader<Integer, Integer>() {
+          @Override
+          public Integer load(Integer key) throws Exception {
+            if (key == 3) {
+              throw failure;
+            }
+            return key;
+          }
+        };
+    CacheLoader<Integer, Integer> loader =
+        CacheLoader.asyncParallel(baseLoader, new CountingExecutor(), 2);
+    try {
+      loader.loadAll(ImmutableList.of(1, 2, 3, 4));
+      fail();
+    } catch (Exception expected) {
+      assertSame(failure, expected);
+    }
+  }
+
+  public void testAsyncParallel_getAll() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      BatchRecordingLoader baseLoader = new BatchRecordingLoader();
+      LoadingCache<Integer, Integer> cache =
+          CacheBuilder.newBuilder().build(CacheLoader.asyncParallel(baseLoader, executor, 10));
+      cache.put(0, 0);
+
+      List<Integer> keys = Lists.newArrayList();
+      for (int i = 0; i < 100; i++) {
+        keys.add(i);
+      }
+      ImmutableMap<Integer, Integer> result = cache.getAll(keys);
+      assertEquals(keys, result.keySet().asList());
+      assertEquals(keys, result.values().asList());
+      assertEquals(10, baseLoader.batches.size());
+      assertEquals(100, cache.size());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void testAsyncParallel_invalidBatchSize() {
+    try {
+      CacheLoader.asyncParallel(new BatchRecordingLoader(), new CountingExecutor(), 0);
+      fail();
+    } catch (IllegalArgumentException expected) {}
+  }
 }
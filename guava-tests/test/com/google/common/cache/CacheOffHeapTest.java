@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.cache.TestingRemovalListeners.countingRemovalListener;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.LocalCache.OffHeapValueReference;
+import com.google.common.cache.TestingRemovalListeners.CountingRemovalListener;
+import com.google.common.testing.SerializableTester;
+
+import junit.framework.TestCase;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Tests relating to caches which {@linkplain CacheBuilder#offHeapValues store values off-heap}.
+ */
+public class CacheOffHeapTest extends TestCase {
+
+  static final ValueSerializer<String> STRINGS =
+      new ValueSerializer<String>() {
+        @Override
+        public byte[] serialize(String value) {
+          return value.getBytes(Charsets.UTF_8);
+        }
+
+        @Override
+        public String deserialize(ByteBuffer buffer) {
+          byte[] bytes = new byte[buffer.remaining()];
+          buffer.get(bytes);
+          return new String(bytes, Charsets.UTF_8);
+        }
+      };
+
+  static <K, V> LocalCache<K, V> toLocalCache(Cache<K, V> cache) {
+    return ((LocalCache.LocalManualCache<K, V>) cache).localCache;
+  }
+
+  public void testOffHeap_roundTrip() {
+    Cache<Integer, String> cache = CacheBuilder.newBuilder().offHeapValues(STRINGS).build();
+    cache.put(1, "one");
+    cache.put(2, "two");
+
+    String value = cache.getIfPresent(1);
+    assertEquals("one", value);
+    assertNotSame(value, cache.getIfPresent(1));
+    assertEquals("two", cache.asMap().get(2));
+    assertTrue(cache.asMap().containsValue("two"));
+    assertTrue(cache.asMap().replace(2, "two", "deux"));
+    assertEquals("deux", cache.getIfPresent(2));
+  }
+
+  public void testOffHeap_storedInDirectBuffer() {
+    LoadingCache<Integer, String> cache =
+        CacheBuilder.newBuilder()
+            .offHeapValues(STRINGS)
+            .build(
+                new CacheLoader<Integer, String>() {
+                  @Override
+                  public String load(Integer key) {
+                    return key.toString();
+                  }
+                });
+    assertEquals("42", cache.getUnchecked(42));
+
+    LocalCache<Integer, String> map = toLocalCache(cache);
+    OffHeapValueReference<?, ?> valueReference =
+        (OffHeapValueReference<?, ?>) map.getEntry(42).getValueReference();
+    assertTrue(valueReference.buffer.isDirect());
+    assertTrue(valueReference.buffer.isReadOnly());
+    assertEquals(2, valueReference.size());
+  }
+
+  public void testOffHeap_byteArrays() {
+    Cache<Integer, byte[]> cache =
+        CacheBuilder.newBuilder().offHeapValues(ValueSerializer.byteArrays()).build();
+    byte[] value = {1, 2, 3};
+    cache.put(1, value);
+    value[0] = 9;
+    assertTrue(Arrays.equals(new byte[] {1, 2, 3}, cache.getIfPresent(1)));
+  }
+
+  public void testOffHeap_statsTrackOccupancy() {
+    Cache<Integer, byte[]> cache =
+        CacheBuilder.newBuilder()
+            .offHeapValues(ValueSerializer.byteArrays())
+            .concurrencyLevel(1)
+            .build();
+    assertEquals(0, cache.stats().offHeapBytes());
+
+    cache.put(1, new byte[100]);
+    cache.put(2, new byte[200]);
+    assertEquals(300, cache.stats().offHeapBytes());
+
+    cache.put(1, new byte[50]);
+    assertEquals(250, cache.stats().offHeapBytes());
+
+    cache.invalidate(2);
+    assertEquals(50, cache.stats().offHeapBytes());
+
+    cache.invalidateAll();
+    assertEquals(0, cache.stats().offHeapBytes());
+  }
+
+  public void testOffHeap_maximumWeightCountsBytes() {
+    CountingRemovalListener<Integer, byte[]> removalListener = countingRemovalListener();
+    Cache<Integer, byte[]> cache =
+        CacheBuilder.newBuilder()
+            .offHeapValues(ValueSerializer.byteArrays())
+            .maximumWeight(1000)
+            .concurrencyLevel(1)
+            .removalListener(removalListener)
+            .build();
+    for (int i = 0; i < 20; i++) {
+      cache.put(i, new byte[100]);
+    }
+    assertEquals(10, cache.size());
+    assertEquals(1000, cache.stats().offHeapBytes());
+    assertEquals(10, removalListener.getCount());
+    assertEquals(100, removalListener.getLastEvictedValue().length);
+  }
+
+  public void testOffHeap_maximumSizeCountsEntries() {
+    Cache<Integer, byte[]> cache =
+        CacheBuilder.newBuilder()
+            .offHeapValues(ValueSerializer.byteArrays())
+            .maximumSize(10)
+            .concurrencyLevel(1)
+            .build();
+    for (int i = 0; i < 20; i++) {
+      cache.put(i, new byte[100]);
+    }
+    assertEquals(10, cache.size());
+  }
+
+  public void testOffHeap_serialization() {
+    Cache<Integer, byte[]> cache =
+        CacheBuilder.newBuilder()
+            .offHeapValues(ValueSerializer.byteArrays())
+            .maximumWeight(1000)
+            .build();
+    LocalCache<Integer, byte[]> copy =
+        toLocalCache(SerializableTester.reserialize(cache));
+    assertTrue(copy.storesValuesOffHeap());
+    assertTrue(copy.weighsOffHeapBytes);
+    assertEquals(1000, copy.maxWeight);
+  }
+
+  public void testOffHeap_notWithReferenceValues() {
+    try {
+      CacheBuilder.newBuilder().weakValues().offHeapValues(STRINGS);
+      fail();
+    } catch (IllegalStateException expected) {}
+    try {
+      CacheBuilder.newBuilder().offHeapValues(STRINGS).softValues();
+      fail();
+    } catch (IllegalStateException expected) {}
+  }
+
+  public void testOffHeap_setTwice() {
+    CacheBuilder<Object, String> builder = CacheBuilder.newBuilder().offHeapValues(STRINGS);
+    try {
+      builder.offHeapValues(STRINGS);
+      fail();
+    } catch (IllegalStateException expected) {}
+  }
+}
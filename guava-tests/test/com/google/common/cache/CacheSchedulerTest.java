@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.cache.TestingCacheLoaders.incrementingLoader;
+import static com.google.common.cache.TestingRemovalListeners.countingRemovalListener;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.cache.TestingCacheLoaders.IncrementingLoader;
+import com.google.common.cache.TestingRemovalListeners.CountingRemovalListener;
+import com.google.common.testing.FakeTicker;
+import com.google.common.testing.GcFinalization;
+
+import junit.framework.TestCase;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests relating to cache maintenance run on a {@linkplain CacheBuilder#scheduler scheduler}.
+ */
+public class CacheSchedulerTest extends TestCase {
+
+  /** Records the maintenance task instead of running it, so tests can run it explicitly. */
+  static class RecordingScheduler extends ScheduledThreadPoolExecutor {
+    Runnable task;
+    long delayNanos;
+    ScheduledFuture<?> future;
+
+    RecordingScheduler() {
+      super(1);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(
+        Runnable command, long initialDelay, long delay, TimeUnit unit) {
+      assertNull(task);
+      task = command;
+      delayNanos = unit.toNanos(delay);
+      future = super.scheduleWithFixedDelay(new Runnable() {
+        @Override public void run() {}
+      }, 1, 1, TimeUnit.DAYS);
+      return future;
+    }
+  }
+
+  private RecordingScheduler scheduler;
+
+  @Override
+  protected void setUp() {
+    scheduler = new RecordingScheduler();
+  }
+
+  @Override
+  protected void tearDown() {
+    scheduler.shutdownNow();
+  }
+
+  public void testScheduler_notUsedWithoutMaintenance() {
+    CacheBuilder.newBuilder().scheduler(scheduler).maximumSize(10).build();
+    assertNull(scheduler.task);
+  }
+
+  public void testScheduler_delay() {
+    CacheBuilder.newBuilder().scheduler(scheduler).expireAfterWrite(1, TimeUnit.HOURS).build();
+    assertEquals(SECONDS.toNanos(1), scheduler.delayNanos);
+  }
+
+  public void testScheduler_shortDelay() {
+    CacheBuilder.newBuilder().scheduler(scheduler).expireAfterAccess(20, MILLISECONDS).build();
+    assertEquals(MILLISECONDS.toNanos(20), scheduler.delayNanos);
+  }
+
+  public void testScheduler_expiresIdleCache() {
+    FakeTicker ticker = new FakeTicker();
+    CountingRemovalListener<Integer, Integer> removalListener = countingRemovalListener();
+    Cache<Integer, Integer> cache =
+        CacheBuilder.newBuilder()
+            .scheduler(scheduler)
+            .expireAfterWrite(10, SECONDS)
+            .removalListener(removalListener)
+            .ticker(ticker)
+            .build();
+    for (int i = 0; i < 10; i++) {
+      cache.put(i, i);
+    }
+
+    ticker.advance(11, SECONDS);
+    assertEquals(0, removalListener.getCount());
+    scheduler.task.run();
+    assertEquals(10, removalListener.getCount());
+    assertEquals(0, cache.size());
+  }
+
+  public void testScheduler_readsDoNotExpire() {
+    FakeTicker ticker = new FakeTicker();
+    CountingRemovalListener<Integer, Integer> removalListener = countingRemovalListener();
+    Cache<Integer, Integer> cache =
+        CacheBuilder.newBuilder()
+            .scheduler(scheduler)
+            .expireAfterAccess(10, SECONDS)
+            .removalListener(removalListener)
+            .ticker(ticker)
+            .build();
+    cache.put(1, 1);
+
+    ticker.advance(11, SECONDS);
+    for (int i = 0; i < 1000; i++) {
+      assertNull(cache.getIfPresent(1));
+    }
+    assertEquals(1, cache.size());
+    assertEquals(0, removalListener.getCount());
+
+    scheduler.task.run();
+    assertEquals(0, cache.size());
+    assertEquals(1, removalListener.getCount());
+  }
+
+  public void testScheduler_refreshesProactively() {
+    FakeTicker ticker = new FakeTicker();
+    IncrementingLoader loader = incrementingLoader();
+    LoadingCache<Integer, Integer> cache =
+        CacheBuilder.newBuilder()
+            .scheduler(scheduler)
+            .refreshAfterWrite(10, SECONDS)
+            .ticker(ticker)
+            .build(loader);
+    assertEquals(Integer.valueOf(0), cache.getUnchecked(0));
+    assertEquals(Integer.valueOf(1), cache.getUnchecked(1));
+
+    ticker.advance(5, SECONDS);
+    scheduler.task.run();
+    assertEquals(0, loader.getReloadCount());
+
+    ticker.advance(6, SECONDS);
+    scheduler.task.run();
+    assertEquals(2, loader.getReloadCount());
+    assertEquals(Integer.valueOf(1), cache.asMap().get(0));
+    assertEquals(Integer.valueOf(2), cache.asMap().get(1));
+    assertEquals(2, loader.getReloadCount());
+  }
+
+  public void testScheduler_stopsWhenCacheCollected() {
+    Cache<Integer, Integer> cache =
+        CacheBuilder.newBuilder().scheduler(scheduler).expireAfterWrite(1, SECONDS).build();
+    WeakReference<Cache<Integer, Integer>> cacheReference =
+        new WeakReference<Cache<Integer, Integer>>(cache);
+    cache = null;
+    GcFinalization.awaitClear(cacheReference);
+
+    assertFalse(scheduler.future.isCancelled());
+    scheduler.task.run();
+    assertTrue(scheduler.future.isCancelled());
+  }
+
+  public void testScheduler_setTwice() {
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().scheduler(scheduler);
+    try {
+      builder.scheduler(scheduler);
+      fail();
+    } catch (IllegalStateException expected) {}
+  }
+}
@@ -98,4 +98,19 @@ public class CacheStatsTest extends TestCase {
 
     assertEquals(sum, one.plus(two));
   }
+
+  public void testOffHeapBytes() {
+    CacheStats one = new CacheStats(11, 13, 15, 13, 11, 9, 100);
+    CacheStats two = new CacheStats(53, 47, 41, 39, 37, 35, 300);
+    assertEquals(0, new CacheStats(11, 13, 15, 13, 11, 9).offHeapBytes());
+    assertEquals(100, one.offHeapBytes());
+
+    assertEquals(400, two.plus(one).offHeapBytes());
+    assertEquals(300, two.minus(one).offHeapBytes());
+    assertEquals(100, one.minus(two).offHeapBytes());
+
+    assertFalse(one.equals(new CacheStats(11, 13, 15, 13, 11, 9)));
+    assertEquals(one, new CacheStats(11, 13, 15, 13, 11, 9, 100));
+    assertEquals(one.hashCode(), new CacheStats(11, 13, 15, 13, 11, 9, 100).hashCode());
+  }
 }
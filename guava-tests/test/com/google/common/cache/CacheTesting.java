@@ -132,16 +132,16 @@ class CacheTesting {
     return (checkNotNull(cache) instanceof LocalLoadingCache);
   }
 
-  static void drainRecencyQueues(Cache<?, ?> cache) {
+  static void drainReadBuffers(Cache<?, ?> cache) {
     if (hasLocalCache(cache)) {
       LocalCache<?, ?> map = toLocalCache(cache);
       for (Segment<?, ?> segment : map.segments) {
-        drainRecencyQueue(segment);
+        drainReadBuffer(segment);
       }
     }
   }
 
-  static void drainRecencyQueue(Segment<?, ?> segment) {
+  static void drainReadBuffer(Segment<?, ?> segment) {
     segment.lock();
     try {
       segment.cleanUp();
@@ -286,8 +286,8 @@ class CacheTesting {
   static void checkEviction(LocalCache<?, ?> map) {
     if (map.evictsBySize()) {
       for (Segment<?, ?> segment : map.segments) {
-        drainRecencyQueue(segment);
-        assertEquals(0, segment.recencyQueue.size());
+        drainReadBuffer(segment);
+        assertEquals(0, segment.readBuffer.size());
         assertEquals(0, segment.readCount.get());
 
         ReferenceEntry<?, ?> prev = null;
@@ -305,7 +305,9 @@ class CacheTesting {
       }
     } else {
       for (Segment<?, ?> segment : map.segments) {
-        assertEquals(0, segment.recencyQueue.size());
+        if (segment.readBuffer != null) {
+          assertEquals(0, segment.readBuffer.size());
+        }
       }
     }
   }
@@ -387,7 +389,7 @@ class CacheTesting {
 
       LocalCache<Integer, Integer> cchm = toLocalCache(cache);
       Segment<?, ?> segment = cchm.segments[0];
-      drainRecencyQueue(segment);
+      drainReadBuffer(segment);
       assertEquals(maxSize, accessQueueSize(cache));
       assertEquals(maxSize, cache.size());
 
@@ -395,7 +397,7 @@ class CacheTesting {
       @SuppressWarnings("unchecked")
       ReferenceEntry<Integer, Integer> entry = (ReferenceEntry) originalHead;
       operation.accept(entry);
-      drainRecencyQueue(segment);
+      drainReadBuffer(segment);
 
       assertNotSame(originalHead, segment.accessQueue.peek());
       assertEquals(cache.size(), accessQueueSize(cache));
@@ -421,7 +423,7 @@ class CacheTesting {
       LocalCache<?, ?> cchm, long expiringTime, FakeTicker ticker) {
 
     for (Segment<?, ?> segment : cchm.segments) {
-      drainRecencyQueue(segment);
+      drainReadBuffer(segment);
     }
 
     ticker.advance(2 * expiringTime, TimeUnit.MILLISECONDS);
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import com.google.common.base.Equivalence;
+import com.google.common.collect.Lists;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for {@link HotKeySketch}.
+ */
+public class HotKeySketchTest extends TestCase {
+
+  private final HotKeySketch sketch = new HotKeySketch(Equivalence.equals());
+
+  private void use(Object key, int times) {
+    for (int i = 0; i < times; i++) {
+      sketch.increment(key, key.hashCode());
+    }
+  }
+
+  private List<Map.Entry<Object, Long>> heavyHitters() {
+    List<Map.Entry<Object, Long>> result = Lists.newArrayList();
+    sketch.addTo(result);
+    return result;
+  }
+
+  public void testIncrement_tracksKeys() {
+    use("a", 3);
+    use("b", 1);
+    List<Map.Entry<Object, Long>> heavyHitters = heavyHitters();
+    assertEquals(2, heavyHitters.size());
+    assertEquals("a", heavyHitters.get(0).getKey());
+    assertEquals(Long.valueOf(3), heavyHitters.get(0).getValue());
+    assertEquals("b", heavyHitters.get(1).getKey());
+    assertEquals(Long.valueOf(1), heavyHitters.get(1).getValue());
+  }
+
+  public void testIncrement_equivalentKeys() {
+    use(new String("a"), 1);
+    use(new String("a"), 1);
+    assertEquals(1, heavyHitters().size());
+  }
+
+  public void testIncrement_displacesLeastUsed() {
+    for (int i = 0; i < HotKeySketch.CAPACITY; i++) {
+      use(i, 2);
+    }
+    use("hot", 1);
+    assertEquals(HotKeySketch.CAPACITY, heavyHitters().size());
+    assertFalse(containsKey("hot"));
+
+    use("hot", 10);
+    assertEquals(HotKeySketch.CAPACITY, heavyHitters().size());
+    assertTrue(containsKey("hot"));
+  }
+
+  public void testIncrement_findsHotKeysAmongMany() {
+    for (int round = 0; round < 50; round++) {
+      for (int i = 0; i < 200; i++) {
+        use(i, 1);
+      }
+      use("hot", 20);
+    }
+    assertTrue(containsKey("hot"));
+  }
+
+  public void testReset_halvesCounts() {
+    use("a", 10);
+    sketch.reset();
+    assertEquals(Long.valueOf(5), heavyHitters().get(0).getValue());
+    use("a", 1);
+    assertEquals(Long.valueOf(6), heavyHitters().get(0).getValue());
+  }
+
+  public void testIncrement_agesAfterSampleSize() {
+    use("a", HotKeySketch.SAMPLE_SIZE);
+    assertEquals(Long.valueOf(HotKeySketch.SAMPLE_SIZE / 2), heavyHitters().get(0).getValue());
+  }
+
+  private boolean containsKey(Object key) {
+    for (Map.Entry<Object, Long> entry : heavyHitters()) {
+      if (entry.getKey().equals(key)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
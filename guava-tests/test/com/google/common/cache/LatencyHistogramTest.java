@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest extends TestCase {
+
+  public void testBucketOf_small() {
+    for (int i = 0; i < 8; i++) {
+      assertEquals(i, LatencyHistogram.bucketOf(i));
+    }
+    assertEquals(8, LatencyHistogram.bucketOf(8));
+    assertEquals(8, LatencyHistogram.bucketOf(9));
+    assertEquals(9, LatencyHistogram.bucketOf(10));
+    assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+  }
+
+  public void testUpperBound_consistentWithBucketOf() {
+    for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+      long upperBound = LatencyHistogram.upperBound(i);
+      assertEquals(i, LatencyHistogram.bucketOf(upperBound));
+      if (upperBound < Long.MAX_VALUE) {
+        assertEquals(i + 1, LatencyHistogram.bucketOf(upperBound + 1));
+      }
+    }
+    assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(LatencyHistogram.BUCKETS - 1));
+  }
+
+  public void testUpperBound_precision() {
+    for (int i = LatencyHistogram.SUB_BUCKETS; i < LatencyHistogram.BUCKETS; i++) {
+      long lowerBound = LatencyHistogram.upperBound(i - 1) + 1;
+      long width = LatencyHistogram.upperBound(i) - lowerBound + 1;
+      assertTrue(width * 4 <= lowerBound);
+    }
+  }
+
+  public void testRecord() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(-5);
+    histogram.record(1000);
+    histogram.record(1001);
+    histogram.record(1000000);
+
+    long[] counts = new long[LatencyHistogram.BUCKETS];
+    histogram.addTo(counts);
+    assertEquals(1, counts[0]);
+    assertEquals(2, counts[LatencyHistogram.bucketOf(1000)]);
+    assertEquals(1, counts[LatencyHistogram.bucketOf(1000000)]);
+    histogram.addTo(counts);
+    assertEquals(4, counts[LatencyHistogram.bucketOf(1000)]);
+  }
+}
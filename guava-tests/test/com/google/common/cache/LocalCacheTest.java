@@ -72,6 +72,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
@@ -546,7 +547,7 @@ public class LocalCacheTest extends TestCase {
 
       checkEvictionQueues(map, segment, readOrder, writeOrder);
       checkExpirationTimes(map);
-      assertTrue(segment.recencyQueue.isEmpty());
+      assertTrue(readBuffer(segment).isEmpty());
 
       // access some of the elements
       Random random = new Random();
@@ -558,11 +559,11 @@ public class LocalCacheTest extends TestCase {
           map.get(entry.getKey(), loader);
           reads.add(entry);
           i.remove();
-          assertTrue(segment.recencyQueue.size() <= DRAIN_THRESHOLD);
+          assertTrue(readBuffer(segment).size() <= DRAIN_THRESHOLD);
         }
       }
-      int undrainedIndex = reads.size() - segment.recencyQueue.size();
-      checkAndDrainRecencyQueue(map, segment, reads.subList(undrainedIndex, reads.size()));
+      int undrainedIndex = reads.size() - readBuffer(segment).size();
+      checkAndDrainReadBuffer(map, segment, reads.subList(undrainedIndex, reads.size()));
       readOrder.addAll(reads);
 
       checkEvictionQueues(map, segment, readOrder, writeOrder);
@@ -1072,6 +1073,51 @@ public class LocalCacheTest extends TestCase {
     }
   }
 
+  public void testNewEntry_strongValueHeldInline() {
+    LocalCache<Object, Object> map = makeLocalCache(createCacheBuilder());
+    Object key = new Object();
+    Object value = new Object();
+    ReferenceEntry<Object, Object> entry = map.newEntry(key, map.hash(key), null);
+    ValueReference<Object, Object> valueRef = map.newValueReference(entry, value, 1);
+    entry.setValueReference(valueRef);
+    assertSame(entry, valueRef);
+    assertSame(entry, entry.getValueReference());
+    assertSame(value, entry.getValueReference().get());
+    assertEquals(1, entry.getValueReference().getWeight());
+
+    // weighted values are still wrapped
+    ValueReference<Object, Object> weightedRef = map.newValueReference(entry, value, 2);
+    entry.setValueReference(weightedRef);
+    assertSame(weightedRef, entry.getValueReference());
+    assertEquals(2, entry.getValueReference().getWeight());
+
+    // as are the values of weak keys
+    LocalCache<Object, Object> weakKeysMap = makeLocalCache(createCacheBuilder().weakKeys());
+    ReferenceEntry<Object, Object> weakEntry = weakKeysMap.newEntry(key, map.hash(key), null);
+    assertNotSame(weakEntry, weakKeysMap.newValueReference(weakEntry, value, 1));
+  }
+
+  public void testLoadingValueReference_copiesInlineValue() {
+    LocalCache<Object, Object> map = makeLocalCache(createCacheBuilder());
+    Object key = new Object();
+    Object value = new Object();
+    map.put(key, value);
+    ReferenceEntry<Object, Object> entry = map.getEntry(key);
+    assertSame(entry, entry.getValueReference());
+
+    LoadingValueReference<Object, Object> loadingRef =
+        new LoadingValueReference<Object, Object>(entry.getValueReference());
+    entry.setValueReference(loadingRef);
+    assertSame(value, loadingRef.get());
+    assertSame(value, loadingRef.getOldValue().get());
+    assertSame(value, map.get(key));
+
+    Object newValue = new Object();
+    map.put(key, newValue);
+    assertSame(entry, entry.getValueReference());
+    assertSame(value, loadingRef.getOldValue().get());
+  }
+
   private static <K, V> void assertConnected(
       LocalCache<K, V> map, ReferenceEntry<K, V> one, ReferenceEntry<K, V> two) {
     if (map.usesWriteQueue()) {
@@ -1957,53 +2003,53 @@ public class LocalCacheTest extends TestCase {
 
   // Segment eviction tests
 
-  public void testDrainRecencyQueueOnWrite() {
+  public void testDrainReadBufferOnWrite() {
     for (CacheBuilder<Object, Object> builder : allEvictingMakers()) {
       LocalCache<Object, Object> map = makeLocalCache(builder.concurrencyLevel(1));
       Segment<Object, Object> segment = map.segments[0];
 
-      if (segment.recencyQueue != DISCARDING_QUEUE) {
+      if (segment.readBuffer != null) {
         Object keyOne = new Object();
         Object valueOne = new Object();
         Object keyTwo = new Object();
         Object valueTwo = new Object();
 
         map.put(keyOne, valueOne);
-        assertTrue(segment.recencyQueue.isEmpty());
+        assertTrue(readBuffer(segment).isEmpty());
 
         for (int i = 0; i < DRAIN_THRESHOLD / 2; i++) {
           map.get(keyOne);
         }
-        assertFalse(segment.recencyQueue.isEmpty());
+        assertFalse(readBuffer(segment).isEmpty());
 
         map.put(keyTwo, valueTwo);
-        assertTrue(segment.recencyQueue.isEmpty());
+        assertTrue(readBuffer(segment).isEmpty());
       }
     }
   }
 
-  public void testDrainRecencyQueueOnRead() {
+  public void testDrainReadBufferOnRead() {
     for (CacheBuilder<Object, Object> builder : allEvictingMakers()) {
       LocalCache<Object, Object> map = makeLocalCache(builder.concurrencyLevel(1));
       Segment<Object, Object> segment = map.segments[0];
 
-      if (segment.recencyQueue != DISCARDING_QUEUE) {
+      if (segment.readBuffer != null) {
         Object keyOne = new Object();
         Object valueOne = new Object();
 
         // repeated get of the same key
 
         map.put(keyOne, valueOne);
-        assertTrue(segment.recencyQueue.isEmpty());
+        assertTrue(readBuffer(segment).isEmpty());
 
         for (int i = 0; i < DRAIN_THRESHOLD / 2; i++) {
           map.get(keyOne);
         }
-        assertFalse(segment.recencyQueue.isEmpty());
+        assertFalse(readBuffer(segment).isEmpty());
 
         for (int i = 0; i < DRAIN_THRESHOLD * 2; i++) {
           map.get(keyOne);
-          assertTrue(segment.recencyQueue.size() <= DRAIN_THRESHOLD);
+          assertTrue(readBuffer(segment).size() <= DRAIN_THRESHOLD);
         }
 
         // get over many different keys
@@ -2011,21 +2057,44 @@ public class LocalCacheTest extends TestCase {
         for (int i = 0; i < DRAIN_THRESHOLD * 2; i++) {
           map.put(new Object(), new Object());
         }
-        assertTrue(segment.recencyQueue.isEmpty());
+        assertTrue(readBuffer(segment).isEmpty());
 
         for (int i = 0; i < DRAIN_THRESHOLD / 2; i++) {
           map.get(keyOne);
         }
-        assertFalse(segment.recencyQueue.isEmpty());
+        assertFalse(readBuffer(segment).isEmpty());
 
         for (Object key : map.keySet()) {
           map.get(key);
-          assertTrue(segment.recencyQueue.size() <= DRAIN_THRESHOLD);
+          assertTrue(readBuffer(segment).size() <= DRAIN_THRESHOLD);
         }
       }
     }
   }
 
+  public void testPostReadCleanup_everyThresholdReads() {
+    FakeTicker ticker = new FakeTicker();
+    LocalCache<Object, Object> map = makeLocalCache(createCacheBuilder()
+        .concurrencyLevel(1)
+        .ticker(ticker)
+        .maximumSize(SMALL_MAX_SIZE)
+        .expireAfterWrite(1, TimeUnit.NANOSECONDS));
+    Segment<Object, Object> segment = map.segments[0];
+    assertNotNull(segment.readBuffer);
+
+    map.put(new Object(), new Object());
+    ticker.advance(1);
+    assertEquals(1, segment.count);
+
+    // misses add nothing to the read buffer, yet they still clean up periodically
+    for (int i = 0; i < DRAIN_THRESHOLD; i++) {
+      assertNull(map.get(new Object()));
+    }
+    assertEquals(1, segment.count);
+    assertNull(map.get(new Object()));
+    assertEquals(0, segment.count);
+  }
+
   public void testRecordRead() {
     for (CacheBuilder<Object, Object> builder : allEvictingMakers()) {
       LocalCache<Object, Object> map = makeLocalCache(builder.concurrencyLevel(1));
@@ -2038,7 +2107,7 @@ public class LocalCacheTest extends TestCase {
         Object value = new Object();
 
         ReferenceEntry<Object, Object> entry = createDummyEntry(key, hash, value, null);
-        // must recordRead for drainRecencyQueue to believe this entry is live
+        // must recordRead for drainReadBuffer to believe this entry is live
         segment.recordWrite(entry, 1, map.ticker.read());
         writeOrder.add(entry);
         readOrder.add(entry);
@@ -2059,7 +2128,7 @@ public class LocalCacheTest extends TestCase {
           i.remove();
         }
       }
-      checkAndDrainRecencyQueue(map, segment, reads);
+      checkAndDrainReadBuffer(map, segment, reads);
       readOrder.addAll(reads);
 
       checkEvictionQueues(map, segment, readOrder, writeOrder);
@@ -2086,7 +2155,7 @@ public class LocalCacheTest extends TestCase {
 
       checkEvictionQueues(map, segment, readOrder, writeOrder);
       checkExpirationTimes(map);
-      assertTrue(segment.recencyQueue.isEmpty());
+      assertTrue(readBuffer(segment).isEmpty());
 
       // access some of the elements
       Random random = new Random();
@@ -2098,11 +2167,11 @@ public class LocalCacheTest extends TestCase {
           map.get(entry.getKey());
           reads.add(entry);
           i.remove();
-          assertTrue(segment.recencyQueue.size() <= DRAIN_THRESHOLD);
+          assertTrue(readBuffer(segment).size() <= DRAIN_THRESHOLD);
         }
       }
-      int undrainedIndex = reads.size() - segment.recencyQueue.size();
-      checkAndDrainRecencyQueue(map, segment, reads.subList(undrainedIndex, reads.size()));
+      int undrainedIndex = reads.size() - readBuffer(segment).size();
+      checkAndDrainReadBuffer(map, segment, reads.subList(undrainedIndex, reads.size()));
       readOrder.addAll(reads);
 
       checkEvictionQueues(map, segment, readOrder, writeOrder);
@@ -2121,7 +2190,7 @@ public class LocalCacheTest extends TestCase {
         Object value = new Object();
 
         ReferenceEntry<Object, Object> entry = createDummyEntry(key, hash, value, null);
-        // must recordRead for drainRecencyQueue to believe this entry is live
+        // must recordRead for drainReadBuffer to believe this entry is live
         segment.recordWrite(entry, 1, map.ticker.read());
         writeOrder.add(entry);
       }
@@ -2148,12 +2217,19 @@ public class LocalCacheTest extends TestCase {
     }
   }
 
-  static <K, V> void checkAndDrainRecencyQueue(LocalCache<K, V> map,
+  static <K, V> void checkAndDrainReadBuffer(LocalCache<K, V> map,
       Segment<K, V> segment, List<ReferenceEntry<K, V>> reads) {
     if (map.evictsBySize() || map.expiresAfterAccess()) {
-      assertSameEntries(reads, ImmutableList.copyOf(segment.recencyQueue));
+      assertSameEntries(reads, ImmutableList.copyOf(readBuffer(segment)));
     }
-    segment.drainRecencyQueue();
+    segment.drainReadBuffer();
+  }
+
+  /** Returns the segment's read buffer, or an empty queue if it doesn't keep one. */
+  static <K, V> Queue<ReferenceEntry<K, V>> readBuffer(Segment<K, V> segment) {
+    return (segment.readBuffer == null)
+        ? LocalCache.<ReferenceEntry<K, V>>discardingQueue()
+        : segment.readBuffer;
   }
 
   static <K, V> void checkEvictionQueues(LocalCache<K, V> map,
@@ -2187,7 +2263,7 @@ public class LocalCacheTest extends TestCase {
     for (Segment<K, V> segment : map.segments) {
       long lastAccessTime = 0;
       long lastWriteTime = 0;
-      for (ReferenceEntry<K, V> e : segment.recencyQueue) {
+      for (ReferenceEntry<K, V> e : readBuffer(segment)) {
         long accessTime = e.getAccessTime();
         assertTrue(accessTime >= lastAccessTime);
         lastAccessTime = accessTime;
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.cache.LocalCache.DRAIN_THRESHOLD;
+
+import com.google.common.collect.ImmutableList;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for {@link ReadBuffer}.
+ */
+public class ReadBufferTest extends TestCase {
+
+  public void testEmpty() {
+    ReadBuffer<Integer> buffer = new ReadBuffer<Integer>();
+    assertTrue(buffer.isEmpty());
+    assertNull(buffer.peek());
+    assertNull(buffer.poll());
+    assertFalse(buffer.isDrainRequested());
+  }
+
+  public void testOfferAndPoll_preservesOrder() {
+    ReadBuffer<Integer> buffer = new ReadBuffer<Integer>();
+    for (int i = 0; i < 10; i++) {
+      assertTrue(buffer.offer(i));
+    }
+    assertEquals(10, buffer.size());
+    assertEquals(Integer.valueOf(0), buffer.peek());
+    assertEquals(ImmutableList.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), ImmutableList.copyOf(buffer));
+    for (int i = 0; i < 10; i++) {
+      assertEquals(Integer.valueOf(i), buffer.poll());
+    }
+    assertNull(buffer.poll());
+    assertTrue(buffer.isEmpty());
+  }
+
+  public void testOffer_requestsDrainPastThreshold() {
+    ReadBuffer<Integer> buffer = new ReadBuffer<Integer>();
+    for (int i = 0; i < DRAIN_THRESHOLD; i++) {
+      buffer.offer(i);
+    }
+    assertFalse(buffer.isDrainRequested());
+    buffer.offer(DRAIN_THRESHOLD);
+    assertTrue(buffer.isDrainRequested());
+
+    while (buffer.poll() != null) {}
+    assertFalse(buffer.isDrainRequested());
+  }
+
+  public void testOffer_dropsWhenFull() {
+    ReadBuffer<Integer> buffer = new ReadBuffer<Integer>();
+    for (int i = 0; i < ReadBuffer.BUFFER_SIZE; i++) {
+      assertTrue(buffer.offer(i));
+    }
+    assertFalse(buffer.offer(-1));
+    assertEquals(ReadBuffer.BUFFER_SIZE, buffer.size());
+
+    assertEquals(Integer.valueOf(0), buffer.poll());
+    assertTrue(buffer.offer(ReadBuffer.BUFFER_SIZE));
+    assertEquals(ReadBuffer.BUFFER_SIZE, buffer.size());
+  }
+
+  public void testOffer_wrapsAround() {
+    ReadBuffer<Integer> buffer = new ReadBuffer<Integer>();
+    for (int i = 0; i < 3 * ReadBuffer.BUFFER_SIZE; i++) {
+      assertTrue(buffer.offer(i));
+      assertEquals(Integer.valueOf(i), buffer.poll());
+    }
+    assertTrue(buffer.isEmpty());
+  }
+
+  public void testConcurrentOffers() throws InterruptedException {
+    final ReadBuffer<Integer> buffer = new ReadBuffer<Integer>();
+    final int nThreads = 4;
+    final int offersPerThread = 1000;
+    final AtomicInteger recorded = new AtomicInteger();
+    final CountDownLatch startSignal = new CountDownLatch(1);
+    final CountDownLatch doneSignal = new CountDownLatch(nThreads);
+    for (int i = 0; i < nThreads; i++) {
+      new Thread() {
+        @Override public void run() {
+          try {
+            startSignal.await();
+            for (int j = 0; j < offersPerThread; j++) {
+              if (buffer.offer(j)) {
+                recorded.incrementAndGet();
+              }
+            }
+          } catch (InterruptedException e) {
+            throw new AssertionError(e);
+          } finally {
+            doneSignal.countDown();
+          }
+        }
+      }.start();
+    }
+    startSignal.countDown();
+    doneSignal.await();
+
+    assertTrue(buffer.stripes.length <= ReadBuffer.MAXIMUM_STRIPES);
+    int drained = 0;
+    while (buffer.poll() != null) {
+      drained++;
+    }
+    assertEquals(recorded.get(), drained);
+    assertTrue(buffer.isEmpty());
+  }
+}
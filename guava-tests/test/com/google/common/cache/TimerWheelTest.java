@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.cache.LocalCache.ReferenceEntry;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+
+import junit.framework.TestCase;
+
+import java.util.Set;
+
+/**
+ * Unit tests for {@link TimerWheel}.
+ */
+public class TimerWheelTest extends TestCase {
+
+  private static ReferenceEntry<Integer, Integer> entry(int key, long expirationTime) {
+    ReferenceEntry<Integer, Integer> entry =
+        new LocalCache.StrongAccessWriteEntry<Integer, Integer>(key, key, null);
+    entry.setAccessTime(expirationTime);
+    return entry;
+  }
+
+  /** Advances {@code wheel} to {@code now} and returns the due entries which have expired. */
+  private static Set<Integer> expire(TimerWheel<Integer, Integer> wheel, long now) {
+    wheel.advance(now);
+    Set<Integer> expired = Sets.newHashSet();
+    ReferenceEntry<Integer, Integer> e;
+    while ((e = wheel.poll()) != null) {
+      if (now - e.getAccessTime() >= 0) {
+        expired.add(e.getKey());
+      } else {
+        wheel.add(e);
+      }
+    }
+    return expired;
+  }
+
+  public void testEmpty() {
+    TimerWheel<Integer, Integer> wheel = new TimerWheel<Integer, Integer>(0);
+    assertTrue(wheel.isEmpty());
+    assertEquals(0, wheel.size());
+    assertNull(wheel.poll());
+    wheel.advance(DAYS.toNanos(100));
+    assertNull(wheel.poll());
+  }
+
+  public void testSchedule_nothingDueBeforeExpiration() {
+    TimerWheel<Integer, Integer> wheel = new TimerWheel<Integer, Integer>(0);
+    wheel.add(entry(1, SECONDS.toNanos(10)));
+    wheel.add(entry(2, MINUTES.toNanos(10)));
+    wheel.add(entry(3, HOURS.toNanos(10)));
+    wheel.add(entry(4, DAYS.toNanos(10)));
+    assertEquals(4, wheel.size());
+    assertFalse(wheel.isEmpty());
+
+    assertEquals(ImmutableSet.of(), expire(wheel, SECONDS.toNanos(9)));
+    assertEquals(4, wheel.size());
+  }
+
+  public void testAdvance_expiresInOrder() {
+    TimerWheel<Integer, Integer> wheel = new TimerWheel<Integer, Integer>(0);
+    wheel.add(entry(1, SECONDS.toNanos(10)));
+    wheel.add(entry(2, MINUTES.toNanos(10)));
+    wheel.add(entry(3, HOURS.toNanos(10)));
+    wheel.add(entry(4, DAYS.toNanos(10)));
+
+    assertEquals(ImmutableSet.of(1), expire(wheel, SECONDS.toNanos(12)));
+    assertEquals(ImmutableSet.of(), expire(wheel, MINUTES.toNanos(9)));
+    assertEquals(ImmutableSet.of(2), expire(wheel, MINUTES.toNanos(12)));
+    assertEquals(ImmutableSet.of(3), expire(wheel, HOURS.toNanos(12)));
+    assertEquals(ImmutableSet.of(), expire(wheel, DAYS.toNanos(9)));
+    assertEquals(ImmutableSet.of(4), expire(wheel, DAYS.toNanos(12)));
+    assertTrue(wheel.isEmpty());
+  }
+
+  public void testAdvance_cascadesInSmallSteps() {
+    TimerWheel<Integer, Integer> wheel = new TimerWheel<Integer, Integer>(0);
+    long expirationTime = MINUTES.toNanos(3) + MILLISECONDS.toNanos(1500);
+    wheel.add(entry(1, expirationTime));
+
+    long now = 0;
+    long step = MILLISECONDS.toNanos(250);
+    while (now + step < expirationTime) {
+      now += step;
+      assertEquals(ImmutableSet.of(), expire(wheel, now));
+    }
+    assertEquals(ImmutableSet.of(1), expire(wheel, expirationTime + step));
+  }
+
+  public void testAdvance_negativeTime() {
+    long start = Long.MIN_VALUE + 1;
+    TimerWheel<Integer, Integer> wheel = new TimerWheel<Integer, Integer>(start);
+    wheel.add(entry(1, start + SECONDS.toNanos(5)));
+    wheel.add(entry(2, start + HOURS.toNanos(5)));
+
+    assertEquals(ImmutableSet.of(), expire(wheel, start + SECONDS.toNanos(4)));
+    assertEquals(ImmutableSet.of(1), expire(wheel, start + SECONDS.toNanos(7)));
+    assertEquals(ImmutableSet.of(2), expire(wheel, start + HOURS.toNanos(6)));
+  }
+
+  public void testSchedule_alreadyExpired() {
+    TimerWheel<Integer, Integer> wheel = new TimerWheel<Integer, Integer>(SECONDS.toNanos(100));
+    wheel.add(entry(1, SECONDS.toNanos(50)));
+    assertEquals(ImmutableSet.of(1), expire(wheel, SECONDS.toNanos(102)));
+  }
+
+  public void testSchedule_overflow() {
+    TimerWheel<Integer, Integer> wheel = new TimerWheel<Integer, Integer>(0);
+    wheel.add(entry(1, DAYS.toNanos(365)));
+    assertEquals(ImmutableSet.of(), expire(wheel, DAYS.toNanos(364)));
+    assertEquals(ImmutableSet.of(1), expire(wheel, DAYS.toNanos(366)));
+  }
+
+  public void testReschedule_movesEntry() {
+    TimerWheel<Integer, Integer> wheel = new TimerWheel<Integer, Integer>(0);
+    ReferenceEntry<Integer, Integer> entry = entry(1, HOURS.toNanos(1));
+    wheel.add(entry);
+
+    entry.setAccessTime(SECONDS.toNanos(5));
+    wheel.add(entry);
+    assertEquals(1, wheel.size());
+    assertEquals(ImmutableSet.of(1), expire(wheel, SECONDS.toNanos(7)));
+    assertTrue(wheel.isEmpty());
+  }
+
+  public void testRemove() {
+    TimerWheel<Integer, Integer> wheel = new TimerWheel<Integer, Integer>(0);
+    ReferenceEntry<Integer, Integer> first = entry(1, SECONDS.toNanos(5));
+    ReferenceEntry<Integer, Integer> second = entry(2, DAYS.toNanos(5));
+    wheel.add(first);
+    wheel.add(second);
+
+    assertTrue(wheel.contains(second));
+    assertTrue(wheel.remove(second));
+    assertFalse(wheel.contains(second));
+    assertFalse(wheel.remove(second));
+    assertEquals(1, wheel.size());
+    assertEquals(ImmutableSet.of(first), ImmutableSet.copyOf(wheel));
+
+    wheel.clear();
+    assertTrue(wheel.isEmpty());
+    assertFalse(wheel.contains(first));
+  }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.collect.DiscreteDomain.integers;
+import static com.google.common.collect.testing.features.CollectionFeature.ALLOWS_NULL_QUERIES;
+import static com.google.common.collect.testing.features.CollectionFeature.KNOWN_ORDER;
+import static com.google.common.collect.testing.features.CollectionFeature.SERIALIZABLE;
+import static com.google.common.testing.SerializableTester.reserializeAndAssert;
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.testing.NavigableSetTestSuiteBuilder;
+import com.google.common.collect.testing.TestIntegerSortedSetGenerator;
+import com.google.common.collect.testing.features.CollectionSize;
+import com.google.common.testing.EqualsTester;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Tests for {@link CompressedIntegerSet}.
+ */
+public class CompressedIntegerSetTest extends TestCase {
+
+  public static Test suite() {
+    TestSuite suite = new TestSuite();
+    suite.addTest(NavigableSetTestSuiteBuilder.using(
+        new TestIntegerSortedSetGenerator() {
+          @Override protected SortedSet<Integer> create(Integer[] elements) {
+            return CompressedIntegerSet.create(Arrays.asList(elements));
+          }
+        })
+        .named("CompressedIntegerSet")
+        .withFeatures(CollectionSize.ANY, KNOWN_ORDER, ALLOWS_NULL_QUERIES, SERIALIZABLE)
+        .createTestSuite());
+    suite.addTest(NavigableSetTestSuiteBuilder.using(
+        new TestIntegerSortedSetGenerator() {
+          @Override protected SortedSet<Integer> create(Integer[] elements) {
+            CompressedIntegerSet.Builder builder = CompressedIntegerSet.newBuilder();
+            for (Integer element : elements) {
+              builder.add(Range.singleton(element));
+            }
+            return builder.build();
+          }
+        })
+        .named("CompressedIntegerSet, from ranges")
+        .withFeatures(CollectionSize.ANY, KNOWN_ORDER, ALLOWS_NULL_QUERIES, SERIALIZABLE)
+        .createTestSuite());
+    suite.addTestSuite(CompressedIntegerSetTest.class);
+    return suite;
+  }
+
+  public void testCreate() {
+    CompressedIntegerSet set = CompressedIntegerSet.create(5, -1, 70000, 5, Integer.MIN_VALUE);
+    assertThat(set).containsExactly(Integer.MIN_VALUE, -1, 5, 70000).inOrder();
+    assertEquals(4, set.cardinality());
+    assertTrue(set.contains(70000));
+    assertFalse(set.contains(4));
+    assertFalse(set.contains("5"));
+    assertEquals(2, set.asList().indexOf(5));
+    assertTrue(CompressedIntegerSet.create().isEmpty());
+  }
+
+  public void testCreate_fromRangeSet() {
+    RangeSet<Integer> rangeSet = TreeRangeSet.create();
+    rangeSet.add(Range.closed(-3, 2));
+    rangeSet.add(Range.open(65530, 65540));
+    rangeSet.add(Range.atLeast(Integer.MAX_VALUE - 1));
+    CompressedIntegerSet set = CompressedIntegerSet.create(rangeSet);
+    assertEquals(6 + 9 + 2, set.cardinality());
+    assertThat(set.headSet(65533))
+        .containsExactly(-3, -2, -1, 0, 1, 2, 65531, 65532)
+        .inOrder();
+    assertEquals(Integer.valueOf(Integer.MAX_VALUE), set.last());
+    assertEquals(
+        ImmutableRangeSet.builder()
+            .add(Range.closedOpen(-3, 3))
+            .add(Range.closedOpen(65531, 65540))
+            .add(Range.atLeast(Integer.MAX_VALUE - 1))
+            .build(),
+        set.toRangeSet());
+  }
+
+  public void testCreate_allIntegers() {
+    CompressedIntegerSet set =
+        CompressedIntegerSet.create(ImmutableRangeSet.of(Range.<Integer>all()));
+    assertEquals(1L << 32, set.cardinality());
+    assertEquals(Integer.MAX_VALUE, set.size());
+    assertEquals(Integer.valueOf(Integer.MIN_VALUE), set.first());
+    assertEquals(Integer.valueOf(Integer.MAX_VALUE), set.last());
+    assertTrue(set.contains(12345));
+    assertEquals(
+        ImmutableRangeSet.of(Range.<Integer>all().canonical(integers())), set.toRangeSet());
+    assertEquals(
+        CompressedIntegerSet.create(ImmutableRangeSet.of(Range.atLeast(0))),
+        set.tailSet(0));
+    assertEquals(
+        CompressedIntegerSet.create(Integer.MIN_VALUE, Integer.MAX_VALUE),
+        set.difference(CompressedIntegerSet.create(ImmutableRangeSet.of(
+            Range.open(Integer.MIN_VALUE, Integer.MAX_VALUE)))));
+  }
+
+  public void testToRangeSet_joinsChunks() {
+    CompressedIntegerSet set = CompressedIntegerSet.create(-2, -1, 0, 1, 3, 65535, 65536);
+    assertEquals(
+        ImmutableRangeSet.builder()
+            .add(Range.closedOpen(-2, 2))
+            .add(Range.closedOpen(3, 4))
+            .add(Range.closedOpen(65535, 65537))
+            .build(),
+        set.toRangeSet());
+    assertEquals(set, CompressedIntegerSet.create(set.toRangeSet()));
+    assertTrue(CompressedIntegerSet.create().toRangeSet().isEmpty());
+  }
+
+  public void testBuilder_mixed() {
+    CompressedIntegerSet.Builder builder = CompressedIntegerSet.newBuilder()
+        .add(Range.closed(10, 20))
+        .add(15, 25, 30)
+        .addAll(ImmutableList.of(30, 31))
+        .add(Range.closedOpen(21, 25));
+    CompressedIntegerSet set = builder.build();
+    assertEquals(ContiguousSet.create(Range.closed(10, 25), integers()), set.headSet(26));
+    assertThat(set.tailSet(26)).containsExactly(30, 31).inOrder();
+    assertEquals(set, builder.add(-5).build().tailSet(0));
+  }
+
+  public void testSetAlgebra_returnsCompressedIntegerSet() {
+    CompressedIntegerSet a = CompressedIntegerSet.create(1, 2, 3);
+    Set<Integer> b = CompressedIntegerSet.create(2, 3, 4);
+    assertEquals(CompressedIntegerSet.create(2, 3), a.intersection(b));
+    assertEquals(CompressedIntegerSet.create(1, 2, 3, 4), a.union(b));
+    assertEquals(CompressedIntegerSet.create(1), a.difference(b));
+    assertTrue(a.intersection(b) instanceof CompressedIntegerSet);
+    assertSame(a, a.union(CompressedIntegerSet.create()));
+    assertSame(a, a.difference(CompressedIntegerSet.create(7)));
+    assertEquals(ImmutableSortedSet.of(2, 3), a.intersection(ImmutableSet.of(2, 3, 4)));
+  }
+
+  @SuppressWarnings("deprecation")
+  public void testHiddenBuilder() {
+    try {
+      CompressedIntegerSet.builder();
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+  }
+
+  public void testEquals() {
+    new EqualsTester()
+        .addEqualityGroup(
+            CompressedIntegerSet.create(1, 2, 3),
+            CompressedIntegerSet.create(ImmutableRangeSet.of(Range.closed(1, 3))),
+            CompressedIntegerSet.create(0, 1, 2, 3, 4).subSet(1, 4),
+            ImmutableSortedSet.of(1, 2, 3),
+            ImmutableSet.of(3, 2, 1))
+        .addEqualityGroup(CompressedIntegerSet.create(1, 70000), ImmutableSet.of(1, 70000))
+        .addEqualityGroup(CompressedIntegerSet.create(), ImmutableSet.of())
+        .testEquals();
+  }
+
+  public void testSerialization() {
+    Random random = new Random(0);
+    reserializeAndAssert(randomSet(random));
+  }
+
+  /**
+   * Compares operations on random sets, with chunks of each kind of container, to the same
+   * operations on {@link TreeSet}.
+   */
+  public void testMatchesTreeSet() {
+    Random random = new Random(0);
+    for (int trial = 0; trial < 30; trial++) {
+      CompressedIntegerSet a = randomSet(random);
+      CompressedIntegerSet b = randomSet(random);
+      TreeSet<Integer> expectedA = Sets.newTreeSet(a);
+      TreeSet<Integer> expectedB = Sets.newTreeSet(b);
+
+      assertEquals(expectedA.size(), a.cardinality());
+      assertEquals(expectedA.hashCode(), a.hashCode());
+      assertEquals(a, CompressedIntegerSet.create(expectedA));
+      assertEquals(a, CompressedIntegerSet.create(a.toRangeSet()));
+      assertEquals(Lists.reverse(ImmutableList.copyOf(expectedA)),
+          ImmutableList.copyOf(a.descendingIterator()));
+
+      assertSetEquals(Sets.intersection(expectedA, expectedB), a.intersection(b));
+      assertSetEquals(Sets.union(expectedA, expectedB), a.union(b));
+      assertSetEquals(Sets.difference(expectedA, expectedB), a.difference(b));
+      assertSetEquals(Sets.difference(expectedB, expectedA), b.difference(a));
+
+      int from = randomValue(random);
+      int to = randomValue(random);
+      if (from > to) {
+        int temp = from;
+        from = to;
+        to = temp;
+      }
+      assertSetEquals(expectedA.headSet(to, true), a.headSet(to, true));
+      assertSetEquals(expectedA.headSet(to, false), a.headSet(to));
+      assertSetEquals(expectedA.tailSet(from, true), a.tailSet(from));
+      assertSetEquals(expectedA.tailSet(from, false), a.tailSet(from, false));
+      assertSetEquals(expectedA.subSet(from, true, to, true), a.subSet(from, true, to, true));
+      assertEquals(expectedA.floor(to), a.floor(to));
+      assertEquals(expectedA.ceiling(from), a.ceiling(from));
+      assertEquals(expectedA.higher(from), a.higher(from));
+
+      ImmutableList<Integer> list = a.asList();
+      for (int i = 0; i < 20 && !list.isEmpty(); i++) {
+        int index = random.nextInt(list.size());
+        assertEquals(index, list.indexOf(list.get(index)));
+      }
+      for (int i = 0; i < 100; i++) {
+        int value = randomValue(random);
+        assertEquals(expectedA.contains(value), a.contains(value));
+      }
+    }
+  }
+
+  private static void assertSetEquals(Set<Integer> expected, Set<Integer> actual) {
+    assertTrue(actual instanceof CompressedIntegerSet);
+    assertEquals(expected, actual);
+    assertEquals(Ordering.natural().sortedCopy(expected), ImmutableList.copyOf(actual));
+    assertEquals(expected.hashCode(), actual.hashCode());
+    assertEquals(actual, CompressedIntegerSet.create(ImmutableList.copyOf(expected)));
+  }
+
+  private static final int[] CHUNKS = {-2, -1, 0, 1, 3};
+
+  private static int randomValue(Random random) {
+    return CHUNKS[random.nextInt(CHUNKS.length)] * 65536 + random.nextInt(65536);
+  }
+
+  /** Returns a set whose chunks are variously sparse, dense, made of runs, full or missing. */
+  private static CompressedIntegerSet randomSet(Random random) {
+    CompressedIntegerSet.Builder builder = CompressedIntegerSet.newBuilder();
+    for (int chunk : CHUNKS) {
+      int base = chunk * 65536;
+      switch (random.nextInt(5)) {
+        case 0:
+          for (int i = random.nextInt(100); i > 0; i--) {
+            builder.add(base + random.nextInt(65536));
+          }
+          break;
+        case 1:
+          for (int i = 5000 + random.nextInt(30000); i > 0; i--) {
+            builder.add(base + random.nextInt(65536));
+          }
+          break;
+        case 2:
+          for (int i = random.nextInt(20); i > 0; i--) {
+            int start = base + random.nextInt(65536);
+            int end = Math.min(start + random.nextInt(5000), base + 65536);
+            builder.add(Range.closedOpen(start, end));
+          }
+          break;
+        case 3:
+          builder.add(Range.closedOpen(base, base + 65536));
+          break;
+        default:
+          break;
+      }
+    }
+    return builder.build();
+  }
+}
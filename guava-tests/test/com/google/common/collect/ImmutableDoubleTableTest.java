@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.annotations.GwtCompatible;
+import com.google.common.collect.Table.Cell;
+import com.google.common.testing.EqualsTester;
+
+import junit.framework.TestCase;
+
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests for {@link ImmutableDoubleTable}.
+ */
+@GwtCompatible
+public class ImmutableDoubleTableTest extends TestCase {
+
+  private static ImmutableDoubleTable.Builder<String, Integer> sampleCells(
+      ImmutableDoubleTable.Builder<String, Integer> builder) {
+    return builder.put("b", 2, 4).put("a", 1, 1).put("b", 1, 2).put("a", 2, 3);
+  }
+
+  public void testRowMajor() {
+    ImmutableDoubleTable<String, Integer> table =
+        sampleCells(ImmutableDoubleTable.<String, Integer>rowMajorBuilder()).build();
+    assertEquals(4, table.size());
+    assertThat(table.rowKeySet()).containsExactly("b", "a").inOrder();
+    assertThat(table.columnKeySet()).containsExactly(2, 1).inOrder();
+    assertThat(table.values()).containsExactly(4.0, 2.0, 3.0, 1.0).inOrder();
+    assertEquals(Tables.immutableCell("b", 2, 4.0), table.cellSet().asList().get(0));
+    assertEquals(Tables.immutableCell("a", 1, 1.0), table.cellSet().asList().get(3));
+    assertValue(2, table.get("b", 1, -1));
+    assertEquals(Double.valueOf(3), table.get("a", 2));
+  }
+
+  public void testColumnMajor() {
+    ImmutableDoubleTable<String, Integer> table =
+        sampleCells(ImmutableDoubleTable.<String, Integer>columnMajorBuilder()).build();
+    assertThat(table.values()).containsExactly(4.0, 3.0, 2.0, 1.0).inOrder();
+    assertEquals(Tables.immutableCell("a", 2, 3.0), table.cellSet().asList().get(1));
+    assertValue(2, table.get("b", 1, -1));
+    assertEquals(
+        sampleCells(ImmutableDoubleTable.<String, Integer>rowMajorBuilder()).build(), table);
+  }
+
+  public void testOrderRowsAndColumnsBy() {
+    ImmutableDoubleTable<String, Integer> table =
+        sampleCells(ImmutableDoubleTable.<String, Integer>rowMajorBuilder())
+            .orderRowsBy(Ordering.natural())
+            .orderColumnsBy(Ordering.natural())
+            .build();
+    assertThat(table.rowKeySet()).containsExactly("a", "b").inOrder();
+    assertThat(table.columnKeySet()).containsExactly(1, 2).inOrder();
+    assertThat(table.values()).containsExactly(1.0, 3.0, 2.0, 4.0).inOrder();
+  }
+
+  public void testMissingCells() {
+    ImmutableDoubleTable<String, Integer> table =
+        ImmutableDoubleTable.<String, Integer>rowMajorBuilder()
+            .put("a", 1, 1)
+            .put("b", 2, 0)
+            .put("a", 3, -1)
+            .build();
+    assertEquals(3, table.size());
+    assertFalse(table.contains("a", 2));
+    assertTrue(table.contains("b", 2));
+    assertNull(table.get("b", 1));
+    assertValue(7, table.get("b", 1, 7));
+    assertValue(0, table.get("b", 2, 7));
+    assertValue(7, table.get("c", 1, 7));
+    assertValue(7, table.get(null, null, 7));
+    assertEquals(ImmutableMap.of(1, 1.0, 3, -1.0), table.row("a"));
+    assertEquals(ImmutableMap.of("b", 0.0), table.column(2));
+    assertEquals(ImmutableMap.of(), table.row("c"));
+    assertThat(table.values()).containsExactly(1.0, -1.0, 0.0).inOrder();
+  }
+
+  public void testDuplicateCells() {
+    ImmutableDoubleTable.Builder<String, Integer> builder =
+        ImmutableDoubleTable.<String, Integer>rowMajorBuilder().put("a", 1, 1).put("a", 1, 2);
+    try {
+      builder.build();
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertThat(expected.getMessage()).contains("duplicate key: (a, 1)");
+    }
+  }
+
+  public void testEmpty() {
+    ImmutableDoubleTable<String, Integer> table =
+        ImmutableDoubleTable.<String, Integer>rowMajorBuilder().build();
+    assertTrue(table.isEmpty());
+    assertEquals(ImmutableTable.of(), table);
+    assertTrue(table.cellSet().isEmpty());
+    assertTrue(table.rowMap().isEmpty());
+    assertValue(7, table.get("a", 1, 7));
+  }
+
+  public void testBuilderReuse() {
+    ImmutableDoubleTable.Builder<String, Integer> builder =
+        ImmutableDoubleTable.<String, Integer>rowMajorBuilder().put("a", 1, 1);
+    ImmutableDoubleTable<String, Integer> first = builder.build();
+    ImmutableDoubleTable<String, Integer> second = builder.put("b", 1, 2).build();
+    assertEquals(1, first.size());
+    assertEquals(2, second.size());
+  }
+
+  public void testRowMajorCopyOf() {
+    ImmutableDoubleTable<String, Integer> rowMajor =
+        sampleCells(ImmutableDoubleTable.<String, Integer>rowMajorBuilder()).build();
+    assertSame(rowMajor, ImmutableDoubleTable.rowMajorCopyOf(rowMajor));
+
+    ImmutableDoubleTable<String, Integer> columnMajor =
+        sampleCells(ImmutableDoubleTable.<String, Integer>columnMajorBuilder()).build();
+    ImmutableDoubleTable<String, Integer> copy = ImmutableDoubleTable.rowMajorCopyOf(columnMajor);
+    assertEquals(columnMajor, copy);
+    assertThat(copy.values()).containsExactly(4.0, 2.0, 3.0, 1.0).inOrder();
+
+    Table<String, Integer, Integer> ints = HashBasedTable.create();
+    ints.put("a", 1, 5);
+    assertEquals(
+        ImmutableTable.of("a", 1, 5.0), ImmutableDoubleTable.<String, Integer>rowMajorCopyOf(ints));
+  }
+
+  @SuppressWarnings("deprecation")
+  public void testHiddenFactories() {
+    try {
+      ImmutableDoubleTable.builder();
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+    try {
+      ImmutableDoubleTable.copyOf(ImmutableTable.of("a", 1, 1.0));
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+  }
+
+  @SuppressWarnings("deprecation")
+  public void testImmutable() {
+    ImmutableDoubleTable<String, Integer> table =
+        sampleCells(ImmutableDoubleTable.<String, Integer>rowMajorBuilder()).build();
+    try {
+      table.put("a", 1, 5.0);
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+    try {
+      table.row("a").put(1, 5.0);
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+  }
+
+  public void testEquals() {
+    new EqualsTester()
+        .addEqualityGroup(
+            sampleCells(ImmutableDoubleTable.<String, Integer>rowMajorBuilder()).build(),
+            sampleCells(ImmutableDoubleTable.<String, Integer>columnMajorBuilder()).build(),
+            ImmutableTable.builder()
+                .put("a", 1, 1.0)
+                .put("a", 2, 3.0)
+                .put("b", 1, 2.0)
+                .put("b", 2, 4.0)
+                .build())
+        .addEqualityGroup(
+            ImmutableDoubleTable.<String, Integer>rowMajorBuilder().put("a", 1, 1).build(),
+            ImmutableTable.of("a", 1, 1.0))
+        .testEquals();
+  }
+
+  public void testMatchesHashBasedTable() {
+    Random random = new Random(0);
+    for (int trial = 0; trial < 50; trial++) {
+      Table<Integer, Integer, Double> expected = HashBasedTable.create();
+      ImmutableDoubleTable.Builder<Integer, Integer> rowMajor =
+          ImmutableDoubleTable.rowMajorBuilder();
+      ImmutableDoubleTable.Builder<Integer, Integer> columnMajor =
+          ImmutableDoubleTable.columnMajorBuilder();
+      int rows = 1 + random.nextInt(10);
+      int columns = 1 + random.nextInt(10);
+      int cells = random.nextInt(rows * columns + 1);
+      for (int i = 0; i < cells; i++) {
+        int row = random.nextInt(rows);
+        int column = random.nextInt(columns);
+        if (!expected.contains(row, column)) {
+          double value = random.nextInt(100);
+          expected.put(row, column, value);
+          rowMajor.put(row, column, value);
+          columnMajor.put(row, column, value);
+        }
+      }
+      assertMatches(expected, rowMajor.build());
+      assertMatches(expected, columnMajor.build());
+    }
+  }
+
+  private static void assertMatches(
+      Table<Integer, Integer, Double> expected, ImmutableDoubleTable<Integer, Integer> actual) {
+    assertEquals(expected, actual);
+    assertEquals(expected.hashCode(), actual.hashCode());
+    assertEquals(expected.rowMap(), actual.rowMap());
+    assertEquals(expected.columnMap(), actual.columnMap());
+    assertEquals(HashMultiset.create(expected.values()), HashMultiset.create(actual.values()));
+    for (Map.Entry<Integer, Map<Integer, Double>> row : actual.rowMap().entrySet()) {
+      assertEquals(row.getValue().size(), row.getValue().keySet().size());
+    }
+    for (Cell<Integer, Integer, Double> cell : actual.cellSet()) {
+      assertTrue(expected.contains(cell.getRowKey(), cell.getColumnKey()));
+      assertValue(cell.getValue(), actual.get(cell.getRowKey(), cell.getColumnKey(), -1));
+    }
+  }
+
+  private static void assertValue(double expected, double actual) {
+    assertEquals(Double.valueOf(expected), Double.valueOf(actual));
+  }
+}
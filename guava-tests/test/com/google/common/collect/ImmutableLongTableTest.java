@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2L (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2L
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.annotations.GwtCompatible;
+import com.google.common.collect.Table.Cell;
+import com.google.common.testing.EqualsTester;
+
+import junit.framework.TestCase;
+
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests for {@link ImmutableLongTable}.
+ */
+@GwtCompatible
+public class ImmutableLongTableTest extends TestCase {
+
+  private static ImmutableLongTable.Builder<String, Integer> sampleCells(
+      ImmutableLongTable.Builder<String, Integer> builder) {
+    return builder.put("b", 2, 4).put("a", 1, 1).put("b", 1, 2).put("a", 2, 3);
+  }
+
+  public void testRowMajor() {
+    ImmutableLongTable<String, Integer> table =
+        sampleCells(ImmutableLongTable.<String, Integer>rowMajorBuilder()).build();
+    assertEquals(4, table.size());
+    assertThat(table.rowKeySet()).containsExactly("b", "a").inOrder();
+    assertThat(table.columnKeySet()).containsExactly(2, 1).inOrder();
+    assertThat(table.values()).containsExactly(4L, 2L, 3L, 1L).inOrder();
+    assertEquals(Tables.immutableCell("b", 2, 4L), table.cellSet().asList().get(0));
+    assertEquals(Tables.immutableCell("a", 1, 1L), table.cellSet().asList().get(3));
+    assertValue(2, table.get("b", 1, -1));
+    assertEquals(Long.valueOf(3), table.get("a", 2));
+  }
+
+  public void testColumnMajor() {
+    ImmutableLongTable<String, Integer> table =
+        sampleCells(ImmutableLongTable.<String, Integer>columnMajorBuilder()).build();
+    assertThat(table.values()).containsExactly(4L, 3L, 2L, 1L).inOrder();
+    assertEquals(Tables.immutableCell("a", 2, 3L), table.cellSet().asList().get(1));
+    assertValue(2, table.get("b", 1, -1));
+    assertEquals(
+        sampleCells(ImmutableLongTable.<String, Integer>rowMajorBuilder()).build(), table);
+  }
+
+  public void testOrderRowsAndColumnsBy() {
+    ImmutableLongTable<String, Integer> table =
+        sampleCells(ImmutableLongTable.<String, Integer>rowMajorBuilder())
+            .orderRowsBy(Ordering.natural())
+            .orderColumnsBy(Ordering.natural())
+            .build();
+    assertThat(table.rowKeySet()).containsExactly("a", "b").inOrder();
+    assertThat(table.columnKeySet()).containsExactly(1, 2).inOrder();
+    assertThat(table.values()).containsExactly(1L, 3L, 2L, 4L).inOrder();
+  }
+
+  public void testMissingCells() {
+    ImmutableLongTable<String, Integer> table =
+        ImmutableLongTable.<String, Integer>rowMajorBuilder()
+            .put("a", 1, 1)
+            .put("b", 2, 0)
+            .put("a", 3, -1)
+            .build();
+    assertEquals(3, table.size());
+    assertFalse(table.contains("a", 2));
+    assertTrue(table.contains("b", 2));
+    assertNull(table.get("b", 1));
+    assertValue(7, table.get("b", 1, 7));
+    assertValue(0, table.get("b", 2, 7));
+    assertValue(7, table.get("c", 1, 7));
+    assertValue(7, table.get(null, null, 7));
+    assertEquals(ImmutableMap.of(1, 1L, 3, -1L), table.row("a"));
+    assertEquals(ImmutableMap.of("b", 0L), table.column(2));
+    assertEquals(ImmutableMap.of(), table.row("c"));
+    assertThat(table.values()).containsExactly(1L, -1L, 0L).inOrder();
+  }
+
+  public void testDuplicateCells() {
+    ImmutableLongTable.Builder<String, Integer> builder =
+        ImmutableLongTable.<String, Integer>rowMajorBuilder().put("a", 1, 1).put("a", 1, 2);
+    try {
+      builder.build();
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertThat(expected.getMessage()).contains("duplicate key: (a, 1)");
+    }
+  }
+
+  public void testEmpty() {
+    ImmutableLongTable<String, Integer> table =
+        ImmutableLongTable.<String, Integer>rowMajorBuilder().build();
+    assertTrue(table.isEmpty());
+    assertEquals(ImmutableTable.of(), table);
+    assertTrue(table.cellSet().isEmpty());
+    assertTrue(table.rowMap().isEmpty());
+    assertValue(7, table.get("a", 1, 7));
+  }
+
+  public void testBuilderReuse() {
+    ImmutableLongTable.Builder<String, Integer> builder =
+        ImmutableLongTable.<String, Integer>rowMajorBuilder().put("a", 1, 1);
+    ImmutableLongTable<String, Integer> first = builder.build();
+    ImmutableLongTable<String, Integer> second = builder.put("b", 1, 2).build();
+    assertEquals(1, first.size());
+    assertEquals(2, second.size());
+  }
+
+  public void testRowMajorCopyOf() {
+    ImmutableLongTable<String, Integer> rowMajor =
+        sampleCells(ImmutableLongTable.<String, Integer>rowMajorBuilder()).build();
+    assertSame(rowMajor, ImmutableLongTable.rowMajorCopyOf(rowMajor));
+
+    ImmutableLongTable<String, Integer> columnMajor =
+        sampleCells(ImmutableLongTable.<String, Integer>columnMajorBuilder()).build();
+    ImmutableLongTable<String, Integer> copy = ImmutableLongTable.rowMajorCopyOf(columnMajor);
+    assertEquals(columnMajor, copy);
+    assertThat(copy.values()).containsExactly(4L, 2L, 3L, 1L).inOrder();
+
+    Table<String, Integer, Integer> ints = HashBasedTable.create();
+    ints.put("a", 1, 5);
+    assertEquals(
+        ImmutableTable.of("a", 1, 5L), ImmutableLongTable.<String, Integer>rowMajorCopyOf(ints));
+  }
+
+  @SuppressWarnings("deprecation")
+  public void testHiddenFactories() {
+    try {
+      ImmutableLongTable.builder();
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+    try {
+      ImmutableLongTable.copyOf(ImmutableTable.of("a", 1, 1L));
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+  }
+
+  @SuppressWarnings("deprecation")
+  public void testImmutable() {
+    ImmutableLongTable<String, Integer> table =
+        sampleCells(ImmutableLongTable.<String, Integer>rowMajorBuilder()).build();
+    try {
+      table.put("a", 1, 5L);
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+    try {
+      table.row("a").put(1, 5L);
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+  }
+
+  public void testEquals() {
+    new EqualsTester()
+        .addEqualityGroup(
+            sampleCells(ImmutableLongTable.<String, Integer>rowMajorBuilder()).build(),
+            sampleCells(ImmutableLongTable.<String, Integer>columnMajorBuilder()).build(),
+            ImmutableTable.builder()
+                .put("a", 1, 1L)
+                .put("a", 2, 3L)
+                .put("b", 1, 2L)
+                .put("b", 2, 4L)
+                .build())
+        .addEqualityGroup(
+            ImmutableLongTable.<String, Integer>rowMajorBuilder().put("a", 1, 1).build(),
+            ImmutableTable.of("a", 1, 1L))
+        .testEquals();
+  }
+
+  public void testMatchesHashBasedTable() {
+    Random random = new Random(0);
+    for (int trial = 0; trial < 50; trial++) {
+      Table<Integer, Integer, Long> expected = HashBasedTable.create();
+      ImmutableLongTable.Builder<Integer, Integer> rowMajor =
+          ImmutableLongTable.rowMajorBuilder();
+      ImmutableLongTable.Builder<Integer, Integer> columnMajor =
+          ImmutableLongTable.columnMajorBuilder();
+      int rows = 1 + random.nextInt(10);
+      int columns = 1 + random.nextInt(10);
+      int cells = random.nextInt(rows * columns + 1);
+      for (int i = 0; i < cells; i++) {
+        int row = random.nextInt(rows);
+        int column = random.nextInt(columns);
+        if (!expected.contains(row, column)) {
+          long value = random.nextInt(100);
+          expected.put(row, column, value);
+          rowMajor.put(row, column, value);
+          columnMajor.put(row, column, value);
+        }
+      }
+      assertMatches(expected, rowMajor.build());
+      assertMatches(expected, columnMajor.build());
+    }
+  }
+
+  private static void assertMatches(
+      Table<Integer, Integer, Long> expected, ImmutableLongTable<Integer, Integer> actual) {
+    assertEquals(expected, actual);
+    assertEquals(expected.hashCode(), actual.hashCode());
+    assertEquals(expected.rowMap(), actual.rowMap());
+    assertEquals(expected.columnMap(), actual.columnMap());
+    assertEquals(HashMultiset.create(expected.values()), HashMultiset.create(actual.values()));
+    for (Map.Entry<Integer, Map<Integer, Long>> row : actual.rowMap().entrySet()) {
+      assertEquals(row.getValue().size(), row.getValue().keySet().size());
+    }
+    for (Cell<Integer, Integer, Long> cell : actual.cellSet()) {
+      assertTrue(expected.contains(cell.getRowKey(), cell.getColumnKey()));
+      assertValue(cell.getValue(), actual.get(cell.getRowKey(), cell.getColumnKey(), -1));
+    }
+  }
+
+  private static void assertValue(long expected, long actual) {
+    assertEquals(Long.valueOf(expected), Long.valueOf(actual));
+  }
+}
@@ -55,6 +55,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -524,6 +525,22 @@ public class ImmutableMapTest extends TestCase {
       }
     }
 
+    public void testPuttingACollidingKeyTwiceThrowsOnBuild() {
+      // "Aa" and "BB" have the same hash code
+      Builder<String, Integer> builder = new Builder<String, Integer>()
+          .put("Aa", 1)
+          .put("BB", 2)
+          .put("Aa", 3);
+
+      try {
+        builder.build();
+        fail();
+      } catch (IllegalArgumentException expected) {
+        assertTrue(expected.getMessage().contains("Aa=3"));
+        assertTrue(expected.getMessage().contains("Aa=1"));
+      }
+    }
+
     public void testOf() {
       assertMapEquals(
           ImmutableMap.of("one", 1),
@@ -604,6 +621,44 @@ public class ImmutableMapTest extends TestCase {
     }
   }
 
+  public void testLargeMap() {
+    ImmutableMap.Builder<Integer, String> builder = ImmutableMap.builder();
+    for (int i = 1000; i > 0; i--) {
+      builder.put(i * 31, Integer.toString(i));
+    }
+    ImmutableMap<Integer, String> map = builder.build();
+    assertEquals(1000, map.size());
+    for (int i = 1000; i > 0; i--) {
+      assertEquals(Integer.toString(i), map.get(i * 31));
+      assertNull(map.get(i * 31 + 1));
+    }
+
+    ImmutableList<Integer> keys = map.keySet().asList();
+    ImmutableList<String> values = map.values().asList();
+    ImmutableList<Entry<Integer, String>> entries = map.entrySet().asList();
+    for (int i = 0; i < 1000; i++) {
+      int expectedKey = (1000 - i) * 31;
+      assertEquals(expectedKey, (int) keys.get(i));
+      assertEquals(Integer.toString(1000 - i), values.get(i));
+      assertEquals(Maps.immutableEntry(expectedKey, Integer.toString(1000 - i)), entries.get(i));
+    }
+    assertEquals(keys, ImmutableList.copyOf(map.keySet()));
+    assertEquals(values, ImmutableList.copyOf(map.values()));
+    assertEquals(entries, ImmutableList.copyOf(map.entrySet()));
+  }
+
+  public void testValuesIsNotAList() {
+    ImmutableMap<String, Integer> map = ImmutableMap.of("one", 1, "two", 2, "three", 3);
+    ImmutableCollection<Integer> values = map.values();
+    assertFalse(values instanceof List);
+    assertFalse(values.equals(ImmutableList.of(1, 2, 3)));
+    assertFalse(ImmutableList.of(1, 2, 3).equals(values));
+    assertEquals(ImmutableList.of(1, 2, 3), values.asList());
+    assertTrue(values.contains(2));
+    assertFalse(values.contains(4));
+    assertFalse(values.contains(null));
+  }
+
   public void testNullGet() {
     ImmutableMap<String, Integer> map = ImmutableMap.of("one", 1);
     assertNull(map.get(null));
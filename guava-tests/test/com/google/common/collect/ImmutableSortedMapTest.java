@@ -396,6 +396,58 @@ public class ImmutableSortedMapTest extends TestCase {
       assertMapEquals(mapTwo, "four", 4, "one", 1, "three", 3, "two", 2);
     }
 
+    @GwtIncompatible // indexForLookups
+    public void testBuilderIndexForLookups() {
+      Builder<Long, String> plain = ImmutableSortedMap.naturalOrder();
+      Builder<Long, String> blocked = ImmutableSortedMap.<Long, String>naturalOrder()
+          .indexForLookups();
+      Builder<Long, String> interpolated = ImmutableSortedMap.<Long, String>naturalOrder()
+          .indexForLookups(DiscreteDomain.longs());
+      for (long key = -3000; key < 3000; key += 3) {
+        plain.put(key, Long.toString(key));
+        blocked.put(key, Long.toString(key));
+        interpolated.put(key, Long.toString(key));
+      }
+      ImmutableSortedMap<Long, String> expected = plain.build();
+      for (ImmutableSortedMap<Long, String> map :
+          ImmutableList.of(blocked.build(), interpolated.build())) {
+        assertEquals(expected, map);
+        for (long key = -3005; key < 3005; key++) {
+          assertEquals(expected.get(key), map.get(key));
+          assertEquals(expected.containsKey(key), map.containsKey(key));
+        }
+        assertNull(map.get("a"));
+        assertNull(map.get(null));
+        assertEquals(expected.headMap(0L), map.headMap(0L));
+        assertEquals(expected.descendingMap(), map.descendingMap());
+      }
+    }
+
+    @GwtIncompatible // indexForLookups
+    public void testBuilderIndexForLookups_interpolationNeedsNaturalOrder() {
+      Builder<Long, String> builder = ImmutableSortedMap.reverseOrder();
+      try {
+        builder.indexForLookups(DiscreteDomain.longs());
+        fail();
+      } catch (IllegalStateException expected) {
+      }
+    }
+
+    @GwtIncompatible // indexForLookups
+    public void testBuilderIndexForLookups_saturatedDistance() {
+      Builder<Long, String> builder = ImmutableSortedMap.<Long, String>naturalOrder()
+          .indexForLookups(DiscreteDomain.longs());
+      for (long i = 0; i < 100; i++) {
+        builder.put(Long.MIN_VALUE + i, Long.toString(i));
+      }
+      builder.put(-1L, "minusOne");
+      ImmutableSortedMap<Long, String> map = builder.build();
+      assertEquals("minusOne", map.get(-1L));
+      assertNull(map.get(0L));
+      assertNull(map.get(42L));
+      assertNull(map.get(Long.MAX_VALUE));
+    }
+
     public void testBuilderPutNullKey() {
       Builder<String, Integer> builder = ImmutableSortedMap.naturalOrder();
       try {
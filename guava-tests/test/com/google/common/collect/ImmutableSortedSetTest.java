@@ -47,6 +47,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Random;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -1041,4 +1042,176 @@ public class ImmutableSortedSetTest extends AbstractImmutableSetTest {
     ImmutableSortedSet.Builder<SuperComparableExample> natural = ImmutableSortedSet.naturalOrder();
     ImmutableSortedSet.Builder<SuperComparableExample> reverse = ImmutableSortedSet.reverseOrder();
   }
+
+  @GwtIncompatible // indexForLookups
+  public void testBuilderIndexForLookups() {
+    Random random = new Random(0);
+    ImmutableSortedSet.Builder<Integer> plain = ImmutableSortedSet.naturalOrder();
+    ImmutableSortedSet.Builder<Integer> blocked =
+        ImmutableSortedSet.<Integer>naturalOrder().indexForLookups();
+    ImmutableSortedSet.Builder<Integer> interpolated =
+        ImmutableSortedSet.<Integer>naturalOrder().indexForLookups(DiscreteDomain.integers());
+    for (int i = 0; i < 5000; i++) {
+      int element = random.nextInt();
+      plain.add(element);
+      blocked.add(element);
+      interpolated.add(element);
+    }
+    ImmutableSortedSet<Integer> expected = plain.build();
+    for (ImmutableSortedSet<Integer> set :
+        ImmutableList.of(blocked.build(), interpolated.build())) {
+      assertEquals(expected, set);
+      assertEquals(expected.asList(), set.asList());
+      for (int i = 0; i < 5000; i++) {
+        int target = random.nextInt();
+        assertEquals(expected.contains(target), set.contains(target));
+      }
+      for (Integer element : expected) {
+        assertTrue(set.contains(element));
+        assertEquals(expected.asList().indexOf(element), set.asList().indexOf(element));
+      }
+      assertFalse(set.contains("a"));
+      assertFalse(set.contains(null));
+      assertEquals(expected, SerializableTester.reserialize(set));
+    }
+  }
+
+  @GwtIncompatible // indexForLookups
+  public void testBuilderIndexForLookups_interpolationNeedsNaturalOrder() {
+    ImmutableSortedSet.Builder<Integer> builder = ImmutableSortedSet.reverseOrder();
+    try {
+      builder.indexForLookups(DiscreteDomain.integers());
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  @GwtIncompatible // indexForLookups
+  public void testBuilderIndexForLookups_saturatedDistance() {
+    ImmutableSortedSet.Builder<Long> builder =
+        ImmutableSortedSet.<Long>naturalOrder().indexForLookups(DiscreteDomain.longs());
+    for (long i = 0; i < 100; i++) {
+      builder.add(Long.MIN_VALUE + i);
+    }
+    builder.add(-1L);
+    ImmutableSortedSet<Long> set = builder.build();
+    assertTrue(set.contains(-1L));
+    assertTrue(set.contains(Long.MIN_VALUE + 99));
+    assertFalse(set.contains(0L));
+    assertFalse(set.contains(42L));
+    assertFalse(set.contains(Long.MAX_VALUE));
+  }
+
+  public void testIntersection_sameComparator() {
+    ImmutableSortedSet<String> set = ImmutableSortedSet.copyOf(NUMBER_NAMES);
+    ImmutableSortedSet<String> result =
+        set.intersection(ImmutableSortedSet.of("a", "five", "one", "six", "z"));
+    assertThat(result).containsExactly("five", "one", "six").inOrder();
+    assertSame(set.comparator(), result.comparator());
+    assertSame(set, set.intersection(ImmutableSortedSet.copyOf(NUMBER_NAMES)));
+    assertTrue(set.intersection(ImmutableSortedSet.<String>of()).isEmpty());
+  }
+
+  public void testIntersection_muchSmallerOther() {
+    ImmutableSortedSet.Builder<Integer> builder = ImmutableSortedSet.naturalOrder();
+    for (int i = 0; i < 1000; i += 2) {
+      builder.add(i);
+    }
+    ImmutableSortedSet<Integer> evens = builder.build();
+    assertThat(evens.intersection(ImmutableSortedSet.of(3, 4, 998, 1000)))
+        .containsExactly(4, 998)
+        .inOrder();
+  }
+
+  public void testIntersection_keepsOwnElements() {
+    ImmutableSortedSet<String> set =
+        ImmutableSortedSet.orderedBy(String.CASE_INSENSITIVE_ORDER).add("a", "B", "c").build();
+    TreeSet<String> other = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+    other.addAll(asList("b", "C"));
+    assertThat(set.intersection(other)).containsExactly("B", "c").inOrder();
+  }
+
+  public void testIntersection_otherComparator() {
+    ImmutableSortedSet<String> set = ImmutableSortedSet.copyOf(NUMBER_NAMES);
+    assertThat(set.intersection(Sets.newHashSet("two", "six", "ten")))
+        .containsExactly("six", "two")
+        .inOrder();
+    ImmutableSortedSet<String> reversed =
+        ImmutableSortedSet.copyOf(Ordering.natural().reverse(), NUMBER_NAMES);
+    assertThat(reversed.intersection(ImmutableSortedSet.of("two", "six")))
+        .containsExactly("two", "six")
+        .inOrder();
+  }
+
+  public void testDifference() {
+    ImmutableSortedSet<String> set = ImmutableSortedSet.copyOf(NUMBER_NAMES);
+    assertThat(set.difference(ImmutableSortedSet.of("a", "five", "one", "six", "three", "z")))
+        .containsExactly("four", "seven", "two")
+        .inOrder();
+    assertThat(set.difference(Sets.newHashSet("four", "two")))
+        .containsExactly("five", "one", "seven", "six", "three")
+        .inOrder();
+    assertSame(set, set.difference(ImmutableSortedSet.of("zero")));
+    assertTrue(set.difference(set).isEmpty());
+  }
+
+  public void testUnion() {
+    ImmutableSortedSet<String> set = ImmutableSortedSet.of("five", "one", "two");
+    ImmutableSortedSet<String> result = set.union(ImmutableSortedSet.of("a", "one", "six", "z"));
+    assertThat(result).containsExactly("a", "five", "one", "six", "two", "z").inOrder();
+    assertThat(set.union(Sets.newHashSet("six", "four", "two")))
+        .containsExactly("five", "four", "one", "six", "two")
+        .inOrder();
+    assertSame(set, set.union(ImmutableSortedSet.of("one")));
+    assertSame(set, set.union(Collections.<String>emptySet()));
+  }
+
+  public void testUnion_keepsOwnElements() {
+    ImmutableSortedSet<String> set =
+        ImmutableSortedSet.orderedBy(String.CASE_INSENSITIVE_ORDER).add("a", "B").build();
+    TreeSet<String> other = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+    other.addAll(asList("A", "b", "C"));
+    assertThat(set.union(other)).containsExactly("a", "B", "C").inOrder();
+  }
+
+  public void testUnion_nullElement() {
+    ImmutableSortedSet<String> set = ImmutableSortedSet.of("one");
+    try {
+      set.union(Sets.newHashSet("two", null));
+      fail();
+    } catch (NullPointerException expected) {
+    }
+  }
+
+  public void testSetAlgebra_matchesTreeSet() {
+    Random random = new Random(0);
+    for (int trial = 0; trial < 200; trial++) {
+      ImmutableSortedSet<Integer> set = randomSortedSet(random);
+      Set<Integer> other = randomSortedSet(random);
+      if (random.nextBoolean()) {
+        other = Sets.newHashSet(other);
+      }
+      TreeSet<Integer> expected = new TreeSet<Integer>(set);
+      expected.retainAll(other);
+      assertThat(set.intersection(other)).containsExactlyElementsIn(expected).inOrder();
+      expected = new TreeSet<Integer>(set);
+      expected.removeAll(other);
+      assertThat(set.difference(other)).containsExactlyElementsIn(expected).inOrder();
+      expected = new TreeSet<Integer>(set);
+      expected.addAll(other);
+      assertThat(set.union(other)).containsExactlyElementsIn(expected).inOrder();
+    }
+  }
+
+  private static ImmutableSortedSet<Integer> randomSortedSet(Random random) {
+    int size = random.nextInt(random.nextBoolean() ? 5 : 200);
+    ImmutableSortedSet.Builder<Integer> builder = ImmutableSortedSet.naturalOrder();
+    for (int i = 0; i < size; i++) {
+      builder.add(random.nextInt(300));
+    }
+    ImmutableSortedSet<Integer> set = builder.build();
+    return (set.size() > 2 && random.nextBoolean())
+        ? set.subSet(set.first(), set.last())
+        : set;
+  }
 }
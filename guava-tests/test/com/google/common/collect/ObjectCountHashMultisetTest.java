@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import static java.util.Arrays.asList;
+
+import com.google.common.annotations.GwtCompatible;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.collect.testing.features.CollectionFeature;
+import com.google.common.collect.testing.features.CollectionSize;
+import com.google.common.collect.testing.google.MultisetFeature;
+import com.google.common.collect.testing.google.MultisetTestSuiteBuilder;
+import com.google.common.collect.testing.google.TestStringMultisetGenerator;
+import com.google.common.testing.SerializableTester;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Unit test for {@link ObjectCountHashMultiset}.
+ */
+@GwtCompatible(emulated = true)
+public class ObjectCountHashMultisetTest extends TestCase {
+
+  @GwtIncompatible // suite
+  public static Test suite() {
+    TestSuite suite = new TestSuite();
+    suite.addTest(MultisetTestSuiteBuilder.using(objectCountHashMultisetGenerator())
+        .withFeatures(CollectionSize.ANY,
+            CollectionFeature.FAILS_FAST_ON_CONCURRENT_MODIFICATION,
+            CollectionFeature.ALLOWS_NULL_VALUES,
+            CollectionFeature.SERIALIZABLE,
+            CollectionFeature.GENERAL_PURPOSE,
+            MultisetFeature.ENTRIES_ARE_VIEWS)
+        .named("ObjectCountHashMultiset")
+        .createTestSuite());
+    suite.addTestSuite(ObjectCountHashMultisetTest.class);
+    return suite;
+  }
+
+  private static TestStringMultisetGenerator objectCountHashMultisetGenerator() {
+    return new TestStringMultisetGenerator() {
+      @Override protected Multiset<String> create(String[] elements) {
+        return ObjectCountHashMultiset.create(asList(elements));
+      }
+    };
+  }
+
+  public void testCreate() {
+    Multiset<String> multiset = ObjectCountHashMultiset.create();
+    multiset.add("foo", 2);
+    multiset.add("bar");
+    assertEquals(3, multiset.size());
+    assertEquals(2, multiset.count("foo"));
+  }
+
+  public void testCreateWithSize() {
+    Multiset<String> multiset = ObjectCountHashMultiset.create(50);
+    multiset.add("foo", 2);
+    multiset.add("bar");
+    assertEquals(3, multiset.size());
+    assertEquals(2, multiset.count("foo"));
+  }
+
+  public void testCreateFromIterable() {
+    Multiset<String> multiset
+        = ObjectCountHashMultiset.create(Arrays.asList("foo", "bar", "foo"));
+    assertEquals(3, multiset.size());
+    assertEquals(2, multiset.count("foo"));
+  }
+
+  @GwtIncompatible // SerializableTester
+  public void testSerializationContainingSelf() {
+    Multiset<Multiset<?>> multiset = ObjectCountHashMultiset.create();
+    multiset.add(multiset, 2);
+    Multiset<Multiset<?>> copy = SerializableTester.reserialize(multiset);
+    assertEquals(2, copy.size());
+    assertSame(copy, copy.iterator().next());
+  }
+
+  @GwtIncompatible // Only used by @GwtIncompatible code
+  private static class MultisetHolder implements Serializable {
+    public Multiset<?> member;
+    MultisetHolder(Multiset<?> multiset) {
+      this.member = multiset;
+    }
+    private static final long serialVersionUID = 1L;
+  }
+
+  @GwtIncompatible // SerializableTester
+  public void testSerializationIndirectSelfReference() {
+    Multiset<MultisetHolder> multiset = ObjectCountHashMultiset.create();
+    MultisetHolder holder = new MultisetHolder(multiset);
+    multiset.add(holder, 2);
+    Multiset<MultisetHolder> copy = SerializableTester.reserialize(multiset);
+    assertEquals(2, copy.size());
+    assertSame(copy, copy.iterator().next().member);
+  }
+
+  public void testAddRemoveChurn() {
+    ObjectCountHashMultiset<Integer> multiset = ObjectCountHashMultiset.create();
+    Multiset<Integer> expected = HashMultiset.create();
+    Random random = new Random(0);
+    for (int i = 0; i < 100000; i++) {
+      int element = random.nextInt(200);
+      int occurrences = random.nextInt(3);
+      switch (random.nextInt(3)) {
+        case 0:
+          assertEquals(expected.add(element, occurrences), multiset.add(element, occurrences));
+          break;
+        case 1:
+          assertEquals(
+              expected.remove(element, occurrences), multiset.remove(element, occurrences));
+          break;
+        default:
+          assertEquals(
+              expected.setCount(element, occurrences), multiset.setCount(element, occurrences));
+          break;
+      }
+    }
+    assertEquals(expected, multiset);
+    assertEquals(expected.size(), multiset.size());
+    assertEquals(expected.entrySet().size(), multiset.entrySet().size());
+  }
+
+  public void testEntryCountFollowsRebuild() {
+    ObjectCountHashMultiset<String> multiset = ObjectCountHashMultiset.create();
+    multiset.add("a", 3);
+    Multiset.Entry<String> entry = Iterables.getOnlyElement(multiset.entrySet());
+    for (int i = 0; i < 100; i++) {
+      multiset.add(Integer.toString(i));
+    }
+    multiset.add("a", 2);
+    assertEquals(5, entry.getCount());
+    multiset.remove("a", 5);
+    assertEquals(0, entry.getCount());
+    multiset.add("a");
+    assertEquals(1, entry.getCount());
+  }
+
+  public void testCountsNull() {
+    ObjectCountHashMultiset<String> multiset = ObjectCountHashMultiset.create();
+    multiset.add(null, 2);
+    multiset.add("a");
+    assertEquals(2, multiset.count(null));
+    assertEquals(2, multiset.remove(null, 2));
+    assertEquals(0, multiset.count(null));
+    assertEquals(1, multiset.size());
+  }
+}
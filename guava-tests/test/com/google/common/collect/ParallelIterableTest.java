@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for {@link ParallelIterable}.
+ */
+public class ParallelIterableTest extends TestCase {
+
+  private static final Predicate<Integer> EVEN =
+      new Predicate<Integer>() {
+        @Override
+        public boolean apply(Integer input) {
+          return input % 2 == 0;
+        }
+      };
+
+  private static final Function<Integer, Integer> MOD_1000 =
+      new Function<Integer, Integer>() {
+        @Override
+        public Integer apply(Integer input) {
+          return input % 1000;
+        }
+      };
+
+  private ExecutorService pool;
+
+  @Override
+  protected void setUp() {
+    pool = Executors.newFixedThreadPool(4);
+  }
+
+  @Override
+  protected void tearDown() {
+    pool.shutdownNow();
+  }
+
+  private static ImmutableList<Integer> range(int size) {
+    ImmutableList.Builder<Integer> builder = ImmutableList.builder();
+    for (int i = 0; i < size; i++) {
+      builder.add(i);
+    }
+    return builder.build();
+  }
+
+  public void testToList_keepsOrder() {
+    for (int size : new int[] {0, 1, 255, 256, 1000, 100000}) {
+      List<Integer> source = range(size);
+      FluentIterable<Integer> sequential =
+          FluentIterable.from(source).filter(EVEN).transform(Functions.toStringFunction())
+              .transform(new Function<String, Integer>() {
+                @Override
+                public Integer apply(String input) {
+                  return input.length();
+                }
+              });
+      ParallelIterable<Integer> parallel =
+          FluentIterable.from(source).parallel(pool).filter(EVEN)
+              .transform(Functions.toStringFunction())
+              .transform(new Function<String, Integer>() {
+                @Override
+                public Integer apply(String input) {
+                  return input.length();
+                }
+              });
+      assertEquals(sequential.toList(), parallel.toList());
+      assertEquals(sequential.size(), parallel.size());
+    }
+  }
+
+  public void testToSet_keepsFirstOccurrenceOrder() {
+    List<Integer> source = Lists.reverse(range(50000));
+    ImmutableSet<Integer> set = FluentIterable.from(source).parallel(pool).transform(MOD_1000)
+        .toSet();
+    assertEquals(FluentIterable.from(source).transform(MOD_1000).toSet().asList(), set.asList());
+    assertEquals(999, set.asList().get(0).intValue());
+  }
+
+  public void testSources() {
+    List<Integer> expected = range(10000);
+    assertEquals(expected, FluentIterable.from(Lists.newArrayList(expected)).parallel(pool)
+        .toList());
+    assertEquals(expected, FluentIterable.from(Lists.newLinkedList(expected)).parallel(pool)
+        .toList());
+    assertEquals(expected, FluentIterable.from(ImmutableSortedSet.copyOf(expected)).parallel(pool)
+        .toList());
+    assertEquals(expected, FluentIterable.from(expected).transform(Functions.<Integer>identity())
+        .parallel(pool).toList());
+  }
+
+  public void testReusable() {
+    List<Integer> source = Lists.newArrayList(range(1000));
+    ParallelIterable<Integer> parallel = FluentIterable.from(source).parallel(pool).filter(EVEN);
+    assertEquals(500, parallel.size());
+    source.add(1000);
+    assertEquals(501, parallel.size());
+    assertEquals(501, parallel.toList().size());
+  }
+
+  public void testAnyMatchAndAllMatch() {
+    ParallelIterable<Integer> parallel = FluentIterable.from(range(100000)).parallel(pool);
+    assertTrue(parallel.anyMatch(Predicates.equalTo(99999)));
+    assertFalse(parallel.filter(EVEN).anyMatch(Predicates.equalTo(99999)));
+    assertTrue(parallel.filter(EVEN).allMatch(EVEN));
+    assertFalse(parallel.allMatch(EVEN));
+    assertTrue(FluentIterable.from(ImmutableList.<Integer>of()).parallel(pool).allMatch(EVEN));
+  }
+
+  public void testNullElement() {
+    List<Integer> source = Lists.newArrayList(range(10000));
+    source.set(5000, null);
+    ParallelIterable<Integer> parallel = FluentIterable.from(source).parallel(pool);
+    try {
+      parallel.toList();
+      fail();
+    } catch (NullPointerException expected) {
+    }
+    assertEquals(10000, parallel.size());
+    assertEquals(9999, parallel.filter(Predicates.notNull()).toList().size());
+  }
+
+  public void testExceptionPropagates() {
+    final IllegalStateException thrown = new IllegalStateException();
+    ParallelIterable<Integer> parallel = FluentIterable.from(range(100000)).parallel(pool)
+        .transform(new Function<Integer, Integer>() {
+          @Override
+          public Integer apply(Integer input) {
+            if (input == 77777) {
+              throw thrown;
+            }
+            return input;
+          }
+        });
+    try {
+      parallel.toList();
+      fail();
+    } catch (IllegalStateException expected) {
+      assertSame(thrown, expected);
+    }
+  }
+
+  public void testDirectExecutor() {
+    assertEquals(range(5000), FluentIterable.from(range(5000))
+        .parallel(MoreExecutors.directExecutor()).toList());
+  }
+
+  public void testRejectingExecutor() {
+    Executor rejecting =
+        new Executor() {
+          @Override
+          public void execute(Runnable command) {
+            throw new RejectedExecutionException();
+          }
+        };
+    assertEquals(range(5000), FluentIterable.from(range(5000)).parallel(rejecting).toList());
+  }
+
+  /**
+   * Checks that an operation started from a pool thread completes even when all other pool threads
+   * are blocked, because the calling thread processes the chunks nobody else has started.
+   */
+  public void testCallerHelps() throws Exception {
+    final ExecutorService singleThread = Executors.newSingleThreadExecutor();
+    try {
+      List<Integer> result = singleThread.submit(new Callable<List<Integer>>() {
+        @Override
+        public List<Integer> call() {
+          return FluentIterable.from(range(5000)).parallel(singleThread).toList();
+        }
+      }).get();
+      assertEquals(range(5000), result);
+    } finally {
+      singleThread.shutdownNow();
+    }
+  }
+
+  public void testSubmitsChunksToExecutor() {
+    final AtomicInteger submitted = new AtomicInteger();
+    Executor counting =
+        new Executor() {
+          @Override
+          public void execute(Runnable command) {
+            submitted.incrementAndGet();
+            pool.execute(command);
+          }
+        };
+    assertEquals(range(100000), FluentIterable.from(range(100000)).parallel(counting).toList());
+    assertThat(submitted.get()).isGreaterThan(0);
+
+    submitted.set(0);
+    assertEquals(range(100), FluentIterable.from(range(100)).parallel(counting).toList());
+    assertEquals(0, submitted.get());
+  }
+
+}
@@ -17,10 +17,12 @@
 package com.google.common.collect;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.truth.Truth.assertThat;
 import static java.util.Arrays.asList;
 
 import com.google.common.annotations.GwtCompatible;
 import com.google.common.annotations.GwtIncompatible;
+import com.google.common.collect.Sets.SetView;
 import com.google.common.collect.testing.SetTestSuiteBuilder;
 import com.google.common.collect.testing.TestStringSetGenerator;
 import com.google.common.collect.testing.features.CollectionFeature;
@@ -31,6 +33,7 @@ import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
 import java.util.HashSet;
+import java.util.Random;
 import java.util.Set;
 
 /**
@@ -348,5 +351,99 @@ public class SetOperationsTest extends TestCase {
       assertEquals(3, immut.size());
       assertEquals(3, mut.size());
     }
+
+    public void testImmutableCopy_immutableSets() {
+      ImmutableSet<String> friends = ImmutableSet.of("Tom", "Joe", "Dave");
+      ImmutableSet<String> enemies = ImmutableSet.of("Dick", "Harry", "Tom");
+
+      assertThat(Sets.union(friends, enemies).immutableCopy())
+          .containsExactly("Tom", "Joe", "Dave", "Dick", "Harry").inOrder();
+      assertThat(Sets.intersection(friends, enemies).immutableCopy()).containsExactly("Tom");
+      assertThat(Sets.difference(friends, enemies).immutableCopy())
+          .containsExactly("Joe", "Dave").inOrder();
+      assertThat(ImmutableSet.copyOf(Sets.difference(enemies, friends)))
+          .containsExactly("Dick", "Harry").inOrder();
+    }
+
+    public void testImmutableCopy_returnsBackingSetIfUnchanged() {
+      ImmutableSet<String> friends = ImmutableSet.of("Tom", "Joe", "Dave");
+      ImmutableSet<String> tom = ImmutableSet.of("Tom");
+
+      assertSame(friends, Sets.union(friends, tom).immutableCopy());
+      assertSame(friends, Sets.intersection(friends, Sets.union(friends, tom)).immutableCopy());
+      assertSame(friends, Sets.difference(friends, ImmutableSet.of("Bob")).immutableCopy());
+      assertSame(friends, ImmutableSet.copyOf(Sets.union(friends, tom)));
+    }
+
+    public void testImmutableCopy_unionWithNull() {
+      Set<String> withNull = Sets.newHashSet("Tom", null);
+      try {
+        Sets.union(ImmutableSet.of("Joe", "Dave"), withNull).immutableCopy();
+        fail();
+      } catch (NullPointerException expected) {
+      }
+    }
+
+    public void testImmutableCopy_intersectionWithInconsistentComparator() {
+      Set<String> set1 = ImmutableSet.of("a", "A", "b");
+      Set<String> set2 =
+          ImmutableSortedSet.orderedBy(String.CASE_INSENSITIVE_ORDER).add("a").build();
+      assertThat(Sets.intersection(set1, set2).immutableCopy())
+          .containsExactly("a", "A")
+          .inOrder();
+      assertThat(ImmutableSet.copyOf(Sets.intersection(set1, set2)))
+          .containsExactly("a", "A")
+          .inOrder();
+    }
+
+    @GwtIncompatible // Sets.newIdentityHashSet
+    public void testImmutableCopy_unionWithIdentitySet() {
+      Set<String> identitySet = Sets.newIdentityHashSet();
+      identitySet.add(new String("Tom"));
+      identitySet.add(new String("Tom"));
+      identitySet.add(new String("Joe"));
+      ImmutableSet<String> copy =
+          Sets.union(ImmutableSet.of("Joe", "Dave"), identitySet).immutableCopy();
+      assertEquals(3, copy.size());
+      assertThat(copy).containsExactly("Joe", "Dave", "Tom").inOrder();
+      assertEquals(ImmutableSet.of("Joe", "Dave", "Tom"), copy);
+      assertEquals(ImmutableSet.of("Joe", "Dave", "Tom").hashCode(), copy.hashCode());
+    }
+
+    public void testImmutableCopy_matchesIteration() {
+      Random random = new Random(0);
+      for (int trial = 0; trial < 200; trial++) {
+        Set<Integer> set1 = randomSet(random);
+        Set<Integer> set2 = randomSet(random);
+        for (SetView<Integer> view : ImmutableList.of(
+            Sets.union(set1, set2),
+            Sets.intersection(set1, set2),
+            Sets.difference(set1, set2))) {
+          ImmutableSet<Integer> copy = view.immutableCopy();
+          assertEquals(ImmutableList.copyOf(view), copy.asList());
+          assertEquals(Sets.newHashSet(view).hashCode(), copy.hashCode());
+          for (Integer element : view) {
+            assertTrue(copy.contains(element));
+          }
+          assertEquals(copy, ImmutableSet.copyOf(view));
+        }
+      }
+    }
+
+    private static Set<Integer> randomSet(Random random) {
+      int size = random.nextInt(40);
+      ImmutableSet.Builder<Integer> builder = ImmutableSet.builder();
+      for (int i = 0; i < size; i++) {
+        builder.add(random.nextInt(60));
+      }
+      switch (random.nextInt(3)) {
+        case 0:
+          return builder.build();
+        case 1:
+          return Sets.newLinkedHashSet(builder.build());
+        default:
+          return ImmutableSortedSet.copyOf(builder.build());
+      }
+    }
   }
 }
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.SortedLookupIndex.EytzingerIndex;
+import com.google.common.collect.SortedLookupIndex.InterpolationIndex;
+
+import junit.framework.TestCase;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for {@link SortedLookupIndex}.
+ */
+public class SortedLookupIndexTest extends TestCase {
+
+  private static final int[] SIZES = {1, 2, 15, 16, 17, 31, 32, 33, 100, 255, 256, 257, 1000, 4097};
+
+  private static ImmutableList<Integer> multiplesOf(int step, int size) {
+    ImmutableList.Builder<Integer> builder = ImmutableList.builder();
+    for (int i = 0; i < size; i++) {
+      builder.add(i * step);
+    }
+    return builder.build();
+  }
+
+  private static <E> void assertFindsLikeBinarySearch(
+      SortedLookupIndex index, List<E> elements, Comparator<? super E> comparator, E target) {
+    int expected = Collections.binarySearch(elements, target, comparator);
+    assertEquals("searching for " + target, Math.max(expected, -1), index.indexOf(target));
+  }
+
+  public void testEytzinger_everyPosition() {
+    for (int size : SIZES) {
+      ImmutableList<Integer> elements = multiplesOf(2, size);
+      SortedLookupIndex index = new EytzingerIndex(elements, Ordering.natural());
+      for (int target = -1; target <= 2 * size; target++) {
+        assertFindsLikeBinarySearch(index, elements, Ordering.natural(), target);
+      }
+    }
+  }
+
+  public void testEytzinger_comparator() {
+    Ordering<String> reverse = Ordering.natural().reverse();
+    List<String> names = Lists.newArrayList();
+    for (int i = 0; i < 300; i += 3) {
+      names.add(Integer.toString(i));
+    }
+    ImmutableList<String> elements = ImmutableSortedSet.copyOf(reverse, names).asList();
+    SortedLookupIndex index = new EytzingerIndex(elements, reverse);
+    for (int i = -1; i <= 300; i++) {
+      assertFindsLikeBinarySearch(index, elements, reverse, Integer.toString(i));
+    }
+  }
+
+  public void testInterpolation_dense() {
+    for (int size : SIZES) {
+      ImmutableList<Integer> elements = multiplesOf(3, size);
+      SortedLookupIndex index =
+          SortedLookupIndex.create(elements, Ordering.natural(), DiscreteDomain.integers());
+      assertThat(index).isInstanceOf(InterpolationIndex.class);
+      for (int target = -2; target <= 3 * size; target++) {
+        assertFindsLikeBinarySearch(index, elements, Ordering.natural(), target);
+      }
+    }
+  }
+
+  public void testInterpolation_random() {
+    Random random = new Random(0);
+    ImmutableList<Long> elements =
+        ImmutableSortedSet.copyOf(randomLongs(random, 10000)).asList();
+    SortedLookupIndex index =
+        SortedLookupIndex.create(elements, Ordering.natural(), DiscreteDomain.longs());
+    assertThat(index).isInstanceOf(InterpolationIndex.class);
+    for (Long element : elements) {
+      assertFindsLikeBinarySearch(index, elements, Ordering.natural(), element);
+      assertFindsLikeBinarySearch(index, elements, Ordering.natural(), element + 1);
+      assertFindsLikeBinarySearch(index, elements, Ordering.natural(), element - 1);
+    }
+    for (Long target : randomLongs(random, 10000)) {
+      assertFindsLikeBinarySearch(index, elements, Ordering.natural(), target);
+    }
+  }
+
+  private static List<Long> randomLongs(Random random, int count) {
+    List<Long> longs = Lists.newArrayList();
+    for (int i = 0; i < count; i++) {
+      longs.add(random.nextLong() >> 2);
+    }
+    return longs;
+  }
+
+  public void testInterpolation_skewed() {
+    ImmutableList.Builder<Long> builder = ImmutableList.builder();
+    for (long i = 0; i < 2000; i++) {
+      builder.add(i * i * i);
+    }
+    builder.add(Long.MAX_VALUE / 2);
+    ImmutableList<Long> elements = builder.build();
+    SortedLookupIndex index =
+        SortedLookupIndex.create(elements, Ordering.natural(), DiscreteDomain.longs());
+    assertThat(index).isInstanceOf(InterpolationIndex.class);
+    for (Long element : elements) {
+      assertFindsLikeBinarySearch(index, elements, Ordering.natural(), element);
+      assertFindsLikeBinarySearch(index, elements, Ordering.natural(), element + 1);
+    }
+    assertFindsLikeBinarySearch(index, elements, Ordering.natural(), Long.MIN_VALUE);
+    assertFindsLikeBinarySearch(index, elements, Ordering.natural(), Long.MAX_VALUE);
+  }
+
+  public void testInterpolation_saturatedDistancesFallBack() {
+    ImmutableList<Long> elements = ImmutableList.of(Long.MIN_VALUE, 0L, 1L, Long.MAX_VALUE);
+    SortedLookupIndex index =
+        SortedLookupIndex.create(elements, Ordering.natural(), DiscreteDomain.longs());
+    assertThat(index).isInstanceOf(EytzingerIndex.class);
+    for (long target : new long[] {Long.MIN_VALUE, -1, 0, 1, 2, Long.MAX_VALUE}) {
+      assertFindsLikeBinarySearch(index, elements, Ordering.natural(), target);
+    }
+  }
+
+  public void testIncomparableTarget() {
+    ImmutableList<Integer> elements = multiplesOf(1, 100);
+    for (SortedLookupIndex index :
+        ImmutableList.of(
+            new EytzingerIndex(elements, Ordering.natural()),
+            SortedLookupIndex.create(elements, Ordering.natural(), DiscreteDomain.integers()))) {
+      try {
+        index.indexOf("a");
+        fail();
+      } catch (ClassCastException expected) {
+      }
+    }
+  }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.testing.SerializableTester.reserializeAndAssert;
+import static java.util.Arrays.asList;
+
+import com.google.common.collect.testing.features.CollectionFeature;
+import com.google.common.collect.testing.features.CollectionSize;
+import com.google.common.collect.testing.google.MultisetTestSuiteBuilder;
+import com.google.common.collect.testing.google.TestStringMultisetGenerator;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tests for {@link StripedConcurrentHashMultiset} and {@link StripedCounter}.
+ */
+public class StripedConcurrentHashMultisetTest extends TestCase {
+
+  public static Test suite() {
+    TestSuite suite = new TestSuite();
+    suite.addTest(MultisetTestSuiteBuilder.using(
+        new TestStringMultisetGenerator() {
+          @Override protected Multiset<String> create(String[] elements) {
+            return StripedConcurrentHashMultiset.create(asList(elements));
+          }
+        })
+        .withFeatures(CollectionSize.ANY,
+            CollectionFeature.GENERAL_PURPOSE,
+            CollectionFeature.SERIALIZABLE,
+            CollectionFeature.ALLOWS_NULL_QUERIES)
+        .named("StripedConcurrentHashMultiset")
+        .createTestSuite());
+    suite.addTestSuite(StripedConcurrentHashMultisetTest.class);
+    return suite;
+  }
+
+  private static final String KEY = "puppies";
+
+  public void testCounter_seal() {
+    StripedCounter counter = new StripedCounter(3);
+    assertTrue(counter.add(4));
+    assertEquals(7, counter.sum());
+    assertFalse(counter.isSealed());
+
+    assertEquals(7, counter.seal());
+    assertTrue(counter.isSealed());
+    assertEquals(StripedCounter.SEALED, counter.sum());
+    assertFalse(counter.add(1));
+  }
+
+  public void testCounter_sealAfterContention() throws Exception {
+    final StripedCounter counter = new StripedCounter(0);
+    int nThreads = 8;
+    final int increments = 100000;
+    ExecutorService pool = Executors.newFixedThreadPool(nThreads);
+    try {
+      List<Future<Integer>> futures = Lists.newArrayList();
+      for (int i = 0; i < nThreads; i++) {
+        futures.add(pool.submit(new Callable<Integer>() {
+          @Override public Integer call() {
+            int added = 0;
+            for (int j = 0; j < increments && counter.add(1); j++) {
+              added++;
+            }
+            return added;
+          }
+        }));
+      }
+      Thread.sleep(10);
+      long sealed = counter.seal();
+      long added = 0;
+      for (Future<Integer> future : futures) {
+        added += future.get();
+      }
+      assertEquals(added, sealed);
+      assertFalse(counter.add(1));
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  public void testAdd_single() {
+    StripedConcurrentHashMultiset<String> multiset = StripedConcurrentHashMultiset.create();
+    assertTrue(multiset.add(KEY));
+    assertTrue(multiset.add(KEY));
+    assertEquals(2, multiset.count(KEY));
+    assertEquals(2, multiset.size());
+  }
+
+  public void testAdd_laterFewWithOverflow() {
+    StripedConcurrentHashMultiset<String> multiset = StripedConcurrentHashMultiset.create();
+    multiset.add(KEY, Integer.MAX_VALUE - 5);
+    try {
+      multiset.add(KEY, 6);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    assertEquals(Integer.MAX_VALUE - 5, multiset.count(KEY));
+  }
+
+  public void testRemove_someRemaining() {
+    StripedConcurrentHashMultiset<String> multiset = StripedConcurrentHashMultiset.create();
+    multiset.add(KEY, 5);
+    assertEquals(5, multiset.remove(KEY, 2));
+    assertEquals(3, multiset.count(KEY));
+    assertEquals(3, multiset.remove(KEY, 3));
+    assertEquals(0, multiset.count(KEY));
+    assertTrue(multiset.isEmpty());
+  }
+
+  public void testRemoveExactly() {
+    StripedConcurrentHashMultiset<String> multiset = StripedConcurrentHashMultiset.create();
+    multiset.add(KEY, 3);
+    assertFalse(multiset.removeExactly(KEY, 4));
+    assertEquals(3, multiset.count(KEY));
+    assertTrue(multiset.removeExactly(KEY, 2));
+    assertTrue(multiset.removeExactly(KEY, 1));
+    assertFalse(multiset.contains(KEY));
+    assertTrue(multiset.removeExactly(KEY, 0));
+    assertFalse(multiset.removeExactly(KEY, 1));
+  }
+
+  public void testSetCount_conditional() {
+    StripedConcurrentHashMultiset<String> multiset = StripedConcurrentHashMultiset.create();
+    multiset.add(KEY, 3);
+    assertFalse(multiset.setCount(KEY, 2, 5));
+    assertEquals(3, multiset.count(KEY));
+    assertTrue(multiset.setCount(KEY, 3, 5));
+    assertEquals(5, multiset.count(KEY));
+    assertTrue(multiset.setCount(KEY, 5, 0));
+    assertTrue(multiset.isEmpty());
+  }
+
+  public void testSerialization() {
+    StripedConcurrentHashMultiset<String> multiset = StripedConcurrentHashMultiset.create();
+    multiset.add("a", 3);
+    multiset.add("b");
+    reserializeAndAssert(multiset);
+  }
+
+  /**
+   * Has many threads add the same element at once, then checks that no increment was lost.
+   */
+  public void testAdd_hotKey() throws Exception {
+    final StripedConcurrentHashMultiset<String> multiset = StripedConcurrentHashMultiset.create();
+    int nThreads = 16;
+    final int increments = 50000;
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService pool = Executors.newFixedThreadPool(nThreads);
+    try {
+      List<Future<?>> futures = Lists.newArrayList();
+      for (int i = 0; i < nThreads; i++) {
+        futures.add(pool.submit(new Callable<Void>() {
+          @Override public Void call() throws InterruptedException {
+            start.await();
+            for (int j = 0; j < increments; j++) {
+              multiset.add(KEY);
+            }
+            return null;
+          }
+        }));
+      }
+      start.countDown();
+      for (Future<?> future : futures) {
+        future.get();
+      }
+      assertEquals(nThreads * increments, multiset.count(KEY));
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Has threads perform random operations on a few elements, each keeping track of the deltas it
+   * is directly responsible for, and compares the summed deltas to the final counts.
+   */
+  public void testAddAndRemove_basher() throws Exception {
+    final StripedConcurrentHashMultiset<String> multiset = StripedConcurrentHashMultiset.create();
+    final ImmutableList<String> keys = ImmutableList.of("a", "b", "c");
+    int nThreads = 16;
+    ExecutorService pool = Executors.newFixedThreadPool(nThreads);
+    try {
+      List<Future<int[]>> futures = Lists.newArrayList();
+      for (int i = 0; i < nThreads; i++) {
+        futures.add(pool.submit(new Callable<int[]>() {
+          @Override public int[] call() {
+            Random random = new Random();
+            int[] deltas = new int[keys.size()];
+            for (int j = 0; j < 50000; j++) {
+              int keyIndex = random.nextInt(keys.size());
+              String key = keys.get(keyIndex);
+              switch (random.nextInt(6)) {
+                case 0:
+                  multiset.add(key);
+                  deltas[keyIndex]++;
+                  break;
+                case 1:
+                  int delta = random.nextInt(10);
+                  multiset.add(key, delta);
+                  deltas[keyIndex] += delta;
+                  break;
+                case 2:
+                  int newCount = random.nextInt(3);
+                  deltas[keyIndex] += newCount - multiset.setCount(key, newCount);
+                  break;
+                case 3:
+                  int expected = multiset.count(key);
+                  int updated = random.nextInt(3);
+                  if (multiset.setCount(key, expected, updated)) {
+                    deltas[keyIndex] += updated - expected;
+                  }
+                  break;
+                case 4:
+                  int toRemove = random.nextInt(6);
+                  deltas[keyIndex] -= Math.min(toRemove, multiset.remove(key, toRemove));
+                  break;
+                default:
+                  int exactly = random.nextInt(5);
+                  if (multiset.removeExactly(key, exactly)) {
+                    deltas[keyIndex] -= exactly;
+                  }
+                  break;
+              }
+            }
+            return deltas;
+          }
+        }));
+      }
+      int[] totals = new int[keys.size()];
+      for (Future<int[]> future : futures) {
+        int[] deltas = future.get();
+        for (int i = 0; i < totals.length; i++) {
+          totals[i] += deltas[i];
+        }
+      }
+      for (int i = 0; i < totals.length; i++) {
+        assertEquals(keys.get(i), totals[i], multiset.count(keys.get(i)));
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+}
@@ -17,10 +17,11 @@
 package com.google.common.hash;
 
 import static com.google.common.base.Charsets.UTF_8;
-import static com.google.common.hash.BloomFilterStrategies.BitArray;
+import static com.google.common.hash.BloomFilterStrategies.LockFreeBitArray;
 import static com.google.common.truth.Truth.assertThat;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import com.google.common.math.LongMath;
 import com.google.common.primitives.Ints;
 import com.google.common.testing.EqualsTester;
@@ -31,8 +32,16 @@ import junit.framework.TestCase;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
 import java.math.RoundingMode;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nullable;
 
@@ -47,7 +56,7 @@ public class BloomFilterTest extends TestCase {
     long numBits = Integer.MAX_VALUE;
     numBits++;
 
-    BitArray bitArray = new BitArray(numBits);
+    LockFreeBitArray bitArray = new LockFreeBitArray(numBits);
     assertTrue(
         "BitArray.bitSize() must return a positive number, but was " + bitArray.bitSize(),
         bitArray.bitSize() > 0);
@@ -179,6 +188,120 @@ public class BloomFilterTest extends TestCase {
     assertEquals(actualFpp, expectedFpp, 0.00033);
   }
 
+  public void testCreateAndCheckBlockedBloomFilterWithKnownFalsePositives() {
+    int numInsertions = 1000000;
+    BloomFilter<String> bf =
+        BloomFilter.createBlocked(Funnels.unencodedCharsFunnel(), numInsertions, 0.03);
+
+    // Insert "numInsertions" even numbers into the BF.
+    for (int i = 0; i < numInsertions * 2; i += 2) {
+      bf.put(Integer.toString(i));
+    }
+
+    // Assert that the BF "might" have all of the even numbers.
+    for (int i = 0; i < numInsertions * 2; i += 2) {
+      assertTrue(bf.mightContain(Integer.toString(i)));
+    }
+
+    // Now we check for known false positives using a set of known false positives.
+    // (These are all of the false positives under 900.)
+    ImmutableSet<Integer> falsePositives = ImmutableSet.of(
+        47, 57, 165, 181, 205, 265, 309, 329, 409, 545, 559, 563, 587, 717, 837, 857);
+    for (int i = 1; i < 900; i += 2) {
+      if (!falsePositives.contains(i)) {
+        assertFalse("BF should not contain " + i, bf.mightContain(Integer.toString(i)));
+      }
+    }
+
+    // Check that there are exactly 28582 false positives for this BF.
+    int knownNumberOfFalsePositives = 28582;
+    int numFpp = 0;
+    for (int i = 1; i < numInsertions * 2; i += 2) {
+      if (bf.mightContain(Integer.toString(i))) {
+        numFpp++;
+      }
+    }
+    assertEquals(knownNumberOfFalsePositives, numFpp);
+    double actualFpp = (double) knownNumberOfFalsePositives / numInsertions;
+    double expectedFpp = bf.expectedFpp();
+    // The normal order of (expected, actual) is reversed here on purpose.
+    assertEquals(actualFpp, expectedFpp, 0.00033);
+  }
+
+  public void testBlockedBitsShareOneBlock() throws IOException {
+    BloomFilter<Integer> bf = BloomFilter.createBlocked(Funnels.integerFunnel(), 100000, 0.001);
+    assertEquals(0, bf.bitSize() % BloomFilterStrategies.BLOCK_BITS);
+    for (int i = 0; i < 100; i++) {
+      BloomFilter<Integer> single = bf.copy();
+      single.put(i);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      single.writeTo(out);
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+      in.readByte(); // strategy
+      in.readByte(); // numHashFunctions
+      int dataLength = in.readInt();
+      int firstWord = -1;
+      int lastWord = -1;
+      for (int word = 0; word < dataLength; word++) {
+        if (in.readLong() != 0) {
+          lastWord = word;
+          if (firstWord == -1) {
+            firstWord = word;
+          }
+        }
+      }
+      int wordsPerBlock = BloomFilterStrategies.BLOCK_BITS / Long.SIZE;
+      assertEquals(firstWord / wordsPerBlock, lastWord / wordsPerBlock);
+    }
+  }
+
+  public void testBlockedSizing() {
+    for (double fpp : new double[] {0.03, 0.01, 0.001, 0.0001}) {
+      for (long expectedInsertions : new long[] {1, 10, 1000, 1000000}) {
+        long numBits = BloomFilter.optimalNumOfBlockedBits(expectedInsertions, fpp);
+        assertEquals(0, numBits % BloomFilterStrategies.BLOCK_BITS);
+        assertThat(numBits).isAtLeast(BloomFilter.optimalNumOfBits(expectedInsertions, fpp));
+        int numHashFunctions = BloomFilter.optimalNumOfHashFunctions(expectedInsertions, numBits);
+        assertThat(
+                BloomFilterStrategies.blockedFpp(expectedInsertions, numBits, numHashFunctions))
+            .isAtMost(fpp);
+      }
+    }
+  }
+
+  public void testBlockedExpectedFpp() {
+    BloomFilter<Object> bf = BloomFilter.createBlocked(HashTestUtils.BAD_FUNNEL, 10, 0.03);
+    double fpp = bf.expectedFpp();
+    assertEquals(0.0, fpp);
+    while (fpp != 1.0) {
+      boolean changed = bf.put(new Object());
+      double newFpp = bf.expectedFpp();
+      // if changed, the new fpp is strictly higher, otherwise it is the same
+      assertTrue(changed ? newFpp > fpp : newFpp == fpp);
+      fpp = newFpp;
+    }
+  }
+
+  public void testBlockedCompatibility() throws IOException {
+    BloomFilter<Integer> blocked = BloomFilter.createBlocked(Funnels.integerFunnel(), 1000, 0.01);
+    BloomFilter<Integer> standard = BloomFilter.create(Funnels.integerFunnel(), 1000, 0.01);
+    assertFalse(blocked.isCompatible(standard));
+    assertTrue(blocked.isCompatible(blocked.copy()));
+    for (int i = 0; i < 1000; i++) {
+      blocked.put(i);
+    }
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    blocked.writeTo(out);
+    BloomFilter<Integer> read =
+        BloomFilter.readFrom(new ByteArrayInputStream(out.toByteArray()), Funnels.integerFunnel());
+    assertEquals(blocked, read);
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(read.mightContain(i));
+    }
+    SerializableTester.reserializeAndAssert(blocked);
+  }
+
   /**
    * Sanity checking with many combinations of false positive rates and expected insertions
    */
@@ -308,6 +431,20 @@ public class BloomFilterTest extends TestCase {
     }
   }
 
+  public void testApproximateElementCount() {
+    int numInsertions = 1000;
+    BloomFilter<Integer> bf = BloomFilter.create(Funnels.integerFunnel(), numInsertions);
+    assertEquals(0, bf.approximateElementCount());
+    for (int i = 0; i < numInsertions; i++) {
+      bf.put(i);
+    }
+    assertEquals(numInsertions, bf.approximateElementCount(), numInsertions / 10);
+    for (int i = 0; i < numInsertions; i++) {
+      bf.put(i);
+    }
+    assertEquals(numInsertions, bf.approximateElementCount(), numInsertions / 10);
+  }
+
   @AndroidIncompatible // slow
   public void testBitSize() {
     double fpp = 0.03;
@@ -470,13 +607,58 @@ public class BloomFilterTest extends TestCase {
     assertEquals(bf, BloomFilter.readFrom(new ByteArrayInputStream(out.toByteArray()), funnel));
   }
 
+  public void testConcurrentPuts() throws Exception {
+    final int numThreads = 4;
+    final int insertionsPerThread = 25000;
+    final BloomFilter<Integer> concurrent =
+        BloomFilter.create(Funnels.integerFunnel(), numThreads * insertionsPerThread);
+    BloomFilter<Integer> sequential =
+        BloomFilter.create(Funnels.integerFunnel(), numThreads * insertionsPerThread);
+    for (int i = 0; i < numThreads * insertionsPerThread; i++) {
+      sequential.put(i);
+    }
+
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    try {
+      List<Future<?>> futures = Lists.newArrayList();
+      for (int t = 0; t < numThreads; t++) {
+        final int first = t * insertionsPerThread;
+        futures.add(
+            executor.submit(
+                new Callable<Void>() {
+                  @Override
+                  public Void call() throws InterruptedException {
+                    start.await();
+                    for (int i = first; i < first + insertionsPerThread; i++) {
+                      concurrent.put(i);
+                      assertTrue(concurrent.mightContain(i));
+                    }
+                    return null;
+                  }
+                }));
+      }
+      start.countDown();
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertEquals(sequential, concurrent);
+    assertEquals(sequential.expectedFpp(), concurrent.expectedFpp());
+    assertEquals(sequential.approximateElementCount(), concurrent.approximateElementCount());
+  }
+
   /**
    * This test will fail whenever someone updates/reorders the BloomFilterStrategies constants.
    * Only appending a new constant is allowed.
    */
   public void testBloomFilterStrategies() {
-    assertThat(BloomFilterStrategies.values()).hasLength(2);
+    assertThat(BloomFilterStrategies.values()).hasLength(3);
     assertEquals(BloomFilterStrategies.MURMUR128_MITZ_32, BloomFilterStrategies.values()[0]);
     assertEquals(BloomFilterStrategies.MURMUR128_MITZ_64, BloomFilterStrategies.values()[1]);
+    assertEquals(BloomFilterStrategies.MURMUR128_BLOCKED_64, BloomFilterStrategies.values()[2]);
   }
 }
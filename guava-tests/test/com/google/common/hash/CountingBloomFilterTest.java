@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.hash;
+
+import com.google.common.testing.EqualsTester;
+import com.google.common.testing.NullPointerTester;
+import com.google.common.testing.SerializableTester;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link CountingBloomFilter}.
+ */
+public class CountingBloomFilterTest extends TestCase {
+
+  public void testPutAndRemove() {
+    int numInsertions = 10000;
+    CountingBloomFilter<Integer> filter =
+        CountingBloomFilter.create(Funnels.integerFunnel(), numInsertions, 0.01);
+    for (int i = 0; i < numInsertions; i++) {
+      filter.put(i);
+    }
+    for (int i = 0; i < numInsertions; i++) {
+      assertTrue(filter.mightContain(i));
+    }
+    for (int i = 0; i < numInsertions; i += 2) {
+      assertTrue(filter.remove(i));
+    }
+    // Every element that was put and not removed is still there.
+    for (int i = 1; i < numInsertions; i += 2) {
+      assertTrue(filter.mightContain(i));
+    }
+    int falsePositives = 0;
+    for (int i = 0; i < numInsertions; i += 2) {
+      if (filter.mightContain(i)) {
+        falsePositives++;
+      }
+    }
+    assertTrue("false positives: " + falsePositives, falsePositives < numInsertions / 2 / 50);
+    for (int i = 1; i < numInsertions; i += 2) {
+      assertTrue(filter.remove(i));
+    }
+    assertEquals(0.0, filter.expectedFpp());
+    assertEquals(0, filter.approximateElementCount());
+    assertEquals(CountingBloomFilter.create(Funnels.integerFunnel(), numInsertions, 0.01), filter);
+  }
+
+  public void testSameHashingAsBloomFilter() {
+    CountingBloomFilter<Integer> counting =
+        CountingBloomFilter.create(Funnels.integerFunnel(), 1000, 0.01);
+    BloomFilter<Integer> bloom = BloomFilter.create(Funnels.integerFunnel(), 1000, 0.01);
+    assertEquals(bloom.bitSize(), counting.counterCount());
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(bloom.put(i), counting.put(i));
+    }
+    assertEquals(bloom.expectedFpp(), counting.expectedFpp());
+    assertEquals(bloom.approximateElementCount(), counting.approximateElementCount());
+    for (int i = 1000; i < 100000; i++) {
+      assertEquals(bloom.mightContain(i), counting.mightContain(i));
+    }
+  }
+
+  public void testRepeatedPuts() {
+    CountingBloomFilter<String> filter =
+        CountingBloomFilter.create(Funnels.unencodedCharsFunnel(), 100);
+    assertTrue(filter.put("a"));
+    assertFalse(filter.put("a"));
+    assertTrue(filter.remove("a"));
+    assertTrue(filter.mightContain("a"));
+    assertTrue(filter.remove("a"));
+    assertFalse(filter.mightContain("a"));
+    assertFalse(filter.remove("a"));
+  }
+
+  public void testSaturatedCountersStay() {
+    CountingBloomFilter<String> filter =
+        CountingBloomFilter.create(Funnels.unencodedCharsFunnel(), 100);
+    for (int i = 0; i < 20; i++) {
+      filter.put("a");
+    }
+    for (int i = 0; i < 20; i++) {
+      assertTrue(filter.remove("a"));
+    }
+    // The counters reached 15, after which their count was lost, so they were never decremented.
+    assertTrue(filter.mightContain("a"));
+  }
+
+  public void testCopy() {
+    CountingBloomFilter<String> original =
+        CountingBloomFilter.create(Funnels.unencodedCharsFunnel(), 100);
+    original.put("a");
+    CountingBloomFilter<String> copy = original.copy();
+    assertEquals(original, copy);
+    copy.remove("a");
+    assertTrue(original.mightContain("a"));
+    assertFalse(copy.mightContain("a"));
+  }
+
+  public void testEquals() {
+    CountingBloomFilter<String> a = CountingBloomFilter.create(Funnels.unencodedCharsFunnel(), 100);
+    a.put("1");
+    CountingBloomFilter<String> b = CountingBloomFilter.create(Funnels.unencodedCharsFunnel(), 100);
+    b.put("1");
+    b.put("1");
+    new EqualsTester()
+        .addEqualityGroup(a, a.copy())
+        .addEqualityGroup(b)
+        .addEqualityGroup(CountingBloomFilter.create(Funnels.unencodedCharsFunnel(), 100))
+        .addEqualityGroup(CountingBloomFilter.create(Funnels.unencodedCharsFunnel(), 200))
+        .testEquals();
+  }
+
+  public void testSerialization() {
+    CountingBloomFilter<Integer> filter = CountingBloomFilter.create(Funnels.integerFunnel(), 100);
+    for (int i = 0; i < 100; i++) {
+      filter.put(i);
+    }
+    CountingBloomFilter<Integer> copy = SerializableTester.reserializeAndAssert(filter);
+    assertEquals(filter.expectedFpp(), copy.expectedFpp());
+    for (int i = 0; i < 100; i++) {
+      assertTrue(copy.remove(i));
+    }
+    assertEquals(0.0, copy.expectedFpp());
+  }
+
+  public void testPreconditions() {
+    try {
+      CountingBloomFilter.create(Funnels.unencodedCharsFunnel(), -1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      CountingBloomFilter.create(Funnels.unencodedCharsFunnel(), 1, 0.0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      CountingBloomFilter.create(Funnels.unencodedCharsFunnel(), 1, 1.0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testNullPointers() {
+    NullPointerTester tester = new NullPointerTester();
+    tester.testAllPublicInstanceMethods(
+        CountingBloomFilter.create(Funnels.unencodedCharsFunnel(), 100));
+    tester.testAllPublicStaticMethods(CountingBloomFilter.class);
+  }
+}
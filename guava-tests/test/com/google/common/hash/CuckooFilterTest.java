@@ -0,0 +1,368 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.hash;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
+import com.google.common.testing.EqualsTester;
+import com.google.common.testing.NullPointerTester;
+import com.google.common.testing.SerializableTester;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link CuckooFilter}.
+ */
+public class CuckooFilterTest extends TestCase {
+
+  public void testPutAndMightContain() {
+    for (double fpp : new double[] {0.03, 0.001, 1e-6}) {
+      int numInsertions = 100000;
+      CuckooFilter<Integer> filter =
+          CuckooFilter.create(Funnels.integerFunnel(), numInsertions, fpp);
+      for (int i = 0; i < numInsertions; i++) {
+        assertTrue(filter.put(i));
+      }
+      assertEquals(numInsertions, filter.approximateElementCount());
+      for (int i = 0; i < numInsertions; i++) {
+        assertTrue(filter.mightContain(i));
+      }
+      assertThat(filter.expectedFpp()).isAtMost(fpp);
+
+      int falsePositives = 0;
+      int numQueries = 1000000;
+      for (int i = numInsertions; i < numInsertions + numQueries; i++) {
+        if (filter.mightContain(i)) {
+          falsePositives++;
+        }
+      }
+      assertEquals(filter.expectedFpp(), (double) falsePositives / numQueries, fpp / 10);
+    }
+  }
+
+  public void testRemove() {
+    int numInsertions = 10000;
+    CuckooFilter<Integer> filter = CuckooFilter.create(Funnels.integerFunnel(), numInsertions);
+    for (int i = 0; i < numInsertions; i++) {
+      filter.put(i);
+    }
+    for (int i = 0; i < numInsertions; i += 2) {
+      assertTrue(filter.remove(i));
+    }
+    for (int i = 1; i < numInsertions; i += 2) {
+      assertTrue(filter.mightContain(i));
+    }
+    assertEquals(numInsertions / 2, filter.approximateElementCount());
+    for (int i = 1; i < numInsertions; i += 2) {
+      assertTrue(filter.remove(i));
+    }
+    assertEquals(0, filter.approximateElementCount());
+    assertEquals(0.0, filter.expectedFpp());
+    assertEquals(CuckooFilter.create(Funnels.integerFunnel(), numInsertions), filter);
+  }
+
+  public void testRepeatedPuts() {
+    CuckooFilter<String> filter = CuckooFilter.create(Funnels.unencodedCharsFunnel(), 100);
+    assertFalse(filter.remove("a"));
+    assertTrue(filter.put("a"));
+    assertTrue(filter.put("a"));
+    assertEquals(2, filter.approximateElementCount());
+    assertTrue(filter.remove("a"));
+    assertTrue(filter.mightContain("a"));
+    assertTrue(filter.remove("a"));
+    assertFalse(filter.mightContain("a"));
+    assertFalse(filter.remove("a"));
+  }
+
+  public void testFull() {
+    int numInsertions = 1000;
+    CuckooFilter<Integer> filter = CuckooFilter.create(Funnels.integerFunnel(), numInsertions);
+    int count = 0;
+    while (filter.put(count)) {
+      count++;
+    }
+    assertThat(count).isAtLeast(numInsertions);
+    CuckooFilter<Integer> full = filter.copy();
+    assertFalse(filter.put(count));
+    assertEquals(full, filter);
+    for (int i = 0; i < count; i++) {
+      assertTrue(filter.mightContain(i));
+    }
+
+    // Removing an element makes room for the fingerprint that did not fit.
+    assertTrue(filter.remove(0));
+    assertTrue(filter.put(count));
+    for (int i = 1; i <= count; i++) {
+      assertTrue(filter.mightContain(i));
+    }
+  }
+
+  public void testBitsPerElement() {
+    int numInsertions = 1000000;
+    for (double fpp : new double[] {0.001, 1e-4, 1e-6}) {
+      CuckooFilter<Integer> cuckoo =
+          CuckooFilter.create(Funnels.integerFunnel(), numInsertions, fpp);
+      BloomFilter<Integer> bloom = BloomFilter.create(Funnels.integerFunnel(), numInsertions, fpp);
+      assertThat(cuckoo.bitSize()).isLessThan(bloom.bitSize());
+    }
+    CuckooFilter<Integer> cuckoo =
+        CuckooFilter.create(Funnels.integerFunnel(), numInsertions, 0.03);
+    BloomFilter<Integer> bloom = BloomFilter.create(Funnels.integerFunnel(), numInsertions, 0.03);
+    assertThat(cuckoo.bitSize()).isGreaterThan(bloom.bitSize());
+  }
+
+  public void testOptimalSizes() {
+    assertEquals(1, CuckooFilter.optimalNumOfBuckets(1));
+    assertEquals(1, CuckooFilter.optimalNumOfBuckets(3));
+    assertEquals(2, CuckooFilter.optimalNumOfBuckets(4));
+    assertEquals(264, CuckooFilter.optimalNumOfBuckets(1000));
+
+    assertEquals(9, CuckooFilter.optimalFingerprintBits(0.03));
+    assertEquals(10, CuckooFilter.optimalFingerprintBits(0.01));
+    assertEquals(13, CuckooFilter.optimalFingerprintBits(0.001));
+    assertEquals(4, CuckooFilter.optimalFingerprintBits(0.99));
+    assertEquals(64, CuckooFilter.optimalFingerprintBits(Double.MIN_VALUE));
+  }
+
+  public void testLongFingerprints() {
+    CuckooFilter<Integer> filter = CuckooFilter.create(Funnels.integerFunnel(), 1000, 1e-30);
+    for (int i = 0; i < 1000; i++) {
+      filter.put(i);
+    }
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(filter.mightContain(i));
+    }
+    for (int i = 1000; i < 100000; i++) {
+      assertFalse(filter.mightContain(i));
+    }
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(filter.remove(i));
+    }
+    assertEquals(0, filter.approximateElementCount());
+  }
+
+  public void testPutAll() {
+    int element1 = 1;
+    int element2 = 2;
+
+    CuckooFilter<Integer> cf1 = CuckooFilter.create(Funnels.integerFunnel(), 100);
+    cf1.put(element1);
+    assertTrue(cf1.mightContain(element1));
+    assertFalse(cf1.mightContain(element2));
+
+    CuckooFilter<Integer> cf2 = CuckooFilter.create(Funnels.integerFunnel(), 100);
+    cf2.put(element2);
+    assertFalse(cf2.mightContain(element1));
+    assertTrue(cf2.mightContain(element2));
+
+    assertTrue(cf1.isCompatible(cf2));
+    assertTrue(cf1.putAll(cf2));
+    assertTrue(cf1.mightContain(element1));
+    assertTrue(cf1.mightContain(element2));
+    assertEquals(2, cf1.approximateElementCount());
+    assertFalse(cf2.mightContain(element1));
+    assertTrue(cf2.mightContain(element2));
+  }
+
+  public void testPutAllWhenFull() {
+    CuckooFilter<Integer> cf1 = CuckooFilter.create(Funnels.integerFunnel(), 100);
+    CuckooFilter<Integer> cf2 = CuckooFilter.create(Funnels.integerFunnel(), 100);
+    for (int i = 0; i < 80; i++) {
+      cf1.put(i);
+      cf2.put(i + 80);
+    }
+    assertFalse(cf1.putAll(cf2));
+    assertFalse(cf1.put(1000));
+    for (int i = 0; i < 80; i++) {
+      assertTrue(cf1.mightContain(i));
+    }
+  }
+
+  public void testPutAllIncompatible() {
+    CuckooFilter<Integer> cf = CuckooFilter.create(Funnels.integerFunnel(), 100);
+    for (CuckooFilter<Integer> other :
+        new CuckooFilter[] {
+          cf,
+          CuckooFilter.create(Funnels.integerFunnel(), 1000),
+          CuckooFilter.create(Funnels.integerFunnel(), 100, 0.001),
+        }) {
+      assertFalse(cf.isCompatible(other));
+      try {
+        cf.putAll(other);
+        fail();
+      } catch (IllegalArgumentException expected) {
+      }
+    }
+  }
+
+  public void testEquals() {
+    CuckooFilter<String> a = CuckooFilter.create(Funnels.unencodedCharsFunnel(), 100);
+    a.put("1");
+    CuckooFilter<String> b = CuckooFilter.create(Funnels.unencodedCharsFunnel(), 100);
+    b.put("2");
+    new EqualsTester()
+        .addEqualityGroup(a, a.copy())
+        .addEqualityGroup(b)
+        .addEqualityGroup(CuckooFilter.create(Funnels.unencodedCharsFunnel(), 100))
+        .addEqualityGroup(CuckooFilter.create(Funnels.unencodedCharsFunnel(), 200))
+        .addEqualityGroup(CuckooFilter.create(Funnels.unencodedCharsFunnel(), 100, 0.001))
+        .testEquals();
+  }
+
+  public void testEquals_concurrentBothWays() throws Exception {
+    final CuckooFilter<Integer> a = CuckooFilter.create(Funnels.integerFunnel(), 1000);
+    final CuckooFilter<Integer> b = CuckooFilter.create(Funnels.integerFunnel(), 1000);
+    for (int i = 0; i < 500; i++) {
+      a.put(i);
+      b.put(i);
+    }
+
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      List<Future<?>> futures = Lists.newArrayList();
+      for (final CuckooFilter<Integer> first : ImmutableList.of(a, b)) {
+        final CuckooFilter<Integer> second = (first == a) ? b : a;
+        futures.add(
+            executor.submit(
+                new Callable<Void>() {
+                  @Override
+                  public Void call() throws InterruptedException {
+                    start.await();
+                    for (int i = 0; i < 10000; i++) {
+                      assertTrue(first.equals(second));
+                    }
+                    return null;
+                  }
+                }));
+      }
+      start.countDown();
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  public void testJavaSerialization() {
+    CuckooFilter<byte[]> cf = CuckooFilter.create(Funnels.byteArrayFunnel(), 100);
+    for (int i = 0; i < 10; i++) {
+      cf.put(Ints.toByteArray(i));
+    }
+
+    CuckooFilter<byte[]> copy = SerializableTester.reserialize(cf);
+    for (int i = 0; i < 10; i++) {
+      assertTrue(copy.mightContain(Ints.toByteArray(i)));
+    }
+    assertEquals(cf.expectedFpp(), copy.expectedFpp());
+    SerializableTester.reserializeAndAssert(cf);
+  }
+
+  public void testCustomSerialization() throws Exception {
+    Funnel<byte[]> funnel = Funnels.byteArrayFunnel();
+    CuckooFilter<byte[]> cf = CuckooFilter.create(funnel, 100);
+    for (int i = 0; i < 100; i++) {
+      cf.put(Ints.toByteArray(i));
+    }
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    cf.writeTo(out);
+
+    CuckooFilter<byte[]> copy =
+        CuckooFilter.readFrom(new ByteArrayInputStream(out.toByteArray()), funnel);
+    assertEquals(cf, copy);
+    assertEquals(100, copy.approximateElementCount());
+  }
+
+  public void testCustomSerialization_full() throws Exception {
+    CuckooFilter<Integer> cf = CuckooFilter.create(Funnels.integerFunnel(), 100);
+    for (int i = 0; cf.put(i); i++) {}
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    cf.writeTo(out);
+
+    CuckooFilter<Integer> copy =
+        CuckooFilter.readFrom(new ByteArrayInputStream(out.toByteArray()), Funnels.integerFunnel());
+    assertEquals(cf, copy);
+    assertEquals(cf.approximateElementCount(), copy.approximateElementCount());
+    assertFalse(copy.put(-1));
+  }
+
+  public void testCustomSerialization_corrupt() {
+    try {
+      CuckooFilter.readFrom(
+          new ByteArrayInputStream(new byte[] {0, 0, 0}), Funnels.integerFunnel());
+      fail();
+    } catch (IOException expected) {
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      CuckooFilter.create(Funnels.integerFunnel(), 100).writeTo(out);
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+    byte[] bytes = out.toByteArray();
+    bytes[0] = 65; // 65-bit fingerprints
+    try {
+      CuckooFilter.readFrom(new ByteArrayInputStream(bytes), Funnels.integerFunnel());
+      fail();
+    } catch (IOException expected) {
+    }
+  }
+
+  public void testPreconditions() {
+    try {
+      CuckooFilter.create(Funnels.unencodedCharsFunnel(), -1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      CuckooFilter.create(Funnels.unencodedCharsFunnel(), 1, 0.0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      CuckooFilter.create(Funnels.unencodedCharsFunnel(), 1, 1.0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      CuckooFilter.create(Funnels.unencodedCharsFunnel(), Long.MAX_VALUE, 0.01);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testNullPointers() {
+    NullPointerTester tester = new NullPointerTester();
+    tester.testAllPublicInstanceMethods(CuckooFilter.create(Funnels.unencodedCharsFunnel(), 100));
+    tester.testAllPublicStaticMethods(CuckooFilter.class);
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.hash;
+
+import com.google.common.testing.NullPointerTester;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+/**
+ * Tests for {@link MappedBloomFilter}.
+ */
+public class MappedBloomFilterTest extends TestCase {
+  private File file;
+
+  @Override
+  protected void setUp() throws IOException {
+    file = File.createTempFile("MappedBloomFilterTest", ".bloom");
+  }
+
+  @Override
+  protected void tearDown() {
+    file.delete();
+  }
+
+  private void write(BloomFilter<?> filter) throws IOException {
+    OutputStream out = new FileOutputStream(file);
+    try {
+      filter.writeTo(out);
+    } finally {
+      out.close();
+    }
+  }
+
+  public void testMatchesBloomFilter() throws IOException {
+    for (BloomFilterStrategies strategy : BloomFilterStrategies.values()) {
+      BloomFilter<Integer> filter =
+          BloomFilter.create(Funnels.integerFunnel(), 10000, 0.01, strategy);
+      for (int i = 0; i < 10000; i++) {
+        filter.put(i);
+      }
+      write(filter);
+
+      // Also map the file with small buffers, to cross many buffer boundaries.
+      for (int longsPerBuffer : new int[] {1, 16, 1 << 27}) {
+        MappedBloomFilter<Integer> mapped =
+            MappedBloomFilter.open(file, Funnels.integerFunnel(), longsPerBuffer);
+        assertEquals(filter.bitSize(), mapped.bitSize());
+        assertEquals(filter.expectedFpp(), mapped.expectedFpp());
+        for (int i = 0; i < 100000; i++) {
+          assertEquals(filter.mightContain(i), mapped.mightContain(i));
+        }
+      }
+    }
+  }
+
+  public void testDefaultBuffers() throws IOException {
+    BloomFilter<CharSequence> filter = BloomFilter.create(Funnels.unencodedCharsFunnel(), 100);
+    filter.put("a");
+    write(filter);
+    MappedBloomFilter<CharSequence> mapped =
+        MappedBloomFilter.open(file, Funnels.unencodedCharsFunnel());
+    assertTrue(mapped.mightContain("a"));
+    assertFalse(mapped.mightContain("b"));
+  }
+
+  public void testEmptyFile() {
+    assertOpenFails();
+  }
+
+  public void testTruncatedFile() throws IOException {
+    write(BloomFilter.create(Funnels.integerFunnel(), 1000));
+    truncate(file.length() - 1);
+    assertOpenFails();
+    truncate(3);
+    assertOpenFails();
+  }
+
+  public void testTrailingData() throws IOException {
+    write(BloomFilter.create(Funnels.integerFunnel(), 1000));
+    truncate(file.length() + 8);
+    assertOpenFails();
+  }
+
+  public void testBadStrategy() throws IOException {
+    write(BloomFilter.create(Funnels.integerFunnel(), 1000));
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.writeByte(BloomFilterStrategies.values().length);
+    } finally {
+      raf.close();
+    }
+    assertOpenFails();
+  }
+
+  private void truncate(long length) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.setLength(length);
+    } finally {
+      raf.close();
+    }
+  }
+
+  private void assertOpenFails() {
+    try {
+      MappedBloomFilter.open(file, Funnels.integerFunnel());
+      fail();
+    } catch (IOException expected) {
+    }
+  }
+
+  public void testNullPointers() throws IOException {
+    NullPointerTester tester = new NullPointerTester();
+    tester.setDefault(File.class, file);
+    write(BloomFilter.create(Funnels.unencodedCharsFunnel(), 100));
+    tester.testAllPublicInstanceMethods(
+        MappedBloomFilter.open(file, Funnels.unencodedCharsFunnel()));
+    tester.testAllPublicStaticMethods(MappedBloomFilter.class);
+  }
+}
@@ -16,7 +16,7 @@
 
 package com.google.common.hash;
 
-import com.google.common.hash.BloomFilterStrategies.BitArray;
+import com.google.common.hash.BloomFilterStrategies.LockFreeBitArray;
 import com.google.common.testing.AbstractPackageSanityTests;
 
 /**
@@ -27,7 +27,7 @@ import com.google.common.testing.AbstractPackageSanityTests;
 
 public class PackageSanityTests extends AbstractPackageSanityTests {
   public PackageSanityTests() {
-    setDefault(BitArray.class, new BitArray(1));
+    setDefault(LockFreeBitArray.class, new LockFreeBitArray(1));
     setDefault(HashCode.class, HashCode.fromInt(1));
     setDefault(String.class, "MD5");
     setDefault(int.class, 32);
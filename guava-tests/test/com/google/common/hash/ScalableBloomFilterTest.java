@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.hash;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.testing.NullPointerTester;
+import com.google.common.testing.SerializableTester;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link ScalableBloomFilter}.
+ */
+public class ScalableBloomFilterTest extends TestCase {
+
+  public void testGrowsAndKeepsFpp() {
+    double fpp = 0.01;
+    ScalableBloomFilter<Integer> filter =
+        ScalableBloomFilter.create(Funnels.integerFunnel(), 1000, fpp);
+    assertEquals(1, filter.filterCount());
+    int numInsertions = 100000;
+    int newElements = 0;
+    for (int i = 0; i < numInsertions; i++) {
+      if (filter.put(i)) {
+        newElements++;
+      }
+    }
+    // 1000 + 2000 + ... + 64000 < 100000 < 1000 + 2000 + ... + 128000
+    assertEquals(7, filter.filterCount());
+    assertEquals(newElements, filter.approximateElementCount());
+    assertThat(newElements).isAtLeast(numInsertions - numInsertions / 100);
+    for (int i = 0; i < numInsertions; i++) {
+      assertTrue(filter.mightContain(i));
+    }
+    assertThat(filter.expectedFpp()).isAtMost(fpp);
+
+    int falsePositives = 0;
+    int numQueries = 200000;
+    for (int i = numInsertions; i < numInsertions + numQueries; i++) {
+      if (filter.mightContain(i)) {
+        falsePositives++;
+      }
+    }
+    assertThat((double) falsePositives / numQueries).isAtMost(fpp * 1.2);
+  }
+
+  public void testPutReturnValue() {
+    ScalableBloomFilter<String> filter =
+        ScalableBloomFilter.create(Funnels.unencodedCharsFunnel(), 10);
+    assertTrue(filter.put("a"));
+    assertFalse(filter.put("a"));
+    assertEquals(1, filter.approximateElementCount());
+  }
+
+  public void testSerialization() {
+    ScalableBloomFilter<Integer> filter = ScalableBloomFilter.create(Funnels.integerFunnel(), 10);
+    for (int i = 0; i < 100; i++) {
+      filter.put(i);
+    }
+    ScalableBloomFilter<Integer> copy = SerializableTester.reserializeAndAssert(filter);
+    assertEquals(filter.filterCount(), copy.filterCount());
+    assertEquals(filter.approximateElementCount(), copy.approximateElementCount());
+    assertEquals(filter.expectedFpp(), copy.expectedFpp());
+
+    // The copy keeps growing where the original left off.
+    for (int i = 100; i < 1000; i++) {
+      filter.put(i);
+      copy.put(i);
+    }
+    assertEquals(filter, copy);
+  }
+
+  public void testPreconditions() {
+    try {
+      ScalableBloomFilter.create(Funnels.unencodedCharsFunnel(), 0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      ScalableBloomFilter.create(Funnels.unencodedCharsFunnel(), 1, 0.0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      ScalableBloomFilter.create(Funnels.unencodedCharsFunnel(), 1, 1.0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testNullPointers() {
+    NullPointerTester tester = new NullPointerTester();
+    tester.testAllPublicInstanceMethods(
+        ScalableBloomFilter.create(Funnels.unencodedCharsFunnel(), 100));
+    tester.testAllPublicStaticMethods(ScalableBloomFilter.class);
+  }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.primitives;
+
+import static com.google.common.testing.SerializableTester.reserialize;
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.annotations.GwtCompatible;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.testing.ListTestSuiteBuilder;
+import com.google.common.collect.testing.features.CollectionFeature;
+import com.google.common.collect.testing.features.CollectionSize;
+import com.google.common.primitives.DoubleArrayAsListTest.TestDoubleListGenerator;
+import com.google.common.testing.EqualsTester;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for {@link ImmutableDoubleArray}.
+ */
+@GwtCompatible(emulated = true)
+public class ImmutableDoubleArrayTest extends TestCase {
+
+  @GwtIncompatible // suite
+  public static Test suite() {
+    List<ListTestSuiteBuilder<Double>> builders =
+        ImmutableList.of(
+            ListTestSuiteBuilder.using(new ImmutableDoubleArrayAsListGenerator())
+                .named("ImmutableDoubleArray.asList"),
+            ListTestSuiteBuilder.using(new ImmutableDoubleArrayMiddleSubArrayAsListGenerator())
+                .named("ImmutableDoubleArray.asList, middle subArray"));
+
+    TestSuite suite = new TestSuite();
+    for (ListTestSuiteBuilder<Double> builder : builders) {
+      suite.addTest(
+          builder
+              .withFeatures(
+                  CollectionSize.ANY,
+                  CollectionFeature.SERIALIZABLE,
+                  CollectionFeature.RESTRICTS_ELEMENTS,
+                  CollectionFeature.ALLOWS_NULL_QUERIES)
+              .createTestSuite());
+    }
+    suite.addTestSuite(ImmutableDoubleArrayTest.class);
+    return suite;
+  }
+
+  public void testOf() {
+    assertThat(ImmutableDoubleArray.of().asList()).isEmpty();
+    assertThat(ImmutableDoubleArray.of(0.0).asList()).containsExactly(0.0).inOrder();
+    assertThat(ImmutableDoubleArray.of(0.0, 1.0).asList()).containsExactly(0.0, 1.0).inOrder();
+    assertThat(ImmutableDoubleArray.of(0.0, 1.0, 2.0).asList())
+        .containsExactly(0.0, 1.0, 2.0)
+        .inOrder();
+    assertThat(ImmutableDoubleArray.of(0.0, 1.0, 2.0, 3.0).asList())
+        .containsExactly(0.0, 1.0, 2.0, 3.0)
+        .inOrder();
+    assertSame(ImmutableDoubleArray.of(), ImmutableDoubleArray.of());
+  }
+
+  public void testCopyOf() {
+    double[] array = {0.0, 1.0, 2.0};
+    ImmutableDoubleArray ida = ImmutableDoubleArray.copyOf(array);
+    array[0] = 3.0;
+    assertThat(ida.asList()).containsExactly(0.0, 1.0, 2.0).inOrder();
+
+    assertSame(ImmutableDoubleArray.of(), ImmutableDoubleArray.copyOf(new double[0]));
+    assertThat(ImmutableDoubleArray.copyOf(Arrays.asList(1.0, 0.0)).asList())
+        .containsExactly(1.0, 0.0)
+        .inOrder();
+    Iterable<Double> iterable = Iterables.unmodifiableIterable(Arrays.asList(2.0, 3.0));
+    assertThat(ImmutableDoubleArray.copyOf(iterable).asList()).containsExactly(2.0, 3.0).inOrder();
+  }
+
+  public void testBuilder_growsAndBuildsWithoutCopying() {
+    Random random = new Random(42);
+    double[] expected = new double[1000];
+    ImmutableDoubleArray.Builder builder = ImmutableDoubleArray.builder(0);
+    for (int i = 0; i < expected.length; i++) {
+      expected[i] = random.nextDouble();
+      builder.add(expected[i]);
+      assertEquals(i + 1, builder.length());
+    }
+    ImmutableDoubleArray built = builder.build();
+    assertTrue(Arrays.equals(expected, built.toArray()));
+    assertEquals(expected.length, built.trimmed().length());
+  }
+
+  public void testBuilder_addAll() {
+    ImmutableDoubleArray built =
+        ImmutableDoubleArray.builder()
+            .add(0.0)
+            .addAll(new double[] {1.0, 2.0})
+            .addAll(Arrays.asList(3.0))
+            .addAll(Iterables.unmodifiableIterable(Arrays.asList(0.0)))
+            .addAll(ImmutableDoubleArray.of(3.0, 2.0, 1.0).subArray(1, 3))
+            .build();
+    assertThat(built.asList()).containsExactly(0.0, 1.0, 2.0, 3.0, 0.0, 2.0, 1.0).inOrder();
+  }
+
+  public void testBuilder_reuseAfterBuild() {
+    ImmutableDoubleArray.Builder builder = ImmutableDoubleArray.builder().add(0.0);
+    ImmutableDoubleArray first = builder.build();
+    builder.add(1.0);
+    assertThat(first.asList()).containsExactly(0.0).inOrder();
+    assertThat(builder.build().asList()).containsExactly(0.0, 1.0).inOrder();
+  }
+
+  public void testBuilder_sort() {
+    ImmutableDoubleArray built =
+        ImmutableDoubleArray.builder().add(3.0).add(1.0).add(2.0).sort().add(0.0).build();
+    assertThat(built.asList()).containsExactly(1.0, 2.0, 3.0, 0.0).inOrder();
+  }
+
+  public void testBuilder_sortAfterBuild() {
+    ImmutableDoubleArray.Builder builder =
+        ImmutableDoubleArray.builder().add(3.0).add(1.0).add(2.0);
+    ImmutableDoubleArray first = builder.build();
+    builder.sort();
+    assertThat(first.asList()).containsExactly(3.0, 1.0, 2.0).inOrder();
+    assertThat(builder.build().asList()).containsExactly(1.0, 2.0, 3.0).inOrder();
+  }
+
+  public void testBuilder_negativeCapacity() {
+    try {
+      ImmutableDoubleArray.builder(-1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testGet() {
+    ImmutableDoubleArray ida = ImmutableDoubleArray.of(0.0, 1.0, 2.0).subArray(1, 3);
+    assertEquals(1.0, ida.get(0), 0.0);
+    assertEquals(2.0, ida.get(1), 0.0);
+    try {
+      ida.get(2);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+    try {
+      ida.get(-1);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+  }
+
+  public void testIndexOf() {
+    ImmutableDoubleArray ida = ImmutableDoubleArray.of(3.0, 0.0, 1.0, 0.0, 2.0).subArray(1, 4);
+    assertEquals(0, ida.indexOf(0.0));
+    assertEquals(2, ida.lastIndexOf(0.0));
+    assertEquals(1, ida.indexOf(1.0));
+    assertEquals(-1, ida.indexOf(2.0));
+    assertEquals(-1, ida.lastIndexOf(3.0));
+    assertTrue(ida.contains(1.0));
+    assertFalse(ida.contains(2.0));
+  }
+
+  public void testBinarySearch() {
+    Random random = new Random(7);
+    for (int trial = 0; trial < 100; trial++) {
+      double[] values = new double[random.nextInt(20)];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = (double) random.nextInt(10);
+      }
+      Arrays.sort(values);
+      ImmutableDoubleArray ida = ImmutableDoubleArray.copyOf(values);
+      ImmutableDoubleArray padded =
+          ImmutableDoubleArray.builder()
+              .add(Double.NEGATIVE_INFINITY)
+              .addAll(values)
+              .add(Double.POSITIVE_INFINITY)
+              .build()
+              .subArray(1, values.length + 1);
+      for (double target = -1; target <= 10; target++) {
+        int expected = Arrays.binarySearch(values, target);
+        int actual = ida.binarySearch(target);
+        assertEquals(actual, padded.binarySearch(target));
+        if (expected >= 0) {
+          assertTrue(actual >= 0);
+          assertEquals(target, ida.get(actual), 0.0);
+        } else {
+          assertEquals(expected, actual);
+        }
+      }
+    }
+  }
+
+  public void testSorted() {
+    ImmutableDoubleArray sorted = ImmutableDoubleArray.of(0.0, 1.0, 1.0, 3.0);
+    assertSame(sorted, sorted.sorted());
+    ImmutableDoubleArray unsorted = ImmutableDoubleArray.of(2.0, 3.0, 0.0, 1.0, 2.0).subArray(1, 5);
+    assertThat(unsorted.sorted().asList()).containsExactly(0.0, 1.0, 2.0, 3.0).inOrder();
+    assertThat(unsorted.asList()).containsExactly(3.0, 0.0, 1.0, 2.0).inOrder();
+  }
+
+  public void testSubArray() {
+    ImmutableDoubleArray ida = ImmutableDoubleArray.of(0.0, 1.0, 2.0, 3.0);
+    assertThat(ida.subArray(1, 3).asList()).containsExactly(1.0, 2.0).inOrder();
+    assertThat(ida.subArray(1, 3).subArray(1, 2).asList()).containsExactly(2.0).inOrder();
+    assertSame(ImmutableDoubleArray.of(), ida.subArray(2, 2));
+    assertTrue(Arrays.equals(new double[] {1.0, 2.0}, ida.subArray(1, 3).toArray()));
+    try {
+      ida.subArray(3, 2);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+    try {
+      ida.subArray(0, 5);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+  }
+
+  public void testTrimmed() {
+    ImmutableDoubleArray ida = ImmutableDoubleArray.of(0.0, 1.0, 2.0);
+    assertSame(ida, ida.trimmed());
+    ImmutableDoubleArray trimmed = ida.subArray(1, 2).trimmed();
+    assertEquals(ida.subArray(1, 2), trimmed);
+    assertSame(trimmed, trimmed.trimmed());
+  }
+
+  public void testEquals() {
+    new EqualsTester()
+        .addEqualityGroup(
+            ImmutableDoubleArray.of(), ImmutableDoubleArray.of(1.0, 2.0).subArray(1, 1))
+        .addEqualityGroup(
+            ImmutableDoubleArray.of(1.0),
+            ImmutableDoubleArray.of(0.0, 1.0).subArray(1, 2),
+            ImmutableDoubleArray.builder().add(1.0).build())
+        .addEqualityGroup(ImmutableDoubleArray.of(1.0, 2.0))
+        .addEqualityGroup(ImmutableDoubleArray.of(2.0, 1.0))
+        .testEquals();
+  }
+
+  public void testAsListEquals() {
+    new EqualsTester()
+        .addEqualityGroup(
+            ImmutableDoubleArray.of(0.0, 1.0).asList(),
+            ImmutableDoubleArray.of(3.0, 0.0, 1.0).subArray(1, 3).asList(),
+            Arrays.asList(0.0, 1.0),
+            ImmutableList.of(0.0, 1.0))
+        .addEqualityGroup(ImmutableDoubleArray.of(1.0, 0.0).asList())
+        .testEquals();
+  }
+
+  public void testToString() {
+    assertEquals("[]", ImmutableDoubleArray.of().toString());
+    assertEquals("[]", ImmutableDoubleArray.of(0.0).subArray(1, 1).toString());
+    assertEquals("[0.0, 1.0, 2.0]", ImmutableDoubleArray.of(0.0, 1.0, 2.0).toString());
+    assertEquals(Arrays.toString(new double[] {1.0, 2.0}),
+        ImmutableDoubleArray.of(0.0, 1.0, 2.0, 3.0).subArray(1, 3).toString());
+  }
+
+  public void testNaNAndNegativeZero() {
+    ImmutableDoubleArray ida = ImmutableDoubleArray.of(Double.NaN, -0.0, 0.0);
+    assertEquals(0, ida.indexOf(Double.NaN));
+    assertEquals(1, ida.indexOf(-0.0));
+    assertEquals(2, ida.lastIndexOf(0.0));
+    assertEquals(ImmutableDoubleArray.of(Double.NaN), ImmutableDoubleArray.of(Double.NaN));
+    assertFalse(ImmutableDoubleArray.of(0.0).equals(ImmutableDoubleArray.of(-0.0)));
+
+    ImmutableDoubleArray sorted = ida.sorted();
+    assertThat(sorted.asList()).containsExactly(-0.0, 0.0, Double.NaN).inOrder();
+    assertEquals(2, sorted.binarySearch(Double.NaN));
+    assertEquals(0, sorted.binarySearch(-0.0));
+  }
+  @GwtIncompatible // SerializableTester
+  public void testSerialization() {
+    assertSame(ImmutableDoubleArray.of(), reserialize(ImmutableDoubleArray.of()));
+    assertSame(
+        ImmutableDoubleArray.of(), reserialize(ImmutableDoubleArray.of(0.0, 1.0).subArray(1, 1)));
+
+    ImmutableDoubleArray view = ImmutableDoubleArray.of(0.0, 1.0, 2.0, 3.0).subArray(1, 3);
+    ImmutableDoubleArray copy = reserialize(view);
+    assertEquals(view, copy);
+    assertThat(copy.asList()).containsExactly(1.0, 2.0).inOrder();
+  }
+
+  @GwtIncompatible // used only from suite
+  public static final class ImmutableDoubleArrayAsListGenerator extends TestDoubleListGenerator {
+    @Override
+    protected List<Double> create(Double[] elements) {
+      return makeArray(elements).asList();
+    }
+  }
+
+  @GwtIncompatible // used only from suite
+  public static final class ImmutableDoubleArrayMiddleSubArrayAsListGenerator
+      extends TestDoubleListGenerator {
+    @Override
+    protected List<Double> create(Double[] elements) {
+      Double[] all = new Double[elements.length + 4];
+      all[0] = Double.NEGATIVE_INFINITY;
+      all[1] = Double.POSITIVE_INFINITY;
+      System.arraycopy(elements, 0, all, 2, elements.length);
+      all[elements.length + 2] = 3.0;
+      all[elements.length + 3] = 0.0;
+      return makeArray(all).subArray(2, elements.length + 2).asList();
+    }
+  }
+
+  private static ImmutableDoubleArray makeArray(Double[] values) {
+    return ImmutableDoubleArray.copyOf(Arrays.asList(values));
+  }
+}
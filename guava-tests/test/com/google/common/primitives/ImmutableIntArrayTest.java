@@ -0,0 +1,310 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.primitives;
+
+import static com.google.common.testing.SerializableTester.reserialize;
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.annotations.GwtCompatible;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.testing.ListTestSuiteBuilder;
+import com.google.common.collect.testing.features.CollectionFeature;
+import com.google.common.collect.testing.features.CollectionSize;
+import com.google.common.primitives.IntArrayAsListTest.TestIntegerListGenerator;
+import com.google.common.testing.EqualsTester;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for {@link ImmutableIntArray}.
+ */
+@GwtCompatible(emulated = true)
+public class ImmutableIntArrayTest extends TestCase {
+
+  @GwtIncompatible // suite
+  public static Test suite() {
+    List<ListTestSuiteBuilder<Integer>> builders =
+        ImmutableList.of(
+            ListTestSuiteBuilder.using(new ImmutableIntArrayAsListGenerator())
+                .named("ImmutableIntArray.asList"),
+            ListTestSuiteBuilder.using(new ImmutableIntArrayMiddleSubArrayAsListGenerator())
+                .named("ImmutableIntArray.asList, middle subArray"));
+
+    TestSuite suite = new TestSuite();
+    for (ListTestSuiteBuilder<Integer> builder : builders) {
+      suite.addTest(
+          builder
+              .withFeatures(
+                  CollectionSize.ANY,
+                  CollectionFeature.SERIALIZABLE,
+                  CollectionFeature.RESTRICTS_ELEMENTS,
+                  CollectionFeature.ALLOWS_NULL_QUERIES)
+              .createTestSuite());
+    }
+    suite.addTestSuite(ImmutableIntArrayTest.class);
+    return suite;
+  }
+
+  public void testOf() {
+    assertThat(ImmutableIntArray.of().asList()).isEmpty();
+    assertThat(ImmutableIntArray.of(0).asList()).containsExactly(0).inOrder();
+    assertThat(ImmutableIntArray.of(0, 1).asList()).containsExactly(0, 1).inOrder();
+    assertThat(ImmutableIntArray.of(0, 1, 2).asList())
+        .containsExactly(0, 1, 2)
+        .inOrder();
+    assertThat(ImmutableIntArray.of(0, 1, 2, 3).asList())
+        .containsExactly(0, 1, 2, 3)
+        .inOrder();
+    assertSame(ImmutableIntArray.of(), ImmutableIntArray.of());
+  }
+
+  public void testCopyOf() {
+    int[] array = {0, 1, 2};
+    ImmutableIntArray iia = ImmutableIntArray.copyOf(array);
+    array[0] = 3;
+    assertThat(iia.asList()).containsExactly(0, 1, 2).inOrder();
+
+    assertSame(ImmutableIntArray.of(), ImmutableIntArray.copyOf(new int[0]));
+    assertThat(ImmutableIntArray.copyOf(Arrays.asList(1, 0)).asList())
+        .containsExactly(1, 0)
+        .inOrder();
+    Iterable<Integer> iterable = Iterables.unmodifiableIterable(Arrays.asList(2, 3));
+    assertThat(ImmutableIntArray.copyOf(iterable).asList()).containsExactly(2, 3).inOrder();
+  }
+
+  public void testBuilder_growsAndBuildsWithoutCopying() {
+    Random random = new Random(42);
+    int[] expected = new int[1000];
+    ImmutableIntArray.Builder builder = ImmutableIntArray.builder(0);
+    for (int i = 0; i < expected.length; i++) {
+      expected[i] = random.nextInt();
+      builder.add(expected[i]);
+      assertEquals(i + 1, builder.length());
+    }
+    ImmutableIntArray built = builder.build();
+    assertTrue(Arrays.equals(expected, built.toArray()));
+    assertEquals(expected.length, built.trimmed().length());
+  }
+
+  public void testBuilder_addAll() {
+    ImmutableIntArray built =
+        ImmutableIntArray.builder()
+            .add(0)
+            .addAll(new int[] {1, 2})
+            .addAll(Arrays.asList(3))
+            .addAll(Iterables.unmodifiableIterable(Arrays.asList(0)))
+            .addAll(ImmutableIntArray.of(3, 2, 1).subArray(1, 3))
+            .build();
+    assertThat(built.asList()).containsExactly(0, 1, 2, 3, 0, 2, 1).inOrder();
+  }
+
+  public void testBuilder_reuseAfterBuild() {
+    ImmutableIntArray.Builder builder = ImmutableIntArray.builder().add(0);
+    ImmutableIntArray first = builder.build();
+    builder.add(1);
+    assertThat(first.asList()).containsExactly(0).inOrder();
+    assertThat(builder.build().asList()).containsExactly(0, 1).inOrder();
+  }
+
+  public void testBuilder_sort() {
+    ImmutableIntArray built =
+        ImmutableIntArray.builder().add(3).add(1).add(2).sort().add(0).build();
+    assertThat(built.asList()).containsExactly(1, 2, 3, 0).inOrder();
+  }
+
+  public void testBuilder_sortAfterBuild() {
+    ImmutableIntArray.Builder builder = ImmutableIntArray.builder().add(3).add(1).add(2);
+    ImmutableIntArray first = builder.build();
+    builder.sort();
+    assertThat(first.asList()).containsExactly(3, 1, 2).inOrder();
+    assertThat(builder.build().asList()).containsExactly(1, 2, 3).inOrder();
+  }
+
+  public void testBuilder_negativeCapacity() {
+    try {
+      ImmutableIntArray.builder(-1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testGet() {
+    ImmutableIntArray iia = ImmutableIntArray.of(0, 1, 2).subArray(1, 3);
+    assertEquals(1, iia.get(0));
+    assertEquals(2, iia.get(1));
+    try {
+      iia.get(2);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+    try {
+      iia.get(-1);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+  }
+
+  public void testIndexOf() {
+    ImmutableIntArray iia = ImmutableIntArray.of(3, 0, 1, 0, 2).subArray(1, 4);
+    assertEquals(0, iia.indexOf(0));
+    assertEquals(2, iia.lastIndexOf(0));
+    assertEquals(1, iia.indexOf(1));
+    assertEquals(-1, iia.indexOf(2));
+    assertEquals(-1, iia.lastIndexOf(3));
+    assertTrue(iia.contains(1));
+    assertFalse(iia.contains(2));
+  }
+
+  public void testBinarySearch() {
+    Random random = new Random(7);
+    for (int trial = 0; trial < 100; trial++) {
+      int[] values = new int[random.nextInt(20)];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = (int) random.nextInt(10);
+      }
+      Arrays.sort(values);
+      ImmutableIntArray iia = ImmutableIntArray.copyOf(values);
+      ImmutableIntArray padded =
+          ImmutableIntArray.builder()
+              .add(Integer.MIN_VALUE)
+              .addAll(values)
+              .add(Integer.MAX_VALUE)
+              .build()
+              .subArray(1, values.length + 1);
+      for (int target = -1; target <= 10; target++) {
+        int expected = Arrays.binarySearch(values, target);
+        int actual = iia.binarySearch(target);
+        assertEquals(actual, padded.binarySearch(target));
+        if (expected >= 0) {
+          assertTrue(actual >= 0);
+          assertEquals(target, iia.get(actual));
+        } else {
+          assertEquals(expected, actual);
+        }
+      }
+    }
+  }
+
+  public void testSorted() {
+    ImmutableIntArray sorted = ImmutableIntArray.of(0, 1, 1, 3);
+    assertSame(sorted, sorted.sorted());
+    ImmutableIntArray unsorted = ImmutableIntArray.of(2, 3, 0, 1, 2).subArray(1, 5);
+    assertThat(unsorted.sorted().asList()).containsExactly(0, 1, 2, 3).inOrder();
+    assertThat(unsorted.asList()).containsExactly(3, 0, 1, 2).inOrder();
+  }
+
+  public void testSubArray() {
+    ImmutableIntArray iia = ImmutableIntArray.of(0, 1, 2, 3);
+    assertThat(iia.subArray(1, 3).asList()).containsExactly(1, 2).inOrder();
+    assertThat(iia.subArray(1, 3).subArray(1, 2).asList()).containsExactly(2).inOrder();
+    assertSame(ImmutableIntArray.of(), iia.subArray(2, 2));
+    assertTrue(Arrays.equals(new int[] {1, 2}, iia.subArray(1, 3).toArray()));
+    try {
+      iia.subArray(3, 2);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+    try {
+      iia.subArray(0, 5);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+  }
+
+  public void testTrimmed() {
+    ImmutableIntArray iia = ImmutableIntArray.of(0, 1, 2);
+    assertSame(iia, iia.trimmed());
+    ImmutableIntArray trimmed = iia.subArray(1, 2).trimmed();
+    assertEquals(iia.subArray(1, 2), trimmed);
+    assertSame(trimmed, trimmed.trimmed());
+  }
+
+  public void testEquals() {
+    new EqualsTester()
+        .addEqualityGroup(ImmutableIntArray.of(), ImmutableIntArray.of(1, 2).subArray(1, 1))
+        .addEqualityGroup(
+            ImmutableIntArray.of(1),
+            ImmutableIntArray.of(0, 1).subArray(1, 2),
+            ImmutableIntArray.builder().add(1).build())
+        .addEqualityGroup(ImmutableIntArray.of(1, 2))
+        .addEqualityGroup(ImmutableIntArray.of(2, 1))
+        .testEquals();
+  }
+
+  public void testAsListEquals() {
+    new EqualsTester()
+        .addEqualityGroup(
+            ImmutableIntArray.of(0, 1).asList(),
+            ImmutableIntArray.of(3, 0, 1).subArray(1, 3).asList(),
+            Arrays.asList(0, 1),
+            ImmutableList.of(0, 1))
+        .addEqualityGroup(ImmutableIntArray.of(1, 0).asList())
+        .testEquals();
+  }
+
+  public void testToString() {
+    assertEquals("[]", ImmutableIntArray.of().toString());
+    assertEquals("[]", ImmutableIntArray.of(0).subArray(1, 1).toString());
+    assertEquals("[0, 1, 2]", ImmutableIntArray.of(0, 1, 2).toString());
+    assertEquals(Arrays.toString(new int[] {1, 2}),
+        ImmutableIntArray.of(0, 1, 2, 3).subArray(1, 3).toString());
+  }
+  @GwtIncompatible // SerializableTester
+  public void testSerialization() {
+    assertSame(ImmutableIntArray.of(), reserialize(ImmutableIntArray.of()));
+    assertSame(
+        ImmutableIntArray.of(), reserialize(ImmutableIntArray.of(0, 1).subArray(1, 1)));
+
+    ImmutableIntArray view = ImmutableIntArray.of(0, 1, 2, 3).subArray(1, 3);
+    ImmutableIntArray copy = reserialize(view);
+    assertEquals(view, copy);
+    assertThat(copy.asList()).containsExactly(1, 2).inOrder();
+  }
+
+  @GwtIncompatible // used only from suite
+  public static final class ImmutableIntArrayAsListGenerator extends TestIntegerListGenerator {
+    @Override
+    protected List<Integer> create(Integer[] elements) {
+      return makeArray(elements).asList();
+    }
+  }
+
+  @GwtIncompatible // used only from suite
+  public static final class ImmutableIntArrayMiddleSubArrayAsListGenerator
+      extends TestIntegerListGenerator {
+    @Override
+    protected List<Integer> create(Integer[] elements) {
+      Integer[] all = new Integer[elements.length + 4];
+      all[0] = Integer.MIN_VALUE;
+      all[1] = Integer.MAX_VALUE;
+      System.arraycopy(elements, 0, all, 2, elements.length);
+      all[elements.length + 2] = 3;
+      all[elements.length + 3] = 0;
+      return makeArray(all).subArray(2, elements.length + 2).asList();
+    }
+  }
+
+  private static ImmutableIntArray makeArray(Integer[] values) {
+    return ImmutableIntArray.copyOf(Arrays.asList(values));
+  }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.primitives;
+
+import static com.google.common.testing.SerializableTester.reserialize;
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.annotations.GwtCompatible;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.testing.ListTestSuiteBuilder;
+import com.google.common.collect.testing.features.CollectionFeature;
+import com.google.common.collect.testing.features.CollectionSize;
+import com.google.common.primitives.LongArrayAsListTest.TestLongListGenerator;
+import com.google.common.testing.EqualsTester;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for {@link ImmutableLongArray}.
+ */
+@GwtCompatible(emulated = true)
+public class ImmutableLongArrayTest extends TestCase {
+
+  @GwtIncompatible // suite
+  public static Test suite() {
+    List<ListTestSuiteBuilder<Long>> builders =
+        ImmutableList.of(
+            ListTestSuiteBuilder.using(new ImmutableLongArrayAsListGenerator())
+                .named("ImmutableLongArray.asList"),
+            ListTestSuiteBuilder.using(new ImmutableLongArrayMiddleSubArrayAsListGenerator())
+                .named("ImmutableLongArray.asList, middle subArray"));
+
+    TestSuite suite = new TestSuite();
+    for (ListTestSuiteBuilder<Long> builder : builders) {
+      suite.addTest(
+          builder
+              .withFeatures(
+                  CollectionSize.ANY,
+                  CollectionFeature.SERIALIZABLE,
+                  CollectionFeature.RESTRICTS_ELEMENTS,
+                  CollectionFeature.ALLOWS_NULL_QUERIES)
+              .createTestSuite());
+    }
+    suite.addTestSuite(ImmutableLongArrayTest.class);
+    return suite;
+  }
+
+  public void testOf() {
+    assertThat(ImmutableLongArray.of().asList()).isEmpty();
+    assertThat(ImmutableLongArray.of(0L).asList()).containsExactly(0L).inOrder();
+    assertThat(ImmutableLongArray.of(0L, 1L).asList()).containsExactly(0L, 1L).inOrder();
+    assertThat(ImmutableLongArray.of(0L, 1L, 2L).asList())
+        .containsExactly(0L, 1L, 2L)
+        .inOrder();
+    assertThat(ImmutableLongArray.of(0L, 1L, 2L, 3L).asList())
+        .containsExactly(0L, 1L, 2L, 3L)
+        .inOrder();
+    assertSame(ImmutableLongArray.of(), ImmutableLongArray.of());
+  }
+
+  public void testCopyOf() {
+    long[] array = {0L, 1L, 2L};
+    ImmutableLongArray ila = ImmutableLongArray.copyOf(array);
+    array[0] = 3L;
+    assertThat(ila.asList()).containsExactly(0L, 1L, 2L).inOrder();
+
+    assertSame(ImmutableLongArray.of(), ImmutableLongArray.copyOf(new long[0]));
+    assertThat(ImmutableLongArray.copyOf(Arrays.asList(1L, 0L)).asList())
+        .containsExactly(1L, 0L)
+        .inOrder();
+    Iterable<Long> iterable = Iterables.unmodifiableIterable(Arrays.asList(2L, 3L));
+    assertThat(ImmutableLongArray.copyOf(iterable).asList()).containsExactly(2L, 3L).inOrder();
+  }
+
+  public void testBuilder_growsAndBuildsWithoutCopying() {
+    Random random = new Random(42);
+    long[] expected = new long[1000];
+    ImmutableLongArray.Builder builder = ImmutableLongArray.builder(0);
+    for (int i = 0; i < expected.length; i++) {
+      expected[i] = random.nextLong();
+      builder.add(expected[i]);
+      assertEquals(i + 1, builder.length());
+    }
+    ImmutableLongArray built = builder.build();
+    assertTrue(Arrays.equals(expected, built.toArray()));
+    assertEquals(expected.length, built.trimmed().length());
+  }
+
+  public void testBuilder_addAll() {
+    ImmutableLongArray built =
+        ImmutableLongArray.builder()
+            .add(0L)
+            .addAll(new long[] {1L, 2L})
+            .addAll(Arrays.asList(3L))
+            .addAll(Iterables.unmodifiableIterable(Arrays.asList(0L)))
+            .addAll(ImmutableLongArray.of(3L, 2L, 1L).subArray(1, 3))
+            .build();
+    assertThat(built.asList()).containsExactly(0L, 1L, 2L, 3L, 0L, 2L, 1L).inOrder();
+  }
+
+  public void testBuilder_reuseAfterBuild() {
+    ImmutableLongArray.Builder builder = ImmutableLongArray.builder().add(0L);
+    ImmutableLongArray first = builder.build();
+    builder.add(1L);
+    assertThat(first.asList()).containsExactly(0L).inOrder();
+    assertThat(builder.build().asList()).containsExactly(0L, 1L).inOrder();
+  }
+
+  public void testBuilder_sort() {
+    ImmutableLongArray built =
+        ImmutableLongArray.builder().add(3L).add(1L).add(2L).sort().add(0L).build();
+    assertThat(built.asList()).containsExactly(1L, 2L, 3L, 0L).inOrder();
+  }
+
+  public void testBuilder_sortAfterBuild() {
+    ImmutableLongArray.Builder builder = ImmutableLongArray.builder().add(3L).add(1L).add(2L);
+    ImmutableLongArray first = builder.build();
+    builder.sort();
+    assertThat(first.asList()).containsExactly(3L, 1L, 2L).inOrder();
+    assertThat(builder.build().asList()).containsExactly(1L, 2L, 3L).inOrder();
+  }
+
+  public void testBuilder_negativeCapacity() {
+    try {
+      ImmutableLongArray.builder(-1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testGet() {
+    ImmutableLongArray ila = ImmutableLongArray.of(0L, 1L, 2L).subArray(1, 3);
+    assertEquals(1L, ila.get(0));
+    assertEquals(2L, ila.get(1));
+    try {
+      ila.get(2);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+    try {
+      ila.get(-1);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+  }
+
+  public void testIndexOf() {
+    ImmutableLongArray ila = ImmutableLongArray.of(3L, 0L, 1L, 0L, 2L).subArray(1, 4);
+    assertEquals(0, ila.indexOf(0L));
+    assertEquals(2, ila.lastIndexOf(0L));
+    assertEquals(1, ila.indexOf(1L));
+    assertEquals(-1, ila.indexOf(2L));
+    assertEquals(-1, ila.lastIndexOf(3L));
+    assertTrue(ila.contains(1L));
+    assertFalse(ila.contains(2L));
+  }
+
+  public void testBinarySearch() {
+    Random random = new Random(7);
+    for (int trial = 0; trial < 100; trial++) {
+      long[] values = new long[random.nextInt(20)];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = (long) random.nextInt(10);
+      }
+      Arrays.sort(values);
+      ImmutableLongArray ila = ImmutableLongArray.copyOf(values);
+      ImmutableLongArray padded =
+          ImmutableLongArray.builder()
+              .add(Long.MIN_VALUE)
+              .addAll(values)
+              .add(Long.MAX_VALUE)
+              .build()
+              .subArray(1, values.length + 1);
+      for (long target = -1; target <= 10; target++) {
+        int expected = Arrays.binarySearch(values, target);
+        int actual = ila.binarySearch(target);
+        assertEquals(actual, padded.binarySearch(target));
+        if (expected >= 0) {
+          assertTrue(actual >= 0);
+          assertEquals(target, ila.get(actual));
+        } else {
+          assertEquals(expected, actual);
+        }
+      }
+    }
+  }
+
+  public void testSorted() {
+    ImmutableLongArray sorted = ImmutableLongArray.of(0L, 1L, 1L, 3L);
+    assertSame(sorted, sorted.sorted());
+    ImmutableLongArray unsorted = ImmutableLongArray.of(2L, 3L, 0L, 1L, 2L).subArray(1, 5);
+    assertThat(unsorted.sorted().asList()).containsExactly(0L, 1L, 2L, 3L).inOrder();
+    assertThat(unsorted.asList()).containsExactly(3L, 0L, 1L, 2L).inOrder();
+  }
+
+  public void testSubArray() {
+    ImmutableLongArray ila = ImmutableLongArray.of(0L, 1L, 2L, 3L);
+    assertThat(ila.subArray(1, 3).asList()).containsExactly(1L, 2L).inOrder();
+    assertThat(ila.subArray(1, 3).subArray(1, 2).asList()).containsExactly(2L).inOrder();
+    assertSame(ImmutableLongArray.of(), ila.subArray(2, 2));
+    assertTrue(Arrays.equals(new long[] {1L, 2L}, ila.subArray(1, 3).toArray()));
+    try {
+      ila.subArray(3, 2);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+    try {
+      ila.subArray(0, 5);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+  }
+
+  public void testTrimmed() {
+    ImmutableLongArray ila = ImmutableLongArray.of(0L, 1L, 2L);
+    assertSame(ila, ila.trimmed());
+    ImmutableLongArray trimmed = ila.subArray(1, 2).trimmed();
+    assertEquals(ila.subArray(1, 2), trimmed);
+    assertSame(trimmed, trimmed.trimmed());
+  }
+
+  public void testEquals() {
+    new EqualsTester()
+        .addEqualityGroup(ImmutableLongArray.of(), ImmutableLongArray.of(1L, 2L).subArray(1, 1))
+        .addEqualityGroup(
+            ImmutableLongArray.of(1L),
+            ImmutableLongArray.of(0L, 1L).subArray(1, 2),
+            ImmutableLongArray.builder().add(1L).build())
+        .addEqualityGroup(ImmutableLongArray.of(1L, 2L))
+        .addEqualityGroup(ImmutableLongArray.of(2L, 1L))
+        .testEquals();
+  }
+
+  public void testAsListEquals() {
+    new EqualsTester()
+        .addEqualityGroup(
+            ImmutableLongArray.of(0L, 1L).asList(),
+            ImmutableLongArray.of(3L, 0L, 1L).subArray(1, 3).asList(),
+            Arrays.asList(0L, 1L),
+            ImmutableList.of(0L, 1L))
+        .addEqualityGroup(ImmutableLongArray.of(1L, 0L).asList())
+        .testEquals();
+  }
+
+  public void testToString() {
+    assertEquals("[]", ImmutableLongArray.of().toString());
+    assertEquals("[]", ImmutableLongArray.of(0L).subArray(1, 1).toString());
+    assertEquals("[0, 1, 2]", ImmutableLongArray.of(0L, 1L, 2L).toString());
+    assertEquals(Arrays.toString(new long[] {1L, 2L}),
+        ImmutableLongArray.of(0L, 1L, 2L, 3L).subArray(1, 3).toString());
+  }
+  @GwtIncompatible // SerializableTester
+  public void testSerialization() {
+    assertSame(ImmutableLongArray.of(), reserialize(ImmutableLongArray.of()));
+    assertSame(
+        ImmutableLongArray.of(), reserialize(ImmutableLongArray.of(0L, 1L).subArray(1, 1)));
+
+    ImmutableLongArray view = ImmutableLongArray.of(0L, 1L, 2L, 3L).subArray(1, 3);
+    ImmutableLongArray copy = reserialize(view);
+    assertEquals(view, copy);
+    assertThat(copy.asList()).containsExactly(1L, 2L).inOrder();
+  }
+
+  @GwtIncompatible // used only from suite
+  public static final class ImmutableLongArrayAsListGenerator extends TestLongListGenerator {
+    @Override
+    protected List<Long> create(Long[] elements) {
+      return makeArray(elements).asList();
+    }
+  }
+
+  @GwtIncompatible // used only from suite
+  public static final class ImmutableLongArrayMiddleSubArrayAsListGenerator
+      extends TestLongListGenerator {
+    @Override
+    protected List<Long> create(Long[] elements) {
+      Long[] all = new Long[elements.length + 4];
+      all[0] = Long.MIN_VALUE;
+      all[1] = Long.MAX_VALUE;
+      System.arraycopy(elements, 0, all, 2, elements.length);
+      all[elements.length + 2] = 3L;
+      all[elements.length + 3] = 0L;
+      return makeArray(all).subArray(2, elements.length + 2).asList();
+    }
+  }
+
+  private static ImmutableLongArray makeArray(Long[] values) {
+    return ImmutableLongArray.copyOf(Arrays.asList(values));
+  }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.primitives;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.annotations.GwtCompatible;
+import com.google.common.collect.Maps;
+import com.google.common.testing.EqualsTester;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests for {@link IntIntMap}, {@link IntIntHashMap} and {@link ImmutableIntIntMap}.
+ */
+@GwtCompatible
+public class IntIntMapTest extends TestCase {
+
+  public void testHashMap_basic() {
+    IntIntHashMap map = IntIntHashMap.create();
+    assertTrue(map.isEmpty());
+    map.put(1, 10);
+    map.put(0, 0);
+    map.put(-1, -10);
+    map.put(1, 11);
+    assertEquals(3, map.size());
+    assertEquals(11, map.get(1, -99));
+    assertEquals(0, map.get(0, -99));
+    assertEquals(-10, map.get(-1, -99));
+    assertEquals(-99, map.get(2, -99));
+    assertTrue(map.containsKey(0));
+    assertFalse(map.containsKey(2));
+
+    assertTrue(map.remove(0));
+    assertFalse(map.remove(0));
+    assertEquals(-99, map.get(0, -99));
+    assertEquals(2, map.size());
+
+    map.clear();
+    assertTrue(map.isEmpty());
+    assertEquals(-99, map.get(1, -99));
+  }
+
+  public void testHashMap_addTo() {
+    IntIntHashMap counts = IntIntHashMap.create();
+    assertEquals(1, counts.addTo(7, 1));
+    assertEquals(3, counts.addTo(7, 2));
+    assertEquals(-5, counts.addTo(0, -5));
+    assertEquals(0, counts.addTo(0, 5));
+    assertEquals(2, counts.size());
+    assertEquals(3, counts.get(7, 0));
+    assertTrue(counts.containsKey(0));
+  }
+
+  public void testHashMap_negativeExpectedSize() {
+    try {
+      IntIntHashMap.create(-1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testHashMap_matchesHashMap() {
+    Random random = new Random(0);
+    IntIntHashMap map = IntIntHashMap.create(0);
+    Map<Integer, Integer> expected = Maps.newHashMap();
+    for (int i = 0; i < 20000; i++) {
+      int key = randomKey(random);
+      switch (random.nextInt(5)) {
+        case 0:
+          map.put(key, key);
+          expected.put(key, key);
+          break;
+        case 1:
+          int delta = random.nextInt(5);
+          Integer old = expected.get(key);
+          int sum = (old == null ? 0 : old) + delta;
+          expected.put(key, sum);
+          assertEquals(sum, map.addTo(key, delta));
+          break;
+        case 2:
+          assertEquals(expected.remove(key) != null, map.remove(key));
+          break;
+        default:
+          assertEquals(expected.containsKey(key), map.containsKey(key));
+          if (expected.containsKey(key)) {
+            assertEquals(expected.get(key).intValue(), map.get(key, -1));
+          }
+          break;
+      }
+      if (i % 1000 == 0) {
+        assertContents(expected, map);
+        assertContents(expected, ImmutableIntIntMap.copyOf(map));
+      }
+    }
+    assertContents(expected, map);
+  }
+
+  public void testHashMap_removeWithCollisions() {
+    IntIntHashMap map = IntIntHashMap.create();
+    Map<Integer, Integer> expected = Maps.newHashMap();
+    for (int i = 1; i <= 1000; i++) {
+      int key = i << 16;
+      map.put(key, i);
+      expected.put(key, i);
+    }
+    for (int i = 1; i <= 1000; i += 3) {
+      int key = i << 16;
+      assertTrue(map.remove(key));
+      expected.remove(key);
+    }
+    assertContents(expected, map);
+  }
+
+  public void testHashMap_cursorIsFailFast() {
+    IntIntHashMap map = IntIntHashMap.create();
+    map.put(1, 1);
+    map.put(2, 2);
+    IntIntMap.Cursor cursor = map.cursor();
+    assertTrue(cursor.advance());
+    map.remove(1);
+    try {
+      cursor.advance();
+      fail();
+    } catch (ConcurrentModificationException expected) {
+    }
+  }
+
+  public void testCursor_notOnEntry() {
+    IntIntHashMap map = IntIntHashMap.create();
+    map.put(1, 10);
+    for (IntIntMap m : Arrays.asList(map, ImmutableIntIntMap.copyOf(map))) {
+      IntIntMap.Cursor cursor = m.cursor();
+      try {
+        cursor.value();
+        fail();
+      } catch (IllegalStateException expected) {
+      }
+      assertTrue(cursor.advance());
+      assertEquals(1, cursor.key());
+      assertEquals(10, cursor.value());
+      assertFalse(cursor.advance());
+      try {
+        cursor.key();
+        fail();
+      } catch (IllegalStateException expected) {
+      }
+    }
+  }
+
+  public void testImmutable_of() {
+    assertTrue(ImmutableIntIntMap.of().isEmpty());
+    assertSame(ImmutableIntIntMap.of(), ImmutableIntIntMap.of());
+    assertEquals("{1=10}", ImmutableIntIntMap.of(1, 10).toString());
+    assertEquals("{2=20, 1=10}", ImmutableIntIntMap.of(2, 20, 1, 10).toString());
+    assertEquals("{3=30, 0=0, -1=-10}", ImmutableIntIntMap.of(3, 30, 0, 0, -1, -10).toString());
+  }
+
+  public void testImmutable_builderKeepsInsertionOrder() {
+    ImmutableIntIntMap.Builder builder = ImmutableIntIntMap.builder();
+    for (int i = 100; i > 0; i--) {
+      builder.put(i, -i);
+    }
+    ImmutableIntIntMap map = builder.build();
+    assertEquals(100, map.size());
+    int expectedKey = 100;
+    for (IntIntMap.Cursor cursor = map.cursor(); cursor.advance(); expectedKey--) {
+      assertEquals(expectedKey, cursor.key());
+      assertEquals(-expectedKey, cursor.value());
+    }
+    assertEquals(0, expectedKey);
+    assertEquals(-42, map.get(42, 0));
+    assertEquals(7, map.get(101, 7));
+    assertFalse(map.containsKey(0));
+  }
+
+  public void testImmutable_duplicateKeys() {
+    ImmutableIntIntMap.Builder builder =
+        new ImmutableIntIntMap.Builder().put(1, 10).put(2, 20).put(1, 11);
+    try {
+      builder.build();
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertThat(expected.getMessage()).contains("Multiple entries with same key: 1=10 and 1=11");
+    }
+  }
+
+  public void testImmutable_copyOf() {
+    ImmutableIntIntMap map = ImmutableIntIntMap.of(1, 10);
+    assertSame(map, ImmutableIntIntMap.copyOf(map));
+    IntIntHashMap mutable = IntIntHashMap.create(map);
+    mutable.put(2, 20);
+    assertEquals(1, map.size());
+    assertEquals(mutable, ImmutableIntIntMap.copyOf(mutable));
+  }
+
+  public void testEquals() {
+    IntIntHashMap mutable = IntIntHashMap.create();
+    mutable.put(2, 20);
+    mutable.put(1, 10);
+    IntIntHashMap zeroValued = IntIntHashMap.create();
+    zeroValued.put(1, 10);
+    zeroValued.put(3, 0);
+    new EqualsTester()
+        .addEqualityGroup(ImmutableIntIntMap.of(), IntIntHashMap.create())
+        .addEqualityGroup(
+            ImmutableIntIntMap.of(1, 10, 2, 20), ImmutableIntIntMap.of(2, 20, 1, 10), mutable)
+        .addEqualityGroup(ImmutableIntIntMap.of(1, 10, 2, 21))
+        .addEqualityGroup(ImmutableIntIntMap.of(1, 10, 3, 20))
+        .addEqualityGroup(ImmutableIntIntMap.of(1, 10, 3, 0), zeroValued)
+        .addEqualityGroup(ImmutableIntIntMap.of(1, 10, 4, 0))
+        .addEqualityGroup(ImmutableIntIntMap.of(1, 10))
+        .testEquals();
+  }
+
+  private static int randomKey(Random random) {
+    switch (random.nextInt(3)) {
+      case 0:
+        return random.nextInt(50) - 10;
+      case 1:
+        return (int) random.nextInt(200) << 24;
+      default:
+        return random.nextInt();
+    }
+  }
+
+  private static void assertContents(Map<Integer, Integer> expected, IntIntMap actual) {
+    assertEquals(expected.size(), actual.size());
+    assertEquals(expected.isEmpty(), actual.isEmpty());
+    Map<Integer, Integer> entries = Maps.newHashMap();
+    for (IntIntMap.Cursor cursor = actual.cursor(); cursor.advance(); ) {
+      assertNull(entries.put(cursor.key(), cursor.value()));
+    }
+    assertEquals(expected, entries);
+    for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+      assertTrue(actual.containsKey(entry.getKey()));
+      assertEquals(entry.getValue().intValue(), actual.get(entry.getKey(), 0));
+    }
+    assertEquals(expected.hashCode(), actual.hashCode());
+    assertEquals(expected.toString().length(), actual.toString().length());
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.primitives;
+
+import com.google.common.annotations.GwtCompatible;
+import com.google.common.collect.Sets;
+import com.google.common.testing.EqualsTester;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Tests for {@link IntSet}, {@link IntHashSet} and {@link ImmutableIntSet}.
+ */
+@GwtCompatible
+public class IntSetTest extends TestCase {
+
+  public void testHashSet_basic() {
+    IntHashSet set = IntHashSet.create();
+    assertTrue(set.isEmpty());
+    assertTrue(set.add(1));
+    assertTrue(set.add(0));
+    assertTrue(set.add(-1));
+    assertFalse(set.add(1));
+    assertFalse(set.add(0));
+    assertEquals(3, set.size());
+    assertTrue(set.contains(0));
+    assertFalse(set.contains(2));
+
+    assertTrue(set.remove(0));
+    assertFalse(set.remove(0));
+    assertFalse(set.contains(0));
+    assertEquals(2, set.size());
+
+    set.clear();
+    assertTrue(set.isEmpty());
+    assertFalse(set.contains(1));
+  }
+
+  public void testHashSet_copy() {
+    IntHashSet set = IntHashSet.create(ImmutableIntSet.of(3, 1, 3, 0));
+    assertEquals(3, set.size());
+    int[] array = set.toArray();
+    Arrays.sort(array);
+    assertTrue(Arrays.equals(new int[] {0, 1, 3}, array));
+  }
+
+  public void testHashSet_matchesHashSet() {
+    Random random = new Random(0);
+    IntHashSet set = IntHashSet.create(0);
+    Set<Integer> expected = Sets.newHashSet();
+    for (int i = 0; i < 20000; i++) {
+      int element = randomElement(random);
+      switch (random.nextInt(3)) {
+        case 0:
+          assertEquals(expected.add(element), set.add(element));
+          break;
+        case 1:
+          assertEquals(expected.remove(element), set.remove(element));
+          break;
+        default:
+          assertEquals(expected.contains(element), set.contains(element));
+          break;
+      }
+      if (i % 1000 == 0) {
+        assertContents(expected, set);
+        assertContents(expected, ImmutableIntSet.copyOf(set));
+      }
+    }
+    assertContents(expected, set);
+  }
+
+  public void testHashSet_removeWithCollisions() {
+    IntHashSet set = IntHashSet.create();
+    Set<Integer> expected = Sets.newHashSet();
+    for (int i = 1; i <= 1000; i++) {
+      set.add(i << 16);
+      expected.add(i << 16);
+    }
+    for (int i = 1; i <= 1000; i += 3) {
+      assertTrue(set.remove(i << 16));
+      expected.remove(i << 16);
+    }
+    assertContents(expected, set);
+  }
+
+  public void testHashSet_addAll() {
+    IntHashSet set = IntHashSet.create(ImmutableIntSet.of(1, 2));
+    assertTrue(set.addAll(ImmutableIntSet.of(2, 3)));
+    assertFalse(set.addAll(ImmutableIntSet.of(1, 3)));
+    assertEquals(ImmutableIntSet.of(1, 2, 3), set);
+  }
+
+  public void testHashSet_cursorIsFailFast() {
+    IntHashSet set = IntHashSet.create(ImmutableIntSet.of(1, 2));
+    IntSet.Cursor cursor = set.cursor();
+    assertTrue(cursor.advance());
+    set.add(3);
+    try {
+      cursor.element();
+      fail();
+    } catch (ConcurrentModificationException expected) {
+    }
+  }
+
+  public void testCursor_notOnElement() {
+    ImmutableIntSet immutable = ImmutableIntSet.of(5);
+    for (IntSet set : Arrays.asList(IntHashSet.create(immutable), immutable)) {
+      IntSet.Cursor cursor = set.cursor();
+      try {
+        cursor.element();
+        fail();
+      } catch (IllegalStateException expected) {
+      }
+      assertTrue(cursor.advance());
+      assertEquals(5, cursor.element());
+      assertFalse(cursor.advance());
+      try {
+        cursor.element();
+        fail();
+      } catch (IllegalStateException expected) {
+      }
+    }
+  }
+
+  public void testImmutable_of() {
+    assertTrue(ImmutableIntSet.of().isEmpty());
+    assertSame(ImmutableIntSet.of(), ImmutableIntSet.of());
+    assertSame(ImmutableIntSet.of(), ImmutableIntSet.copyOf(new int[0]));
+    assertEquals("[3, 0, -1]", ImmutableIntSet.of(3, 0, 3, -1, 0).toString());
+    assertEquals(3, ImmutableIntSet.of(3, 0, 3, -1, 0).size());
+  }
+
+  public void testImmutable_builderKeepsFirstOccurrenceOrder() {
+    ImmutableIntSet.Builder builder = ImmutableIntSet.builder();
+    for (int i = 100; i > 0; i--) {
+      builder.add(i).add(100);
+    }
+    ImmutableIntSet set = builder.build();
+    assertEquals(100, set.size());
+    int[] array = set.toArray();
+    for (int i = 0; i < 100; i++) {
+      assertEquals(100 - i, array[i]);
+    }
+    assertTrue(set.contains(42));
+    assertFalse(set.contains(0));
+    assertFalse(set.contains(101));
+  }
+
+  public void testImmutable_copyOf() {
+    ImmutableIntSet set = ImmutableIntSet.of(1, 2);
+    assertSame(set, ImmutableIntSet.copyOf(set));
+    IntHashSet mutable = IntHashSet.create(ImmutableIntSet.of(1, 2, 3));
+    assertEquals(mutable, ImmutableIntSet.copyOf(mutable));
+    int[] array = {4, 5};
+    ImmutableIntSet copy = ImmutableIntSet.copyOf(array);
+    array[0] = 6;
+    assertTrue(copy.contains(4));
+    assertFalse(copy.contains(6));
+  }
+
+  public void testEquals() {
+    new EqualsTester()
+        .addEqualityGroup(ImmutableIntSet.of(), IntHashSet.create())
+        .addEqualityGroup(
+            ImmutableIntSet.of(1, 2),
+            ImmutableIntSet.of(2, 1),
+            IntHashSet.create(ImmutableIntSet.of(2, 1)))
+        .addEqualityGroup(ImmutableIntSet.of(1, 3))
+        .addEqualityGroup(ImmutableIntSet.of(0, 1))
+        .addEqualityGroup(ImmutableIntSet.of(1))
+        .testEquals();
+  }
+
+  private static int randomElement(Random random) {
+    switch (random.nextInt(3)) {
+      case 0:
+        return random.nextInt(50) - 10;
+      case 1:
+        return (int) random.nextInt(200) << 24;
+      default:
+        return random.nextInt();
+    }
+  }
+
+  private static void assertContents(Set<Integer> expected, IntSet actual) {
+    assertEquals(expected.size(), actual.size());
+    assertEquals(expected.isEmpty(), actual.isEmpty());
+    Set<Integer> elements = Sets.newHashSet();
+    for (IntSet.Cursor cursor = actual.cursor(); cursor.advance(); ) {
+      assertTrue(elements.add(cursor.element()));
+    }
+    assertEquals(expected, elements);
+    for (Integer element : expected) {
+      assertTrue(actual.contains(element));
+    }
+    assertEquals(expected.hashCode(), actual.hashCode());
+    assertEquals(actual.size(), actual.toArray().length);
+  }
+}
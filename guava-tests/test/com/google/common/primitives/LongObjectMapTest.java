@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.primitives;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.annotations.GwtCompatible;
+import com.google.common.collect.Maps;
+import com.google.common.testing.EqualsTester;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests for {@link LongObjectMap}, {@link LongObjectHashMap} and {@link ImmutableLongObjectMap}.
+ */
+@GwtCompatible
+public class LongObjectMapTest extends TestCase {
+
+  public void testHashMap_basic() {
+    LongObjectHashMap<String> map = LongObjectHashMap.create();
+    assertTrue(map.isEmpty());
+    assertNull(map.put(1, "one"));
+    assertNull(map.put(0, "zero"));
+    assertNull(map.put(-1, "minus one"));
+    assertEquals("one", map.put(1, "uno"));
+    assertEquals(3, map.size());
+    assertEquals("uno", map.get(1));
+    assertEquals("zero", map.get(0));
+    assertEquals("minus one", map.get(-1));
+    assertNull(map.get(2));
+    assertEquals("default", map.getOrDefault(2, "default"));
+    assertTrue(map.containsKey(0));
+    assertFalse(map.containsKey(2));
+
+    assertEquals("zero", map.remove(0));
+    assertNull(map.remove(0));
+    assertFalse(map.containsKey(0));
+    assertEquals(2, map.size());
+
+    map.clear();
+    assertTrue(map.isEmpty());
+    assertNull(map.get(1));
+  }
+
+  public void testHashMap_nullValue() {
+    LongObjectHashMap<String> map = LongObjectHashMap.create();
+    try {
+      map.put(1, null);
+      fail();
+    } catch (NullPointerException expected) {
+    }
+  }
+
+  public void testHashMap_negativeExpectedSize() {
+    try {
+      LongObjectHashMap.create(-1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testHashMap_matchesHashMap() {
+    Random random = new Random(0);
+    LongObjectHashMap<Long> map = LongObjectHashMap.create(0);
+    Map<Long, Long> expected = Maps.newHashMap();
+    for (int i = 0; i < 20000; i++) {
+      long key = randomKey(random);
+      switch (random.nextInt(4)) {
+        case 0:
+        case 1:
+          assertEquals(expected.put(key, key), map.put(key, key));
+          break;
+        case 2:
+          assertEquals(expected.remove(key), map.remove(key));
+          break;
+        default:
+          assertEquals(expected.get(key), map.get(key));
+          assertEquals(expected.containsKey(key), map.containsKey(key));
+          break;
+      }
+      if (i % 1000 == 0) {
+        assertContents(expected, map);
+        assertContents(expected, ImmutableLongObjectMap.copyOf(map));
+      }
+    }
+    assertContents(expected, map);
+  }
+
+  public void testHashMap_removeWithCollisions() {
+    LongObjectHashMap<Long> map = LongObjectHashMap.create();
+    Map<Long, Long> expected = Maps.newHashMap();
+    for (long i = 1; i <= 1000; i++) {
+      long key = i << 16;
+      map.put(key, i);
+      expected.put(key, i);
+    }
+    for (long i = 1; i <= 1000; i += 3) {
+      long key = i << 16;
+      assertEquals(expected.remove(key), map.remove(key));
+    }
+    assertContents(expected, map);
+  }
+
+  public void testHashMap_cursorIsFailFast() {
+    LongObjectHashMap<String> map = LongObjectHashMap.create();
+    map.put(1, "one");
+    map.put(2, "two");
+    LongObjectMap.Cursor<String> cursor = map.cursor();
+    assertTrue(cursor.advance());
+    map.put(3, "three");
+    try {
+      cursor.advance();
+      fail();
+    } catch (ConcurrentModificationException expected) {
+    }
+  }
+
+  public void testHashMap_cursorReplacingValueIsNotAModification() {
+    LongObjectHashMap<String> map = LongObjectHashMap.create();
+    map.put(1, "one");
+    map.put(2, "two");
+    LongObjectMap.Cursor<String> cursor = map.cursor();
+    while (cursor.advance()) {
+      map.put(cursor.key(), cursor.value().toUpperCase());
+    }
+    assertEquals("ONE", map.get(1));
+    assertEquals("TWO", map.get(2));
+  }
+
+  public void testCursor_notOnEntry() {
+    LongObjectHashMap<String> map = LongObjectHashMap.create();
+    map.put(1, "one");
+    for (LongObjectMap<String> m : Arrays.asList(map, ImmutableLongObjectMap.copyOf(map))) {
+      LongObjectMap.Cursor<String> cursor = m.cursor();
+      try {
+        cursor.key();
+        fail();
+      } catch (IllegalStateException expected) {
+      }
+      assertTrue(cursor.advance());
+      assertEquals(1, cursor.key());
+      assertFalse(cursor.advance());
+      assertFalse(cursor.advance());
+      try {
+        cursor.value();
+        fail();
+      } catch (IllegalStateException expected) {
+      }
+    }
+  }
+
+  public void testImmutable_of() {
+    assertTrue(ImmutableLongObjectMap.of().isEmpty());
+    assertSame(ImmutableLongObjectMap.of(), ImmutableLongObjectMap.of());
+    assertEquals("{1=one}", ImmutableLongObjectMap.of(1, "one").toString());
+    assertEquals("{2=two, 1=one}", ImmutableLongObjectMap.of(2, "two", 1, "one").toString());
+    assertEquals(
+        "{3=c, 0=a, -1=b}", ImmutableLongObjectMap.of(3, "c", 0, "a", -1, "b").toString());
+  }
+
+  public void testImmutable_builderKeepsInsertionOrder() {
+    ImmutableLongObjectMap.Builder<String> builder = ImmutableLongObjectMap.builder();
+    for (long i = 100; i > 0; i--) {
+      builder.put(i, Long.toString(i));
+    }
+    ImmutableLongObjectMap<String> map = builder.build();
+    assertEquals(100, map.size());
+    long expectedKey = 100;
+    for (LongObjectMap.Cursor<String> cursor = map.cursor(); cursor.advance(); expectedKey--) {
+      assertEquals(expectedKey, cursor.key());
+      assertEquals(Long.toString(expectedKey), cursor.value());
+    }
+    assertEquals(0, expectedKey);
+    assertEquals("42", map.get(42));
+    assertNull(map.get(101));
+    assertFalse(map.containsKey(0));
+  }
+
+  public void testImmutable_duplicateKeys() {
+    ImmutableLongObjectMap.Builder<String> builder =
+        new ImmutableLongObjectMap.Builder<String>().put(1, "one").put(2, "two").put(1, "uno");
+    try {
+      builder.build();
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertThat(expected.getMessage()).contains("Multiple entries with same key: 1=one and 1=uno");
+    }
+  }
+
+  public void testImmutable_nullValue() {
+    try {
+      ImmutableLongObjectMap.builder().put(1, null);
+      fail();
+    } catch (NullPointerException expected) {
+    }
+  }
+
+  public void testImmutable_copyOf() {
+    ImmutableLongObjectMap<String> map = ImmutableLongObjectMap.of(1, "one");
+    assertSame(map, ImmutableLongObjectMap.copyOf(map));
+    LongObjectHashMap<String> mutable = LongObjectHashMap.create(map);
+    mutable.put(2, "two");
+    assertEquals(1, map.size());
+    assertEquals(mutable, ImmutableLongObjectMap.copyOf(mutable));
+  }
+
+  public void testEquals() {
+    LongObjectHashMap<String> mutable = LongObjectHashMap.create();
+    mutable.put(2, "two");
+    mutable.put(1, "one");
+    new EqualsTester()
+        .addEqualityGroup(ImmutableLongObjectMap.of(), LongObjectHashMap.create())
+        .addEqualityGroup(
+            ImmutableLongObjectMap.of(1, "one", 2, "two"),
+            ImmutableLongObjectMap.of(2, "two", 1, "one"),
+            mutable)
+        .addEqualityGroup(ImmutableLongObjectMap.of(1, "one", 2, "deux"))
+        .addEqualityGroup(ImmutableLongObjectMap.of(1, "one", 3, "two"))
+        .addEqualityGroup(ImmutableLongObjectMap.of(1, "one"))
+        .testEquals();
+  }
+
+  private static long randomKey(Random random) {
+    switch (random.nextInt(3)) {
+      case 0:
+        return random.nextInt(50) - 10;
+      case 1:
+        return (long) random.nextInt(200) << 24;
+      default:
+        return random.nextLong();
+    }
+  }
+
+  private static <V> void assertContents(Map<Long, V> expected, LongObjectMap<V> actual) {
+    assertEquals(expected.size(), actual.size());
+    assertEquals(expected.isEmpty(), actual.isEmpty());
+    Map<Long, V> entries = Maps.newHashMap();
+    for (LongObjectMap.Cursor<V> cursor = actual.cursor(); cursor.advance(); ) {
+      assertNull(entries.put(cursor.key(), cursor.value()));
+    }
+    assertEquals(expected, entries);
+    for (Map.Entry<Long, V> entry : expected.entrySet()) {
+      assertEquals(entry.getValue(), actual.get(entry.getKey()));
+    }
+    assertEquals(expected.hashCode(), actual.hashCode());
+    assertEquals(expected.toString().length(), actual.toString().length());
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.primitives;
+
+import com.google.common.annotations.GwtCompatible;
+import com.google.common.collect.Sets;
+import com.google.common.testing.EqualsTester;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Tests for {@link LongSet}, {@link LongHashSet} and {@link ImmutableLongSet}.
+ */
+@GwtCompatible
+public class LongSetTest extends TestCase {
+
+  public void testHashSet_basic() {
+    LongHashSet set = LongHashSet.create();
+    assertTrue(set.isEmpty());
+    assertTrue(set.add(1));
+    assertTrue(set.add(0));
+    assertTrue(set.add(-1));
+    assertFalse(set.add(1));
+    assertFalse(set.add(0));
+    assertEquals(3, set.size());
+    assertTrue(set.contains(0));
+    assertFalse(set.contains(2));
+
+    assertTrue(set.remove(0));
+    assertFalse(set.remove(0));
+    assertFalse(set.contains(0));
+    assertEquals(2, set.size());
+
+    set.clear();
+    assertTrue(set.isEmpty());
+    assertFalse(set.contains(1));
+  }
+
+  public void testHashSet_copy() {
+    LongHashSet set = LongHashSet.create(ImmutableLongSet.of(3, 1, 3, 0));
+    assertEquals(3, set.size());
+    long[] array = set.toArray();
+    Arrays.sort(array);
+    assertTrue(Arrays.equals(new long[] {0, 1, 3}, array));
+  }
+
+  public void testHashSet_matchesHashSet() {
+    Random random = new Random(0);
+    LongHashSet set = LongHashSet.create(0);
+    Set<Long> expected = Sets.newHashSet();
+    for (int i = 0; i < 20000; i++) {
+      long element = randomElement(random);
+      switch (random.nextInt(3)) {
+        case 0:
+          assertEquals(expected.add(element), set.add(element));
+          break;
+        case 1:
+          assertEquals(expected.remove(element), set.remove(element));
+          break;
+        default:
+          assertEquals(expected.contains(element), set.contains(element));
+          break;
+      }
+      if (i % 1000 == 0) {
+        assertContents(expected, set);
+        assertContents(expected, ImmutableLongSet.copyOf(set));
+      }
+    }
+    assertContents(expected, set);
+  }
+
+  public void testHashSet_removeWithCollisions() {
+    LongHashSet set = LongHashSet.create();
+    Set<Long> expected = Sets.newHashSet();
+    for (long i = 1; i <= 1000; i++) {
+      set.add(i << 16);
+      expected.add(i << 16);
+    }
+    for (long i = 1; i <= 1000; i += 3) {
+      assertTrue(set.remove(i << 16));
+      expected.remove(i << 16);
+    }
+    assertContents(expected, set);
+  }
+
+  public void testHashSet_addAll() {
+    LongHashSet set = LongHashSet.create(ImmutableLongSet.of(1, 2));
+    assertTrue(set.addAll(ImmutableLongSet.of(2, 3)));
+    assertFalse(set.addAll(ImmutableLongSet.of(1, 3)));
+    assertEquals(ImmutableLongSet.of(1, 2, 3), set);
+  }
+
+  public void testHashSet_cursorIsFailFast() {
+    LongHashSet set = LongHashSet.create(ImmutableLongSet.of(1, 2));
+    LongSet.Cursor cursor = set.cursor();
+    assertTrue(cursor.advance());
+    set.add(3);
+    try {
+      cursor.element();
+      fail();
+    } catch (ConcurrentModificationException expected) {
+    }
+  }
+
+  public void testCursor_notOnElement() {
+    ImmutableLongSet immutable = ImmutableLongSet.of(5);
+    for (LongSet set : Arrays.asList(LongHashSet.create(immutable), immutable)) {
+      LongSet.Cursor cursor = set.cursor();
+      try {
+        cursor.element();
+        fail();
+      } catch (IllegalStateException expected) {
+      }
+      assertTrue(cursor.advance());
+      assertEquals(5, cursor.element());
+      assertFalse(cursor.advance());
+      try {
+        cursor.element();
+        fail();
+      } catch (IllegalStateException expected) {
+      }
+    }
+  }
+
+  public void testImmutable_of() {
+    assertTrue(ImmutableLongSet.of().isEmpty());
+    assertSame(ImmutableLongSet.of(), ImmutableLongSet.of());
+    assertSame(ImmutableLongSet.of(), ImmutableLongSet.copyOf(new long[0]));
+    assertEquals("[3, 0, -1]", ImmutableLongSet.of(3, 0, 3, -1, 0).toString());
+    assertEquals(3, ImmutableLongSet.of(3, 0, 3, -1, 0).size());
+  }
+
+  public void testImmutable_builderKeepsFirstOccurrenceOrder() {
+    ImmutableLongSet.Builder builder = ImmutableLongSet.builder();
+    for (long i = 100; i > 0; i--) {
+      builder.add(i).add(100);
+    }
+    ImmutableLongSet set = builder.build();
+    assertEquals(100, set.size());
+    long[] array = set.toArray();
+    for (int i = 0; i < 100; i++) {
+      assertEquals(100 - i, array[i]);
+    }
+    assertTrue(set.contains(42));
+    assertFalse(set.contains(0));
+    assertFalse(set.contains(101));
+  }
+
+  public void testImmutable_copyOf() {
+    ImmutableLongSet set = ImmutableLongSet.of(1, 2);
+    assertSame(set, ImmutableLongSet.copyOf(set));
+    LongHashSet mutable = LongHashSet.create(ImmutableLongSet.of(1, 2, 3));
+    assertEquals(mutable, ImmutableLongSet.copyOf(mutable));
+    long[] array = {4, 5};
+    ImmutableLongSet copy = ImmutableLongSet.copyOf(array);
+    array[0] = 6;
+    assertTrue(copy.contains(4));
+    assertFalse(copy.contains(6));
+  }
+
+  public void testEquals() {
+    new EqualsTester()
+        .addEqualityGroup(ImmutableLongSet.of(), LongHashSet.create())
+        .addEqualityGroup(
+            ImmutableLongSet.of(1, 2),
+            ImmutableLongSet.of(2, 1),
+            LongHashSet.create(ImmutableLongSet.of(2, 1)))
+        .addEqualityGroup(ImmutableLongSet.of(1, 3))
+        .addEqualityGroup(ImmutableLongSet.of(0, 1))
+        .addEqualityGroup(ImmutableLongSet.of(1))
+        .testEquals();
+  }
+
+  private static long randomElement(Random random) {
+    switch (random.nextInt(3)) {
+      case 0:
+        return random.nextInt(50) - 10;
+      case 1:
+        return (long) random.nextInt(200) << 24;
+      default:
+        return random.nextLong();
+    }
+  }
+
+  private static void assertContents(Set<Long> expected, LongSet actual) {
+    assertEquals(expected.size(), actual.size());
+    assertEquals(expected.isEmpty(), actual.isEmpty());
+    Set<Long> elements = Sets.newHashSet();
+    for (LongSet.Cursor cursor = actual.cursor(); cursor.advance(); ) {
+      assertTrue(elements.add(cursor.element()));
+    }
+    assertEquals(expected, elements);
+    for (Long element : expected) {
+      assertTrue(actual.contains(element));
+    }
+    assertEquals(expected.hashCode(), actual.hashCode());
+    assertEquals(actual.size(), actual.toArray().length);
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+
+/**
+ * The policy a size-bounded cache uses to decide whether a newly written entry is worth retaining
+ * at the expense of the entry that would otherwise be evicted to make room for it. See
+ * {@link CacheBuilder#admissionPolicy}.
+ *
+ * @since 20.0
+ */
+@Beta
+@GwtIncompatible
+public enum AdmissionPolicy {
+  /**
+   * Every new entry is admitted, and the least-recently-used entry is evicted to make room for it.
+   * This is the default.
+   */
+  ALWAYS,
+
+  /**
+   * A new entry is admitted only if it has been used more frequently than the least-recently-used
+   * entry that would be evicted to make room for it; otherwise the new entry itself is evicted.
+   * Frequencies are estimated by a compact, periodically aged count-min sketch of recent reads and
+   * writes (the <a href="http://arxiv.org/abs/1512.00727">TinyLFU</a> scheme).
+   *
+   * <p>This protects frequently used entries from being flushed out by scans or by a stream of keys
+   * that are each requested only once, which often yields a noticeably better hit rate than plain
+   * least-recently-used eviction. It costs a few bytes of bookkeeping per entry.
+   */
+  TINY_LFU
+}
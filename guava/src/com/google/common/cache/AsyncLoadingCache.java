@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * A semi-persistent mapping from keys to values which loads values without blocking the calling
+ * thread. Values are loaded by a {@link CacheLoader} running on an executor, and are stored in the
+ * cache until either evicted or manually invalidated. Obtain instances from
+ * {@link CacheBuilder#buildAsync}.
+ *
+ * <p>Implementations of this interface are expected to be thread-safe, and can be safely accessed
+ * by multiple concurrent threads.
+ *
+ * @since 20.0
+ */
+@Beta
+@GwtIncompatible
+public interface AsyncLoadingCache<K, V> {
+
+  /**
+   * Returns a future for the value associated with {@code key} in this cache, starting to load
+   * that value if necessary. The returned future is already done if the value is present.
+   *
+   * <p>If the value for {@code key} is already being loaded, whether by this cache or by its
+   * {@linkplain #synchronous synchronous view}, the returned future completes when that load does;
+   * concurrent requests for the same key result in a single call to the loader. Cancelling the
+   * returned future does not cancel the load, nor does it affect other callers waiting for it.
+   *
+   * <p>If the loader throws an exception, or returns null, the returned future fails with that
+   * exception, or with an {@link CacheLoader.InvalidCacheLoadException}, and no value is cached.
+   *
+   * @throws NullPointerException if {@code key} is null
+   */
+  ListenableFuture<V> get(K key);
+
+  /**
+   * Returns a future for a map of the values associated with {@code keys}, starting to load any
+   * values which are neither present nor already being loaded. The returned map contains each
+   * distinct key in {@code keys}, in iteration order.
+   *
+   * <p>All keys which need to be loaded are loaded together, with a single call to
+   * {@link CacheLoader#loadAll}. If the loader doesn't implement {@code loadAll}, they are loaded
+   * one at a time with {@link CacheLoader#load}, in a single task on the cache's executor. As with
+   * {@link LoadingCache#getAll}, any additional entries returned by {@code loadAll} are also
+   * cached.
+   *
+   * <p>If any value fails to load, the returned future fails with that failure.
+   *
+   * @throws NullPointerException if {@code keys} or any of its elements is null
+   */
+  ListenableFuture<ImmutableMap<K, V>> getAll(Iterable<? extends K> keys);
+
+  /**
+   * Returns a view of this cache which blocks while loading values. The view shares this cache's
+   * entries, loads and statistics, and can be used to read, write and invalidate entries directly.
+   */
+  LoadingCache<K, V> synchronous();
+}
@@ -18,6 +18,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
+import com.google.common.annotations.Beta;
 import com.google.common.annotations.GwtCompatible;
 import com.google.common.annotations.GwtIncompatible;
 import com.google.common.base.Ascii;
@@ -29,16 +30,20 @@ import com.google.common.base.Ticker;
 import com.google.common.cache.AbstractCache.SimpleStatsCounter;
 import com.google.common.cache.AbstractCache.StatsCounter;
 import com.google.common.cache.LocalCache.Strength;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import java.lang.ref.SoftReference;
 import java.lang.ref.WeakReference;
 import java.util.ConcurrentModificationException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.annotation.CheckReturnValue;
+import javax.annotation.Nullable;
 
 /**
  * <p>A builder of {@link LoadingCache} and {@link Cache} instances having any combination of the
@@ -128,7 +133,9 @@ import javax.annotation.CheckReturnValue;
  * {@linkplain #removalListener removalListener}, {@linkplain #expireAfterWrite expireAfterWrite},
  * {@linkplain #expireAfterAccess expireAfterAccess}, {@linkplain #weakKeys weakKeys},
  * {@linkplain #weakValues weakValues}, or {@linkplain #softValues softValues} perform periodic
- * maintenance.
+ * maintenance. If a {@linkplain #scheduler scheduler} is specified, maintenance is instead run
+ * periodically on that scheduler, so that idle caches are also cleaned up and reads never have to
+ * remove expired entries.
  *
  * <p>The caches produced by {@code CacheBuilder} are serializable, and the deserialized caches
  * retain all the configuration properties of the original cache. Note that the serialized form does
@@ -220,11 +227,18 @@ public final class CacheBuilder<K, V> {
   long maximumWeight = UNSET_INT;
   Weigher<? super K, ? super V> weigher;
 
+  // An AdmissionPolicy, which GWT doesn't support; only getAdmissionPolicy() needs its type.
+  Object admissionPolicy;
+
   Strength keyStrength;
   Strength valueStrength;
 
+  // A ValueSerializer, which GWT doesn't support; only getValueSerializer() needs its type.
+  Object valueSerializer;
+
   long expireAfterWriteNanos = UNSET_INT;
   long expireAfterAccessNanos = UNSET_INT;
+  Expiry<? super K, ? super V> expiry;
   long refreshNanos = UNSET_INT;
 
   Equivalence<Object> keyEquivalence;
@@ -233,8 +247,14 @@ public final class CacheBuilder<K, V> {
   RemovalListener<? super K, ? super V> removalListener;
   Ticker ticker;
 
+  @GwtIncompatible // ScheduledExecutorService
+  ScheduledExecutorService scheduler;
+
   Supplier<? extends StatsCounter> statsCounterSupplier = NULL_STATS_COUNTER;
 
+  @GwtIncompatible // DetailedCacheStats
+  boolean detailedStats;
+
   // TODO(fry): make constructor private and update tests to use newBuilder
   CacheBuilder() {}
 
@@ -421,7 +441,9 @@ public final class CacheBuilder<K, V> {
   /**
    * Specifies the maximum weight of entries the cache may contain. Weight is determined using the
    * {@link Weigher} specified with {@link #weigher}, and use of this method requires a
-   * corresponding call to {@link #weigher} prior to calling {@link #build}.
+   * corresponding call to {@link #weigher} prior to calling {@link #build}, unless values are
+   * {@linkplain #offHeapValues stored off-heap}, in which case entries weigh the bytes their values
+   * occupy by default.
    *
    * <p>Note that the cache <b>may evict an entry before this limit is exceeded</b>. As the cache
    * size grows close to the maximum, the cache evicts entries that are less likely to be used
@@ -506,7 +528,8 @@ public final class CacheBuilder<K, V> {
     if (expireAfterWriteNanos == 0 || expireAfterAccessNanos == 0) {
       return 0;
     }
-    return (weigher == null) ? maximumSize : maximumWeight;
+    // without a weigher, maximumWeight is only allowed for values stored off-heap
+    return (weigher == null && maximumWeight == UNSET_INT) ? maximumSize : maximumWeight;
   }
 
   // Make a safe contravariant cast now so we don't have to do it over and over.
@@ -515,6 +538,41 @@ public final class CacheBuilder<K, V> {
     return (Weigher<K1, V1>) MoreObjects.firstNonNull(weigher, OneWeigher.INSTANCE);
   }
 
+  /**
+   * Specifies how the cache decides whether a newly written entry should be retained when doing so
+   * requires evicting another entry. By default ({@link AdmissionPolicy#ALWAYS}) every new entry is
+   * retained and the least-recently-used entry is evicted in its place.
+   *
+   * <p>With {@link AdmissionPolicy#TINY_LFU} the cache keeps a compact estimate of how often each
+   * key has recently been read or written, and only evicts the least-recently-used entry if the new
+   * entry has been used more frequently; otherwise the new entry is the one that is evicted. This
+   * keeps scans and one-hit wonders from displacing the working set. A value that is rejected this
+   * way is still returned to the caller that loaded it, and is reported to the
+   * {@linkplain #removalListener removal listener} with {@link RemovalCause#SIZE}.
+   *
+   * <p>This feature requires {@link #maximumSize} or {@link #maximumWeight}.
+   *
+   * @param policy the admission policy to use when the cache is at its maximum size or weight
+   * @return this {@code CacheBuilder} instance (for chaining)
+   * @throws IllegalStateException if an admission policy was already set
+   * @since 20.0
+   */
+  @Beta
+  @GwtIncompatible // AdmissionPolicy
+  public CacheBuilder<K, V> admissionPolicy(AdmissionPolicy policy) {
+    checkState(
+        this.admissionPolicy == null,
+        "admission policy was already set to %s",
+        this.admissionPolicy);
+    this.admissionPolicy = checkNotNull(policy);
+    return this;
+  }
+
+  @GwtIncompatible // AdmissionPolicy
+  AdmissionPolicy getAdmissionPolicy() {
+    return (admissionPolicy == null) ? AdmissionPolicy.ALWAYS : (AdmissionPolicy) admissionPolicy;
+  }
+
   /**
    * Specifies that each key (not value) stored in the cache should be wrapped in a
    * {@link WeakReference} (by default, strong references are used).
@@ -593,6 +651,10 @@ public final class CacheBuilder<K, V> {
 
   CacheBuilder<K, V> setValueStrength(Strength strength) {
     checkState(valueStrength == null, "Value strength was already set to %s", valueStrength);
+    checkState(
+        strength == Strength.STRONG || valueSerializer == null,
+        "%s values can not be stored off-heap",
+        strength);
     valueStrength = checkNotNull(strength);
     return this;
   }
@@ -601,6 +663,64 @@ public final class CacheBuilder<K, V> {
     return MoreObjects.firstNonNull(valueStrength, Strength.STRONG);
   }
 
+  /**
+   * Specifies that each value stored in the cache should be serialized with {@code serializer} and
+   * kept in memory outside of the Java heap (in a direct {@link java.nio.ByteBuffer}), leaving only
+   * the key and a small handle on the heap. This keeps large values from lengthening garbage
+   * collection pauses. A value's off-heap memory is freed once its handle, which is no longer
+   * referenced after the value is removed from the cache, is garbage collected.
+   *
+   * <p>Every read deserializes the value again, so reads return a new instance each time and are
+   * correspondingly slower. As a consequence, values are compared by {@link Object#equals} after
+   * deserialization, for instance by {@link java.util.concurrent.ConcurrentMap#replace(Object,
+   * Object, Object) asMap().replace(key, oldValue, newValue)}; for values such as arrays, which
+   * don't override {@code equals}, such conditional operations never succeed.
+   *
+   * <p>If {@link #maximumWeight} is specified without a {@link #weigher}, each entry weighs the
+   * number of bytes its value occupies off-heap, which bounds the cache's off-heap memory use.
+   * The number of bytes occupied off-heap is reported by {@link CacheStats#offHeapBytes}.
+   *
+   * <p><b>Important note:</b> Instead of returning <em>this</em> as a {@code CacheBuilder}
+   * instance, this method returns {@code CacheBuilder<K1, V1>}. From this point on, either the
+   * original reference or the returned reference may be used to complete configuration and build
+   * the cache, but only the "generic" one is type-safe. That is, it will properly prevent you from
+   * building caches whose value types are incompatible with the types accepted by the serializer
+   * already provided; the {@code CacheBuilder} type cannot do this. For best results, simply use
+   * the standard method-chaining idiom, as illustrated in the documentation at top, configuring a
+   * {@code CacheBuilder} and building your {@link Cache} all in a single statement.
+   *
+   * @param serializer the serializer used to store values off-heap and read them back
+   * @return this {@code CacheBuilder} instance (for chaining)
+   * @throws IllegalStateException if a value serializer was already set, or if weak or soft values
+   *     were requested
+   * @since 20.0
+   */
+  @Beta
+  @GwtIncompatible // ByteBuffer
+  public <K1 extends K, V1 extends V> CacheBuilder<K1, V1> offHeapValues(
+      ValueSerializer<V1> serializer) {
+    checkState(
+        valueSerializer == null, "value serializer was already set to %s", valueSerializer);
+    checkState(
+        valueStrength == null || valueStrength == Strength.STRONG,
+        "%s values can not be stored off-heap",
+        valueStrength);
+
+    // safely limiting the kinds of caches this can produce
+    @SuppressWarnings("unchecked")
+    CacheBuilder<K1, V1> me = (CacheBuilder<K1, V1>) this;
+    me.valueSerializer = checkNotNull(serializer);
+    return me;
+  }
+
+  // Make a safe contravariant cast now so we don't have to do it over and over.
+  @SuppressWarnings("unchecked")
+  @Nullable
+  @GwtIncompatible // ByteBuffer
+  <K1 extends K, V1 extends V> ValueSerializer<V1> getValueSerializer() {
+    return (ValueSerializer<V1>) valueSerializer;
+  }
+
   /**
    * Specifies that each entry should be automatically removed from the cache once a fixed duration
    * has elapsed after the entry's creation, or the most recent replacement of its value.
@@ -618,13 +738,15 @@ public final class CacheBuilder<K, V> {
    * @param unit the unit that {@code duration} is expressed in
    * @return this {@code CacheBuilder} instance (for chaining)
    * @throws IllegalArgumentException if {@code duration} is negative
-   * @throws IllegalStateException if the time to live or time to idle was already set
+   * @throws IllegalStateException if the time to live or time to idle was already set, or if an
+   *     {@link Expiry} was set
    */
   public CacheBuilder<K, V> expireAfterWrite(long duration, TimeUnit unit) {
     checkState(
         expireAfterWriteNanos == UNSET_INT,
         "expireAfterWrite was already set to %s ns",
         expireAfterWriteNanos);
+    checkState(expiry == null, "expireAfterWrite can not be combined with expireAfter");
     checkArgument(duration >= 0, "duration cannot be negative: %s %s", duration, unit);
     this.expireAfterWriteNanos = unit.toNanos(duration);
     return this;
@@ -654,13 +776,15 @@ public final class CacheBuilder<K, V> {
    * @param unit the unit that {@code duration} is expressed in
    * @return this {@code CacheBuilder} instance (for chaining)
    * @throws IllegalArgumentException if {@code duration} is negative
-   * @throws IllegalStateException if the time to idle or time to live was already set
+   * @throws IllegalStateException if the time to idle or time to live was already set, or if an
+   *     {@link Expiry} was set
    */
   public CacheBuilder<K, V> expireAfterAccess(long duration, TimeUnit unit) {
     checkState(
         expireAfterAccessNanos == UNSET_INT,
         "expireAfterAccess was already set to %s ns",
         expireAfterAccessNanos);
+    checkState(expiry == null, "expireAfterAccess can not be combined with expireAfter");
     checkArgument(duration >= 0, "duration cannot be negative: %s %s", duration, unit);
     this.expireAfterAccessNanos = unit.toNanos(duration);
     return this;
@@ -672,6 +796,57 @@ public final class CacheBuilder<K, V> {
         : expireAfterAccessNanos;
   }
 
+  /**
+   * Specifies that each entry should be automatically removed from the cache once a duration
+   * calculated by {@code expiry} has elapsed. The duration is calculated separately for each entry
+   * when it is created, when its value is replaced and when it is read, which allows each entry to
+   * have its own lifetime; for instance one taken from the entry's value.
+   *
+   * <p>Expired entries may be counted in {@link Cache#size}, but will never be visible to read or
+   * write operations. Expired entries are cleaned up as part of the routine maintenance described
+   * in the class javadoc; finding the entries which have expired takes amortized constant time per
+   * entry, regardless of how their lifetimes vary.
+   *
+   * <p><b>Important note:</b> Instead of returning <em>this</em> as a {@code CacheBuilder}
+   * instance, this method returns {@code CacheBuilder<K1, V1>}. From this point on, either the
+   * original reference or the returned reference may be used to complete configuration and build
+   * the cache, but only the "generic" one is type-safe. That is, it will properly prevent you from
+   * building caches whose key or value types are incompatible with the types accepted by the expiry
+   * already provided; the {@code CacheBuilder} type cannot do this. For best results, simply use
+   * the standard method-chaining idiom, as illustrated in the documentation at top, configuring a
+   * {@code CacheBuilder} and building your {@link Cache} all in a single statement.
+   *
+   * @param expiry the expiry used to calculate how long each entry should live
+   * @return this {@code CacheBuilder} instance (for chaining)
+   * @throws IllegalStateException if an expiry, a time to live or a time to idle was already set
+   * @since 20.0
+   */
+  @Beta
+  @GwtIncompatible // To be supported
+  public <K1 extends K, V1 extends V> CacheBuilder<K1, V1> expireAfter(
+      Expiry<? super K1, ? super V1> expiry) {
+    checkState(this.expiry == null, "expiry was already set to %s", this.expiry);
+    checkState(
+        expireAfterWriteNanos == UNSET_INT,
+        "expireAfter can not be combined with expireAfterWrite");
+    checkState(
+        expireAfterAccessNanos == UNSET_INT,
+        "expireAfter can not be combined with expireAfterAccess");
+
+    // safely limiting the kinds of caches this can produce
+    @SuppressWarnings("unchecked")
+    CacheBuilder<K1, V1> me = (CacheBuilder<K1, V1>) this;
+    me.expiry = checkNotNull(expiry);
+    return me;
+  }
+
+  // Make a safe contravariant cast now so we don't have to do it over and over.
+  @SuppressWarnings("unchecked")
+  @Nullable
+  <K1 extends K, V1 extends V> Expiry<K1, V1> getExpiry() {
+    return (Expiry<K1, V1>) expiry;
+  }
+
   /**
    * Specifies that active entries are eligible for automatic refresh once a fixed duration has
    * elapsed after the entry's creation, or the most recent replacement of its value. The semantics
@@ -686,7 +861,8 @@ public final class CacheBuilder<K, V> {
    * <p>Currently automatic refreshes are performed when the first stale request for an entry
    * occurs. The request triggering refresh will make a blocking call to {@link CacheLoader#reload}
    * and immediately return the new value if the returned future is complete, and the old value
-   * otherwise.
+   * otherwise. If a {@linkplain #scheduler scheduler} is specified, stale entries are also
+   * refreshed proactively as part of the scheduled maintenance, without waiting for a request.
    *
    * <p><b>Note:</b> <i>all exceptions thrown during refresh will be logged and then swallowed</i>.
    *
@@ -734,6 +910,41 @@ public final class CacheBuilder<K, V> {
     return recordsTime ? Ticker.systemTicker() : NULL_TICKER;
   }
 
+  /**
+   * Specifies a scheduler on which the cache periodically performs its routine maintenance, rather
+   * than only during cache operations. Expired entries and entries with reclaimed keys or values
+   * are then removed (and the removal listener notified) even while the cache is idle, and reads no
+   * longer remove expired entries themselves. If the cache was built with a {@link CacheLoader} and
+   * {@linkplain #refreshAfterWrite refreshAfterWrite}, stale entries are also refreshed
+   * proactively, so that the first request after an entry becomes stale does not have to trigger
+   * the refresh.
+   *
+   * <p>Maintenance runs at least once a second, or more often if an expiration or refresh duration
+   * is shorter than that. Scheduled refreshes call {@link CacheLoader#reload} on the scheduler's
+   * thread, so loaders with slow reloads should reload asynchronously, for example by using
+   * {@link CacheLoader#asyncReloading}. The scheduler is not used at all if the cache needs no
+   * maintenance; the scheduled task stops when the cache is garbage collected. The scheduler is not
+   * part of the cache's serialized form.
+   *
+   * @param scheduler the scheduler on which to run the cache's maintenance
+   * @return this {@code CacheBuilder} instance (for chaining)
+   * @throws IllegalStateException if a scheduler was already set
+   * @since 20.0
+   */
+  @Beta
+  @GwtIncompatible // ScheduledExecutorService
+  public CacheBuilder<K, V> scheduler(ScheduledExecutorService scheduler) {
+    checkState(this.scheduler == null, "scheduler was already set to %s", this.scheduler);
+    this.scheduler = checkNotNull(scheduler);
+    return this;
+  }
+
+  @Nullable
+  @GwtIncompatible // ScheduledExecutorService
+  ScheduledExecutorService getScheduler() {
+    return scheduler;
+  }
+
   /**
    * Specifies a listener instance that caches should notify each time an entry is removed for any
    * {@linkplain RemovalCause reason}. Each cache created by this builder will invoke this listener
@@ -792,6 +1003,33 @@ public final class CacheBuilder<K, V> {
     return statsCounterSupplier == CACHE_STATS_COUNTER;
   }
 
+  /**
+   * Enables the accumulation of {@link CacheStats}, as {@link #recordStats} does, together with a
+   * histogram of load latencies and an estimate of the most frequently used keys. All of these are
+   * read through {@link DetailedCacheStats#snapshot}.
+   *
+   * <p>Load latencies are counted with striped counters, much like the ordinary stats. Key uses are
+   * sampled from the reads the cache already buffers for eviction, and are counted by each segment
+   * in a small count-min sketch while the buffered reads are processed under its lock. The estimate
+   * favors recent uses over older ones. Up to 16 of the most frequently used keys of each segment
+   * are referenced strongly, until hotter keys displace them.
+   *
+   * @return this {@code CacheBuilder} instance (for chaining)
+   * @since 20.0
+   */
+  @Beta
+  @GwtIncompatible // DetailedCacheStats
+  public CacheBuilder<K, V> recordDetailedStats() {
+    statsCounterSupplier = CACHE_STATS_COUNTER;
+    detailedStats = true;
+    return this;
+  }
+
+  @GwtIncompatible // DetailedCacheStats
+  boolean isRecordingDetailedStats() {
+    return detailedStats;
+  }
+
   Supplier<? extends StatsCounter> getStatsCounterSupplier() {
     return statsCounterSupplier;
   }
@@ -814,6 +1052,30 @@ public final class CacheBuilder<K, V> {
     return new LocalCache.LocalLoadingCache<K1, V1>(this, loader);
   }
 
+  /**
+   * Builds a cache which loads values without blocking the calling thread. Like the cache returned
+   * by {@link #build(CacheLoader)}, it either returns an already-loaded value for a given key or
+   * atomically computes or retrieves it using the supplied {@code CacheLoader}, but it returns a
+   * {@link ListenableFuture} for the value instead of waiting for it. The loader is run on
+   * {@code executor}, as are refreshes (see {@link CacheLoader#asyncReloading}). Concurrent
+   * requests for a key which is already being loaded share that load.
+   *
+   * <p>This method does not alter the state of this {@code CacheBuilder} instance, so it can be
+   * invoked again to create multiple independent caches.
+   *
+   * @param loader the cache loader used to obtain new values
+   * @param executor the executor on which the loader is run
+   * @return a cache having the requested features
+   * @since 20.0
+   */
+  @Beta
+  @GwtIncompatible // AsyncLoadingCache
+  public <K1 extends K, V1 extends V> AsyncLoadingCache<K1, V1> buildAsync(
+      CacheLoader<? super K1, V1> loader, Executor executor) {
+    checkWeightWithWeigher();
+    return new LocalCache.LocalAsyncLoadingCache<K1, V1>(this, loader, executor);
+  }
+
   /**
    * Builds a cache which does not automatically load values when keys are requested.
    *
@@ -838,7 +1100,9 @@ public final class CacheBuilder<K, V> {
 
   private void checkWeightWithWeigher() {
     if (weigher == null) {
-      checkState(maximumWeight == UNSET_INT, "maximumWeight requires weigher");
+      // values stored off-heap are weighed by the bytes they occupy
+      checkState(
+          maximumWeight == UNSET_INT || valueSerializer != null, "maximumWeight requires weigher");
     } else {
       if (strictParsing) {
         checkState(maximumWeight != UNSET_INT, "weigher requires maximumWeight");
@@ -850,6 +1114,20 @@ public final class CacheBuilder<K, V> {
     }
   }
 
+  /**
+   * Checks that the admission policy can be applied. This is called by the {@code LocalCache}
+   * constructor rather than by {@code build}, since GWT, which emulates {@code LocalCache}, doesn't
+   * support admission policies.
+   */
+  @GwtIncompatible // AdmissionPolicy
+  void checkAdmissionPolicy() {
+    if (getAdmissionPolicy() != AdmissionPolicy.ALWAYS) {
+      checkState(
+          maximumSize != UNSET_INT || maximumWeight != UNSET_INT,
+          "admissionPolicy requires maximumSize or maximumWeight");
+    }
+  }
+
   /**
    * Returns a string representation for this CacheBuilder instance. The exact form of the returned
    * string is not specified.
@@ -869,18 +1147,27 @@ public final class CacheBuilder<K, V> {
     if (maximumWeight != UNSET_INT) {
       s.add("maximumWeight", maximumWeight);
     }
+    if (admissionPolicy != null) {
+      s.add("admissionPolicy", Ascii.toLowerCase(admissionPolicy.toString()));
+    }
     if (expireAfterWriteNanos != UNSET_INT) {
       s.add("expireAfterWrite", expireAfterWriteNanos + "ns");
     }
     if (expireAfterAccessNanos != UNSET_INT) {
       s.add("expireAfterAccess", expireAfterAccessNanos + "ns");
     }
+    if (expiry != null) {
+      s.addValue("expiry");
+    }
     if (keyStrength != null) {
       s.add("keyStrength", Ascii.toLowerCase(keyStrength.toString()));
     }
     if (valueStrength != null) {
       s.add("valueStrength", Ascii.toLowerCase(valueStrength.toString()));
     }
+    if (valueSerializer != null) {
+      s.addValue("offHeapValues");
+    }
     if (keyEquivalence != null) {
       s.addValue("keyEquivalence");
     }
@@ -14,19 +14,26 @@
 
 package com.google.common.cache;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.annotations.GwtCompatible;
 import com.google.common.annotations.GwtIncompatible;
 import com.google.common.base.Function;
 import com.google.common.base.Supplier;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListenableFutureTask;
 
 import java.io.Serializable;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 
 /**
@@ -204,6 +211,99 @@ public abstract class CacheLoader<K, V> {
     };
   }
 
+  /**
+   * Returns a {@code CacheLoader} which wraps {@code loader}, splitting each call to
+   * {@link CacheLoader#loadAll} for more than {@code batchSize} keys into batches of at most
+   * {@code batchSize} keys which are loaded concurrently. The first batch is loaded by the calling
+   * thread and the rest using {@code executor}, so that a large {@link LoadingCache#getAll} takes
+   * about as long as loading a single batch, given enough threads. Each batch is loaded by
+   * {@code loader.loadAll}, or by calling {@code loader.load} for each of its keys if
+   * {@code loader} doesn't implement {@code loadAll}. Calls to {@code load} and {@code reload} are
+   * delegated to {@code loader} directly.
+   *
+   * <p>If any batch fails, {@code loadAll} throws the exception that batch failed with, and
+   * attempts to cancel the batches which are still being loaded.
+   *
+   * @param loader the cache loader which loads each batch
+   * @param executor the executor on which all but the first batch are loaded
+   * @param batchSize the maximum number of keys to load in a single batch
+   * @throws IllegalArgumentException if {@code batchSize} is not positive
+   * @since 20.0
+   */
+  @GwtIncompatible // Executor + Futures
+  public static <K, V> CacheLoader<K, V> asyncParallel(
+      final CacheLoader<K, V> loader, final Executor executor, final int batchSize) {
+    checkNotNull(loader);
+    checkNotNull(executor);
+    checkArgument(batchSize > 0, "batchSize must be positive: %s", batchSize);
+    return new CacheLoader<K, V>() {
+      @Override
+      public V load(K key) throws Exception {
+        return loader.load(key);
+      }
+
+      @Override
+      public ListenableFuture<V> reload(K key, V oldValue) throws Exception {
+        return loader.reload(key, oldValue);
+      }
+
+      @Override
+      public Map<K, V> loadAll(Iterable<? extends K> keys) throws Exception {
+        List<List<K>> batches = Lists.partition(ImmutableList.<K>copyOf(keys), batchSize);
+        if (batches.size() <= 1) {
+          return loader.loadAll(keys);
+        }
+        List<ListenableFuture<Map<K, V>>> futures =
+            Lists.newArrayListWithCapacity(batches.size() - 1);
+        try {
+          for (final List<K> batch : batches.subList(1, batches.size())) {
+            ListenableFutureTask<Map<K, V>> task =
+                ListenableFutureTask.create(
+                    new Callable<Map<K, V>>() {
+                      @Override
+                      public Map<K, V> call() throws Exception {
+                        return loadBatch(loader, batch);
+                      }
+                    });
+            executor.execute(task);
+            futures.add(task);
+          }
+          Map<K, V> result = Maps.newLinkedHashMap(loadBatch(loader, batches.get(0)));
+          for (Map<K, V> batchResult : Futures.allAsList(futures).get()) {
+            result.putAll(batchResult);
+          }
+          return result;
+        } catch (ExecutionException e) {
+          Throwables.propagateIfPossible(e.getCause(), Exception.class);
+          throw e;
+        } finally {
+          // a no-op unless a batch failed, or this thread was interrupted
+          for (ListenableFuture<Map<K, V>> future : futures) {
+            future.cancel(true);
+          }
+        }
+      }
+    };
+  }
+
+  /**
+   * Loads {@code keys} using {@code loader.loadAll}, or using {@code loader.load} if it doesn't
+   * implement {@code loadAll}.
+   */
+  @GwtIncompatible // used only by asyncParallel
+  private static <K, V> Map<K, V> loadBatch(CacheLoader<K, V> loader, List<K> keys)
+      throws Exception {
+    try {
+      return loader.loadAll(keys);
+    } catch (UnsupportedLoadingOperationException e) {
+      Map<K, V> result = Maps.newLinkedHashMap();
+      for (K key : keys) {
+        result.put(key, loader.load(key));
+      }
+      return result;
+    }
+  }
+
   private static final class SupplierToCacheLoader<V> extends CacheLoader<Object, V>
       implements Serializable {
     private final Supplier<V> computingSupplier;
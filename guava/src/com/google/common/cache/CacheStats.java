@@ -16,6 +16,7 @@ package com.google.common.cache;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+import com.google.common.annotations.Beta;
 import com.google.common.annotations.GwtCompatible;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Objects;
@@ -47,6 +48,10 @@ import javax.annotation.Nullable;
  *     cache.
  * </ul>
  *
+ * <p>Unlike the other statistics, {@code offHeapBytes} is not a count of events but the number of
+ * bytes occupied off-heap by the values present in the cache when the statistics were taken; it is
+ * always zero unless the cache {@linkplain CacheBuilder#offHeapValues stores its values off-heap}.
+ *
  * <p>A lookup is specifically defined as an invocation of one of the methods
  * {@link LoadingCache#get(Object)}, {@link LoadingCache#getUnchecked(Object)},
  * {@link Cache#get(Object, Callable)}, or {@link LoadingCache#getAll(Iterable)}.
@@ -62,6 +67,7 @@ public final class CacheStats {
   private final long loadExceptionCount;
   private final long totalLoadTime;
   private final long evictionCount;
+  private final long offHeapBytes;
 
   /**
    * Constructs a new {@code CacheStats} instance.
@@ -76,12 +82,37 @@ public final class CacheStats {
       long loadExceptionCount,
       long totalLoadTime,
       long evictionCount) {
+    this(
+        hitCount,
+        missCount,
+        loadSuccessCount,
+        loadExceptionCount,
+        totalLoadTime,
+        evictionCount,
+        0);
+  }
+
+  /**
+   * Constructs a new {@code CacheStats} instance, including the number of bytes occupied off-heap.
+   *
+   * @since 20.0
+   */
+  @Beta
+  public CacheStats(
+      long hitCount,
+      long missCount,
+      long loadSuccessCount,
+      long loadExceptionCount,
+      long totalLoadTime,
+      long evictionCount,
+      long offHeapBytes) {
     checkArgument(hitCount >= 0);
     checkArgument(missCount >= 0);
     checkArgument(loadSuccessCount >= 0);
     checkArgument(loadExceptionCount >= 0);
     checkArgument(totalLoadTime >= 0);
     checkArgument(evictionCount >= 0);
+    checkArgument(offHeapBytes >= 0);
 
     this.hitCount = hitCount;
     this.missCount = missCount;
@@ -89,6 +120,7 @@ public final class CacheStats {
     this.loadExceptionCount = loadExceptionCount;
     this.totalLoadTime = totalLoadTime;
     this.evictionCount = evictionCount;
+    this.offHeapBytes = offHeapBytes;
   }
 
   /**
@@ -213,10 +245,22 @@ public final class CacheStats {
     return evictionCount;
   }
 
+  /**
+   * Returns the number of bytes occupied off-heap by the cache's values, which is zero unless the
+   * cache {@linkplain CacheBuilder#offHeapValues stores its values off-heap}.
+   *
+   * @since 20.0
+   */
+  @Beta
+  public long offHeapBytes() {
+    return offHeapBytes;
+  }
+
   /**
    * Returns a new {@code CacheStats} representing the difference between this {@code CacheStats}
    * and {@code other}. Negative values, which aren't supported by {@code CacheStats} will be
-   * rounded up to zero.
+   * rounded up to zero. Since {@link #offHeapBytes} is a measurement rather than a count, the
+   * result has this instance's value for it.
    */
   public CacheStats minus(CacheStats other) {
     return new CacheStats(
@@ -225,12 +269,14 @@ public final class CacheStats {
         Math.max(0, loadSuccessCount - other.loadSuccessCount),
         Math.max(0, loadExceptionCount - other.loadExceptionCount),
         Math.max(0, totalLoadTime - other.totalLoadTime),
-        Math.max(0, evictionCount - other.evictionCount));
+        Math.max(0, evictionCount - other.evictionCount),
+        offHeapBytes);
   }
 
   /**
    * Returns a new {@code CacheStats} representing the sum of this {@code CacheStats} and
-   * {@code other}.
+   * {@code other}. The sum of the {@link #offHeapBytes} of two caches is the number of bytes
+   * occupied off-heap by both of them.
    *
    * @since 11.0
    */
@@ -241,13 +287,20 @@ public final class CacheStats {
         loadSuccessCount + other.loadSuccessCount,
         loadExceptionCount + other.loadExceptionCount,
         totalLoadTime + other.totalLoadTime,
-        evictionCount + other.evictionCount);
+        evictionCount + other.evictionCount,
+        offHeapBytes + other.offHeapBytes);
   }
 
   @Override
   public int hashCode() {
     return Objects.hashCode(
-        hitCount, missCount, loadSuccessCount, loadExceptionCount, totalLoadTime, evictionCount);
+        hitCount,
+        missCount,
+        loadSuccessCount,
+        loadExceptionCount,
+        totalLoadTime,
+        evictionCount,
+        offHeapBytes);
   }
 
   @Override
@@ -259,20 +312,25 @@ public final class CacheStats {
           && loadSuccessCount == other.loadSuccessCount
           && loadExceptionCount == other.loadExceptionCount
           && totalLoadTime == other.totalLoadTime
-          && evictionCount == other.evictionCount;
+          && evictionCount == other.evictionCount
+          && offHeapBytes == other.offHeapBytes;
     }
     return false;
   }
 
   @Override
   public String toString() {
-    return MoreObjects.toStringHelper(this)
-        .add("hitCount", hitCount)
-        .add("missCount", missCount)
-        .add("loadSuccessCount", loadSuccessCount)
-        .add("loadExceptionCount", loadExceptionCount)
-        .add("totalLoadTime", totalLoadTime)
-        .add("evictionCount", evictionCount)
-        .toString();
+    MoreObjects.ToStringHelper s =
+        MoreObjects.toStringHelper(this)
+            .add("hitCount", hitCount)
+            .add("missCount", missCount)
+            .add("loadSuccessCount", loadSuccessCount)
+            .add("loadExceptionCount", loadExceptionCount)
+            .add("totalLoadTime", totalLoadTime)
+            .add("evictionCount", evictionCount);
+    if (offHeapBytes != 0) {
+      s.add("offHeapBytes", offHeapBytes);
+    }
+    return s.toString();
   }
 }
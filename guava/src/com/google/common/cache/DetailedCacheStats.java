@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.google.common.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.base.MoreObjects;
+import com.google.common.cache.LocalCache.LocalManualCache;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+
+/**
+ * A snapshot of the detailed statistics of a cache which
+ * {@linkplain CacheBuilder#recordDetailedStats records detailed stats}: its ordinary
+ * {@link CacheStats}, a histogram of its load latencies, and an estimate of its most frequently
+ * used keys. Instances of this class are immutable.
+ *
+ * <p>A snapshot is taken with {@link #snapshot}, without blocking concurrent cache operations for
+ * more than the time needed to copy a few counters from each segment. As with {@link Cache#stats},
+ * the snapshot is not atomic: operations that run while it is being taken may be partly reflected
+ * in it.
+ *
+ * @param <K> the type of the cache's keys
+ * @since 20.0
+ */
+@Beta
+@GwtIncompatible
+public final class DetailedCacheStats<K> {
+  private final CacheStats stats;
+  private final long[] loadLatencyCounts;
+  private final ImmutableMap<K, Long> hotKeys;
+
+  DetailedCacheStats(CacheStats stats, long[] loadLatencyCounts, ImmutableMap<K, Long> hotKeys) {
+    this.stats = checkNotNull(stats);
+    this.loadLatencyCounts = checkNotNull(loadLatencyCounts);
+    this.hotKeys = checkNotNull(hotKeys);
+  }
+
+  /**
+   * Returns a snapshot of the detailed statistics of {@code cache}.
+   *
+   * @throws IllegalArgumentException if {@code cache} was not built by a {@link CacheBuilder} on
+   *     which {@link CacheBuilder#recordDetailedStats} was called
+   */
+  public static <K> DetailedCacheStats<K> snapshot(Cache<K, ?> cache) {
+    checkArgument(cache instanceof LocalManualCache, "%s was not built by a CacheBuilder", cache);
+    LocalCache<K, ?> localCache = ((LocalManualCache<K, ?>) cache).localCache;
+    checkArgument(
+        localCache.recordsDetailedStats(), "%s does not record detailed stats", cache);
+    return localCache.detailedStats(cache.stats());
+  }
+
+  /**
+   * Returns the ordinary statistics of the cache, as {@link Cache#stats} would have returned them.
+   */
+  public CacheStats stats() {
+    return stats;
+  }
+
+  /**
+   * Returns a histogram of the latencies of the cache's loads, both successful and failed. Each key
+   * is the largest latency, in nanoseconds, counted by a bucket of the histogram, and is mapped to
+   * the number of loads whose latency is greater than the previous key, but not greater than this
+   * one. Empty buckets are omitted. Each bucket is no more than 25% wider than the latencies it
+   * counts, so the histogram records latencies to within about 25%.
+   */
+  public ImmutableSortedMap<Long, Long> loadLatencyHistogram() {
+    ImmutableSortedMap.Builder<Long, Long> builder = ImmutableSortedMap.naturalOrder();
+    for (int i = 0; i < loadLatencyCounts.length; i++) {
+      if (loadLatencyCounts[i] != 0) {
+        builder.put(LatencyHistogram.upperBound(i), loadLatencyCounts[i]);
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns an estimate of the given percentile of the cache's load latencies, in nanoseconds: the
+   * upper bound of the {@linkplain #loadLatencyHistogram histogram bucket} which contains it.
+   * Returns zero if the cache has not loaded any values.
+   *
+   * @param percentile the percentile to estimate, from 0 to 100 inclusive; for example 99 for the
+   *     latency which 99% of loads did not exceed
+   * @throws IllegalArgumentException if {@code percentile} is not between 0 and 100
+   */
+  public long loadLatencyPercentile(double percentile) {
+    checkArgument(
+        percentile >= 0.0 && percentile <= 100.0,
+        "percentile (%s) must be between 0 and 100",
+        percentile);
+    long total = 0;
+    for (long count : loadLatencyCounts) {
+      total += count;
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+    long seen = 0;
+    for (int i = 0; i < loadLatencyCounts.length; i++) {
+      seen += loadLatencyCounts[i];
+      if (seen >= rank) {
+        return LatencyHistogram.upperBound(i);
+      }
+    }
+    return LatencyHistogram.upperBound(loadLatencyCounts.length - 1);
+  }
+
+  /**
+   * Returns the keys which the cache estimates were used most frequently in the recent past, each
+   * mapped to its estimated number of uses, most used first. Reads and writes of a key both count
+   * as uses; the estimate may miss some reads made while the cache was heavily contended, and may
+   * overestimate the uses of keys which are rarely used. At most 16 keys are kept for each segment
+   * of the cache, and at most 16 keys are returned.
+   */
+  public ImmutableMap<K, Long> hotKeys() {
+    return hotKeys;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("stats", stats)
+        .add("loadLatencyMedian", loadLatencyPercentile(50))
+        .add("loadLatency99thPercentile", loadLatencyPercentile(99))
+        .add("hotKeys", hotKeys.keySet())
+        .toString();
+  }
+}
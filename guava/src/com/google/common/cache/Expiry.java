@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtCompatible;
+
+/**
+ * Calculates when cache entries expire, allowing each entry to have its own lifetime. See
+ * {@link CacheBuilder#expireAfter}.
+ *
+ * <p>Every method is given the current time, as read from the cache's {@linkplain
+ * CacheBuilder#ticker ticker}, and returns the length of time, in nanoseconds, from the current
+ * time until the entry should expire. A duration of zero (or less) makes the entry expire
+ * immediately, while very long durations are silently limited to about a century.
+ *
+ * <p>Implementations may be called while the cache holds internal locks, so they should be fast
+ * and must not access the cache.
+ *
+ * @param <K> the most general type of keys this expiry can calculate durations for
+ * @param <V> the most general type of values this expiry can calculate durations for
+ * @since 20.0
+ */
+@Beta
+@GwtCompatible
+public abstract class Expiry<K, V> {
+  /**
+   * Constructor for use by subclasses.
+   */
+  protected Expiry() {}
+
+  /**
+   * Returns the duration, in nanoseconds, until an entry which was just added to the cache
+   * (by loading or by an explicit write) should expire.
+   *
+   * @param key the key of the new entry
+   * @param value the value of the new entry
+   * @param currentTime the current time, in nanoseconds
+   */
+  public abstract long expireAfterCreate(K key, V value, long currentTime);
+
+  /**
+   * Returns the duration, in nanoseconds, until an entry whose value was just replaced should
+   * expire. The default implementation treats the replacement like the creation of a new entry, by
+   * calling {@link #expireAfterCreate}.
+   *
+   * @param key the key of the entry
+   * @param value the new value of the entry
+   * @param currentTime the current time, in nanoseconds
+   * @param currentDuration the remaining duration, in nanoseconds, until the entry would have
+   *     expired had its value not been replaced
+   */
+  public long expireAfterUpdate(K key, V value, long currentTime, long currentDuration) {
+    return expireAfterCreate(key, value, currentTime);
+  }
+
+  /**
+   * Returns the duration, in nanoseconds, until an entry which was just read should expire. The
+   * default implementation returns {@code currentDuration}, so that reads do not affect when an
+   * entry expires.
+   *
+   * @param key the key of the entry
+   * @param value the value of the entry
+   * @param currentTime the current time, in nanoseconds
+   * @param currentDuration the remaining duration, in nanoseconds, until the entry expires
+   */
+  public long expireAfterRead(K key, V value, long currentTime, long currentDuration) {
+    return currentDuration;
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.math.IntMath;
+import com.google.common.primitives.Ints;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * A probabilistic multiset for estimating the popularity of an element within a time window, used
+ * by {@link AdmissionPolicy#TINY_LFU}. The maximum frequency of an element is limited to 15
+ * (4-bits) and an aging process periodically halves the popularity of all elements.
+ *
+ * <p>This is a count-min sketch whose counters are packed sixteen to a {@code long}. An element is
+ * mapped to four counters, each located in a different {@code long} (selected by one of four hash
+ * functions) and a different nibble within it (selected by the low bits of the element's hash). The
+ * frequency estimate is the minimum of those four counters. Once the number of increments reaches
+ * ten times the width of the sketch, every counter is halved so that the sketch favors recent
+ * popularity over historic popularity.
+ *
+ * <p>The sketch is not thread safe; {@code LocalCache} only accesses it while holding the segment
+ * lock.
+ */
+@GwtIncompatible
+@NotThreadSafe
+final class FrequencySketch {
+
+  /** Seeds for the four hash functions; large odd constants borrowed from CityHash and FNV-1a. */
+  private static final long[] SEEDS = {
+    0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+  };
+
+  /** Mask that clears the high bit of every counter after the table has been shifted right. */
+  private static final long RESET_MASK = 0x7777777777777777L;
+
+  /** Mask that selects the low bit of every counter. */
+  private static final long ONE_MASK = 0x1111111111111111L;
+
+  /** The largest value a single counter may hold. */
+  static final int MAX_FREQUENCY = 15;
+
+  long[] table;
+  int tableMask;
+  int sampleSize;
+  int size;
+
+  /**
+   * Creates a sketch that is large enough to estimate the frequency of about
+   * {@code expectedSize} elements.
+   */
+  FrequencySketch(long expectedSize) {
+    ensureCapacity(expectedSize);
+  }
+
+  /**
+   * Grows the sketch, if necessary, so that it is large enough to estimate the frequency of about
+   * {@code expectedSize} elements. Growing the sketch keeps its history: because an element's
+   * counters are selected by the low bits of its hashes, which double as the table grows, each new
+   * block of the old table's width starts as a copy of the old table, and every element's estimate
+   * is the same after growing as it was before.
+   */
+  void ensureCapacity(long expectedSize) {
+    checkArgument(expectedSize >= 0);
+    int width = IntMath.ceilingPowerOfTwo(Ints.saturatedCast(Math.max(expectedSize, 1)));
+    width = Math.min(width, LocalCache.MAXIMUM_CAPACITY);
+    if ((table != null) && (table.length >= width)) {
+      return;
+    }
+
+    long[] oldTable = table;
+    table = new long[width];
+    tableMask = width - 1;
+    sampleSize = (int) Math.min(10L * width, Integer.MAX_VALUE);
+    if (oldTable != null) {
+      for (int i = 0; i < width; i += oldTable.length) {
+        System.arraycopy(oldTable, 0, table, i, oldTable.length);
+      }
+    }
+  }
+
+  /**
+   * Returns the estimated number of occurrences of an element with the given hash, up to
+   * {@link #MAX_FREQUENCY}.
+   */
+  int frequency(int hash) {
+    int start = offsetOf(hash);
+    int frequency = Integer.MAX_VALUE;
+    for (int i = 0; i < 4; i++) {
+      int index = indexOf(hash, i);
+      int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  /**
+   * Increments the popularity of an element with the given hash, if it does not exceed the maximum
+   * (15). All counters are periodically halved once the observed sample size reaches its maximum.
+   */
+  void increment(int hash) {
+    int start = offsetOf(hash);
+    boolean added = false;
+    for (int i = 0; i < 4; i++) {
+      added |= incrementAt(indexOf(hash, i), start + i);
+    }
+
+    if (added && (++size == sampleSize)) {
+      reset();
+    }
+  }
+
+  /**
+   * Increments the specified counter by 1 if it is not already at the maximum value (15).
+   *
+   * @param i the index of the {@code long} holding the counter
+   * @param j the counter to increment within that {@code long}
+   * @return whether the counter was incremented
+   */
+  private boolean incrementAt(int i, int j) {
+    int offset = j << 2;
+    long mask = 0xfL << offset;
+    if ((table[i] & mask) != mask) {
+      table[i] += 1L << offset;
+      return true;
+    }
+    return false;
+  }
+
+  /** Halves every counter and adjusts the sample size to match. */
+  @VisibleForTesting
+  void reset() {
+    int truncated = 0;
+    for (int i = 0; i < table.length; i++) {
+      truncated += Long.bitCount(table[i] & ONE_MASK);
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    size = (size >>> 1) - (truncated >>> 2);
+  }
+
+  /** Returns which group of four nibbles within a {@code long} the element's counters use. */
+  private static int offsetOf(int hash) {
+    return (hash & 3) << 2;
+  }
+
+  /** Returns the table index for the {@code i}th counter of the element. */
+  private int indexOf(int hash, int i) {
+    long h = (hash + SEEDS[i]) * SEEDS[i];
+    h += h >>> 32;
+    return ((int) h) & tableMask;
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Equivalence;
+import com.google.common.collect.Maps;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Tracks the most frequently used keys of a cache segment, when the cache
+ * {@linkplain CacheBuilder#recordDetailedStats records detailed stats}.
+ *
+ * <p>Use counts are estimated with a count-min sketch of four rows of {@link #WIDTH} counters each.
+ * Alongside the sketch, up to {@link #CAPACITY} heavy hitters are kept: every use of a key updates
+ * its estimate, and a key which is not yet a heavy hitter replaces the least used one if its
+ * estimate is higher. Once the number of uses reaches {@link #SAMPLE_SIZE}, every count is halved,
+ * so that the heavy hitters reflect recent rather than all-time popularity.
+ *
+ * <p>The heavy hitters are referenced strongly until they are displaced. The sketch is not thread
+ * safe; {@code LocalCache} only accesses it while holding the segment lock.
+ */
+@GwtIncompatible
+@NotThreadSafe
+final class HotKeySketch {
+
+  /** The number of counters in each row of the sketch; must be a power of two. */
+  static final int WIDTH = 512;
+
+  /** The number of heavy hitters kept. */
+  static final int CAPACITY = 16;
+
+  /** The number of uses after which all counts are halved. */
+  static final int SAMPLE_SIZE = 32 * WIDTH;
+
+  /** Seeds for the four hash functions; the low halves of those of {@link FrequencySketch}. */
+  private static final int[] SEEDS = {0x97cb3127, 0xbe98f273, 0x2f90404f, 0x84222325};
+
+  private final Equivalence<Object> keyEquivalence;
+  private final int[][] table = new int[SEEDS.length][WIDTH];
+  private final Object[] keys = new Object[CAPACITY];
+  private final int[] hashes = new int[CAPACITY];
+  private final int[] counts = new int[CAPACITY];
+  private int size;
+  private int uses;
+
+  HotKeySketch(Equivalence<Object> keyEquivalence) {
+    this.keyEquivalence = keyEquivalence;
+  }
+
+  /** Records a use of {@code key}, whose hash is {@code hash}. */
+  void increment(Object key, int hash) {
+    int estimate = Integer.MAX_VALUE;
+    for (int i = 0; i < SEEDS.length; i++) {
+      int index = indexOf(hash, i);
+      estimate = Math.min(estimate, ++table[i][index]);
+    }
+
+    int min = 0;
+    for (int i = 0; i < size; i++) {
+      if (hashes[i] == hash && keyEquivalence.equivalent(key, keys[i])) {
+        counts[i] = estimate;
+        min = -1;
+        break;
+      }
+      if (counts[i] < counts[min]) {
+        min = i;
+      }
+    }
+    if (min >= 0) {
+      if (size < CAPACITY) {
+        set(size++, key, hash, estimate);
+      } else if (estimate > counts[min]) {
+        set(min, key, hash, estimate);
+      }
+    }
+
+    if (++uses == SAMPLE_SIZE) {
+      reset();
+    }
+  }
+
+  /** Adds an entry to {@code result} for each heavy hitter, mapping it to its estimated count. */
+  void addTo(List<Map.Entry<Object, Long>> result) {
+    for (int i = 0; i < size; i++) {
+      result.add(Maps.immutableEntry(keys[i], (long) counts[i]));
+    }
+  }
+
+  private void set(int i, Object key, int hash, int count) {
+    keys[i] = key;
+    hashes[i] = hash;
+    counts[i] = count;
+  }
+
+  /** Halves every count. */
+  @VisibleForTesting
+  void reset() {
+    for (int[] row : table) {
+      for (int i = 0; i < WIDTH; i++) {
+        row[i] >>>= 1;
+      }
+    }
+    for (int i = 0; i < size; i++) {
+      counts[i] >>>= 1;
+    }
+    uses >>>= 1;
+  }
+
+  /** Returns the index, within row {@code i}, of the counter for an element with this hash. */
+  private static int indexOf(int hash, int i) {
+    int h = (hash + SEEDS[i]) * SEEDS[i];
+    h ^= h >>> 16;
+    return h & (WIDTH - 1);
+  }
+}
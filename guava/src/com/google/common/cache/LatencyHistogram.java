@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.google.common.cache;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * A concurrent histogram of latencies, in nanoseconds, used to record load times when a cache
+ * {@linkplain CacheBuilder#recordDetailedStats records detailed stats}.
+ *
+ * <p>Latencies are counted in log-linear buckets: each power of two is split into
+ * {@link #SUB_BUCKETS} equal buckets, so that the bucket a latency falls into is never more than
+ * 25% wider than the latency itself. Each bucket is a {@link LongAddable}, which spreads contended
+ * updates over the cells of a {@link Striped64}, so that recording a latency costs about as much
+ * as incrementing one of the ordinary {@link CacheStats} counters.
+ */
+@GwtIncompatible
+final class LatencyHistogram {
+
+  /** The number of buckets each power of two is split into; must be a power of two. */
+  static final int SUB_BUCKETS = 4;
+
+  private static final int SUB_BUCKET_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+
+  /** The number of buckets needed to cover every non-negative {@code long}. */
+  static final int BUCKETS = bucketOf(Long.MAX_VALUE) + 1;
+
+  private final LongAddable[] counts = new LongAddable[BUCKETS];
+
+  LatencyHistogram() {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = LongAddables.create();
+    }
+  }
+
+  /** Records a latency of {@code nanos}; negative latencies are recorded as zero. */
+  void record(long nanos) {
+    counts[bucketOf(Math.max(nanos, 0))].increment();
+  }
+
+  /**
+   * Adds the current count of each bucket to {@code sums}, an array of length {@link #BUCKETS}.
+   * The counts are not read atomically with respect to concurrent updates.
+   */
+  void addTo(long[] sums) {
+    for (int i = 0; i < BUCKETS; i++) {
+      sums[i] += counts[i].sum();
+    }
+  }
+
+  /** Returns the index of the bucket counting latencies of {@code nanos}. */
+  @VisibleForTesting
+  static int bucketOf(long nanos) {
+    if (nanos < SUB_BUCKETS) {
+      return (int) nanos;
+    }
+    int shift = (63 - Long.numberOfLeadingZeros(nanos)) - SUB_BUCKET_BITS;
+    return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((nanos >>> shift) & (SUB_BUCKETS - 1));
+  }
+
+  /** Returns the largest latency counted by bucket {@code index}. */
+  static long upperBound(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = (index >>> SUB_BUCKET_BITS) - 1;
+    long lowerBound = ((long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1)))) << shift;
+    return lowerBound + ((1L << shift) - 1);
+  }
+}
@@ -38,6 +38,7 @@ import com.google.common.cache.CacheLoader.UnsupportedLoadingOperationException;
 import com.google.common.collect.AbstractSequentialIterator;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -58,13 +59,18 @@ import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.SoftReference;
 import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
 import java.util.AbstractCollection;
 import java.util.AbstractMap;
 import java.util.AbstractQueue;
 import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Queue;
@@ -73,6 +79,9 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReferenceArray;
@@ -120,6 +129,12 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
    * rate, and ability to be implemented with O(1) time complexity. The initial LRU implementation
    * operates per-segment rather than globally for increased implementation simplicity. We expect
    * the cache hit rate to be similar to that of a global LRU algorithm.
+   *
+   * Optionally, a TinyLFU admission filter guards the LRU. Each segment keeps a count-min sketch of
+   * the popularity of recently read and written keys, and a new entry only displaces the LRU victim
+   * if the sketch estimates that it is used more frequently than the victim; otherwise the new
+   * entry is evicted in the victim's place. This prevents scans and one-hit wonders from flushing
+   * frequently used entries out of the cache.
    */
 
   // Constants
@@ -138,9 +153,10 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
   static final int CONTAINS_VALUE_RETRIES = 3;
 
   /**
-   * Number of cache access operations that can be buffered per segment before the cache's recency
-   * ordering information is updated. This is used to avoid lock contention by recording a memento
-   * of reads and delaying a lock acquisition until the threshold is crossed or a mutation occurs.
+   * Number of cache access operations that can be buffered per read buffer stripe before the
+   * cache's recency ordering information is updated. This is used to avoid lock contention by
+   * recording a memento of reads and delaying a lock acquisition until the threshold is crossed or
+   * a mutation occurs.
    *
    * <p>This must be a (2^n)-1 as it is used as a mask.
    */
@@ -193,12 +209,24 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
   /** Weigher to weigh cache entries. */
   final Weigher<K, V> weigher;
 
+  /** Decides whether a new entry may displace the eviction victim. */
+  final AdmissionPolicy admissionPolicy;
+
+  /** Serializes values to store them off-heap, or null if values are stored on the heap. */
+  @Nullable final ValueSerializer<V> valueSerializer;
+
+  /** Whether entries weigh the number of bytes their values occupy off-heap. */
+  final boolean weighsOffHeapBytes;
+
   /** How long after the last access to an entry the map will retain that entry. */
   final long expireAfterAccessNanos;
 
   /** How long after the last write to an entry the map will retain that entry. */
   final long expireAfterWriteNanos;
 
+  /** Calculates how long the map will retain each entry, or null if it doesn't vary. */
+  @Nullable final Expiry<K, V> expiry;
+
   /** How long after the last write an entry becomes a candidate for refresh. */
   final long refreshNanos;
 
@@ -229,11 +257,21 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
    */
   @Nullable final CacheLoader<? super K, V> defaultLoader;
 
+  /** Runs the map's periodic maintenance, or null if maintenance is only run by map operations. */
+  @Nullable final ScheduledExecutorService scheduler;
+
+  /**
+   * The latencies of all loads, shared by the stats counters of all segments, or null unless the
+   * map records detailed stats.
+   */
+  @Nullable final LatencyHistogram loadLatencies;
+
   /**
    * Creates a new, empty map with the specified strategy, initial capacity and concurrency level.
    */
   LocalCache(
       CacheBuilder<? super K, ? super V> builder, @Nullable CacheLoader<? super K, V> loader) {
+    builder.checkAdmissionPolicy();
     concurrencyLevel = Math.min(builder.getConcurrencyLevel(), MAX_SEGMENTS);
 
     keyStrength = builder.getKeyStrength();
@@ -244,8 +282,13 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
 
     maxWeight = builder.getMaximumWeight();
     weigher = builder.getWeigher();
+    admissionPolicy = builder.getAdmissionPolicy();
+    valueSerializer = builder.getValueSerializer();
+    weighsOffHeapBytes =
+        (valueSerializer != null) && (builder.maximumWeight != UNSET_INT) && !customWeigher();
     expireAfterAccessNanos = builder.getExpireAfterAccessNanos();
     expireAfterWriteNanos = builder.getExpireAfterWriteNanos();
+    expiry = builder.getExpiry();
     refreshNanos = builder.getRefreshNanos();
 
     removalListener = builder.getRemovalListener();
@@ -256,8 +299,10 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
 
     ticker = builder.getTicker(recordsTime());
     entryFactory = EntryFactory.getFactory(keyStrength, usesAccessEntries(), usesWriteEntries());
-    globalStatsCounter = builder.getStatsCounterSupplier().get();
+    loadLatencies = builder.isRecordingDetailedStats() ? new LatencyHistogram() : null;
+    globalStatsCounter = newStatsCounter(builder);
     defaultLoader = loader;
+    scheduler = builder.getScheduler();
 
     int initialCapacity = Math.min(builder.getInitialCapacity(), MAXIMUM_CAPACITY);
     if (evictsBySize() && !customWeigher()) {
@@ -299,14 +344,25 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
           maxSegmentWeight--;
         }
         this.segments[i] =
-            createSegment(segmentSize, maxSegmentWeight, builder.getStatsCounterSupplier().get());
+            createSegment(segmentSize, maxSegmentWeight, newStatsCounter(builder));
       }
     } else {
       for (int i = 0; i < this.segments.length; ++i) {
         this.segments[i] =
-            createSegment(segmentSize, UNSET_INT, builder.getStatsCounterSupplier().get());
+            createSegment(segmentSize, UNSET_INT, newStatsCounter(builder));
       }
     }
+
+    if (schedulesMaintenance()) {
+      MaintenanceTask.schedule(this);
+    }
+  }
+
+  private StatsCounter newStatsCounter(CacheBuilder<? super K, ? super V> builder) {
+    StatsCounter statsCounter = builder.getStatsCounterSupplier().get();
+    return (loadLatencies == null)
+        ? statsCounter
+        : new DetailedStatsCounter(statsCounter, loadLatencies);
   }
 
   boolean evictsBySize() {
@@ -317,8 +373,16 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     return weigher != OneWeigher.INSTANCE;
   }
 
+  boolean storesValuesOffHeap() {
+    return valueSerializer != null;
+  }
+
+  boolean usesFrequencySketch() {
+    return evictsBySize() && (admissionPolicy == AdmissionPolicy.TINY_LFU);
+  }
+
   boolean expires() {
-    return expiresAfterWrite() || expiresAfterAccess();
+    return expiresAfterWrite() || expiresAfterAccess() || expiresVariably();
   }
 
   boolean expiresAfterWrite() {
@@ -329,16 +393,35 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     return expireAfterAccessNanos > 0;
   }
 
+  /**
+   * Returns whether entries expire at times calculated by an {@link Expiry}. Such a map keeps each
+   * entry's expiration time in its access time field, which is otherwise unused as the map can't
+   * also expire entries after access, and uses a {@link TimerWheel} in place of its write queue.
+   * The access queue is maintained so that reads are buffered and replayed under lock, which is
+   * when entries are rescheduled in the timer wheel.
+   */
+  boolean expiresVariably() {
+    return expiry != null;
+  }
+
   boolean refreshes() {
     return refreshNanos > 0;
   }
 
   boolean usesAccessQueue() {
-    return expiresAfterAccess() || evictsBySize();
+    return expiresAfterAccess() || evictsBySize() || expiresVariably();
+  }
+
+  boolean recordsDetailedStats() {
+    return loadLatencies != null;
+  }
+
+  boolean usesReadBuffer() {
+    return usesAccessQueue() || recordsDetailedStats();
   }
 
   boolean usesWriteQueue() {
-    return expiresAfterWrite();
+    return expiresAfterWrite() || expiresVariably();
   }
 
   boolean recordsWrite() {
@@ -350,7 +433,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
   }
 
   boolean recordsTime() {
-    return recordsWrite() || recordsAccess();
+    return recordsWrite() || recordsAccess() || expiresVariably();
   }
 
   boolean usesWriteEntries() {
@@ -361,6 +444,41 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     return usesAccessQueue() || recordsAccess();
   }
 
+  /**
+   * Whether maintenance runs periodically on the {@link #scheduler}, in which case reads leave
+   * expired entries for it to remove. Only maps which expire, refresh or reference their keys or
+   * values schedule their maintenance; other maps have nothing to clean up while idle.
+   */
+  boolean schedulesMaintenance() {
+    return (scheduler != null)
+        && (expires() || refreshes() || usesKeyReferences() || usesValueReferences());
+  }
+
+  /** The longest delay between the end of one scheduled maintenance run and the next. */
+  static final long MAXIMUM_MAINTENANCE_DELAY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  /** The shortest delay between the end of one scheduled maintenance run and the next. */
+  static final long MINIMUM_MAINTENANCE_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  /**
+   * Returns the delay between scheduled maintenance runs: a second, or the shortest expiration or
+   * refresh duration if that is shorter, so that entries don't outlive their durations by much more
+   * than that duration again.
+   */
+  long maintenanceDelayNanos() {
+    long delay = MAXIMUM_MAINTENANCE_DELAY_NANOS;
+    if (expiresAfterWrite()) {
+      delay = Math.min(delay, expireAfterWriteNanos);
+    }
+    if (expiresAfterAccess()) {
+      delay = Math.min(delay, expireAfterAccessNanos);
+    }
+    if (refreshes()) {
+      delay = Math.min(delay, refreshNanos);
+    }
+    return Math.max(delay, MINIMUM_MAINTENANCE_DELAY_NANOS);
+  }
+
   boolean usesKeyReferences() {
     return keyStrength != Strength.STRONG;
   }
@@ -370,18 +488,17 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
   }
 
   enum Strength {
-    /*
-     * TODO(kevinb): If we strongly reference the value and aren't loading, we needn't wrap the
-     * value. This could save ~8 bytes per entry.
-     */
-
     STRONG {
       @Override
       <K, V> ValueReference<K, V> referenceValue(
           Segment<K, V> segment, ReferenceEntry<K, V> entry, V value, int weight) {
-        return (weight == 1)
-            ? new StrongValueReference<K, V>(value)
-            : new WeightedStrongValueReference<K, V>(value, weight);
+        if (weight != 1) {
+          return new WeightedStrongValueReference<K, V>(value, weight);
+        }
+        // strong entries hold such values inline, rather than wrapping them
+        return (entry instanceof StrongEntry)
+            ? ((StrongEntry<K, V>) entry).inlineValue(value)
+            : new StrongValueReference<K, V>(value);
       }
 
       @Override
@@ -1068,13 +1185,24 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
    * To maintain this code, make a change for the strong reference type. Then, cut and paste, and
    * replace "Strong" with "Soft" or "Weak" within the pasted text. The primary difference is that
    * strong entries store the key reference directly while soft and weak entries delegate to their
-   * respective superclasses.
+   * respective superclasses. Strong entries also hold strong values inline, which weak entries
+   * cannot do, as their get() method is WeakReference's.
    */
 
   /**
    * Used for strongly-referenced keys.
+   *
+   * <p>To save the separate {@link StrongValueReference} object that would otherwise wrap it, a
+   * strongly-referenced value of weight one is held inline, and the entry serves as its own value
+   * reference. Any other value reference, such as a loading, weighted or weak one, is held in the
+   * same field instead. The two cases are told apart with {@code instanceof}, which is safe because
+   * values stored in the cache are never instances of the package-private {@code ValueReference}.
+   * Note that the entry's value reference is then only a view of the entry: code which needs the
+   * value to outlive a change of the entry's value, like {@link LoadingValueReference}, must copy
+   * it out.
    */
-  static class StrongEntry<K, V> extends AbstractReferenceEntry<K, V> {
+  static class StrongEntry<K, V> extends AbstractReferenceEntry<K, V>
+      implements ValueReference<K, V> {
     final K key;
 
     StrongEntry(K key, int hash, @Nullable ReferenceEntry<K, V> next) {
@@ -1088,20 +1216,36 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       return this.key;
     }
 
-    // The code below is exactly the same for each entry type.
-
     final int hash;
     final ReferenceEntry<K, V> next;
-    volatile ValueReference<K, V> valueReference = unset();
 
+    /** Either the value itself, held inline, or its {@code ValueReference}. */
+    volatile Object valueOrReference = unset();
+
+    @SuppressWarnings("unchecked") // values are never ValueReferences
     @Override
     public ValueReference<K, V> getValueReference() {
-      return valueReference;
+      Object valueOrReference = this.valueOrReference;
+      return (valueOrReference instanceof ValueReference)
+          ? (ValueReference<K, V>) valueOrReference
+          : this;
     }
 
     @Override
     public void setValueReference(ValueReference<K, V> valueReference) {
-      this.valueReference = valueReference;
+      // this entry is only its own value reference once inlineValue has stored the value
+      if (valueReference != this) {
+        this.valueOrReference = valueReference;
+      }
+    }
+
+    /**
+     * Holds {@code value} inline, replacing the entry's current value reference, and returns the
+     * entry as the value's reference.
+     */
+    ValueReference<K, V> inlineValue(V value) {
+      this.valueOrReference = value;
+      return this;
     }
 
     @Override
@@ -1113,6 +1257,54 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     public ReferenceEntry<K, V> getNext() {
       return next;
     }
+
+    // The entry's own value reference, which is used while the value is held inline.
+
+    @SuppressWarnings("unchecked") // values are never ValueReferences
+    @Override
+    public V get() {
+      Object valueOrReference = this.valueOrReference;
+      // the value may have been replaced by a reference since this view was obtained
+      return (valueOrReference instanceof ValueReference)
+          ? ((ValueReference<K, V>) valueOrReference).get()
+          : (V) valueOrReference;
+    }
+
+    @Override
+    public V waitForValue() {
+      return get();
+    }
+
+    @Override
+    public int getWeight() {
+      return 1;
+    }
+
+    @Override
+    public ReferenceEntry<K, V> getEntry() {
+      return null;
+    }
+
+    @Override
+    public ValueReference<K, V> copyFor(
+        ReferenceQueue<V> queue, V value, ReferenceEntry<K, V> entry) {
+      return (entry instanceof StrongEntry)
+          ? ((StrongEntry<K, V>) entry).inlineValue(value)
+          : new StrongValueReference<K, V>(value);
+    }
+
+    @Override
+    public void notifyNewValue(V newValue) {}
+
+    @Override
+    public boolean isLoading() {
+      return false;
+    }
+
+    @Override
+    public boolean isActive() {
+      return true;
+    }
   }
 
   static final class StrongAccessEntry<K, V> extends StrongEntry<K, V> {
@@ -1790,6 +1982,89 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     }
   }
 
+  /**
+   * References a value serialized into a direct buffer, outside of the Java heap. The buffer's
+   * memory is freed when the reference is garbage collected.
+   */
+  static final class OffHeapValueReference<K, V> implements ValueReference<K, V> {
+    final ValueSerializer<V> serializer;
+    final ByteBuffer buffer;
+    final int weight;
+
+    OffHeapValueReference(ValueSerializer<V> serializer, ByteBuffer buffer, int weight) {
+      this.serializer = serializer;
+      this.buffer = buffer;
+      this.weight = weight;
+    }
+
+    /** Serializes {@code value} into a new, read-only direct buffer. */
+    static <V> ByteBuffer store(ValueSerializer<V> serializer, V value) {
+      byte[] bytes = serializer.serialize(value);
+      ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+      buffer.put(bytes);
+      buffer.flip();
+      return buffer.asReadOnlyBuffer();
+    }
+
+    /** Returns the number of bytes occupied off-heap by the value. */
+    int size() {
+      return buffer.capacity();
+    }
+
+    @Override
+    public V get() {
+      // each reader needs its own position
+      return serializer.deserialize(buffer.duplicate());
+    }
+
+    @Override
+    public int getWeight() {
+      return weight;
+    }
+
+    @Override
+    public ReferenceEntry<K, V> getEntry() {
+      return null;
+    }
+
+    @Override
+    public ValueReference<K, V> copyFor(
+        ReferenceQueue<V> queue, V value, ReferenceEntry<K, V> entry) {
+      return this;
+    }
+
+    @Override
+    public boolean isLoading() {
+      return false;
+    }
+
+    @Override
+    public boolean isActive() {
+      return true;
+    }
+
+    @Override
+    public V waitForValue() {
+      return get();
+    }
+
+    @Override
+    public void notifyNewValue(V newValue) {}
+  }
+
+  /**
+   * Returns the number of bytes occupied off-heap by the value {@code valueReference} references,
+   * or by the value being refreshed if it is loading.
+   */
+  static int offHeapSize(ValueReference<?, ?> valueReference) {
+    if (valueReference instanceof LoadingValueReference) {
+      valueReference = ((LoadingValueReference<?, ?>) valueReference).getOldValue();
+    }
+    return (valueReference instanceof OffHeapValueReference)
+        ? ((OffHeapValueReference<?, ?>) valueReference).size()
+        : 0;
+  }
+
   /**
    * Applies a supplemental hash function to a given hash code, which defends against poor quality
    * hash functions. This is critical when the concurrent hash map uses power-of-two length hash
@@ -1920,9 +2195,23 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     if (expiresAfterWrite() && (now - entry.getWriteTime() >= expireAfterWriteNanos)) {
       return true;
     }
+    if (expiresVariably() && (now - entry.getAccessTime() >= 0)) {
+      return true;
+    }
     return false;
   }
 
+  /**
+   * The longest duration an {@link Expiry} may specify, about 146 years, which keeps expiration
+   * times from overflowing.
+   */
+  static final long MAXIMUM_EXPIRY_NANOS = Long.MAX_VALUE >> 1;
+
+  /** Returns the time at which an entry expires, given a duration returned by the expiry. */
+  static long expirationTime(long now, long durationNanos) {
+    return now + Math.max(0, Math.min(durationNanos, MAXIMUM_EXPIRY_NANOS));
+  }
+
   // queues
 
   // Guarded By Segment.this
@@ -2027,6 +2316,12 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     @GuardedBy("this")
     long totalWeight;
 
+    /**
+     * The number of bytes occupied off-heap by the values of the live elements in this segment's
+     * region. Only written while holding the lock, but read without it to report statistics.
+     */
+    volatile long offHeapBytes;
+
     /**
      * Number of updates that alter the size of the table. This is used during bulk-read methods to
      * make sure they see a consistent snapshot: If modCounts change during a traversal of segments
@@ -2064,25 +2359,36 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     final ReferenceQueue<V> valueReferenceQueue;
 
     /**
-     * The recency queue is used to record which entries were accessed for updating the access
-     * list's ordering. It is drained as a batch operation when either the DRAIN_THRESHOLD is
-     * crossed or a write occurs on the segment.
+     * The read buffer is used to record which entries were accessed for updating the access list's
+     * ordering. It is drained as a batch operation when either one of its stripes crosses the
+     * DRAIN_THRESHOLD or a write occurs on the segment. Null unless the segment maintains an access
+     * queue.
      */
-    final Queue<ReferenceEntry<K, V>> recencyQueue;
+    @Nullable final ReadBuffer<ReferenceEntry<K, V>> readBuffer;
 
     /**
      * A counter of the number of reads since the last write, used to drain queues on a small
-     * fraction of read operations.
+     * fraction of read operations. When there is a read buffer, this is a fallback to the drains
+     * its stripes request, which only happen once a stripe fills up. Unused when maintenance is
+     * scheduled.
      */
     final AtomicInteger readCount = new AtomicInteger();
 
     /**
      * A queue of elements currently in the map, ordered by write time. Elements are added to the
-     * tail of the queue on write.
+     * tail of the queue on write. When the map expires variably this is the timer wheel.
      */
     @GuardedBy("this")
     final Queue<ReferenceEntry<K, V>> writeQueue;
 
+    /**
+     * Schedules the expiration of elements currently in the map, by their expiration time. Null
+     * unless the map expires variably, in which case it is also the write queue.
+     */
+    @GuardedBy("this")
+    @Nullable
+    final TimerWheel<K, V> timerWheel;
+
     /**
      * A queue of elements currently in the map, ordered by access time. Elements are added to the
      * tail of the queue on access (note that writes count as accesses).
@@ -2090,6 +2396,23 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     @GuardedBy("this")
     final Queue<ReferenceEntry<K, V>> accessQueue;
 
+    /**
+     * Estimates how frequently keys in this segment have recently been used, in order to decide
+     * whether a new entry should displace the eviction victim. Null unless the cache uses
+     * {@link AdmissionPolicy#TINY_LFU}.
+     */
+    @GuardedBy("this")
+    @Nullable
+    final FrequencySketch frequencySketch;
+
+    /**
+     * Estimates which keys in this segment have recently been used most frequently. Null unless the
+     * map records detailed stats.
+     */
+    @GuardedBy("this")
+    @Nullable
+    final HotKeySketch hotKeySketch;
+
     /** Accumulates cache statistics. */
     final StatsCounter statsCounter;
 
@@ -2101,20 +2424,21 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       this.map = map;
       this.maxSegmentWeight = maxSegmentWeight;
       this.statsCounter = checkNotNull(statsCounter);
+      frequencySketch = map.usesFrequencySketch() ? new FrequencySketch(initialCapacity) : null;
+      hotKeySketch = map.recordsDetailedStats() ? new HotKeySketch(map.keyEquivalence) : null;
       initTable(newEntryArray(initialCapacity));
 
       keyReferenceQueue = map.usesKeyReferences() ? new ReferenceQueue<K>() : null;
 
       valueReferenceQueue = map.usesValueReferences() ? new ReferenceQueue<V>() : null;
 
-      recencyQueue =
-          map.usesAccessQueue()
-              ? new ConcurrentLinkedQueue<ReferenceEntry<K, V>>()
-              : LocalCache.<ReferenceEntry<K, V>>discardingQueue();
+      readBuffer = map.usesReadBuffer() ? new ReadBuffer<ReferenceEntry<K, V>>() : null;
+
+      timerWheel = map.expiresVariably() ? new TimerWheel<K, V>(map.ticker.read()) : null;
 
       writeQueue =
           map.usesWriteQueue()
-              ? new WriteQueue<K, V>()
+              ? ((timerWheel != null) ? timerWheel : new WriteQueue<K, V>())
               : LocalCache.<ReferenceEntry<K, V>>discardingQueue();
 
       accessQueue =
@@ -2134,6 +2458,9 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
         this.threshold++;
       }
       this.table = newTable;
+      if (frequencySketch != null) {
+        frequencySketch.ensureCapacity(newTable.length());
+      }
     }
 
     @GuardedBy("this")
@@ -2170,11 +2497,32 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     @GuardedBy("this")
     void setValue(ReferenceEntry<K, V> entry, K key, V value, long now) {
       ValueReference<K, V> previous = entry.getValueReference();
-      int weight = map.weigher.weigh(key, value);
+      ByteBuffer offHeapValue =
+          map.storesValuesOffHeap()
+              ? OffHeapValueReference.store(map.valueSerializer, value)
+              : null;
+      int weight =
+          map.weighsOffHeapBytes ? offHeapValue.capacity() : map.weigher.weigh(key, value);
       checkState(weight >= 0, "Weights must be non-negative");
 
-      ValueReference<K, V> valueReference =
-          map.valueStrength.referenceValue(this, entry, value, weight);
+      if (map.expiresVariably()) {
+        // a loading value reference returns the value it is replacing, if any
+        V previousValue = previous.get();
+        long duration =
+            (previousValue == null)
+                ? map.expiry.expireAfterCreate(key, value, now)
+                : map.expiry.expireAfterUpdate(key, value, now, entry.getAccessTime() - now);
+        entry.setAccessTime(expirationTime(now, duration));
+      }
+
+      ValueReference<K, V> valueReference;
+      if (offHeapValue != null) {
+        valueReference =
+            new OffHeapValueReference<K, V>(map.valueSerializer, offHeapValue, weight);
+        offHeapBytes += offHeapValue.capacity();
+      } else {
+        valueReference = map.valueStrength.referenceValue(this, entry, value, weight);
+      }
       entry.setValueReference(valueReference);
       recordWrite(entry, weight, now);
       previous.notifyNewValue(value);
@@ -2247,13 +2595,11 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
             } else {
               V value = valueReference.get();
               if (value == null) {
-                enqueueNotification(
-                    entryKey, hash, value, valueReference.getWeight(), RemovalCause.COLLECTED);
+                enqueueNotification(entryKey, hash, value, valueReference, RemovalCause.COLLECTED);
               } else if (map.isExpired(e, now)) {
                 // This is a duplicate check, as preWriteCleanup already purged expired
                 // entries, but let's accomodate an incorrect expiration queue.
-                enqueueNotification(
-                    entryKey, hash, value, valueReference.getWeight(), RemovalCause.EXPIRED);
+                enqueueNotification(entryKey, hash, value, valueReference, RemovalCause.EXPIRED);
               } else {
                 recordLockedRead(e, now);
                 statsCounter.recordHits(1);
@@ -2325,72 +2671,205 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       }
     }
 
-    // at most one of loadSync/loadAsync may be called for any given LoadingValueReference
-
-    V loadSync(
-        K key,
-        int hash,
-        LoadingValueReference<K, V> loadingValueReference,
-        CacheLoader<? super K, V> loader)
-        throws ExecutionException {
-      ListenableFuture<V> loadingFuture = loadingValueReference.loadFuture(key, loader);
-      return getAndRecordStats(key, hash, loadingValueReference, loadingFuture);
-    }
-
-    ListenableFuture<V> loadAsync(
-        final K key,
-        final int hash,
-        final LoadingValueReference<K, V> loadingValueReference,
-        CacheLoader<? super K, V> loader) {
-      final ListenableFuture<V> loadingFuture = loadingValueReference.loadFuture(key, loader);
-      loadingFuture.addListener(
-          new Runnable() {
-            @Override
-            public void run() {
-              try {
-                getAndRecordStats(key, hash, loadingValueReference, loadingFuture);
-              } catch (Throwable t) {
-                logger.log(Level.WARNING, "Exception thrown during refresh", t);
-                loadingValueReference.setException(t);
-              }
-            }
-          },
-          directExecutor());
-      return loadingFuture;
-    }
+    // asynchronous loading
 
     /**
-     * Waits uninterruptibly for {@code newValue} to be loaded, and then records loading stats.
+     * Returns a future for the value associated with {@code key}, without blocking. If the value is
+     * neither present nor already being loaded, a new {@code LoadingValueReference} is installed
+     * for {@code key} and added to {@code toLoad}; the caller is then responsible for completing
+     * it, typically by calling {@link LocalCache#loadReserved}. {@code loader} is only used to
+     * refresh a present value.
      */
-    V getAndRecordStats(
+    @GwtIncompatible // Futures.nonCancellationPropagating
+    ListenableFuture<V> getAsync(
         K key,
         int hash,
-        LoadingValueReference<K, V> loadingValueReference,
-        ListenableFuture<V> newValue)
-        throws ExecutionException {
-      V value = null;
+        CacheLoader<? super K, V> loader,
+        Map<K, LoadingValueReference<K, V>> toLoad) {
+      checkNotNull(key);
+      checkNotNull(loader);
       try {
-        value = getUninterruptibly(newValue);
-        if (value == null) {
-          throw new InvalidCacheLoadException("CacheLoader returned null for key " + key + ".");
+        if (count != 0) { // read-volatile
+          // don't call getLiveEntry, which would ignore loading values
+          ReferenceEntry<K, V> e = getEntry(key, hash);
+          if (e != null) {
+            long now = map.ticker.read();
+            V value = getLiveValue(e, now);
+            if (value != null) {
+              recordRead(e, now);
+              statsCounter.recordHits(1);
+              return Futures.immediateFuture(scheduleRefresh(e, key, hash, value, now, loader));
+            }
+            ValueReference<K, V> valueReference = e.getValueReference();
+            if (valueReference.isLoading()) {
+              statsCounter.recordMisses(1);
+              return loadingFuture(key, (LoadingValueReference<K, V>) valueReference);
+            }
+          }
         }
-        statsCounter.recordLoadSuccess(loadingValueReference.elapsedNanos());
-        storeLoadedValue(key, hash, loadingValueReference, value);
-        return value;
+
+        // at this point e is either null or expired;
+        return lockedGetOrReserve(key, hash, toLoad);
       } finally {
-        if (value == null) {
-          statsCounter.recordLoadException(loadingValueReference.elapsedNanos());
-          removeLoadingValue(key, hash, loadingValueReference);
-        }
+        postReadCleanup();
       }
     }
 
-    V scheduleRefresh(
-        ReferenceEntry<K, V> entry,
-        K key,
-        int hash,
-        V oldValue,
-        long now,
+    @GwtIncompatible // Futures.nonCancellationPropagating
+    ListenableFuture<V> lockedGetOrReserve(
+        K key, int hash, Map<K, LoadingValueReference<K, V>> toLoad) {
+      ReferenceEntry<K, V> e;
+      ValueReference<K, V> valueReference = null;
+      LoadingValueReference<K, V> loadingValueReference;
+
+      lock();
+      try {
+        // re-read ticker once inside the lock
+        long now = map.ticker.read();
+        preWriteCleanup(now);
+
+        int newCount = this.count - 1;
+        AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
+        int index = hash & (table.length() - 1);
+        ReferenceEntry<K, V> first = table.get(index);
+
+        for (e = first; e != null; e = e.getNext()) {
+          K entryKey = e.getKey();
+          if (e.getHash() == hash
+              && entryKey != null
+              && map.keyEquivalence.equivalent(key, entryKey)) {
+            valueReference = e.getValueReference();
+            if (valueReference.isLoading()) {
+              statsCounter.recordMisses(1);
+              return loadingFuture(key, (LoadingValueReference<K, V>) valueReference);
+            }
+
+            V value = valueReference.get();
+            if (value == null) {
+              enqueueNotification(entryKey, hash, value, valueReference, RemovalCause.COLLECTED);
+            } else if (map.isExpired(e, now)) {
+              enqueueNotification(entryKey, hash, value, valueReference, RemovalCause.EXPIRED);
+            } else {
+              recordLockedRead(e, now);
+              statsCounter.recordHits(1);
+              return Futures.immediateFuture(value);
+            }
+
+            // immediately reuse invalid entries
+            writeQueue.remove(e);
+            accessQueue.remove(e);
+            this.count = newCount; // write-volatile
+            break;
+          }
+        }
+
+        loadingValueReference = new LoadingValueReference<K, V>();
+        if (e == null) {
+          e = newEntry(key, hash, first);
+          e.setValueReference(loadingValueReference);
+          table.set(index, e);
+        } else {
+          e.setValueReference(loadingValueReference);
+        }
+      } finally {
+        unlock();
+        postWriteCleanup();
+      }
+
+      statsCounter.recordMisses(1);
+      toLoad.put(key, loadingValueReference);
+      return loadingFuture(key, loadingValueReference);
+    }
+
+    /**
+     * Returns a view of the value being loaded by {@code loadingValueReference} which fails if the
+     * loaded value is null, and whose cancellation does not affect other callers waiting for the
+     * same value.
+     */
+    @GwtIncompatible // Futures.nonCancellationPropagating
+    ListenableFuture<V> loadingFuture(
+        final K key, LoadingValueReference<K, V> loadingValueReference) {
+      return Futures.transform(
+          Futures.nonCancellationPropagating(loadingValueReference.futureValue),
+          new Function<V, V>() {
+            @Override
+            public V apply(@Nullable V value) {
+              if (value == null) {
+                throw new InvalidCacheLoadException(
+                    "CacheLoader returned null for key " + key + ".");
+              }
+              return value;
+            }
+          },
+          directExecutor());
+    }
+
+    // at most one of loadSync/loadAsync may be called for any given LoadingValueReference
+
+    V loadSync(
+        K key,
+        int hash,
+        LoadingValueReference<K, V> loadingValueReference,
+        CacheLoader<? super K, V> loader)
+        throws ExecutionException {
+      ListenableFuture<V> loadingFuture = loadingValueReference.loadFuture(key, loader);
+      return getAndRecordStats(key, hash, loadingValueReference, loadingFuture);
+    }
+
+    ListenableFuture<V> loadAsync(
+        final K key,
+        final int hash,
+        final LoadingValueReference<K, V> loadingValueReference,
+        CacheLoader<? super K, V> loader) {
+      final ListenableFuture<V> loadingFuture = loadingValueReference.loadFuture(key, loader);
+      loadingFuture.addListener(
+          new Runnable() {
+            @Override
+            public void run() {
+              try {
+                getAndRecordStats(key, hash, loadingValueReference, loadingFuture);
+              } catch (Throwable t) {
+                logger.log(Level.WARNING, "Exception thrown during refresh", t);
+                loadingValueReference.setException(t);
+              }
+            }
+          },
+          directExecutor());
+      return loadingFuture;
+    }
+
+    /**
+     * Waits uninterruptibly for {@code newValue} to be loaded, and then records loading stats.
+     */
+    V getAndRecordStats(
+        K key,
+        int hash,
+        LoadingValueReference<K, V> loadingValueReference,
+        ListenableFuture<V> newValue)
+        throws ExecutionException {
+      V value = null;
+      try {
+        value = getUninterruptibly(newValue);
+        if (value == null) {
+          throw new InvalidCacheLoadException("CacheLoader returned null for key " + key + ".");
+        }
+        statsCounter.recordLoadSuccess(loadingValueReference.elapsedNanos());
+        storeLoadedValue(key, hash, loadingValueReference, value);
+        return value;
+      } finally {
+        if (value == null) {
+          statsCounter.recordLoadException(loadingValueReference.elapsedNanos());
+          removeLoadingValue(key, hash, loadingValueReference);
+        }
+      }
+    }
+
+    V scheduleRefresh(
+        ReferenceEntry<K, V> entry,
+        K key,
+        int hash,
+        V oldValue,
+        long now,
         CacheLoader<? super K, V> loader) {
       if (map.refreshes()
           && (now - entry.getWriteTime() > map.refreshNanos)
@@ -2560,12 +3039,13 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       while (valueReferenceQueue.poll() != null) {}
     }
 
-    // recency queue, shared by expiration and eviction
+    // read buffer, shared by expiration and eviction
 
     /**
      * Records the relative order in which this read was performed by adding {@code entry} to the
-     * recency queue. At write-time, or when the queue is full past the threshold, the queue will be
-     * drained and the entries therein processed.
+     * read buffer. At write-time, or when the buffer is full past the threshold, the buffer will be
+     * drained and the entries therein processed. The read may be dropped if the buffer is full or
+     * contended.
      *
      * <p>Note: locked reads should use {@link #recordLockedRead}.
      */
@@ -2573,7 +3053,10 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       if (map.recordsAccess()) {
         entry.setAccessTime(now);
       }
-      recencyQueue.add(entry);
+      recordExpiryRead(entry, now);
+      if (readBuffer != null) {
+        readBuffer.offer(entry);
+      }
     }
 
     /**
@@ -2588,7 +3071,36 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       if (map.recordsAccess()) {
         entry.setAccessTime(now);
       }
+      recordExpiryRead(entry, now);
+      recordFrequency(entry);
+      recordHotKey(entry);
       accessQueue.add(entry);
+      if (timerWheel != null) {
+        timerWheel.add(entry);
+      }
+    }
+
+    /**
+     * Updates the expiration time of {@code entry}, which was just read, if the map expires
+     * variably. The entry is rescheduled in the timer wheel once the read is recorded under lock.
+     * Since this runs on the read path, an exception thrown by the {@link Expiry} is logged rather
+     * than propagated, and the entry keeps its previous expiration time.
+     */
+    void recordExpiryRead(ReferenceEntry<K, V> entry, long now) {
+      if (map.expiresVariably()) {
+        K key = entry.getKey();
+        V value = entry.getValueReference().get();
+        if (key != null && value != null) {
+          long duration;
+          try {
+            duration = map.expiry.expireAfterRead(key, value, now, entry.getAccessTime() - now);
+          } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Exception thrown by expiry", e);
+            return;
+          }
+          entry.setAccessTime(expirationTime(now, duration));
+        }
+      }
     }
 
     /**
@@ -2597,8 +3109,8 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
      */
     @GuardedBy("this")
     void recordWrite(ReferenceEntry<K, V> entry, int weight, long now) {
-      // we are already under lock, so drain the recency queue immediately
-      drainRecencyQueue();
+      // we are already under lock, so drain the read buffer immediately
+      drainReadBuffer();
       totalWeight += weight;
 
       if (map.recordsAccess()) {
@@ -2607,26 +3119,75 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       if (map.recordsWrite()) {
         entry.setWriteTime(now);
       }
+      recordFrequency(entry);
+      recordHotKey(entry);
       accessQueue.add(entry);
       writeQueue.add(entry);
     }
 
     /**
-     * Drains the recency queue, updating eviction metadata that the entries therein were read in
+     * Records a use of {@code entry}'s key in the frequency sketch, if this segment keeps one.
+     */
+    @GuardedBy("this")
+    void recordFrequency(ReferenceEntry<K, V> entry) {
+      if (frequencySketch != null) {
+        frequencySketch.increment(entry.getHash());
+      }
+    }
+
+    /**
+     * Records a lookup of an absent key in the frequency sketch, if this segment keeps one, so that
+     * the key is not a stranger when it is later written. This is best effort: the miss is dropped
+     * if the segment lock is contended.
+     */
+    void recordMiss(int hash) {
+      if ((frequencySketch != null) && tryLock()) {
+        try {
+          frequencySketch.increment(hash);
+        } finally {
+          unlock();
+        }
+      }
+    }
+
+    /**
+     * Records a use of {@code entry}'s key in the hot key sketch, if this segment keeps one.
+     */
+    @GuardedBy("this")
+    void recordHotKey(ReferenceEntry<K, V> entry) {
+      if (hotKeySketch != null) {
+        K key = entry.getKey();
+        if (key != null) {
+          hotKeySketch.increment(key, entry.getHash());
+        }
+      }
+    }
+
+    /**
+     * Drains the read buffer, updating eviction metadata that the entries therein were read in
      * the specified relative order. This currently amounts to adding them to relevant eviction
      * lists (accounting for the fact that they could have been removed from the map since being
-     * added to the recency queue).
+     * added to the read buffer).
      */
     @GuardedBy("this")
-    void drainRecencyQueue() {
+    void drainReadBuffer() {
+      if (readBuffer == null) {
+        return;
+      }
       ReferenceEntry<K, V> e;
-      while ((e = recencyQueue.poll()) != null) {
-        // An entry may be in the recency queue despite it being removed from
+      while ((e = readBuffer.poll()) != null) {
+        // the read happened, even if the entry has been removed since
+        recordHotKey(e);
+        // An entry may be in the read buffer despite it being removed from
         // the map . This can occur when the entry was concurrently read while a
         // writer is removing it from the segment or after a clear has removed
         // all of the segment's entries.
         if (accessQueue.contains(e)) {
+          recordFrequency(e);
           accessQueue.add(e);
+          if (timerWheel != null) {
+            timerWheel.add(e);
+          }
         }
       }
     }
@@ -2634,9 +3195,13 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     // expiration
 
     /**
-     * Cleanup expired entries when the lock is available.
+     * Cleanup expired entries when the lock is available, unless that is left to scheduled
+     * maintenance.
      */
     void tryExpireEntries(long now) {
+      if (map.schedulesMaintenance()) {
+        return;
+      }
       if (tryLock()) {
         try {
           expireEntries(now);
@@ -2649,9 +3214,22 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
 
     @GuardedBy("this")
     void expireEntries(long now) {
-      drainRecencyQueue();
+      drainReadBuffer();
 
       ReferenceEntry<K, V> e;
+      if (timerWheel != null) {
+        timerWheel.advance(now);
+        while ((e = timerWheel.poll()) != null) {
+          if (map.isExpired(e, now)) {
+            if (!removeEntry(e, e.getHash(), RemovalCause.EXPIRED)) {
+              throw new AssertionError();
+            }
+          } else {
+            // not yet expired; reschedule at a finer resolution
+            timerWheel.add(e);
+          }
+        }
+      }
       while ((e = writeQueue.peek()) != null && map.isExpired(e, now)) {
         if (!removeEntry(e, e.getHash(), RemovalCause.EXPIRED)) {
           throw new AssertionError();
@@ -2668,8 +3246,15 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
 
     @GuardedBy("this")
     void enqueueNotification(
-        @Nullable K key, int hash, @Nullable V value, int weight, RemovalCause cause) {
-      totalWeight -= weight;
+        @Nullable K key,
+        int hash,
+        @Nullable V value,
+        ValueReference<K, V> valueReference,
+        RemovalCause cause) {
+      totalWeight -= valueReference.getWeight();
+      if (map.storesValuesOffHeap()) {
+        offHeapBytes -= offHeapSize(valueReference);
+      }
       if (cause.wasEvicted()) {
         statsCounter.recordEviction();
       }
@@ -2691,7 +3276,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
         return;
       }
 
-      drainRecencyQueue();
+      drainReadBuffer();
 
       // If the newest entry by itself is too heavy for the segment, don't bother evicting
       // anything else, just that
@@ -2703,12 +3288,30 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
 
       while (totalWeight > maxSegmentWeight) {
         ReferenceEntry<K, V> e = getNextEvictable();
+        if ((e != newest) && accessQueue.contains(newest) && !admit(newest, e)) {
+          // the newest entry is less popular than the victim, so evict it instead
+          e = newest;
+        }
         if (!removeEntry(e, e.getHash(), RemovalCause.SIZE)) {
           throw new AssertionError();
         }
       }
     }
 
+    /**
+     * Returns whether {@code candidate} should be retained at the expense of evicting
+     * {@code victim}. Without a frequency sketch every candidate is admitted; otherwise the
+     * candidate must have been used more frequently than the victim.
+     */
+    @GuardedBy("this")
+    boolean admit(ReferenceEntry<K, V> candidate, ReferenceEntry<K, V> victim) {
+      if (frequencySketch == null) {
+        return true;
+      }
+      return frequencySketch.frequency(candidate.getHash())
+          > frequencySketch.frequency(victim.getHash());
+    }
+
     // TODO(fry): instead implement this with an eviction head
     @GuardedBy("this")
     ReferenceEntry<K, V> getNextEvictable() {
@@ -2794,6 +3397,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
           long now = map.ticker.read();
           ReferenceEntry<K, V> e = getLiveEntry(key, hash, now);
           if (e == null) {
+            recordMiss(hash);
             return null;
           }
 
@@ -2804,12 +3408,107 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
           }
           tryDrainReferenceQueues();
         }
+        recordMiss(hash);
         return null;
       } finally {
         postReadCleanup();
       }
     }
 
+    /**
+     * Looks up the keys at positions {@code order[from]} through {@code order[to - 1]} of
+     * {@code keys}, storing the live value of each, or null, at the same position of
+     * {@code values}. This is equivalent to calling {@link #get(Object, int)} for each key, except
+     * that the reads are recorded under a single acquisition of the segment lock (if it is
+     * available), and cleanup runs once for the whole batch.
+     */
+    void getAll(Object[] keys, int[] hashes, int[] order, int from, int to, Object[] values) {
+      if (count == 0) { // read-volatile
+        if ((frequencySketch != null) && tryLock()) {
+          try {
+            for (int i = from; i < to; i++) {
+              if (keys[order[i]] != null) {
+                frequencySketch.increment(hashes[order[i]]);
+              }
+            }
+          } finally {
+            unlock();
+          }
+        }
+        return;
+      }
+      long now = map.ticker.read();
+      @SuppressWarnings("unchecked") // generic array creation
+      ReferenceEntry<K, V>[] hits = new ReferenceEntry[to - from];
+      boolean collected = false;
+      for (int i = from; i < to; i++) {
+        int k = order[i];
+        if (keys[k] == null) {
+          continue;
+        }
+        ReferenceEntry<K, V> e = getLiveEntry(keys[k], hashes[k], now);
+        if (e != null) {
+          V value = e.getValueReference().get();
+          if (value != null) {
+            hits[i - from] = e;
+            values[k] = value;
+          } else {
+            collected = true;
+          }
+        }
+      }
+
+      if (tryLock()) {
+        try {
+          for (int i = from; i < to; i++) {
+            ReferenceEntry<K, V> e = hits[i - from];
+            if (e == null) {
+              if ((frequencySketch != null) && (keys[order[i]] != null)) {
+                frequencySketch.increment(hashes[order[i]]);
+              }
+              continue;
+            }
+            // an entry removed since it was read must not be requeued
+            if (accessQueue.contains(e)) {
+              recordLockedRead(e, now);
+            } else {
+              recordHotKey(e);
+            }
+          }
+          if (map.schedulesMaintenance()) {
+            drainReadBuffer();
+          } else {
+            runLockedCleanup(now);
+          }
+        } finally {
+          unlock();
+          runUnlockedCleanup();
+        }
+      } else {
+        for (ReferenceEntry<K, V> e : hits) {
+          if (e != null) {
+            recordRead(e, now);
+          }
+        }
+        if (collected) {
+          tryDrainReferenceQueues();
+        }
+        postReadCleanup();
+      }
+
+      if (map.refreshes()) {
+        for (int i = from; i < to; i++) {
+          ReferenceEntry<K, V> e = hits[i - from];
+          if (e != null) {
+            int k = order[i];
+            @SuppressWarnings("unchecked") // only live values of this segment are stored
+            V value = (V) values[k];
+            values[k] = scheduleRefresh(e, e.getKey(), hashes[k], value, now, map.defaultLoader);
+          }
+        }
+      }
+    }
+
     boolean containsKey(Object key, int hash) {
       try {
         if (count != 0) { // read-volatile
@@ -2863,73 +3562,99 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       try {
         long now = map.ticker.read();
         preWriteCleanup(now);
+        return lockedPut(key, hash, value, onlyIfAbsent, now);
+      } finally {
+        unlock();
+        postWriteCleanup();
+      }
+    }
 
-        int newCount = this.count + 1;
-        if (newCount > this.threshold) { // ensure capacity
-          expand();
-          newCount = this.count + 1;
+    /**
+     * Puts the entries at positions {@code order[from]} through {@code order[to - 1]} of
+     * {@code keys} and {@code values}, under a single acquisition of the segment lock and with a
+     * single round of cleanup.
+     */
+    void putAll(Object[] keys, Object[] values, int[] hashes, int[] order, int from, int to) {
+      lock();
+      try {
+        long now = map.ticker.read();
+        preWriteCleanup(now);
+        for (int i = from; i < to; i++) {
+          int k = order[i];
+          @SuppressWarnings("unchecked") // keys and values were taken from a Map<K, V>
+          K key = (K) keys[k];
+          @SuppressWarnings("unchecked")
+          V value = (V) values[k];
+          lockedPut(key, hashes[k], value, false, now);
         }
+      } finally {
+        unlock();
+        postWriteCleanup();
+      }
+    }
 
-        AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
-        int index = hash & (table.length() - 1);
-        ReferenceEntry<K, V> first = table.get(index);
+    @GuardedBy("this")
+    V lockedPut(K key, int hash, V value, boolean onlyIfAbsent, long now) {
+      int newCount = this.count + 1;
+      if (newCount > this.threshold) { // ensure capacity
+        expand();
+        newCount = this.count + 1;
+      }
 
-        // Look for an existing entry.
-        for (ReferenceEntry<K, V> e = first; e != null; e = e.getNext()) {
-          K entryKey = e.getKey();
-          if (e.getHash() == hash
-              && entryKey != null
-              && map.keyEquivalence.equivalent(key, entryKey)) {
-            // We found an existing entry.
+      AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
+      int index = hash & (table.length() - 1);
+      ReferenceEntry<K, V> first = table.get(index);
 
-            ValueReference<K, V> valueReference = e.getValueReference();
-            V entryValue = valueReference.get();
+      // Look for an existing entry.
+      for (ReferenceEntry<K, V> e = first; e != null; e = e.getNext()) {
+        K entryKey = e.getKey();
+        if (e.getHash() == hash
+            && entryKey != null
+            && map.keyEquivalence.equivalent(key, entryKey)) {
+          // We found an existing entry.
 
-            if (entryValue == null) {
-              ++modCount;
-              if (valueReference.isActive()) {
-                enqueueNotification(
-                    key, hash, entryValue, valueReference.getWeight(), RemovalCause.COLLECTED);
-                setValue(e, key, value, now);
-                newCount = this.count; // count remains unchanged
-              } else {
-                setValue(e, key, value, now);
-                newCount = this.count + 1;
-              }
-              this.count = newCount; // write-volatile
-              evictEntries(e);
-              return null;
-            } else if (onlyIfAbsent) {
-              // Mimic
-              // "if (!map.containsKey(key)) ...
-              // else return map.get(key);
-              recordLockedRead(e, now);
-              return entryValue;
+          ValueReference<K, V> valueReference = e.getValueReference();
+          V entryValue = valueReference.get();
+
+          if (entryValue == null) {
+            ++modCount;
+            if (valueReference.isActive()) {
+              enqueueNotification(key, hash, entryValue, valueReference, RemovalCause.COLLECTED);
+              setValue(e, key, value, now);
+              newCount = this.count; // count remains unchanged
             } else {
-              // clobber existing entry, count remains unchanged
-              ++modCount;
-              enqueueNotification(
-                  key, hash, entryValue, valueReference.getWeight(), RemovalCause.REPLACED);
               setValue(e, key, value, now);
-              evictEntries(e);
-              return entryValue;
+              newCount = this.count + 1;
             }
+            this.count = newCount; // write-volatile
+            evictEntries(e);
+            return null;
+          } else if (onlyIfAbsent) {
+            // Mimic
+            // "if (!map.containsKey(key)) ...
+            // else return map.get(key);
+            recordLockedRead(e, now);
+            return entryValue;
+          } else {
+            // clobber existing entry, count remains unchanged
+            ++modCount;
+            enqueueNotification(key, hash, entryValue, valueReference, RemovalCause.REPLACED);
+            setValue(e, key, value, now);
+            evictEntries(e);
+            return entryValue;
           }
         }
-
-        // Create a new entry.
-        ++modCount;
-        ReferenceEntry<K, V> newEntry = newEntry(key, hash, first);
-        setValue(newEntry, key, value, now);
-        table.set(index, newEntry);
-        newCount = this.count + 1;
-        this.count = newCount; // write-volatile
-        evictEntries(newEntry);
-        return null;
-      } finally {
-        unlock();
-        postWriteCleanup();
       }
+
+      // Create a new entry.
+      ++modCount;
+      ReferenceEntry<K, V> newEntry = newEntry(key, hash, first);
+      setValue(newEntry, key, value, now);
+      table.set(index, newEntry);
+      newCount = this.count + 1;
+      this.count = newCount; // write-volatile
+      evictEntries(newEntry);
+      return null;
     }
 
     /**
@@ -2956,6 +3681,9 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       int newCount = count;
       AtomicReferenceArray<ReferenceEntry<K, V>> newTable = newEntryArray(oldCapacity << 1);
       threshold = newTable.length() * 3 / 4;
+      if (frequencySketch != null) {
+        frequencySketch.ensureCapacity(newTable.length());
+      }
       int newMask = newTable.length() - 1;
       for (int oldIndex = 0; oldIndex < oldCapacity; ++oldIndex) {
         // We need to guarantee that any existing reads of old Map can
@@ -3044,8 +3772,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
 
             if (map.valueEquivalence.equivalent(oldValue, entryValue)) {
               ++modCount;
-              enqueueNotification(
-                  key, hash, entryValue, valueReference.getWeight(), RemovalCause.REPLACED);
+              enqueueNotification(key, hash, entryValue, valueReference, RemovalCause.REPLACED);
               setValue(e, key, newValue, now);
               evictEntries(e);
               return true;
@@ -3105,8 +3832,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
             }
 
             ++modCount;
-            enqueueNotification(
-                key, hash, entryValue, valueReference.getWeight(), RemovalCause.REPLACED);
+            enqueueNotification(key, hash, entryValue, valueReference, RemovalCause.REPLACED);
             setValue(e, key, newValue, now);
             evictEntries(e);
             return entryValue;
@@ -3199,7 +3925,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
               if (oldValueReference.isActive()) {
                 RemovalCause cause =
                     (entryValue == null) ? RemovalCause.COLLECTED : RemovalCause.REPLACED;
-                enqueueNotification(key, hash, entryValue, oldValueReference.getWeight(), cause);
+                enqueueNotification(key, hash, entryValue, oldValueReference, cause);
                 newCount--;
               }
               setValue(e, key, newValue, now);
@@ -3209,7 +3935,8 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
             }
 
             // the loaded value was already clobbered
-            enqueueNotification(key, hash, newValue, 0, RemovalCause.REPLACED);
+            enqueueNotification(
+                key, hash, newValue, LocalCache.<K, V>unset(), RemovalCause.REPLACED);
             return false;
           }
         }
@@ -3289,8 +4016,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
                 V value = e.getValueReference().get();
                 RemovalCause cause =
                     (key == null || value == null) ? RemovalCause.COLLECTED : RemovalCause.EXPLICIT;
-                enqueueNotification(
-                    key, e.getHash(), value, e.getValueReference().getWeight(), cause);
+                enqueueNotification(key, e.getHash(), value, e.getValueReference(), cause);
               }
             }
           }
@@ -3321,7 +4047,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
         V value,
         ValueReference<K, V> valueReference,
         RemovalCause cause) {
-      enqueueNotification(key, hash, value, valueReference.getWeight(), cause);
+      enqueueNotification(key, hash, value, valueReference, cause);
       writeQueue.remove(entry);
       accessQueue.remove(entry);
 
@@ -3358,7 +4084,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
           entry.getKey(),
           entry.getHash(),
           entry.getValueReference().get(),
-          entry.getValueReference().getWeight(),
+          entry.getValueReference(),
           RemovalCause.COLLECTED);
       writeQueue.remove(entry);
       accessQueue.remove(entry);
@@ -3515,11 +4241,54 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
      * is not observed after a sufficient number of reads, try cleaning up from the read thread.
      */
     void postReadCleanup() {
-      if ((readCount.incrementAndGet() & DRAIN_THRESHOLD) == 0) {
+      if (map.schedulesMaintenance()) {
+        // only keep the read buffer from filling up; the scheduler removes expired entries
+        if ((readBuffer != null) && readBuffer.isDrainRequested()) {
+          tryDrainReadBuffer();
+        }
+      } else if (((readBuffer != null) && readBuffer.isDrainRequested())
+          || ((readCount.incrementAndGet() & DRAIN_THRESHOLD) == 0)) {
+        // reads alone may never fill a stripe of the read buffer, yet expired entries must still
+        // be removed, so cleanup also runs every DRAIN_THRESHOLD + 1 reads
         cleanUp();
       }
     }
 
+    /**
+     * Drains the read buffer when the lock is available.
+     */
+    void tryDrainReadBuffer() {
+      if (tryLock()) {
+        try {
+          drainReadBuffer();
+        } finally {
+          unlock();
+        }
+      }
+    }
+
+    /**
+     * Refreshes each live entry which has become stale, as part of scheduled maintenance. Entries
+     * which are already being loaded or refreshed are skipped.
+     */
+    void refreshStaleEntries(long now, CacheLoader<? super K, V> loader) {
+      if (count == 0) { // read-volatile
+        return;
+      }
+      AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
+      for (int i = 0; i < table.length(); ++i) {
+        for (ReferenceEntry<K, V> e = table.get(i); e != null; e = e.getNext()) {
+          K key = e.getKey();
+          if ((key != null)
+              && (now - e.getWriteTime() > map.refreshNanos)
+              && !e.getValueReference().isLoading()
+              && (getLiveValue(e, now) != null)) {
+            refresh(key, e.getHash(), loader, true);
+          }
+        }
+      }
+    }
+
     /**
      * Performs routine cleanup prior to executing a write. This should be called every time a write
      * thread acquires the segment lock, immediately after acquiring the lock.
@@ -3548,7 +4317,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       if (tryLock()) {
         try {
           drainReferenceQueues();
-          expireEntries(now); // calls drainRecencyQueue
+          expireEntries(now); // calls drainReadBuffer
           readCount.set(0);
         } finally {
           unlock();
@@ -3576,7 +4345,11 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     }
 
     public LoadingValueReference(ValueReference<K, V> oldValue) {
-      this.oldValue = oldValue;
+      // an entry holding its value inline is about to be given this reference instead
+      this.oldValue =
+          (oldValue instanceof StrongEntry)
+              ? new StrongValueReference<K, V>(oldValue.get())
+              : oldValue;
     }
 
     @Override
@@ -3962,6 +4735,56 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     }
   }
 
+  /** Returns the number of bytes occupied off-heap by the map's values. */
+  long offHeapBytes() {
+    long sum = 0;
+    for (Segment<K, V> segment : segments) {
+      sum += segment.offHeapBytes;
+    }
+    return sum;
+  }
+
+  /**
+   * Returns a snapshot of the map's detailed stats, which include the given ordinary stats. Each
+   * segment is locked only while its hot keys are copied.
+   */
+  DetailedCacheStats<K> detailedStats(CacheStats stats) {
+    long[] loadLatencyCounts = new long[LatencyHistogram.BUCKETS];
+    loadLatencies.addTo(loadLatencyCounts);
+
+    List<Entry<Object, Long>> candidates = new ArrayList<Entry<Object, Long>>();
+    for (Segment<K, V> segment : segments) {
+      segment.lock();
+      try {
+        segment.hotKeySketch.addTo(candidates);
+      } finally {
+        segment.unlock();
+      }
+    }
+    Collections.sort(
+        candidates,
+        new Comparator<Entry<Object, Long>>() {
+          @Override
+          public int compare(Entry<Object, Long> left, Entry<Object, Long> right) {
+            return right.getValue().compareTo(left.getValue());
+          }
+        });
+
+    // keys which are only equivalent by identity may still be equal
+    Map<K, Long> hotKeys = Maps.newLinkedHashMap();
+    for (Entry<Object, Long> candidate : candidates) {
+      if (hotKeys.size() == HotKeySketch.CAPACITY) {
+        break;
+      }
+      @SuppressWarnings("unchecked") // only keys of this map are recorded
+      K key = (K) candidate.getKey();
+      if (!hotKeys.containsKey(key)) {
+        hotKeys.put(key, candidate.getValue());
+      }
+    }
+    return new DetailedCacheStats<K>(stats, loadLatencyCounts, ImmutableMap.copyOf(hotKeys));
+  }
+
   // Cache support
 
   public void cleanUp() {
@@ -3970,6 +4793,105 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     }
   }
 
+  /**
+   * Performs the map's scheduled maintenance: cleans up every segment, then refreshes stale entries
+   * if the map refreshes and has a loader to refresh them with.
+   */
+  void runScheduledMaintenance() {
+    cleanUp();
+    if (refreshes() && (defaultLoader != null)) {
+      long now = ticker.read();
+      for (Segment<K, V> segment : segments) {
+        segment.refreshStaleEntries(now, defaultLoader);
+      }
+    }
+  }
+
+  /**
+   * Records the latency of each load in the map's shared histogram, in addition to the counts
+   * recorded by the delegate counter.
+   */
+  static final class DetailedStatsCounter implements StatsCounter {
+    final StatsCounter delegate;
+    final LatencyHistogram loadLatencies;
+
+    DetailedStatsCounter(StatsCounter delegate, LatencyHistogram loadLatencies) {
+      this.delegate = delegate;
+      this.loadLatencies = loadLatencies;
+    }
+
+    @Override
+    public void recordHits(int count) {
+      delegate.recordHits(count);
+    }
+
+    @Override
+    public void recordMisses(int count) {
+      delegate.recordMisses(count);
+    }
+
+    @Override
+    public void recordLoadSuccess(long loadTime) {
+      delegate.recordLoadSuccess(loadTime);
+      loadLatencies.record(loadTime);
+    }
+
+    @Override
+    public void recordLoadException(long loadTime) {
+      delegate.recordLoadException(loadTime);
+      loadLatencies.record(loadTime);
+    }
+
+    @Override
+    public void recordEviction() {
+      delegate.recordEviction();
+    }
+
+    @Override
+    public CacheStats snapshot() {
+      return delegate.snapshot();
+    }
+  }
+
+  /**
+   * Periodically runs the scheduled maintenance of a map. The task only weakly references the map,
+   * so that scheduling maintenance doesn't keep an unused map reachable, and cancels itself once
+   * the map has been garbage collected.
+   */
+  static final class MaintenanceTask implements Runnable {
+    final WeakReference<LocalCache<?, ?>> mapReference;
+    volatile Future<?> future;
+
+    MaintenanceTask(LocalCache<?, ?> map) {
+      this.mapReference = new WeakReference<LocalCache<?, ?>>(map);
+    }
+
+    static void schedule(LocalCache<?, ?> map) {
+      MaintenanceTask task = new MaintenanceTask(map);
+      long delay = map.maintenanceDelayNanos();
+      task.future =
+          map.scheduler.scheduleWithFixedDelay(task, delay, delay, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void run() {
+      LocalCache<?, ?> map = mapReference.get();
+      if (map == null) {
+        Future<?> future = this.future;
+        if (future != null) {
+          future.cancel(false);
+        }
+        return;
+      }
+      try {
+        map.runScheduledMaintenance();
+      } catch (Throwable t) {
+        // an exception would suppress all further runs
+        logger.log(Level.WARNING, "Exception thrown during scheduled maintenance", t);
+      }
+    }
+  }
+
   // ConcurrentMap methods
 
   @Override
@@ -4057,13 +4979,60 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     return get(key, defaultLoader);
   }
 
+  /**
+   * Returns the live value of each of {@code keys}, or null if it has none, in the same order. This
+   * is equivalent to calling {@link #get} for each key, except that the keys are grouped by
+   * segment, so that each segment records its reads and runs its cleanup only once per batch.
+   */
+  Object[] getAllValues(Object[] keys) {
+    int[] hashes = new int[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      hashes[i] = (keys[i] == null) ? 0 : hash(keys[i]);
+    }
+    int[] starts = new int[segments.length + 1];
+    int[] order = groupBySegment(hashes, starts);
+    Object[] values = new Object[keys.length];
+    for (int s = 0; s < segments.length; s++) {
+      if (starts[s] < starts[s + 1]) {
+        segments[s].getAll(keys, hashes, order, starts[s], starts[s + 1], values);
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Orders the positions of {@code hashes} by the segment each hash belongs to, stably. On return,
+   * the positions of the hashes belonging to segment {@code s} are found in the returned array from
+   * index {@code starts[s]} inclusive to {@code starts[s + 1]} exclusive.
+   *
+   * @param starts an array of length {@code segments.length + 1}, initially filled with zeros
+   */
+  int[] groupBySegment(int[] hashes, int[] starts) {
+    for (int hash : hashes) {
+      starts[((hash >>> segmentShift) & segmentMask) + 1]++;
+    }
+    for (int s = 0; s < segments.length; s++) {
+      starts[s + 1] += starts[s];
+    }
+    int[] next = Arrays.copyOf(starts, segments.length);
+    int[] order = new int[hashes.length];
+    for (int i = 0; i < hashes.length; i++) {
+      order[next[(hashes[i] >>> segmentShift) & segmentMask]++] = i;
+    }
+    return order;
+  }
+
   ImmutableMap<K, V> getAllPresent(Iterable<?> keys) {
     int hits = 0;
     int misses = 0;
 
+    Object[] keyArray = Iterables.toArray(keys, Object.class);
+    Object[] values = getAllValues(keyArray);
     Map<K, V> result = Maps.newLinkedHashMap();
-    for (Object key : keys) {
-      V value = get(key);
+    for (int i = 0; i < keyArray.length; i++) {
+      Object key = keyArray[i];
+      @SuppressWarnings("unchecked") // values are only ever live values of the map
+      V value = (V) values[i];
       if (value == null) {
         misses++;
       } else {
@@ -4083,10 +5052,15 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     int hits = 0;
     int misses = 0;
 
+    Object[] keyArray = Iterables.toArray(keys, Object.class);
+    Object[] values = getAllValues(keyArray);
     Map<K, V> result = Maps.newLinkedHashMap();
     Set<K> keysToLoad = Sets.newLinkedHashSet();
-    for (K key : keys) {
-      V value = get(key);
+    for (int i = 0; i < keyArray.length; i++) {
+      @SuppressWarnings("unchecked") // keys were taken from an Iterable<? extends K>
+      K key = (K) keyArray[i];
+      @SuppressWarnings("unchecked") // values are only ever live values of the map
+      V value = (V) values[i];
       if (!result.containsKey(key)) {
         result.put(key, value);
         if (value == null) {
@@ -4165,7 +5139,10 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     }
 
     stopwatch.stop();
-    // TODO(fry): batch by segment
+    int size = result.size();
+    Object[] loadedKeys = new Object[size];
+    Object[] loadedValues = new Object[size];
+    int n = 0;
     boolean nullsPresent = false;
     for (Map.Entry<K, V> entry : result.entrySet()) {
       K key = entry.getKey();
@@ -4173,10 +5150,15 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       if (key == null || value == null) {
         // delay failure until non-null entries are stored
         nullsPresent = true;
+      } else if (n < size) {
+        loadedKeys[n] = key;
+        loadedValues[n++] = value;
       } else {
+        // the map grew while it was read; put the remaining entries individually
         put(key, value);
       }
     }
+    putAllBySegment(loadedKeys, loadedValues, n);
 
     if (nullsPresent) {
       globalStatsCounter.recordLoadException(stopwatch.elapsed(NANOSECONDS));
@@ -4201,6 +5183,168 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     return segmentFor(hash).getEntry(key, hash);
   }
 
+  // asynchronous loading
+
+  @GwtIncompatible // Executor + Futures
+  ListenableFuture<V> getAsync(K key, CacheLoader<? super K, V> loader, Executor executor) {
+    int hash = hash(checkNotNull(key));
+    Map<K, LoadingValueReference<K, V>> toLoad = Maps.newHashMapWithExpectedSize(1);
+    ListenableFuture<V> future = segmentFor(hash).getAsync(key, hash, loader, toLoad);
+    if (!toLoad.isEmpty()) {
+      loadReservedAsync(toLoad, loader, executor);
+    }
+    return future;
+  }
+
+  @GwtIncompatible // Executor + Futures
+  ListenableFuture<ImmutableMap<K, V>> getAllAsync(
+      Iterable<? extends K> keys, CacheLoader<? super K, V> loader, Executor executor) {
+    final Map<K, ListenableFuture<V>> futures = Maps.newLinkedHashMap();
+    Map<K, LoadingValueReference<K, V>> toLoad = Maps.newLinkedHashMap();
+    for (K key : keys) {
+      if (!futures.containsKey(key)) {
+        int hash = hash(checkNotNull(key));
+        futures.put(key, segmentFor(hash).getAsync(key, hash, loader, toLoad));
+      }
+    }
+    if (!toLoad.isEmpty()) {
+      loadReservedAsync(toLoad, loader, executor);
+    }
+
+    return Futures.transform(
+        Futures.allAsList(futures.values()),
+        new Function<List<V>, ImmutableMap<K, V>>() {
+          @Override
+          public ImmutableMap<K, V> apply(List<V> values) {
+            ImmutableMap.Builder<K, V> result = ImmutableMap.builder();
+            Iterator<V> valueIterator = values.iterator();
+            for (K key : futures.keySet()) {
+              result.put(key, valueIterator.next());
+            }
+            return result.build();
+          }
+        },
+        directExecutor());
+  }
+
+  /**
+   * Arranges for {@link #loadReserved} to be called on {@code executor}. If {@code executor}
+   * rejects the task, the reserved loads fail with the exception it threw.
+   */
+  @GwtIncompatible // Executor
+  void loadReservedAsync(
+      final Map<K, LoadingValueReference<K, V>> toLoad,
+      final CacheLoader<? super K, V> loader,
+      Executor executor) {
+    try {
+      executor.execute(
+          new Runnable() {
+            @Override
+            public void run() {
+              loadReserved(toLoad, loader);
+            }
+          });
+    } catch (RuntimeException e) {
+      failReserved(toLoad, e);
+    }
+  }
+
+  /**
+   * Loads the values for the loading value references reserved by {@link Segment#getAsync},
+   * completing each of them. Several keys are loaded with a single call to
+   * {@link CacheLoader#loadAll}, unless the loader doesn't implement it, in which case each key is
+   * loaded individually. A key which {@code loadAll} returns no value for fails with an
+   * {@link InvalidCacheLoadException}.
+   */
+  void loadReserved(
+      Map<K, LoadingValueReference<K, V>> toLoad, CacheLoader<? super K, V> loader) {
+    if (toLoad.size() > 1) {
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      Map<K, V> loaded = null;
+      boolean supported = true;
+      try {
+        @SuppressWarnings("unchecked") // safe since all keys extend K
+        Map<K, V> map = (Map<K, V>) loader.loadAll(toLoad.keySet());
+        loaded = map;
+      } catch (UnsupportedLoadingOperationException e) {
+        supported = false;
+      } catch (Throwable t) {
+        globalStatsCounter.recordLoadException(stopwatch.elapsed(NANOSECONDS));
+        failReserved(toLoad, t);
+        if (t instanceof InterruptedException) {
+          Thread.currentThread().interrupt();
+        }
+        return;
+      }
+
+      if (supported) {
+        if (loaded == null) {
+          globalStatsCounter.recordLoadException(stopwatch.elapsed(NANOSECONDS));
+          failReserved(
+              toLoad, new InvalidCacheLoadException(loader + " returned null map from loadAll"));
+          return;
+        }
+        storeReserved(toLoad, loaded, stopwatch.elapsed(NANOSECONDS));
+        return;
+      }
+    }
+
+    // loadAll not implemented (or not needed), fallback to load
+    for (Map.Entry<K, LoadingValueReference<K, V>> entry : toLoad.entrySet()) {
+      K key = entry.getKey();
+      int hash = hash(key);
+      try {
+        segmentFor(hash).loadSync(key, hash, entry.getValue(), loader);
+      } catch (Throwable t) {
+        // the failure was already reported through the loading value reference
+      }
+    }
+  }
+
+  void storeReserved(
+      Map<K, LoadingValueReference<K, V>> toLoad, Map<K, V> loaded, long elapsedNanos) {
+    boolean missingPresent = false;
+    for (Map.Entry<K, LoadingValueReference<K, V>> entry : toLoad.entrySet()) {
+      K key = entry.getKey();
+      LoadingValueReference<K, V> loadingValueReference = entry.getValue();
+      int hash = hash(key);
+      V value = loaded.get(key);
+      if (value == null) {
+        missingPresent = true;
+        loadingValueReference.setException(
+            new InvalidCacheLoadException("loadAll failed to return a value for " + key));
+        segmentFor(hash).removeLoadingValue(key, hash, loadingValueReference);
+      } else {
+        loadingValueReference.set(value);
+        segmentFor(hash).storeLoadedValue(key, hash, loadingValueReference, value);
+      }
+    }
+
+    // as with the synchronous loadAll, keep any additional entries that were returned
+    for (Map.Entry<K, V> entry : loaded.entrySet()) {
+      K key = entry.getKey();
+      V value = entry.getValue();
+      if (key != null && value != null && !toLoad.containsKey(key)) {
+        put(key, value);
+      }
+    }
+
+    if (missingPresent) {
+      globalStatsCounter.recordLoadException(elapsedNanos);
+    } else {
+      globalStatsCounter.recordLoadSuccess(elapsedNanos);
+    }
+  }
+
+  void failReserved(Map<K, LoadingValueReference<K, V>> toLoad, Throwable t) {
+    for (Map.Entry<K, LoadingValueReference<K, V>> entry : toLoad.entrySet()) {
+      K key = entry.getKey();
+      int hash = hash(key);
+      entry.getValue().setException(t);
+      segmentFor(hash).removeLoadingValue(key, hash, entry.getValue());
+    }
+  }
+
   void refresh(K key) {
     int hash = hash(checkNotNull(key));
     segmentFor(hash).refresh(key, hash, defaultLoader, false);
@@ -4274,8 +5418,38 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
 
   @Override
   public void putAll(Map<? extends K, ? extends V> m) {
+    int size = m.size();
+    Object[] keys = new Object[size];
+    Object[] values = new Object[size];
+    int i = 0;
     for (Entry<? extends K, ? extends V> e : m.entrySet()) {
-      put(e.getKey(), e.getValue());
+      if (i == size) {
+        // the map grew concurrently; put the remaining entries individually
+        put(e.getKey(), e.getValue());
+        continue;
+      }
+      keys[i] = checkNotNull(e.getKey());
+      values[i] = checkNotNull(e.getValue());
+      i++;
+    }
+    putAllBySegment(keys, values, i);
+  }
+
+  /**
+   * Puts the first {@code n} entries of {@code keys} and {@code values}, which must be non-null,
+   * grouping them by segment so that each segment is locked only once.
+   */
+  void putAllBySegment(Object[] keys, Object[] values, int n) {
+    int[] hashes = new int[n];
+    for (int i = 0; i < n; i++) {
+      hashes[i] = hash(keys[i]);
+    }
+    int[] starts = new int[segments.length + 1];
+    int[] order = groupBySegment(hashes, starts);
+    for (int s = 0; s < segments.length; s++) {
+      if (starts[s] < starts[s + 1]) {
+        segments[s].putAll(keys, values, hashes, order, starts[s], starts[s + 1]);
+      }
     }
   }
 
@@ -4720,8 +5894,12 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     final Equivalence<Object> valueEquivalence;
     final long expireAfterWriteNanos;
     final long expireAfterAccessNanos;
+    final Expiry<K, V> expiry;
     final long maxWeight;
     final Weigher<K, V> weigher;
+    final AdmissionPolicy admissionPolicy;
+    final ValueSerializer<V> valueSerializer;
+    final boolean weighsOffHeapBytes;
     final int concurrencyLevel;
     final RemovalListener<? super K, ? super V> removalListener;
     final Ticker ticker;
@@ -4737,8 +5915,12 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
           cache.valueEquivalence,
           cache.expireAfterWriteNanos,
           cache.expireAfterAccessNanos,
+          cache.expiry,
           cache.maxWeight,
           cache.weigher,
+          cache.admissionPolicy,
+          cache.valueSerializer,
+          cache.weighsOffHeapBytes,
           cache.concurrencyLevel,
           cache.removalListener,
           cache.ticker,
@@ -4752,8 +5934,12 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
         Equivalence<Object> valueEquivalence,
         long expireAfterWriteNanos,
         long expireAfterAccessNanos,
+        Expiry<K, V> expiry,
         long maxWeight,
         Weigher<K, V> weigher,
+        AdmissionPolicy admissionPolicy,
+        ValueSerializer<V> valueSerializer,
+        boolean weighsOffHeapBytes,
         int concurrencyLevel,
         RemovalListener<? super K, ? super V> removalListener,
         Ticker ticker,
@@ -4764,8 +5950,12 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       this.valueEquivalence = valueEquivalence;
       this.expireAfterWriteNanos = expireAfterWriteNanos;
       this.expireAfterAccessNanos = expireAfterAccessNanos;
+      this.expiry = expiry;
       this.maxWeight = maxWeight;
       this.weigher = weigher;
+      this.admissionPolicy = admissionPolicy;
+      this.valueSerializer = valueSerializer;
+      this.weighsOffHeapBytes = weighsOffHeapBytes;
       this.concurrencyLevel = concurrencyLevel;
       this.removalListener = removalListener;
       this.ticker = (ticker == Ticker.systemTicker() || ticker == NULL_TICKER) ? null : ticker;
@@ -4788,16 +5978,27 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       if (expireAfterAccessNanos > 0) {
         builder.expireAfterAccess(expireAfterAccessNanos, TimeUnit.NANOSECONDS);
       }
+      if (expiry != null) {
+        builder.expireAfter(expiry);
+      }
+      if (valueSerializer != null) {
+        builder.offHeapValues(valueSerializer);
+      }
       if (weigher != OneWeigher.INSTANCE) {
         builder.weigher(weigher);
         if (maxWeight != UNSET_INT) {
           builder.maximumWeight(maxWeight);
         }
+      } else if (weighsOffHeapBytes) {
+        builder.maximumWeight(maxWeight);
       } else {
         if (maxWeight != UNSET_INT) {
           builder.maximumSize(maxWeight);
         }
       }
+      if (admissionPolicy != null && admissionPolicy != AdmissionPolicy.ALWAYS) {
+        builder.admissionPolicy(admissionPolicy);
+      }
       if (ticker != null) {
         builder.ticker(ticker);
       }
@@ -4954,7 +6155,18 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       for (Segment<K, V> segment : localCache.segments) {
         aggregator.incrementBy(segment.statsCounter);
       }
-      return aggregator.snapshot();
+      CacheStats stats = aggregator.snapshot();
+      if (!localCache.storesValuesOffHeap()) {
+        return stats;
+      }
+      return new CacheStats(
+          stats.hitCount(),
+          stats.missCount(),
+          stats.loadSuccessCount(),
+          stats.loadExceptionCount(),
+          stats.totalLoadTime(),
+          stats.evictionCount(),
+          localCache.offHeapBytes());
     }
 
     @Override
@@ -5019,4 +6231,36 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       return new LoadingSerializationProxy<K, V>(localCache);
     }
   }
+
+  @GwtIncompatible // Executor + Futures
+  static class LocalAsyncLoadingCache<K, V> implements AsyncLoadingCache<K, V> {
+    final LocalLoadingCache<K, V> synchronous;
+    final CacheLoader<? super K, V> loader;
+    final Executor executor;
+
+    LocalAsyncLoadingCache(
+        CacheBuilder<? super K, ? super V> builder,
+        CacheLoader<? super K, V> loader,
+        Executor executor) {
+      // refreshes must not block callers either
+      this.loader = CacheLoader.asyncReloading(checkNotNull(loader), checkNotNull(executor));
+      this.executor = executor;
+      this.synchronous = new LocalLoadingCache<K, V>(builder, this.loader);
+    }
+
+    @Override
+    public ListenableFuture<V> get(K key) {
+      return synchronous.localCache.getAsync(key, loader, executor);
+    }
+
+    @Override
+    public ListenableFuture<ImmutableMap<K, V>> getAll(Iterable<? extends K> keys) {
+      return synchronous.localCache.getAllAsync(keys, loader, executor);
+    }
+
+    @Override
+    public LoadingCache<K, V> synchronous() {
+      return synchronous;
+    }
+  }
 }
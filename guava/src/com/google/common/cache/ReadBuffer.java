@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.math.IntMath;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.annotation.Nullable;
+
+/**
+ * A lossy, multiple-producer, single-consumer buffer used by {@code LocalCache} to record reads
+ * without acquiring the segment lock.
+ *
+ * <p>The buffer is made up of one or more stripes, each a fixed-size ring buffer. A producer picks
+ * a stripe using a per-thread probe (shared with {@link Striped64}), claims a slot by advancing the
+ * stripe's write counter, and publishes its element into the slot. Offering an element never
+ * allocates. If the stripe is full, or the producer loses the race to claim a slot, the element is
+ * simply dropped: losing a few reads only makes the recency order slightly less precise. The
+ * buffer starts with a single stripe and doubles its number of stripes, up to the number of CPUs,
+ * when producers are seen to contend for the same stripe.
+ *
+ * <p>Once a stripe holds more than {@link LocalCache#DRAIN_THRESHOLD} elements the buffer requests
+ * a drain (see {@link #isDrainRequested}), which the owner performs in a batch by calling
+ * {@link #poll} while holding its lock. Only {@link #offer} may be called concurrently; all other
+ * methods must be called by the single consumer. In particular {@link #size} and {@link #iterator}
+ * are only approximate when producers are active.
+ */
+@GwtIncompatible
+final class ReadBuffer<E> extends AbstractQueue<E> {
+
+  /** The maximum number of stripes; the number of CPUs rounded up to a power of two. */
+  static final int MAXIMUM_STRIPES = IntMath.ceilingPowerOfTwo(Striped64.NCPU);
+
+  /**
+   * The number of elements each stripe can hold. This leaves room for producers to keep recording
+   * reads while a requested drain is pending. Must be a power of two.
+   */
+  static final int BUFFER_SIZE = 2 * (LocalCache.DRAIN_THRESHOLD + 1);
+
+  static final int BUFFER_MASK = BUFFER_SIZE - 1;
+
+  /** The stripes; the length is always a power of two. */
+  volatile Stripe<E>[] stripes;
+
+  /** Guards against concurrent attempts to add stripes. */
+  final AtomicBoolean resizing = new AtomicBoolean();
+
+  /** Whether some stripe has accumulated enough elements that the buffer should be drained. */
+  volatile boolean drainRequested;
+
+  @SuppressWarnings("unchecked") // generic array creation
+  ReadBuffer() {
+    stripes = new Stripe[] {new Stripe<E>()};
+  }
+
+  /**
+   * Records {@code e} in the calling thread's stripe, if there is room for it.
+   *
+   * @return true if the element was recorded, false if it was dropped
+   */
+  @Override
+  public boolean offer(E e) {
+    int[] hc = Striped64.threadHashCode.get();
+    int h = (hc == null) ? initProbe() : hc[0];
+    Stripe<E>[] stripes = this.stripes;
+    Stripe<E> stripe = stripes[h & (stripes.length - 1)];
+
+    long head = stripe.readCounter.get();
+    long tail = stripe.writeCounter.get();
+    long size = tail - head;
+    if (size >= BUFFER_SIZE) {
+      requestDrain();
+      return false;
+    }
+    if (!stripe.writeCounter.compareAndSet(tail, tail + 1)) {
+      contended(stripes, hc);
+      return false;
+    }
+    stripe.buffer.lazySet(indexOf(tail), e);
+    if (size >= LocalCache.DRAIN_THRESHOLD) {
+      requestDrain();
+    }
+    return true;
+  }
+
+  /**
+   * Removes and returns an element from the buffer, or returns null if it is empty. Elements that
+   * were offered by the same thread are returned in the order in which they were offered. Must only
+   * be called by the single consumer.
+   */
+  @Override
+  @Nullable
+  public E poll() {
+    for (Stripe<E> stripe : stripes) {
+      E e = stripe.poll();
+      if (e != null) {
+        return e;
+      }
+    }
+    drainRequested = false;
+    return null;
+  }
+
+  @Override
+  @Nullable
+  public E peek() {
+    for (Stripe<E> stripe : stripes) {
+      E e = stripe.peek();
+      if (e != null) {
+        return e;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public int size() {
+    long size = 0;
+    for (Stripe<E> stripe : stripes) {
+      size += stripe.writeCounter.get() - stripe.readCounter.get();
+    }
+    return (int) size;
+  }
+
+  /**
+   * Returns an unmodifiable snapshot of the elements currently in the buffer, stripe by stripe.
+   * Intended for testing only.
+   */
+  @Override
+  public Iterator<E> iterator() {
+    List<E> elements = new ArrayList<E>();
+    for (Stripe<E> stripe : stripes) {
+      for (long i = stripe.readCounter.get(); i < stripe.writeCounter.get(); i++) {
+        E e = stripe.buffer.get(indexOf(i));
+        if (e != null) {
+          elements.add(e);
+        }
+      }
+    }
+    return Collections.unmodifiableList(elements).iterator();
+  }
+
+  /** Returns whether a producer has asked for the buffer to be drained. */
+  boolean isDrainRequested() {
+    return drainRequested;
+  }
+
+  private void requestDrain() {
+    // avoid writing to a shared field on every read once the request has been made
+    if (!drainRequested) {
+      drainRequested = true;
+    }
+  }
+
+  /**
+   * Called after a producer lost the race to claim a slot. Moves the thread to a different stripe
+   * so that it is less likely to collide again, and adds stripes if there are fewer than the number
+   * of CPUs.
+   */
+  private void contended(Stripe<E>[] current, @Nullable int[] hc) {
+    if (hc != null) {
+      int h = hc[0];
+      h ^= h << 13; // xorshift, as in Striped64
+      h ^= h >>> 17;
+      h ^= h << 5;
+      hc[0] = h;
+    }
+    int n = current.length;
+    if ((n < MAXIMUM_STRIPES) && (stripes == current) && resizing.compareAndSet(false, true)) {
+      try {
+        if (stripes == current) {
+          @SuppressWarnings("unchecked") // generic array creation
+          Stripe<E>[] expanded = new Stripe[n << 1];
+          System.arraycopy(current, 0, expanded, 0, n);
+          for (int i = n; i < expanded.length; i++) {
+            expanded[i] = new Stripe<E>();
+          }
+          stripes = expanded;
+        }
+      } finally {
+        resizing.set(false);
+      }
+    }
+  }
+
+  private static int initProbe() {
+    int[] hc = new int[1];
+    int r = Striped64.rng.nextInt();
+    hc[0] = (r == 0) ? 1 : r; // avoid zero to allow xorshift rehash
+    Striped64.threadHashCode.set(hc);
+    return hc[0];
+  }
+
+  static int indexOf(long counter) {
+    return (int) counter & BUFFER_MASK;
+  }
+
+  /** A bounded ring buffer of elements. */
+  static final class Stripe<E> {
+    /** The number of slots claimed by producers. */
+    final AtomicLong writeCounter = new AtomicLong();
+
+    /** The number of slots consumed; only advanced by the consumer. */
+    final AtomicLong readCounter = new AtomicLong();
+
+    final AtomicReferenceArray<E> buffer = new AtomicReferenceArray<E>(BUFFER_SIZE);
+
+    @Nullable
+    E poll() {
+      long head = readCounter.get();
+      if (head == writeCounter.get()) {
+        return null;
+      }
+      int index = indexOf(head);
+      E e = buffer.get(index);
+      if (e == null) {
+        // the slot has been claimed but its element is not yet visible; try again on the next drain
+        return null;
+      }
+      buffer.lazySet(index, null);
+      readCounter.lazySet(head + 1);
+      return e;
+    }
+
+    @Nullable
+    E peek() {
+      long head = readCounter.get();
+      return (head == writeCounter.get()) ? null : buffer.get(indexOf(head));
+    }
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.cache.LocalCache.ReferenceEntry;
+import com.google.common.cache.LocalCache.WriteQueue;
+import com.google.common.collect.Iterators;
+import com.google.common.math.LongMath;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * A hierarchical timer wheel, used by {@code LocalCache} to expire entries which each have their
+ * own expiration time (see {@link Expiry}) in amortized constant time.
+ *
+ * <p>The wheel is made up of several levels of buckets. Each level covers a range of durations
+ * that is a multiple of the previous level's, with buckets of a correspondingly coarser
+ * resolution: roughly one second, one minute, one hour and one day, plus a single overflow bucket
+ * for entries that expire more than six days from now. An entry is scheduled into the bucket which
+ * covers its expiration time at the finest level whose range contains it. As time
+ * {@linkplain #advance advances}, the entries of every bucket whose time has passed are moved to a
+ * list of due entries; the caller then {@linkplain #poll polls} those entries, expiring the ones
+ * whose expiration time has actually passed and scheduling the others again, which moves them
+ * down to a finer level.
+ *
+ * <p>Buckets are intrusive doubly-linked lists threaded through the entries' write-order links,
+ * so scheduling, rescheduling and removing an entry are all constant time operations. Because of
+ * that, the wheel takes the place of the segment's write queue. An entry's expiration time is
+ * kept in its access time field; see {@code LocalCache#expiresVariably}.
+ *
+ * <p>The wheel is not thread safe; {@code LocalCache} only accesses it while holding the segment
+ * lock.
+ */
+@GwtIncompatible
+@NotThreadSafe
+final class TimerWheel<K, V> extends AbstractQueue<ReferenceEntry<K, V>> {
+
+  /** The number of buckets at each level. Each must be a power of two. */
+  static final int[] BUCKETS = {64, 64, 32, 4, 1};
+
+  /**
+   * The time span covered by a single bucket at each level, followed by the span covered by the
+   * entire wheel below the overflow bucket. Each must be a power of two.
+   */
+  static final long[] SPANS = {
+    LongMath.ceilingPowerOfTwo(TimeUnit.SECONDS.toNanos(1)), // 1.07s
+    LongMath.ceilingPowerOfTwo(TimeUnit.MINUTES.toNanos(1)), // 1.14m
+    LongMath.ceilingPowerOfTwo(TimeUnit.HOURS.toNanos(1)), // 1.22h
+    LongMath.ceilingPowerOfTwo(TimeUnit.DAYS.toNanos(1)), // 1.63d
+    BUCKETS[3] * LongMath.ceilingPowerOfTwo(TimeUnit.DAYS.toNanos(1)), // 6.5d
+    BUCKETS[3] * LongMath.ceilingPowerOfTwo(TimeUnit.DAYS.toNanos(1)), // 6.5d
+  };
+
+  /** The number of bits to shift a time by to obtain its tick at each level. */
+  static final int[] SHIFT = new int[BUCKETS.length];
+
+  static {
+    for (int i = 0; i < SHIFT.length; i++) {
+      SHIFT[i] = Long.numberOfTrailingZeros(SPANS[i]);
+    }
+  }
+
+  final WriteQueue<K, V>[][] wheel;
+
+  /** Entries whose bucket's time has passed, waiting to be polled. */
+  final WriteQueue<K, V> due = new WriteQueue<K, V>();
+
+  /** The time the wheel was last advanced to. */
+  long nanos;
+
+  @SuppressWarnings("unchecked") // generic array creation
+  TimerWheel(long now) {
+    wheel = new WriteQueue[BUCKETS.length][];
+    for (int i = 0; i < wheel.length; i++) {
+      wheel[i] = new WriteQueue[BUCKETS[i]];
+      for (int j = 0; j < wheel[i].length; j++) {
+        wheel[i][j] = new WriteQueue<K, V>();
+      }
+    }
+    nanos = now;
+  }
+
+  /**
+   * Advances the wheel to {@code now}, moving the entries of every bucket whose time has passed to
+   * the list of due entries, which may then be retrieved with {@link #poll}. Some of the due
+   * entries may not have expired yet; they should be scheduled again with {@link #add}.
+   */
+  void advance(long now) {
+    long previous = nanos;
+    nanos = now;
+    for (int i = 0; i < SHIFT.length; i++) {
+      long previousTicks = previous >> SHIFT[i];
+      long currentTicks = now >> SHIFT[i];
+      if (currentTicks - previousTicks <= 0) {
+        break;
+      }
+      collect(i, previousTicks, currentTicks - previousTicks);
+    }
+  }
+
+  /**
+   * Moves the entries of the buckets at {@code level} from {@code previousTicks} through
+   * {@code previousTicks + delta} to the list of due entries.
+   */
+  private void collect(int level, long previousTicks, long delta) {
+    WriteQueue<K, V>[] buckets = wheel[level];
+    int mask = buckets.length - 1;
+    int steps = (int) Math.min(delta + 1, buckets.length);
+    int start = (int) (previousTicks & mask);
+    for (int i = start; i < start + steps; i++) {
+      WriteQueue<K, V> bucket = buckets[i & mask];
+      ReferenceEntry<K, V> e;
+      while ((e = bucket.poll()) != null) {
+        due.add(e);
+      }
+    }
+  }
+
+  /**
+   * Returns the bucket that an entry which expires at {@code time} should be scheduled into.
+   */
+  WriteQueue<K, V> bucketFor(long time) {
+    // an entry which has already expired is collected on the next tick
+    long duration = Math.max(0, time - nanos);
+    long target = nanos + duration;
+    for (int i = 0; i < BUCKETS.length - 1; i++) {
+      if (duration < SPANS[i + 1]) {
+        long ticks = target >> SHIFT[i];
+        return wheel[i][(int) ticks & (BUCKETS[i] - 1)];
+      }
+    }
+    return wheel[BUCKETS.length - 1][0];
+  }
+
+  // implements Queue
+
+  /**
+   * Schedules {@code entry} according to its current expiration time, first removing it from the
+   * bucket it was previously scheduled in, if any.
+   */
+  @Override
+  public boolean offer(ReferenceEntry<K, V> entry) {
+    return bucketFor(entry.getAccessTime()).offer(entry);
+  }
+
+  /** Returns the first due entry, if any, without removing it. */
+  @Override
+  public ReferenceEntry<K, V> peek() {
+    return due.peek();
+  }
+
+  /** Removes and returns the first due entry, if any. */
+  @Override
+  public ReferenceEntry<K, V> poll() {
+    return due.poll();
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    // buckets are linked through the entries themselves, so any bucket can unlink any entry
+    return due.remove(o);
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return due.contains(o);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    if (!due.isEmpty()) {
+      return false;
+    }
+    for (WriteQueue<K, V>[] buckets : wheel) {
+      for (WriteQueue<K, V> bucket : buckets) {
+        if (!bucket.isEmpty()) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int size() {
+    int size = due.size();
+    for (WriteQueue<K, V>[] buckets : wheel) {
+      for (WriteQueue<K, V> bucket : buckets) {
+        size += bucket.size();
+      }
+    }
+    return size;
+  }
+
+  @Override
+  public void clear() {
+    due.clear();
+    for (WriteQueue<K, V>[] buckets : wheel) {
+      for (WriteQueue<K, V> bucket : buckets) {
+        bucket.clear();
+      }
+    }
+  }
+
+  /** Returns the due entries followed by the entries of every bucket, from the finest level up. */
+  @Override
+  public Iterator<ReferenceEntry<K, V>> iterator() {
+    List<Iterator<ReferenceEntry<K, V>>> iterators =
+        new ArrayList<Iterator<ReferenceEntry<K, V>>>();
+    iterators.add(due.iterator());
+    for (WriteQueue<K, V>[] buckets : wheel) {
+      for (WriteQueue<K, V> bucket : buckets) {
+        iterators.add(bucket.iterator());
+      }
+    }
+    return Iterators.concat(iterators.iterator());
+  }
+}
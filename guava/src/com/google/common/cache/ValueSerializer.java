@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.cache;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * Converts cache values to and from bytes, so that a cache can store its values off-heap. See
+ * {@link CacheBuilder#offHeapValues}.
+ *
+ * <p>Implementations must be thread-safe; {@link #deserialize} in particular is called
+ * concurrently, without any locks held, every time a value is read from the cache.
+ *
+ * @param <V> the type of values this serializer converts
+ * @since 20.0
+ */
+@Beta
+@GwtIncompatible
+public abstract class ValueSerializer<V> {
+  /**
+   * Constructor for use by subclasses.
+   */
+  protected ValueSerializer() {}
+
+  /**
+   * Returns the serialized form of {@code value}. The cache copies the returned array off-heap, so
+   * implementations may return an array which is shared with {@code value}, as long as it is not
+   * modified while this method is being called.
+   *
+   * @param value the non-null value to serialize
+   */
+  public abstract byte[] serialize(V value);
+
+  /**
+   * Returns the value whose serialized form is the remaining content of {@code buffer}. The buffer
+   * is a read-only view of the cache's off-heap copy; implementations should copy out whatever they
+   * need rather than keep a reference to it, which would keep the off-heap memory from being freed.
+   *
+   * @param buffer a buffer positioned at the start of the serialized form, and limited to its end
+   */
+  public abstract V deserialize(ByteBuffer buffer);
+
+  /**
+   * Returns a serializer for byte arrays, which are stored off-heap as they are.
+   */
+  public static ValueSerializer<byte[]> byteArrays() {
+    return ByteArraySerializer.INSTANCE;
+  }
+
+  private static final class ByteArraySerializer extends ValueSerializer<byte[]>
+      implements Serializable {
+    static final ByteArraySerializer INSTANCE = new ByteArraySerializer();
+
+    @Override
+    public byte[] serialize(byte[] value) {
+      return value;
+    }
+
+    @Override
+    public byte[] deserialize(ByteBuffer buffer) {
+      byte[] value = new byte[buffer.remaining()];
+      buffer.get(value);
+      return value;
+    }
+
+    @Override
+    public String toString() {
+      return "ValueSerializer.byteArrays()";
+    }
+
+    private Object readResolve() {
+      return INSTANCE;
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+}
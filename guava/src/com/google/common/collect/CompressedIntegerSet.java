@@ -0,0 +1,1284 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.collect;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.primitives.Ints;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * An immutable sorted set of integers stored as a compressed bitmap, in the manner of <a
+ * href="http://roaringbitmap.org">Roaring bitmaps</a>. Unlike other {@code ImmutableSortedSet}
+ * instances, which hold a boxed {@code Integer} per element, and a {@link ContiguousSet}, which can
+ * only hold a single range, this can hold any set of {@code int} values in a few bits per element,
+ * and combines with other instances in time proportional to their compressed size.
+ *
+ * <p>The values are split into chunks of 2<sup>16</sup> consecutive integers sharing their high 16
+ * bits, and each nonempty chunk is stored in whichever of three containers is smallest: a sorted
+ * array of the low 16 bits of its values, a bitmap of 2<sup>16</sup> bits, or a sorted array of the
+ * runs of consecutive values it contains. Membership tests take a binary search over the chunks and
+ * one within the chunk. The {@linkplain #intersection(CompressedIntegerSet) intersection},
+ * {@linkplain #union(CompressedIntegerSet) union} and {@linkplain #difference(CompressedIntegerSet)
+ * difference} of two instances are computed chunk by chunk, with word-wide operations on bitmaps,
+ * merges of arrays and of runs, and without visiting chunks that only one of the sets needs.
+ *
+ * <p>Instances can be created from the individual values, with {@link #create(int...)} or {@link
+ * #newBuilder}, or from a {@link RangeSet} such as an {@link ImmutableRangeSet} or a {@link
+ * TreeRangeSet}, with {@link #create(RangeSet)}; ranges are stored as runs, so a set of a few long
+ * ranges stays small however many values it contains. {@link #toRangeSet} converts back.
+ *
+ * <p><b>Warning:</b> a set can hold up to 2<sup>32</sup> values, more than fit in an {@code int}.
+ * Its {@link #size} is then {@code Integer.MAX_VALUE}, as specified by {@link
+ * java.util.Collection#size}; use {@link #cardinality} to get the exact count. As with {@code
+ * ContiguousSet}, operations that visit every element, such as iteration or {@link #asList}, can be
+ * very slow on such sets.
+ *
+ * @since 20.0
+ */
+@Beta
+@GwtIncompatible
+public final class CompressedIntegerSet extends ImmutableSortedSet<Integer> {
+
+  private static final CompressedIntegerSet EMPTY =
+      new CompressedIntegerSet(new char[0], new Container[0]);
+
+  /**
+   * Returns a set containing the given values.
+   */
+  public static CompressedIntegerSet create(int... values) {
+    return newBuilder().add(values).build();
+  }
+
+  /**
+   * Returns a set containing the given values.
+   *
+   * @throws NullPointerException if any of {@code values} is null
+   */
+  public static CompressedIntegerSet create(Iterable<? extends Integer> values) {
+    if (values instanceof CompressedIntegerSet) {
+      return (CompressedIntegerSet) values;
+    }
+    return newBuilder().addAll(values).build();
+  }
+
+  /**
+   * Returns a set containing the values of the ranges of {@code rangeSet}, as determined by {@link
+   * DiscreteDomain#integers}. The ranges may be unbounded.
+   */
+  public static CompressedIntegerSet create(RangeSet<Integer> rangeSet) {
+    return newBuilder().addAll(rangeSet).build();
+  }
+
+  /**
+   * Returns a new builder. The generated builder is equivalent to the builder created by the {@link
+   * Builder} constructor.
+   */
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * Not supported. Use {@link #newBuilder} instead. This method exists only to hide {@link
+   * ImmutableSet#builder} from consumers of {@code CompressedIntegerSet}.
+   *
+   * @throws UnsupportedOperationException always
+   * @deprecated Use {@link #newBuilder}.
+   */
+  @Deprecated
+  public static <E> ImmutableSortedSet.Builder<E> builder() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * A builder for creating {@code CompressedIntegerSet} instances. Values and ranges may be added
+   * in any order and may repeat or overlap.
+   *
+   * <p>Builder instances can be reused; it is safe to call {@link #build} multiple times to build
+   * multiple sets in series.
+   */
+  public static final class Builder {
+    private int[] values = new int[16];
+    private int size;
+    private final RangeSet<Integer> ranges = TreeRangeSet.create();
+
+    /**
+     * Creates a new builder. The returned builder is equivalent to the builder generated by {@link
+     * CompressedIntegerSet#newBuilder}.
+     */
+    public Builder() {}
+
+    /**
+     * Adds {@code value} to the built set.
+     *
+     * @return this {@code Builder} object
+     */
+    @CanIgnoreReturnValue
+    public Builder add(int value) {
+      if (size == values.length) {
+        values =
+            Arrays.copyOf(values, ImmutableCollection.Builder.expandedCapacity(size, size + 1));
+      }
+      values[size++] = value;
+      return this;
+    }
+
+    /**
+     * Adds each of {@code values} to the built set.
+     *
+     * @return this {@code Builder} object
+     */
+    @CanIgnoreReturnValue
+    public Builder add(int... values) {
+      int newSize = size + values.length;
+      if (newSize > this.values.length) {
+        this.values =
+            Arrays.copyOf(
+                this.values, ImmutableCollection.Builder.expandedCapacity(size, newSize));
+      }
+      System.arraycopy(values, 0, this.values, size, values.length);
+      size = newSize;
+      return this;
+    }
+
+    /**
+     * Adds each of {@code values} to the built set.
+     *
+     * @return this {@code Builder} object
+     * @throws NullPointerException if any of {@code values} is null
+     */
+    @CanIgnoreReturnValue
+    public Builder addAll(Iterable<? extends Integer> values) {
+      for (Integer value : values) {
+        add(value.intValue());
+      }
+      return this;
+    }
+
+    /**
+     * Adds the values of {@code range}, as determined by {@link DiscreteDomain#integers}, to the
+     * built set. The range may be unbounded.
+     *
+     * @return this {@code Builder} object
+     */
+    @CanIgnoreReturnValue
+    public Builder add(Range<Integer> range) {
+      ranges.add(range.canonical(DiscreteDomain.integers()));
+      return this;
+    }
+
+    /**
+     * Adds the values of each of the ranges of {@code rangeSet}, as determined by {@link
+     * DiscreteDomain#integers}, to the built set. The ranges may be unbounded.
+     *
+     * @return this {@code Builder} object
+     */
+    @CanIgnoreReturnValue
+    public Builder addAll(RangeSet<Integer> rangeSet) {
+      for (Range<Integer> range : rangeSet.asRanges()) {
+        add(range);
+      }
+      return this;
+    }
+
+    /**
+     * Returns a newly-created {@code CompressedIntegerSet} based on the contents of this {@code
+     * Builder}.
+     */
+    public CompressedIntegerSet build() {
+      int[] sorted = Arrays.copyOf(values, size);
+      Arrays.sort(sorted);
+      return fromSortedValues(sorted).union(fromRanges(ranges));
+    }
+  }
+
+  /** The keys of the nonempty chunks, in ascending order; see {@link #key}. */
+  private final transient char[] keys;
+
+  /** The container of the values of each chunk. */
+  private final transient Container[] containers;
+
+  /**
+   * The number of values in the chunks before each chunk, and, as its last element, the total
+   * number of values.
+   */
+  private final transient long[] offsets;
+
+  private CompressedIntegerSet(char[] keys, Container[] containers) {
+    super(Ordering.natural());
+    this.keys = keys;
+    this.containers = containers;
+    this.offsets = new long[containers.length + 1];
+    for (int i = 0; i < containers.length; i++) {
+      offsets[i + 1] = offsets[i] + containers[i].cardinality();
+    }
+  }
+
+  /**
+   * Returns the exact number of values in this set, which, unlike {@link #size}, may exceed {@code
+   * Integer.MAX_VALUE}.
+   */
+  public long cardinality() {
+    return offsets[containers.length];
+  }
+
+  @Override
+  public int size() {
+    return Ints.saturatedCast(cardinality());
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return keys.length == 0;
+  }
+
+  @Override
+  public boolean contains(@Nullable Object object) {
+    if (!(object instanceof Integer)) {
+      return false;
+    }
+    int value = (Integer) object;
+    int i = Arrays.binarySearch(keys, key(value));
+    return i >= 0 && containers[i].contains(low(value));
+  }
+
+  @Override
+  int indexOf(@Nullable Object target) {
+    if (!(target instanceof Integer)) {
+      return -1;
+    }
+    int value = (Integer) target;
+    int i = Arrays.binarySearch(keys, key(value));
+    if (i < 0 || !containers[i].contains(low(value))) {
+      return -1;
+    }
+    return Ints.saturatedCast(offsets[i] + containers[i].rank(low(value)));
+  }
+
+  @Override
+  public Integer first() {
+    if (isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    return value(keys[0], containers[0].ceiling(0));
+  }
+
+  @Override
+  public Integer last() {
+    if (isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    int i = keys.length - 1;
+    return value(keys[i], containers[i].floor(Container.MAX_LOW));
+  }
+
+  @Override
+  public UnmodifiableIterator<Integer> iterator() {
+    return new AbstractIterator<Integer>() {
+      int i = 0;
+      int nextLow = 0;
+
+      @Override
+      protected Integer computeNext() {
+        while (i < keys.length) {
+          int low = (nextLow > Container.MAX_LOW) ? -1 : containers[i].ceiling(nextLow);
+          if (low >= 0) {
+            nextLow = low + 1;
+            return value(keys[i], low);
+          }
+          i++;
+          nextLow = 0;
+        }
+        return endOfData();
+      }
+    };
+  }
+
+  @Override
+  public UnmodifiableIterator<Integer> descendingIterator() {
+    return new AbstractIterator<Integer>() {
+      int i = keys.length - 1;
+      int nextLow = Container.MAX_LOW;
+
+      @Override
+      protected Integer computeNext() {
+        while (i >= 0) {
+          int low = (nextLow < 0) ? -1 : containers[i].floor(nextLow);
+          if (low >= 0) {
+            nextLow = low - 1;
+            return value(keys[i], low);
+          }
+          i--;
+          nextLow = Container.MAX_LOW;
+        }
+        return endOfData();
+      }
+    };
+  }
+
+  @Override
+  CompressedIntegerSet headSetImpl(Integer toElement, boolean inclusive) {
+    return restrict(Integer.MIN_VALUE, inclusive ? toElement : toElement - 1L);
+  }
+
+  @Override
+  CompressedIntegerSet subSetImpl(
+      Integer fromElement, boolean fromInclusive, Integer toElement, boolean toInclusive) {
+    return restrict(
+        fromInclusive ? fromElement : fromElement + 1L, toInclusive ? toElement : toElement - 1L);
+  }
+
+  @Override
+  CompressedIntegerSet tailSetImpl(Integer fromElement, boolean inclusive) {
+    return restrict(inclusive ? fromElement : fromElement + 1L, Integer.MAX_VALUE);
+  }
+
+  /** Returns the values of this set between {@code lower} and {@code upper}, both inclusive. */
+  private CompressedIntegerSet restrict(long lower, long upper) {
+    if (lower > upper || isEmpty()) {
+      return (lower > upper) ? EMPTY : this;
+    }
+    char lowerKey = key((int) lower);
+    char upperKey = key((int) upper);
+    int from = Arrays.binarySearch(keys, lowerKey);
+    int to = Arrays.binarySearch(keys, upperKey);
+    from = (from >= 0) ? from : -from - 1;
+    to = (to >= 0) ? to + 1 : -to - 1;
+    ChunkList result = new ChunkList(to - from);
+    boolean changed = to - from < keys.length;
+    for (int i = from; i < to; i++) {
+      int lowerLow = (keys[i] == lowerKey) ? low((int) lower) : 0;
+      int upperLow = (keys[i] == upperKey) ? low((int) upper) : Container.MAX_LOW;
+      Container container = containers[i];
+      if (lowerLow != 0 || upperLow != Container.MAX_LOW) {
+        container = Container.and(container, RunContainer.of(lowerLow, upperLow));
+        changed |= container != containers[i];
+      }
+      result.add(keys[i], container);
+    }
+    return changed ? result.build() : this;
+  }
+
+  @Override
+  boolean isPartialView() {
+    return false;
+  }
+
+  /**
+   * Returns the values that are contained in both this set and {@code other}.
+   */
+  public CompressedIntegerSet intersection(CompressedIntegerSet other) {
+    ChunkList result = new ChunkList(Math.min(keys.length, other.keys.length));
+    int i = 0;
+    int j = 0;
+    while (i < keys.length && j < other.keys.length) {
+      if (keys[i] < other.keys[j]) {
+        i++;
+      } else if (keys[i] > other.keys[j]) {
+        j++;
+      } else {
+        result.add(keys[i], Container.and(containers[i], other.containers[j]));
+        i++;
+        j++;
+      }
+    }
+    return result.build();
+  }
+
+  /**
+   * Returns the values that are contained in this set, in {@code other} or in both.
+   */
+  public CompressedIntegerSet union(CompressedIntegerSet other) {
+    if (other.isEmpty()) {
+      return this;
+    } else if (isEmpty()) {
+      return other;
+    }
+    ChunkList result = new ChunkList(keys.length + other.keys.length);
+    int i = 0;
+    int j = 0;
+    while (i < keys.length || j < other.keys.length) {
+      if (j == other.keys.length || (i < keys.length && keys[i] < other.keys[j])) {
+        result.add(keys[i], containers[i]);
+        i++;
+      } else if (i == keys.length || keys[i] > other.keys[j]) {
+        result.add(other.keys[j], other.containers[j]);
+        j++;
+      } else {
+        result.add(keys[i], Container.or(containers[i], other.containers[j]));
+        i++;
+        j++;
+      }
+    }
+    return result.build();
+  }
+
+  /**
+   * Returns the values that are contained in this set but not in {@code other}.
+   */
+  public CompressedIntegerSet difference(CompressedIntegerSet other) {
+    ChunkList result = new ChunkList(keys.length);
+    int j = 0;
+    for (int i = 0; i < keys.length; i++) {
+      while (j < other.keys.length && other.keys[j] < keys[i]) {
+        j++;
+      }
+      result.add(
+          keys[i],
+          (j < other.keys.length && other.keys[j] == keys[i])
+              ? Container.andNot(containers[i], other.containers[j])
+              : containers[i]);
+    }
+    return (result.size == keys.length && Arrays.equals(result.containers, containers))
+        ? this
+        : result.build();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>If {@code other} is a {@code CompressedIntegerSet}, this is equivalent to {@link
+   * #intersection(CompressedIntegerSet)}.
+   */
+  @Override
+  public ImmutableSortedSet<Integer> intersection(Set<?> other) {
+    return (other instanceof CompressedIntegerSet)
+        ? intersection((CompressedIntegerSet) other)
+        : super.intersection(other);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>If {@code other} is a {@code CompressedIntegerSet}, this is equivalent to {@link
+   * #difference(CompressedIntegerSet)}.
+   */
+  @Override
+  public ImmutableSortedSet<Integer> difference(Set<?> other) {
+    return (other instanceof CompressedIntegerSet)
+        ? difference((CompressedIntegerSet) other)
+        : super.difference(other);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>If {@code other} is a {@code CompressedIntegerSet}, this is equivalent to {@link
+   * #union(CompressedIntegerSet)}.
+   */
+  @Override
+  public ImmutableSortedSet<Integer> union(Set<? extends Integer> other) {
+    return (other instanceof CompressedIntegerSet)
+        ? union((CompressedIntegerSet) other)
+        : super.union(other);
+  }
+
+  /**
+   * Returns the values of this set as a range set. Each range is the {@linkplain
+   * Range#canonical(DiscreteDomain) canonical form}, for {@link DiscreteDomain#integers}, of a
+   * maximal run of consecutive values of this set.
+   */
+  public ImmutableRangeSet<Integer> toRangeSet() {
+    ImmutableList.Builder<Range<Integer>> ranges = ImmutableList.builder();
+    long runStart = 0;
+    long runEnd = Long.MIN_VALUE;
+    for (int i = 0; i < keys.length; i++) {
+      Container container = containers[i];
+      long base = value(keys[i], 0);
+      for (int low = container.ceiling(0); low >= 0; ) {
+        int end = container.nextAbsent(low) - 1;
+        if (base + low != runEnd + 1) {
+          if (runEnd != Long.MIN_VALUE) {
+            ranges.add(canonicalRange(runStart, runEnd));
+          }
+          runStart = base + low;
+        }
+        runEnd = base + end;
+        low = (end == Container.MAX_LOW) ? -1 : container.ceiling(end + 1);
+      }
+    }
+    if (runEnd != Long.MIN_VALUE) {
+      ranges.add(canonicalRange(runStart, runEnd));
+    }
+    return new ImmutableRangeSet<Integer>(ranges.build());
+  }
+
+  private static Range<Integer> canonicalRange(long lower, long upper) {
+    return (upper == Integer.MAX_VALUE)
+        ? Range.atLeast((int) lower)
+        : Range.closedOpen((int) lower, (int) upper + 1);
+  }
+
+  @Override
+  public boolean equals(@Nullable Object object) {
+    if (object == this) {
+      return true;
+    } else if (object instanceof CompressedIntegerSet) {
+      // Containers are always the smallest possible for their contents, so equal sets have
+      // equal containers.
+      CompressedIntegerSet that = (CompressedIntegerSet) object;
+      return Arrays.equals(keys, that.keys) && Arrays.equals(containers, that.containers);
+    }
+    return super.equals(object);
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = 0;
+    for (int i = 0; i < keys.length; i++) {
+      hash += containers[i].cardinality() * value(keys[i], 0) + (int) containers[i].lowSum();
+    }
+    return hash;
+  }
+
+  /*
+   * The high 16 bits of a value, with the sign bit flipped so that the keys of negative values sort
+   * before those of nonnegative ones.
+   */
+  private static char key(int value) {
+    return (char) ((value >>> 16) ^ 0x8000);
+  }
+
+  private static int low(int value) {
+    return value & Container.MAX_LOW;
+  }
+
+  private static int value(char key, int low) {
+    return ((key ^ 0x8000) << 16) | low;
+  }
+
+  private static CompressedIntegerSet fromSortedValues(int[] values) {
+    ChunkList result = new ChunkList(0);
+    int i = 0;
+    while (i < values.length) {
+      char key = key(values[i]);
+      int start = i;
+      while (i < values.length && key(values[i]) == key) {
+        i++;
+      }
+      result.add(key, Container.fromSortedValues(values, start, i));
+    }
+    return result.build();
+  }
+
+  private static CompressedIntegerSet fromRanges(RangeSet<Integer> rangeSet) {
+    ChunkList result = new ChunkList(0);
+    char key = 0;
+    RunContainer.Builder runs = null;
+    for (Range<Integer> range : rangeSet.asRanges()) {
+      long lower = range.hasLowerBound() ? range.lowerEndpoint() : Integer.MIN_VALUE;
+      long upper = range.hasUpperBound() ? range.upperEndpoint() - 1L : Integer.MAX_VALUE;
+      // Ranges are canonical, so they are closed-open here.
+      while (lower <= upper) {
+        char lowerKey = key((int) lower);
+        if (runs == null || lowerKey != key) {
+          if (runs != null) {
+            result.add(key, Container.optimize(runs.build()));
+          }
+          key = lowerKey;
+          runs = new RunContainer.Builder();
+        }
+        long chunkEnd = Math.min(upper, value(key, Container.MAX_LOW));
+        runs.add(low((int) lower), low((int) chunkEnd));
+        lower = chunkEnd + 1;
+      }
+    }
+    if (runs != null) {
+      result.add(key, Container.optimize(runs.build()));
+    }
+    return result.build();
+  }
+
+  /** Accumulates the nonempty chunks of a set in order of their keys. */
+  private static final class ChunkList {
+    char[] keys;
+    Container[] containers;
+    int size;
+
+    ChunkList(int expectedSize) {
+      keys = new char[expectedSize];
+      containers = new Container[expectedSize];
+    }
+
+    void add(char key, @Nullable Container container) {
+      if (container == null) {
+        return;
+      }
+      if (size == keys.length) {
+        int newCapacity = ImmutableCollection.Builder.expandedCapacity(size, size + 1);
+        keys = Arrays.copyOf(keys, newCapacity);
+        containers = Arrays.copyOf(containers, newCapacity);
+      }
+      keys[size] = key;
+      containers[size] = container;
+      size++;
+    }
+
+    CompressedIntegerSet build() {
+      if (size == 0) {
+        return EMPTY;
+      }
+      if (size < keys.length) {
+        keys = Arrays.copyOf(keys, size);
+        containers = Arrays.copyOf(containers, size);
+      }
+      return new CompressedIntegerSet(keys, containers);
+    }
+  }
+
+  /**
+   * The values of one chunk, as numbers between 0 and {@link #MAX_LOW}. Containers are immutable,
+   * nonempty, and always of whichever type takes the least space for their contents, ties being
+   * resolved in favor of runs, then arrays; see {@link #optimize}.
+   */
+  abstract static class Container implements Serializable {
+    static final int MAX_LOW = 0xFFFF;
+
+    /** The number of longs in a bitmap. */
+    static final int WORDS = 1024;
+
+    /** The largest cardinality for which an array is no larger than a bitmap. */
+    static final int MAX_ARRAY_CARDINALITY = 4096;
+
+    abstract int cardinality();
+
+    /** Returns the number of maximal runs of consecutive values. */
+    abstract int runCount();
+
+    abstract boolean contains(int low);
+
+    /** Returns the number of values less than {@code low}. */
+    abstract int rank(int low);
+
+    /** Returns the least value greater than or equal to {@code low}, or -1 if there is none. */
+    abstract int ceiling(int low);
+
+    /** Returns the greatest value less than or equal to {@code low}, or -1 if there is none. */
+    abstract int floor(int low);
+
+    /**
+     * Returns the least number greater than or equal to {@code low} that is not a value, which is
+     * {@code MAX_LOW + 1} if there is none.
+     */
+    abstract int nextAbsent(int low);
+
+    /** Sets the bits of the values in {@code words}. */
+    abstract void addTo(long[] words);
+
+    abstract long lowSum();
+
+    final long[] toWords() {
+      long[] words = new long[WORDS];
+      addTo(words);
+      return words;
+    }
+
+    static Container and(Container a, Container b) {
+      if (a instanceof ArrayContainer) {
+        return ((ArrayContainer) a).filter(b, true);
+      } else if (b instanceof ArrayContainer) {
+        return ((ArrayContainer) b).filter(a, true);
+      } else if (a instanceof RunContainer && b instanceof RunContainer) {
+        return RunContainer.combine(a, b, Op.AND);
+      }
+      long[] words = a.toWords();
+      long[] other = b.toWords();
+      for (int i = 0; i < WORDS; i++) {
+        words[i] &= other[i];
+      }
+      return fromWords(words);
+    }
+
+    static Container or(Container a, Container b) {
+      if (a instanceof ArrayContainer && b instanceof ArrayContainer) {
+        return ((ArrayContainer) a).merge((ArrayContainer) b);
+      } else if (a instanceof RunContainer && b instanceof RunContainer) {
+        return RunContainer.combine(a, b, Op.OR);
+      }
+      long[] words = a.toWords();
+      b.addTo(words);
+      return fromWords(words);
+    }
+
+    static Container andNot(Container a, Container b) {
+      if (a instanceof ArrayContainer) {
+        return ((ArrayContainer) a).filter(b, false);
+      } else if (a instanceof RunContainer && b instanceof RunContainer) {
+        return RunContainer.combine(a, b, Op.AND_NOT);
+      }
+      long[] words = a.toWords();
+      long[] other = b.toWords();
+      for (int i = 0; i < WORDS; i++) {
+        words[i] &= ~other[i];
+      }
+      return fromWords(words);
+    }
+
+    /**
+     * Returns the container of {@code values[from]} to {@code values[to - 1]}, which are sorted and
+     * all in the same chunk.
+     */
+    @Nullable
+    static Container fromSortedValues(int[] values, int from, int to) {
+      if (to - from > MAX_ARRAY_CARDINALITY) {
+        long[] words = new long[WORDS];
+        for (int i = from; i < to; i++) {
+          words[low(values[i]) >>> 6] |= 1L << values[i];
+        }
+        return fromWords(words);
+      }
+      char[] lows = new char[to - from];
+      int n = 0;
+      for (int i = from; i < to; i++) {
+        if (i == from || values[i] != values[i - 1]) {
+          lows[n++] = (char) values[i];
+        }
+      }
+      return optimize(new ArrayContainer(lows, n));
+    }
+
+    @Nullable
+    static Container fromWords(long[] words) {
+      int cardinality = 0;
+      for (long word : words) {
+        cardinality += Long.bitCount(word);
+      }
+      return optimize(new BitmapContainer(words, cardinality));
+    }
+
+    /**
+     * Returns a container of the same values as {@code container} and of the type that takes the
+     * least space for them, or null if {@code container} is empty.
+     */
+    @Nullable
+    static Container optimize(Container container) {
+      int cardinality = container.cardinality();
+      if (cardinality == 0) {
+        return null;
+      }
+      long runBytes = 4L * container.runCount();
+      if (runBytes <= Math.min(2L * cardinality, 2L * MAX_ARRAY_CARDINALITY)) {
+        return (container instanceof RunContainer) ? container : RunContainer.copyOf(container);
+      } else if (cardinality <= MAX_ARRAY_CARDINALITY) {
+        return (container instanceof ArrayContainer) ? container : ArrayContainer.copyOf(container);
+      } else {
+        return (container instanceof BitmapContainer)
+            ? container
+            : new BitmapContainer(container.toWords(), cardinality);
+      }
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+
+  /** A container of a sorted array of values. */
+  static final class ArrayContainer extends Container {
+    final char[] values;
+
+    ArrayContainer(char[] values, int size) {
+      this.values = (size == values.length) ? values : Arrays.copyOf(values, size);
+    }
+
+    static ArrayContainer copyOf(Container container) {
+      char[] values = new char[container.cardinality()];
+      int n = 0;
+      for (int low = container.ceiling(0); low >= 0; ) {
+        values[n++] = (char) low;
+        low = (low == MAX_LOW) ? -1 : container.ceiling(low + 1);
+      }
+      return new ArrayContainer(values, n);
+    }
+
+    @Override
+    int cardinality() {
+      return values.length;
+    }
+
+    @Override
+    int runCount() {
+      int runs = 0;
+      for (int i = 0; i < values.length; i++) {
+        if (i == 0 || values[i] != values[i - 1] + 1) {
+          runs++;
+        }
+      }
+      return runs;
+    }
+
+    @Override
+    boolean contains(int low) {
+      return Arrays.binarySearch(values, (char) low) >= 0;
+    }
+
+    @Override
+    int rank(int low) {
+      int i = Arrays.binarySearch(values, (char) low);
+      return (i >= 0) ? i : -i - 1;
+    }
+
+    @Override
+    int ceiling(int low) {
+      int i = rank(low);
+      return (i < values.length) ? values[i] : -1;
+    }
+
+    @Override
+    int floor(int low) {
+      int i = Arrays.binarySearch(values, (char) low);
+      if (i >= 0) {
+        return values[i];
+      }
+      i = -i - 1;
+      return (i > 0) ? values[i - 1] : -1;
+    }
+
+    @Override
+    int nextAbsent(int low) {
+      int i = Arrays.binarySearch(values, (char) low);
+      if (i < 0) {
+        return low;
+      }
+      while (i + 1 < values.length && values[i + 1] == values[i] + 1) {
+        i++;
+      }
+      return values[i] + 1;
+    }
+
+    @Override
+    void addTo(long[] words) {
+      for (char value : values) {
+        words[value >>> 6] |= 1L << value;
+      }
+    }
+
+    @Override
+    long lowSum() {
+      long sum = 0;
+      for (char value : values) {
+        sum += value;
+      }
+      return sum;
+    }
+
+    /** Returns the values that {@code other} contains, if {@code retain}, or does not contain. */
+    @Nullable
+    Container filter(Container other, boolean retain) {
+      char[] result = new char[values.length];
+      int n = 0;
+      for (char value : values) {
+        if (other.contains(value) == retain) {
+          result[n++] = value;
+        }
+      }
+      return (n == values.length) ? this : optimize(new ArrayContainer(result, n));
+    }
+
+    @Nullable
+    Container merge(ArrayContainer other) {
+      char[] result = new char[values.length + other.values.length];
+      int i = 0;
+      int j = 0;
+      int n = 0;
+      while (i < values.length && j < other.values.length) {
+        if (values[i] < other.values[j]) {
+          result[n++] = values[i++];
+        } else if (values[i] > other.values[j]) {
+          result[n++] = other.values[j++];
+        } else {
+          result[n++] = values[i++];
+          j++;
+        }
+      }
+      while (i < values.length) {
+        result[n++] = values[i++];
+      }
+      while (j < other.values.length) {
+        result[n++] = other.values[j++];
+      }
+      return optimize(new ArrayContainer(result, n));
+    }
+
+    @Override
+    public boolean equals(@Nullable Object object) {
+      return object instanceof ArrayContainer
+          && Arrays.equals(values, ((ArrayContainer) object).values);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(values);
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+
+  /** A container of a bitmap with one bit per possible value. */
+  static final class BitmapContainer extends Container {
+    final long[] words;
+    final int cardinality;
+
+    BitmapContainer(long[] words, int cardinality) {
+      this.words = words;
+      this.cardinality = cardinality;
+    }
+
+    @Override
+    int cardinality() {
+      return cardinality;
+    }
+
+    @Override
+    int runCount() {
+      int runs = 0;
+      long previous = 0;
+      for (long word : words) {
+        // Counts the bits that are set and follow a clear bit.
+        runs += Long.bitCount(word & ~((word << 1) | (previous >>> 63)));
+        previous = word;
+      }
+      return runs;
+    }
+
+    @Override
+    boolean contains(int low) {
+      return (words[low >>> 6] & (1L << low)) != 0;
+    }
+
+    @Override
+    int rank(int low) {
+      int rank = 0;
+      int i = low >>> 6;
+      for (int j = 0; j < i; j++) {
+        rank += Long.bitCount(words[j]);
+      }
+      return rank + Long.bitCount(words[i] & ((1L << low) - 1));
+    }
+
+    @Override
+    int ceiling(int low) {
+      int i = low >>> 6;
+      long word = words[i] & (-1L << low);
+      while (word == 0) {
+        if (++i == WORDS) {
+          return -1;
+        }
+        word = words[i];
+      }
+      return (i << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    @Override
+    int floor(int low) {
+      int i = low >>> 6;
+      long word = words[i] & (-1L >>> (63 - (low & 63)));
+      while (word == 0) {
+        if (--i < 0) {
+          return -1;
+        }
+        word = words[i];
+      }
+      return (i << 6) + 63 - Long.numberOfLeadingZeros(word);
+    }
+
+    @Override
+    int nextAbsent(int low) {
+      int i = low >>> 6;
+      long word = ~words[i] & (-1L << low);
+      while (word == 0) {
+        if (++i == WORDS) {
+          return MAX_LOW + 1;
+        }
+        word = ~words[i];
+      }
+      return (i << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    @Override
+    void addTo(long[] words) {
+      for (int i = 0; i < WORDS; i++) {
+        words[i] |= this.words[i];
+      }
+    }
+
+    @Override
+    long lowSum() {
+      long sum = 0;
+      for (int i = 0; i < WORDS; i++) {
+        for (long word = words[i]; word != 0; word &= word - 1) {
+          sum += (i << 6) + Long.numberOfTrailingZeros(word);
+        }
+      }
+      return sum;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object object) {
+      return object instanceof BitmapContainer
+          && Arrays.equals(words, ((BitmapContainer) object).words);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(words);
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+
+  /** The set operations that {@link RunContainer#combine} can compute. */
+  enum Op {
+    AND {
+      @Override
+      boolean apply(boolean a, boolean b) {
+        return a && b;
+      }
+    },
+    OR {
+      @Override
+      boolean apply(boolean a, boolean b) {
+        return a || b;
+      }
+    },
+    AND_NOT {
+      @Override
+      boolean apply(boolean a, boolean b) {
+        return a && !b;
+      }
+    };
+
+    abstract boolean apply(boolean a, boolean b);
+  }
+
+  /**
+   * A container of the sorted, maximal runs of consecutive values, each stored as its first and
+   * last value.
+   */
+  static final class RunContainer extends Container {
+    final char[] runs;
+    final int cardinality;
+
+    RunContainer(char[] runs) {
+      this.runs = runs;
+      int cardinality = 0;
+      for (int i = 0; i < runs.length; i += 2) {
+        cardinality += runs[i + 1] - runs[i] + 1;
+      }
+      this.cardinality = cardinality;
+    }
+
+    static RunContainer of(int first, int last) {
+      return new RunContainer(new char[] {(char) first, (char) last});
+    }
+
+    static RunContainer copyOf(Container container) {
+      Builder builder = new Builder();
+      for (int low = container.ceiling(0); low >= 0; ) {
+        int end = container.nextAbsent(low) - 1;
+        builder.add(low, end);
+        low = (end == MAX_LOW) ? -1 : container.ceiling(end + 1);
+      }
+      return builder.build();
+    }
+
+    /**
+     * Computes {@code op} over two containers by visiting only the points where either of them
+     * changes from containing values to not containing them or back, which for two run
+     * containers takes time proportional to their number of runs.
+     */
+    @Nullable
+    static Container combine(Container a, Container b, Op op) {
+      Builder builder = new Builder();
+      int low = 0;
+      while (low <= MAX_LOW) {
+        boolean inA = a.contains(low);
+        boolean inB = b.contains(low);
+        int next = Math.min(nextChange(a, low, inA), nextChange(b, low, inB));
+        if (op.apply(inA, inB)) {
+          builder.add(low, next - 1);
+        }
+        low = next;
+      }
+      return optimize(builder.build());
+    }
+
+    private static int nextChange(Container container, int low, boolean present) {
+      if (present) {
+        return container.nextAbsent(low);
+      }
+      int next = container.ceiling(low);
+      return (next < 0) ? MAX_LOW + 1 : next;
+    }
+
+    /**
+     * Returns the index of the last run that starts at or before {@code low}, or -1 if there is
+     * none.
+     */
+    private int runIndex(int low) {
+      int lo = 0;
+      int hi = runs.length / 2 - 1;
+      while (lo <= hi) {
+        int mid = (lo + hi) >>> 1;
+        if (runs[2 * mid] <= low) {
+          lo = mid + 1;
+        } else {
+          hi = mid - 1;
+        }
+      }
+      return hi;
+    }
+
+    @Override
+    int cardinality() {
+      return cardinality;
+    }
+
+    @Override
+    int runCount() {
+      return runs.length / 2;
+    }
+
+    @Override
+    boolean contains(int low) {
+      int i = runIndex(low);
+      return i >= 0 && low <= runs[2 * i + 1];
+    }
+
+    @Override
+    int rank(int low) {
+      int rank = 0;
+      for (int i = 0; i < runs.length && runs[i] < low; i += 2) {
+        rank += Math.min(low - 1, runs[i + 1]) - runs[i] + 1;
+      }
+      return rank;
+    }
+
+    @Override
+    int ceiling(int low) {
+      int i = runIndex(low);
+      if (i >= 0 && low <= runs[2 * i + 1]) {
+        return low;
+      }
+      return (2 * (i + 1) < runs.length) ? runs[2 * (i + 1)] : -1;
+    }
+
+    @Override
+    int floor(int low) {
+      int i = runIndex(low);
+      return (i < 0) ? -1 : Math.min(low, runs[2 * i + 1]);
+    }
+
+    @Override
+    int nextAbsent(int low) {
+      int i = runIndex(low);
+      return (i >= 0 && low <= runs[2 * i + 1]) ? runs[2 * i + 1] + 1 : low;
+    }
+
+    @Override
+    void addTo(long[] words) {
+      for (int i = 0; i < runs.length; i += 2) {
+        int first = runs[i];
+        int last = runs[i + 1];
+        int firstWord = first >>> 6;
+        int lastWord = last >>> 6;
+        long firstMask = -1L << first;
+        long lastMask = -1L >>> (63 - (last & 63));
+        if (firstWord == lastWord) {
+          words[firstWord] |= firstMask & lastMask;
+        } else {
+          words[firstWord] |= firstMask;
+          for (int j = firstWord + 1; j < lastWord; j++) {
+            words[j] = -1L;
+          }
+          words[lastWord] |= lastMask;
+        }
+      }
+    }
+
+    @Override
+    long lowSum() {
+      long sum = 0;
+      for (int i = 0; i < runs.length; i += 2) {
+        long first = runs[i];
+        long last = runs[i + 1];
+        sum += (first + last) * (last - first + 1) / 2;
+      }
+      return sum;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object object) {
+      return object instanceof RunContainer && Arrays.equals(runs, ((RunContainer) object).runs);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(runs);
+    }
+
+    /**
+     * Accumulates runs in ascending order, joining each to the previous one if they touch.
+     */
+    static final class Builder {
+      private char[] runs = new char[4];
+      private int size;
+
+      void add(int first, int last) {
+        if (size > 0 && first == runs[size - 1] + 1) {
+          runs[size - 1] = (char) last;
+          return;
+        }
+        if (size == runs.length) {
+          runs = Arrays.copyOf(runs, size * 2);
+        }
+        runs[size++] = (char) first;
+        runs[size++] = (char) last;
+      }
+
+      RunContainer build() {
+        return new RunContainer(Arrays.copyOf(runs, size));
+      }
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+
+  private static final class SerializedForm implements Serializable {
+    final char[] keys;
+    final Container[] containers;
+
+    SerializedForm(char[] keys, Container[] containers) {
+      this.keys = keys;
+      this.containers = containers;
+    }
+
+    Object readResolve() {
+      return (keys.length == 0) ? EMPTY : new CompressedIntegerSet(keys, containers);
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+
+  @Override
+  Object writeReplace() {
+    return new SerializedForm(keys, containers);
+  }
+}
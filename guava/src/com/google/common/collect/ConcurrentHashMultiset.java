@@ -53,6 +53,9 @@ import javax.annotation.Nullable;
  * "https://github.com/google/guava/wiki/NewCollectionTypesExplained#multiset">
  * {@code Multiset}</a>.
  *
+ * <p>When many threads frequently add occurrences of the same few elements, consider {@link
+ * StripedConcurrentHashMultiset} instead, which spreads each element's count across several cells.
+ *
  * @author Cliff L. Biffle
  * @author mike nonemacher
  * @since 2.0
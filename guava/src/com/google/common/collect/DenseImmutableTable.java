@@ -76,9 +76,10 @@ final class DenseImmutableTable<R, C, V> extends RegularImmutableTable<R, C, V>
   }
 
   /**
-   * An immutable map implementation backed by an indexed nullable array.
+   * An immutable map implementation backed by an indexed nullable array. Also used by the views of
+   * {@link ImmutableDoubleTable} and {@link ImmutableLongTable}.
    */
-  private abstract static class ImmutableArrayMap<K, V> extends IteratorBasedImmutableMap<K, V> {
+  abstract static class ImmutableArrayMap<K, V> extends IteratorBasedImmutableMap<K, V> {
     private final int size;
 
     ImmutableArrayMap(int size) {
@@ -31,6 +31,7 @@ import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.SortedSet;
+import java.util.concurrent.Executor;
 
 import javax.annotation.Nullable;
 
@@ -580,6 +581,29 @@ public abstract class FluentIterable<E> implements Iterable<E> {
     return !iterable.iterator().hasNext();
   }
 
+  /**
+   * Returns a parallel iterable over the elements of this fluent iterable, whose {@linkplain
+   * ParallelIterable#filter filters} and {@linkplain ParallelIterable#transform transformations}
+   * are fused into a single loop and run on {@code executor}, in chunks, when one of its terminal
+   * operations such as {@link ParallelIterable#toList} is called. The results keep the order of
+   * this fluent iterable.
+   *
+   * <p>This fluent iterable is split in place if it was created {@linkplain #from(Iterable) from} a
+   * {@link java.util.RandomAccess} list or an {@link ImmutableCollection}, and is otherwise copied
+   * into a list first. To benefit from splitting, call this method directly on such a source,
+   * before any {@code filter} or {@code transform}.
+   *
+   * <p><b>{@code Stream} equivalent:</b> {@code stream.parallel()}, which runs on the common
+   * {@code ForkJoinPool} rather than on a given executor.
+   *
+   * @since 20.0
+   */
+  @Beta
+  @GwtIncompatible // Executor
+  public final ParallelIterable<E> parallel(Executor executor) {
+    return ParallelIterable.from(iterable, executor);
+  }
+
   /**
    * Returns an {@code ImmutableList} containing all of the elements from this fluent iterable in
    * proper sequence.
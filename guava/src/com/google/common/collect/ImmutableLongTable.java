@@ -0,0 +1,480 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtCompatible;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import com.google.j2objc.annotations.WeakOuter;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * An {@link ImmutableTable} with {@code long} values, stored unboxed in a single flat array with
+ * one slot for every (row, column) pair. The array is laid out row by row or column by column,
+ * depending on whether the table was created with {@link #rowMajorBuilder} or {@link
+ * #columnMajorBuilder}.
+ *
+ * <p>This layout is meant for dense numeric data, such as counters and time series. Because every
+ * pair of a row key and a column key has a slot, whether or not it holds a cell, a table with many
+ * rows and columns but few cells uses much more memory than {@link ImmutableTable#copyOf} would.
+ *
+ * <p>The {@link #row} and {@link #column} maps, and the maps in {@link #rowMap} and {@link
+ * #columnMap}, are views of the shared array rather than copies; they box values only as they are
+ * read. Use {@link #get(Object, Object, long)} to read a value without boxing at all.
+ *
+ * <p>The views of the table iterate in the order of its storage: {@link #cellSet} and {@link
+ * #values} return the cells of the first row followed by those of the second row, and so on, or
+ * column by column for a column-major table. Rows and columns are ordered by their first
+ * appearance in the builder, or by the comparators passed to {@link Builder#orderRowsBy} and
+ * {@link Builder#orderColumnsBy}.
+ *
+ * @since 20.0
+ */
+@Beta
+@GwtCompatible
+@Immutable
+public final class ImmutableLongTable<R, C> extends RegularImmutableTable<R, C, Long> {
+  /**
+   * Returns a new builder for a table laid out row by row, in which the values of each row are
+   * adjacent in memory.
+   */
+  public static <R, C> Builder<R, C> rowMajorBuilder() {
+    return new Builder<R, C>(false);
+  }
+
+  /**
+   * Returns a new builder for a table laid out column by column, in which the values of each
+   * column are adjacent in memory. Prefer this when the table will mostly be read one column at a
+   * time.
+   */
+  public static <R, C> Builder<R, C> columnMajorBuilder() {
+    return new Builder<R, C>(true);
+  }
+
+  /**
+   * Returns a row-major immutable copy of {@code table}, converting each value with {@link
+   * Number#longValue}. The rows and columns of the copy follow the order in which they first
+   * appear in {@link Table#cellSet}.
+   *
+   * <p>Despite the method name, this method attempts to avoid actually copying the data when it is
+   * safe to do so. The exact circumstances under which a copy will or will not be performed are
+   * undocumented and subject to change.
+   *
+   * @throws NullPointerException if any key or value in {@code table} is null
+   * @throws IllegalArgumentException if the table has more rows times columns than an array can
+   *     hold
+   */
+  public static <R, C> ImmutableLongTable<R, C> rowMajorCopyOf(
+      Table<? extends R, ? extends C, ? extends Number> table) {
+    if (table instanceof ImmutableLongTable) {
+      @SuppressWarnings("unchecked") // immutable tables are covariant in their key types
+      ImmutableLongTable<R, C> result = (ImmutableLongTable<R, C>) table;
+      if (!result.columnMajor) {
+        return result;
+      }
+    }
+    return ImmutableLongTable.<R, C>rowMajorBuilder().putAll(table).build();
+  }
+
+  /**
+   * A builder for creating {@code ImmutableLongTable} instances. Example: <pre>   {@code
+   *
+   *   ImmutableLongTable<String, Integer> dailyVolumes =
+   *       ImmutableLongTable.<String, Integer>rowMajorBuilder()
+   *           .put("GOOG", 20160801, 1319432)
+   *           .put("GOOG", 20160802, 1157306)
+   *           .build();}</pre>
+   *
+   * <p>Builder instances can be reused - it is safe to call {@link #build} multiple times to build
+   * multiple tables in series. Each table is a superset of the tables created before it.
+   *
+   * @since 20.0
+   */
+  public static final class Builder<R, C> {
+    private final List<R> rowKeys = Lists.newArrayList();
+    private final List<C> columnKeys = Lists.newArrayList();
+    private long[] values = new long[ImmutableCollection.Builder.DEFAULT_INITIAL_CAPACITY];
+    private Comparator<? super R> rowComparator;
+    private Comparator<? super C> columnComparator;
+    private final boolean columnMajor;
+
+    private Builder(boolean columnMajor) {
+      this.columnMajor = columnMajor;
+    }
+
+    /**
+     * Specifies the ordering of the generated table's rows.
+     */
+    @CanIgnoreReturnValue
+    public Builder<R, C> orderRowsBy(Comparator<? super R> rowComparator) {
+      this.rowComparator = checkNotNull(rowComparator);
+      return this;
+    }
+
+    /**
+     * Specifies the ordering of the generated table's columns.
+     */
+    @CanIgnoreReturnValue
+    public Builder<R, C> orderColumnsBy(Comparator<? super C> columnComparator) {
+      this.columnComparator = checkNotNull(columnComparator);
+      return this;
+    }
+
+    /**
+     * Associates the ({@code rowKey}, {@code columnKey}) pair with {@code value} in the built
+     * table. Duplicate key pairs are not allowed and will cause {@link #build} to fail.
+     */
+    @CanIgnoreReturnValue
+    public Builder<R, C> put(R rowKey, C columnKey, long value) {
+      int size = rowKeys.size();
+      if (size == values.length) {
+        values =
+            Arrays.copyOf(values, ImmutableCollection.Builder.expandedCapacity(size, size + 1));
+      }
+      rowKeys.add(checkNotNull(rowKey));
+      columnKeys.add(checkNotNull(columnKey));
+      values[size] = value;
+      return this;
+    }
+
+    /**
+     * Associates all of the given table's keys and values in the built table, converting each
+     * value with {@link Number#longValue}. Duplicate key pairs are not allowed, and will cause
+     * {@link #build} to fail.
+     *
+     * @throws NullPointerException if any key or value in {@code table} is null
+     */
+    @CanIgnoreReturnValue
+    public Builder<R, C> putAll(Table<? extends R, ? extends C, ? extends Number> table) {
+      for (Cell<? extends R, ? extends C, ? extends Number> cell : table.cellSet()) {
+        put(cell.getRowKey(), cell.getColumnKey(), cell.getValue().longValue());
+      }
+      return this;
+    }
+
+    /**
+     * Returns a newly-created immutable table.
+     *
+     * @throws IllegalArgumentException if duplicate key pairs were added, or if the table would
+     *     have more rows times columns than an array can hold
+     */
+    public ImmutableLongTable<R, C> build() {
+      ImmutableMap<R, Integer> rowKeyToIndex = Maps.indexMap(keySpace(rowKeys, rowComparator));
+      ImmutableMap<C, Integer> columnKeyToIndex =
+          Maps.indexMap(keySpace(columnKeys, columnComparator));
+      int rows = rowKeyToIndex.size();
+      int columns = columnKeyToIndex.size();
+      long slots = (long) rows * columns;
+      checkArgument(
+          slots <= Integer.MAX_VALUE, "too many slots: %s rows * %s columns", rows, columns);
+
+      long[] array = new long[(int) slots];
+      long[] present = new long[bitsLength((int) slots)];
+      int[] rowCounts = new int[rows];
+      int[] columnCounts = new int[columns];
+      for (int i = 0; i < rowKeys.size(); i++) {
+        int rowIndex = rowKeyToIndex.get(rowKeys.get(i));
+        int columnIndex = columnKeyToIndex.get(columnKeys.get(i));
+        int slot = columnMajor ? columnIndex * rows + rowIndex : rowIndex * columns + columnIndex;
+        checkArgument(
+            !isSet(present, slot), "duplicate key: (%s, %s)", rowKeys.get(i), columnKeys.get(i));
+        present[slot >>> 6] |= 1L << slot;
+        array[slot] = values[i];
+        rowCounts[rowIndex]++;
+        columnCounts[columnIndex]++;
+      }
+      return new ImmutableLongTable<R, C>(
+          rowKeyToIndex,
+          columnKeyToIndex,
+          columnMajor,
+          array,
+          (rowKeys.size() == slots) ? null : present,
+          rowKeys.size(),
+          rowCounts,
+          columnCounts);
+    }
+
+    private static <K> ImmutableSet<K> keySpace(
+        List<K> keys, @Nullable Comparator<? super K> comparator) {
+      ImmutableSet<K> keySpace = ImmutableSet.copyOf(keys);
+      return (comparator == null)
+          ? keySpace
+          : ImmutableSet.copyOf(Ordering.from(comparator).immutableSortedCopy(keySpace));
+    }
+  }
+
+  private final ImmutableMap<R, Integer> rowKeyToIndex;
+  private final ImmutableMap<C, Integer> columnKeyToIndex;
+  private final boolean columnMajor;
+  private final long[] values;
+  /** One bit per slot of {@link #values}, set if the slot holds a cell; null if every slot does. */
+  @Nullable private final long[] present;
+  /** The slots holding cells, in storage order; null if every slot does. */
+  @Nullable private final int[] cellSlots;
+  private final int size;
+  private final int[] rowCounts;
+  private final int[] columnCounts;
+  private final ImmutableMap<R, Map<C, Long>> rowMap;
+  private final ImmutableMap<C, Map<R, Long>> columnMap;
+
+  private ImmutableLongTable(
+      ImmutableMap<R, Integer> rowKeyToIndex,
+      ImmutableMap<C, Integer> columnKeyToIndex,
+      boolean columnMajor,
+      long[] values,
+      @Nullable long[] present,
+      int size,
+      int[] rowCounts,
+      int[] columnCounts) {
+    this.rowKeyToIndex = rowKeyToIndex;
+    this.columnKeyToIndex = columnKeyToIndex;
+    this.columnMajor = columnMajor;
+    this.values = values;
+    this.present = present;
+    this.size = size;
+    this.rowCounts = rowCounts;
+    this.columnCounts = columnCounts;
+    if (present == null) {
+      this.cellSlots = null;
+    } else {
+      int[] cellSlots = new int[size];
+      int cell = 0;
+      for (int slot = 0; slot < values.length; slot++) {
+        if (isSet(present, slot)) {
+          cellSlots[cell++] = slot;
+        }
+      }
+      this.cellSlots = cellSlots;
+    }
+    this.rowMap = new RowMap();
+    this.columnMap = new ColumnMap();
+  }
+
+  private static int bitsLength(int slots) {
+    return (slots + 63) >>> 6;
+  }
+
+  private static boolean isSet(long[] bits, int slot) {
+    return (bits[slot >>> 6] & (1L << slot)) != 0;
+  }
+
+  private int slot(int rowIndex, int columnIndex) {
+    return columnMajor
+        ? columnIndex * rowCounts.length + rowIndex
+        : rowIndex * columnCounts.length + columnIndex;
+  }
+
+  /** Returns the slot of the given keys, or -1 if there is no cell for them. */
+  private int slotOf(@Nullable Object rowKey, @Nullable Object columnKey) {
+    Integer rowIndex = rowKeyToIndex.get(rowKey);
+    Integer columnIndex = columnKeyToIndex.get(columnKey);
+    if (rowIndex == null || columnIndex == null) {
+      return -1;
+    }
+    int slot = slot(rowIndex, columnIndex);
+    return (present == null || isSet(present, slot)) ? slot : -1;
+  }
+
+  @Nullable
+  private Long valueAt(int rowIndex, int columnIndex) {
+    int slot = slot(rowIndex, columnIndex);
+    return (present == null || isSet(present, slot)) ? values[slot] : null;
+  }
+
+  /**
+   * Returns the value corresponding to the given row and column keys, or {@code defaultValue} if
+   * no such mapping exists. Unlike {@link #get(Object, Object)}, this does not box the value.
+   */
+  public long get(@Nullable Object rowKey, @Nullable Object columnKey, long defaultValue) {
+    int slot = slotOf(rowKey, columnKey);
+    return (slot < 0) ? defaultValue : values[slot];
+  }
+
+  @Override
+  public Long get(@Nullable Object rowKey, @Nullable Object columnKey) {
+    int slot = slotOf(rowKey, columnKey);
+    return (slot < 0) ? null : values[slot];
+  }
+
+  @Override
+  public boolean contains(@Nullable Object rowKey, @Nullable Object columnKey) {
+    return slotOf(rowKey, columnKey) >= 0;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  private int cellSlot(int index) {
+    return (cellSlots == null) ? index : cellSlots[index];
+  }
+
+  @Override
+  Cell<R, C, Long> getCell(int index) {
+    int slot = cellSlot(index);
+    int rows = rowCounts.length;
+    int columns = columnCounts.length;
+    int rowIndex = columnMajor ? slot % rows : slot / columns;
+    int columnIndex = columnMajor ? slot / rows : slot % columns;
+    return cellOf(
+        rowKeyToIndex.keySet().asList().get(rowIndex),
+        columnKeyToIndex.keySet().asList().get(columnIndex),
+        (Long) values[slot]);
+  }
+
+  @Override
+  Long getValue(int index) {
+    return values[cellSlot(index)];
+  }
+
+  @Override
+  public ImmutableMap<R, Map<C, Long>> rowMap() {
+    return rowMap;
+  }
+
+  @Override
+  public ImmutableMap<C, Map<R, Long>> columnMap() {
+    return columnMap;
+  }
+
+  private final class Row extends DenseImmutableTable.ImmutableArrayMap<C, Long> {
+    private final int rowIndex;
+
+    Row(int rowIndex) {
+      super(rowCounts[rowIndex]);
+      this.rowIndex = rowIndex;
+    }
+
+    @Override
+    ImmutableMap<C, Integer> keyToIndex() {
+      return columnKeyToIndex;
+    }
+
+    @Override
+    Long getValue(int keyIndex) {
+      return valueAt(rowIndex, keyIndex);
+    }
+
+    @Override
+    boolean isPartialView() {
+      return true;
+    }
+  }
+
+  private final class Column extends DenseImmutableTable.ImmutableArrayMap<R, Long> {
+    private final int columnIndex;
+
+    Column(int columnIndex) {
+      super(columnCounts[columnIndex]);
+      this.columnIndex = columnIndex;
+    }
+
+    @Override
+    ImmutableMap<R, Integer> keyToIndex() {
+      return rowKeyToIndex;
+    }
+
+    @Override
+    Long getValue(int keyIndex) {
+      return valueAt(keyIndex, columnIndex);
+    }
+
+    @Override
+    boolean isPartialView() {
+      return true;
+    }
+  }
+
+  @WeakOuter
+  private final class RowMap extends DenseImmutableTable.ImmutableArrayMap<R, Map<C, Long>> {
+    private RowMap() {
+      super(rowCounts.length);
+    }
+
+    @Override
+    ImmutableMap<R, Integer> keyToIndex() {
+      return rowKeyToIndex;
+    }
+
+    @Override
+    Map<C, Long> getValue(int keyIndex) {
+      return new Row(keyIndex);
+    }
+
+    @Override
+    boolean isPartialView() {
+      return false;
+    }
+  }
+
+  @WeakOuter
+  private final class ColumnMap extends DenseImmutableTable.ImmutableArrayMap<C, Map<R, Long>> {
+    private ColumnMap() {
+      super(columnCounts.length);
+    }
+
+    @Override
+    ImmutableMap<C, Integer> keyToIndex() {
+      return columnKeyToIndex;
+    }
+
+    @Override
+    Map<R, Long> getValue(int keyIndex) {
+      return new Column(keyIndex);
+    }
+
+    @Override
+    boolean isPartialView() {
+      return false;
+    }
+  }
+
+  /**
+   * Not supported. Use {@link #rowMajorBuilder} or {@link #columnMajorBuilder} instead. This method
+   * exists only to hide {@link ImmutableTable#builder} from consumers of {@code
+   * ImmutableLongTable}.
+   *
+   * @throws UnsupportedOperationException always
+   * @deprecated Use {@link #rowMajorBuilder} or {@link #columnMajorBuilder}.
+   */
+  @Deprecated
+  public static <R, C, V> ImmutableTable.Builder<R, C, V> builder() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Not supported. Use {@link #rowMajorCopyOf} instead. This method exists only to hide {@link
+   * ImmutableTable#copyOf} from consumers of {@code ImmutableLongTable}.
+   *
+   * @throws UnsupportedOperationException always
+   * @deprecated Use {@link #rowMajorCopyOf}.
+   */
+  @Deprecated
+  public static <R, C, V> ImmutableTable<R, C, V> copyOf(
+      Table<? extends R, ? extends C, ? extends V> table) {
+    throw new UnsupportedOperationException();
+  }
+}
@@ -183,6 +183,202 @@ public abstract class ImmutableSet<E> extends ImmutableCollection<E> implements
     }
   }
 
+  /**
+   * Returns an immutable set of the first {@code n} elements of {@code elements}, which must be
+   * non-null and distinct, and whose hash codes are in {@code hashes}. Unlike {@link #construct},
+   * this never calls {@code hashCode} or {@code equals} on the elements. This may modify {@code
+   * elements} or use it as the backing array of the returned set.
+   */
+  static <E> ImmutableSet<E> constructDistinct(int n, Object[] elements, int[] hashes) {
+    switch (n) {
+      case 0:
+        return of();
+      case 1:
+        @SuppressWarnings("unchecked") // safe; elements contains only E's
+        E element = (E) elements[0];
+        return new SingletonImmutableSet<E>(element, hashes[0]);
+      default:
+        // continue below to handle the general case
+    }
+    int tableSize = chooseTableSize(n);
+    Object[] table = new Object[tableSize];
+    int mask = tableSize - 1;
+    int hashCode = 0;
+    for (int i = 0; i < n; i++) {
+      insertDistinct(table, mask, elements[i], hashes[i]);
+      hashCode += hashes[i];
+    }
+    Object[] uniqueElements =
+        (n < elements.length) ? ObjectArrays.arraysCopyOf(elements, n) : elements;
+    return new RegularImmutableSet<E>(uniqueElements, hashCode, table, mask);
+  }
+
+  /**
+   * Puts {@code element}, whose hash code is {@code hash}, into the first free slot of its probe
+   * sequence in {@code table}, without checking whether it is already present.
+   */
+  static void insertDistinct(Object[] table, int mask, Object element, int hash) {
+    for (int j = Hashing.smear(hash); ; j++) {
+      int index = j & mask;
+      if (table[index] == null) {
+        table[index] = element;
+        return;
+      }
+    }
+  }
+
+  /**
+   * Returns an immutable copy of {@code Sets.intersection(set1, set2)}.
+   *
+   * <p>If {@code set1} is a hash-based immutable set, each of its elements is hashed once, and that
+   * hash code is used both to probe {@code set2}, if it is also a hash-based immutable set, and to
+   * build the result; the elements are known to be distinct, so building the result compares none
+   * of them. If every element is retained, {@code set1} itself is returned.
+   */
+  static <E> ImmutableSet<E> copyOfIntersection(Set<E> set1, Set<?> set2) {
+    return copyOfFiltered(set1, set2, true);
+  }
+
+  /**
+   * Returns an immutable copy of {@code Sets.difference(set1, set2)}, computed as described in
+   * {@link #copyOfIntersection}.
+   */
+  static <E> ImmutableSet<E> copyOfDifference(Set<E> set1, Set<?> set2) {
+    return copyOfFiltered(set1, set2, false);
+  }
+
+  private static <E> ImmutableSet<E> copyOfFiltered(Set<E> set1, Set<?> set2, boolean retain) {
+    if (!isHashBased(set1)) {
+      Builder<E> builder = new Builder<E>();
+      for (E element : set1) {
+        if (set2.contains(element) == retain) {
+          builder.add(element);
+        }
+      }
+      return builder.build();
+    }
+    ImmutableSet<E> immutable1 = (ImmutableSet<E>) set1;
+    RegularImmutableSet<?> hashed2 =
+        (set2 instanceof RegularImmutableSet) ? (RegularImmutableSet<?>) set2 : null;
+    int capacity = immutable1.size();
+    if (retain && isHashBased(set2)) {
+      capacity = Math.min(capacity, set2.size());
+    }
+    Object[] kept = new Object[capacity];
+    int[] hashes = new int[capacity];
+    int n = 0;
+    for (E element : immutable1) {
+      int hash = element.hashCode();
+      boolean contained =
+          (hashed2 == null) ? set2.contains(element) : hashed2.contains(element, hash);
+      if (contained == retain) {
+        kept[n] = element;
+        hashes[n++] = hash;
+      }
+    }
+    if (n == immutable1.size() && !immutable1.isPartialView()) {
+      return immutable1;
+    }
+    return constructDistinct(n, kept, hashes);
+  }
+
+  /**
+   * Returns an immutable copy of {@code Sets.union(set1, set2)}.
+   *
+   * <p>If {@code set1} is a hash-based immutable set, each element of {@code set2} is hashed once,
+   * to probe {@code set1} and, if it is not found there, to add it to the result. When the table of
+   * {@code set1} is large enough for the result it is copied, so that the elements of {@code set1}
+   * are not hashed at all. If {@code set2} adds nothing, {@code set1} itself is returned.
+   *
+   * <p>Unless {@code set2} is also a hash-based immutable set, the elements it adds are checked
+   * against each other, since they need not be distinct by equals, as in an identity set.
+   */
+  static <E> ImmutableSet<E> copyOfUnion(Set<? extends E> set1, Set<? extends E> set2) {
+    if (!isHashBased(set1)) {
+      return new Builder<E>().addAll(set1).addAll(set2).build();
+    }
+    @SuppressWarnings("unchecked") // immutable sets are covariant
+    ImmutableSet<E> immutable1 = (ImmutableSet<E>) set1;
+    Object[] extras = new Object[set2.size()];
+    int[] hashes = new int[extras.length];
+    int n = 0;
+    int index = 0;
+    for (E element : set2) {
+      checkElementNotNull(element, index++);
+      int hash = element.hashCode();
+      boolean contained =
+          (immutable1 instanceof RegularImmutableSet)
+              ? ((RegularImmutableSet<E>) immutable1).contains(element, hash)
+              : immutable1.contains(element);
+      if (!contained) {
+        extras[n] = element;
+        hashes[n++] = hash;
+      }
+    }
+    if (!isHashBased(set2)) {
+      n = removeDuplicates(n, extras, hashes);
+    }
+    if (n == 0 && !immutable1.isPartialView()) {
+      return immutable1;
+    }
+    if (immutable1 instanceof RegularImmutableSet) {
+      return ((RegularImmutableSet<E>) immutable1).plusDistinct(n, extras, hashes);
+    }
+    int size = immutable1.size() + n;
+    Object[] elements = new Object[size];
+    int[] allHashes = new int[size];
+    int i = 0;
+    for (E element : immutable1) {
+      elements[i] = element;
+      allHashes[i++] = element.hashCode();
+    }
+    System.arraycopy(extras, 0, elements, i, n);
+    System.arraycopy(hashes, 0, allHashes, i, n);
+    return constructDistinct(size, elements, allHashes);
+  }
+
+  /**
+   * Removes each of the first {@code n} elements of {@code elements} that is equal to an earlier
+   * one, and the corresponding hash code in {@code hashes}, moving the remaining elements and hash
+   * codes to the front of their arrays. Returns the number of elements that remain.
+   */
+  private static int removeDuplicates(int n, Object[] elements, int[] hashes) {
+    if (n < 2) {
+      return n;
+    }
+    int tableSize = chooseTableSize(n);
+    Object[] table = new Object[tableSize];
+    int mask = tableSize - 1;
+    int uniques = 0;
+    for (int i = 0; i < n; i++) {
+      Object element = elements[i];
+      int hash = hashes[i];
+      for (int j = Hashing.smear(hash); ; j++) {
+        int index = j & mask;
+        Object value = table[index];
+        if (value == null) {
+          table[index] = element;
+          elements[uniques] = element;
+          hashes[uniques++] = hash;
+          break;
+        } else if (value.equals(element)) {
+          break;
+        }
+      }
+    }
+    Arrays.fill(elements, uniques, n, null);
+    return uniques;
+  }
+
+  /**
+   * Returns {@code true} if {@code set} is an immutable set whose elements are distinct according
+   * to {@link Object#equals}; a sorted set's elements need only be distinct according to its
+   * comparator.
+   */
+  private static boolean isHashBased(Set<?> set) {
+    return set instanceof ImmutableSet && !(set instanceof ImmutableSortedSet);
+  }
+
   // We use power-of-2 tables, and this is the highest int that's a power of 2
   static final int MAX_TABLE_SIZE = Ints.MAX_POWER_OF_TWO;
 
@@ -242,6 +438,12 @@ public abstract class ImmutableSet<E> extends ImmutableCollection<E> implements
       }
     } else if (elements instanceof EnumSet) {
       return copyOfEnumSet((EnumSet) elements);
+    } else if (elements instanceof Sets.SetView) {
+      @SuppressWarnings("unchecked") // immutable sets are covariant
+      ImmutableSet<E> copy = ((Sets.SetView<E>) elements).materialize();
+      if (copy != null) {
+        return copy;
+      }
     }
     Object[] array = elements.toArray();
     return construct(array.length, array);
@@ -18,11 +18,13 @@ package com.google.common.collect;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.CollectPreconditions.checkEntryNotNull;
 import static com.google.common.collect.Maps.keyOrNull;
 
 import com.google.common.annotations.Beta;
 import com.google.common.annotations.GwtCompatible;
+import com.google.common.annotations.GwtIncompatible;
 import com.google.common.collect.ImmutableMap.Builder;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import com.google.j2objc.annotations.WeakOuter;
@@ -408,6 +410,8 @@ public final class ImmutableSortedMap<K, V> extends ImmutableSortedMapFauxveride
    */
   public static class Builder<K, V> extends ImmutableMap.Builder<K, V> {
     private final Comparator<? super K> comparator;
+    private boolean indexForLookups;
+    @Nullable private DiscreteDomain<?> lookupDomain;
 
     /**
      * Creates a new builder. The returned builder is equivalent to the builder
@@ -489,6 +493,49 @@ public final class ImmutableSortedMap<K, V> extends ImmutableSortedMapFauxveride
       throw new UnsupportedOperationException("Not available on ImmutableSortedMap.Builder");
     }
 
+    /**
+     * Causes the maps built by this builder to look up keys through an auxiliary index instead of
+     * a binary search over their sorted keys, as described by {@link
+     * ImmutableSortedSet.Builder#indexForLookups()}. This speeds up {@link ImmutableSortedMap#get
+     * get} and {@link ImmutableSortedMap#containsKey containsKey} on large maps; it does not change
+     * the behavior of any method. Submaps and {@linkplain ImmutableSortedMap#descendingMap
+     * descending maps} use a plain binary search.
+     *
+     * @return this {@code Builder} object
+     * @since 20.0
+     */
+    @Beta
+    @CanIgnoreReturnValue
+    @GwtIncompatible // SortedLookupIndex
+    public Builder<K, V> indexForLookups() {
+      this.indexForLookups = true;
+      this.lookupDomain = null;
+      return this;
+    }
+
+    /**
+     * Causes the maps built by this builder to look up keys by interpolation search over their
+     * {@linkplain DiscreteDomain#distance distances} from the first key, as described by {@link
+     * ImmutableSortedSet.Builder#indexForLookups(DiscreteDomain)}.
+     *
+     * @return this {@code Builder} object
+     * @throws IllegalStateException if the comparator of this builder is not the natural ordering
+     * @since 20.0
+     */
+    @Beta
+    @CanIgnoreReturnValue
+    @GwtIncompatible // SortedLookupIndex
+    public Builder<K, V> indexForLookups(DiscreteDomain<? super K> domain) {
+      checkNotNull(domain);
+      checkState(
+          Ordering.natural().equals(comparator),
+          "interpolation search requires the natural ordering, but the comparator is %s",
+          comparator);
+      this.indexForLookups = true;
+      this.lookupDomain = domain;
+      return this;
+    }
+
     /**
      * Returns a newly-created immutable sorted map.
      *
@@ -503,7 +550,11 @@ public final class ImmutableSortedMap<K, V> extends ImmutableSortedMapFauxveride
         case 1:
           return of(comparator, entries[0].getKey(), entries[0].getValue());
         default:
-          return fromEntries(comparator, false, entries, size);
+          ImmutableSortedMap<K, V> result = fromEntries(comparator, false, entries, size);
+          return indexForLookups
+              ? new ImmutableSortedMap<K, V>(
+                  result.keySet.withLookupIndex(lookupDomain), result.valueList)
+              : result;
       }
     }
   }
@@ -18,8 +18,10 @@ package com.google.common.collect;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.ObjectArrays.checkElementsNotNull;
 
+import com.google.common.annotations.Beta;
 import com.google.common.annotations.GwtCompatible;
 import com.google.common.annotations.GwtIncompatible;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
@@ -32,6 +34,7 @@ import java.util.Collection;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.NavigableSet;
+import java.util.Set;
 import java.util.SortedSet;
 
 import javax.annotation.Nullable;
@@ -431,6 +434,8 @@ public abstract class ImmutableSortedSet<E> extends ImmutableSortedSetFauxveride
    */
   public static final class Builder<E> extends ImmutableSet.Builder<E> {
     private final Comparator<? super E> comparator;
+    private boolean indexForLookups;
+    @Nullable private DiscreteDomain<?> lookupDomain;
 
     /**
      * Creates a new builder. The returned builder is equivalent to the builder
@@ -502,6 +507,61 @@ public abstract class ImmutableSortedSet<E> extends ImmutableSortedSetFauxveride
       return this;
     }
 
+    /**
+     * Causes the sets built by this builder to look up elements through an auxiliary index instead
+     * of a binary search over their sorted elements. This speeds up {@link
+     * ImmutableSortedSet#contains contains} on large sets that are queried far more often than they
+     * are built, at the cost of some memory and build time; it does not change the behavior of any
+     * method.
+     *
+     * <p>The index holds the first of every 16 elements in a separate array, laid out in
+     * breadth-first ("Eytzinger") order, so that the first steps of every lookup touch the same few
+     * cache lines, followed by a short binary search among 16 adjacent elements. It adds about one
+     * reference and one {@code int} per 16 elements. Sets of fewer than 64 elements, subsets,
+     * {@link ImmutableSortedSet#descendingSet descending sets} and deserialized copies use a plain
+     * binary search.
+     *
+     * @return this {@code Builder} object
+     * @since 20.0
+     */
+    @Beta
+    @CanIgnoreReturnValue
+    @GwtIncompatible // SortedLookupIndex
+    public Builder<E> indexForLookups() {
+      this.indexForLookups = true;
+      this.lookupDomain = null;
+      return this;
+    }
+
+    /**
+     * Like {@link #indexForLookups()}, but looks up elements by interpolation search, guessing the
+     * position of an element from its {@linkplain DiscreteDomain#distance distance} to the first
+     * element. This needs only one call to {@code domain}, and no comparisons, per lookup; on
+     * elements that are spread roughly evenly, such as dense or randomly chosen integers, it takes
+     * about {@code log(log(n))} steps instead of {@code log(n)}, and never more than about twice as
+     * many steps as a binary search. It adds one {@code long} per element.
+     *
+     * <p>If some of the elements are too far apart for {@code domain} to measure their distance,
+     * the sets use the index described by {@link #indexForLookups()} instead.
+     *
+     * @return this {@code Builder} object
+     * @throws IllegalStateException if the comparator of this builder is not the natural ordering
+     * @since 20.0
+     */
+    @Beta
+    @CanIgnoreReturnValue
+    @GwtIncompatible // SortedLookupIndex
+    public Builder<E> indexForLookups(DiscreteDomain<? super E> domain) {
+      checkNotNull(domain);
+      checkState(
+          Ordering.natural().equals(comparator),
+          "interpolation search requires the natural ordering, but the comparator is %s",
+          comparator);
+      this.indexForLookups = true;
+      this.lookupDomain = domain;
+      return this;
+    }
+
     /**
      * Returns a newly-created {@code ImmutableSortedSet} based on the contents
      * of the {@code Builder} and its comparator.
@@ -512,6 +572,9 @@ public abstract class ImmutableSortedSet<E> extends ImmutableSortedSetFauxveride
       E[] contentsArray = (E[]) contents;
       ImmutableSortedSet<E> result = construct(comparator, size, contentsArray);
       this.size = result.size(); // we eliminated duplicates in-place in contentsArray
+      if (indexForLookups) {
+        result = ((RegularImmutableSortedSet<E>) result).withLookupIndex(lookupDomain);
+      }
       return result;
     }
   }
@@ -748,6 +811,149 @@ public abstract class ImmutableSortedSet<E> extends ImmutableSortedSetFauxveride
   @Override
   public abstract UnmodifiableIterator<E> descendingIterator();
 
+  /**
+   * Returns an immutable sorted set, with the same comparator as this set, containing the elements
+   * of this set that are also contained in {@code other}. Unlike {@link Sets#intersection}, this
+   * computes the result immediately rather than returning a view.
+   *
+   * <p>If {@code other} is a sorted set with the same comparator as this set, this merges the two
+   * sets in a single pass over both, or, when {@code other} is much smaller than this set, looks up
+   * each of its elements in this set by binary search. Either way no element is hashed or compared
+   * with {@code equals}. Otherwise, the elements of this set are tested with {@code
+   * other.contains}.
+   *
+   * @since 20.0
+   */
+  @Beta
+  public ImmutableSortedSet<E> intersection(Set<?> other) {
+    return filter(other, true);
+  }
+
+  /**
+   * Returns an immutable sorted set, with the same comparator as this set, containing the elements
+   * of this set that are not contained in {@code other}. Unlike {@link Sets#difference}, this
+   * computes the result immediately rather than returning a view.
+   *
+   * <p>If {@code other} is a sorted set with the same comparator as this set, this merges the two
+   * sets in a single pass over both, without hashing any element or comparing it with {@code
+   * equals}. Otherwise, the elements of this set are tested with {@code other.contains}.
+   *
+   * @since 20.0
+   */
+  @Beta
+  public ImmutableSortedSet<E> difference(Set<?> other) {
+    return filter(other, false);
+  }
+
+  /**
+   * Returns an immutable sorted set, with the same comparator as this set, containing the elements
+   * of this set and of {@code other}. Where an element of {@code other} is equivalent to an element
+   * of this set according to the comparator, only the element of this set is kept. Unlike {@link
+   * Sets#union}, this computes the result immediately rather than returning a view, and its
+   * iteration order is that of the comparator.
+   *
+   * <p>If {@code other} is a sorted set with the same comparator as this set, this merges the two
+   * sets in a single pass over both, without hashing any element or comparing it with {@code
+   * equals}. Otherwise, {@code other} is first sorted.
+   *
+   * @throws NullPointerException if {@code other} contains a null element
+   * @throws ClassCastException if the elements of {@code other} cannot be compared with the
+   *     comparator of this set
+   * @since 20.0
+   */
+  @Beta
+  public ImmutableSortedSet<E> union(Set<? extends E> other) {
+    Iterable<? extends E> sortedOther =
+        SortedIterables.hasSameComparator(comparator, other) ? other : copyOf(comparator, other);
+    Object[] merged = new Object[size() + other.size()];
+    int n = 0;
+    PeekingIterator<E> theseElements = Iterators.peekingIterator(iterator());
+    PeekingIterator<? extends E> otherElements = Iterators.peekingIterator(sortedOther.iterator());
+    while (theseElements.hasNext() && otherElements.hasNext()) {
+      int cmp = unsafeCompare(theseElements.peek(), checkNotNull(otherElements.peek()));
+      if (cmp > 0) {
+        merged[n++] = otherElements.next();
+      } else {
+        merged[n++] = theseElements.next();
+        if (cmp == 0) {
+          otherElements.next();
+        }
+      }
+    }
+    while (theseElements.hasNext()) {
+      merged[n++] = theseElements.next();
+    }
+    while (otherElements.hasNext()) {
+      merged[n++] = checkNotNull(otherElements.next());
+    }
+    return fromSortedArray(merged, n);
+  }
+
+  /**
+   * Returns the elements of this set that are ({@code retain}) or are not ({@code !retain})
+   * contained in {@code other}.
+   */
+  private ImmutableSortedSet<E> filter(Set<?> other, boolean retain) {
+    int size = size();
+    Object[] kept;
+    int n = 0;
+    if (!SortedIterables.hasSameComparator(comparator, other)) {
+      kept = new Object[size];
+      for (E element : this) {
+        if (other.contains(element) == retain) {
+          kept[n++] = element;
+        }
+      }
+      return fromSortedArray(kept, n);
+    }
+    int otherSize = other.size();
+    if (retain && (long) otherSize * (Integer.SIZE - Integer.numberOfLeadingZeros(size)) < size) {
+      // binary searches for the few elements of other beat a pass over all of this set
+      kept = new Object[otherSize];
+      ImmutableList<E> elements = asList();
+      for (Object target : other) {
+        int index = indexOf(target);
+        if (index >= 0) {
+          kept[n++] = elements.get(index);
+        }
+      }
+      return fromSortedArray(kept, n);
+    }
+    kept = new Object[retain ? Math.min(size, otherSize) : size];
+    PeekingIterator<?> otherElements = Iterators.peekingIterator(other.iterator());
+    for (E element : this) {
+      boolean contained = false;
+      while (otherElements.hasNext()) {
+        int cmp = unsafeCompare(otherElements.peek(), element);
+        if (cmp < 0) {
+          otherElements.next();
+        } else {
+          contained = (cmp == 0);
+          break;
+        }
+      }
+      if (contained == retain) {
+        kept[n++] = element;
+      }
+    }
+    return fromSortedArray(kept, n);
+  }
+
+  /**
+   * Returns an immutable sorted set, with the same comparator as this set, of the first {@code n}
+   * elements of {@code elements}, which must already be sorted and distinct. Returns this set
+   * itself if it would be equal to the result.
+   */
+  private ImmutableSortedSet<E> fromSortedArray(Object[] elements, int n) {
+    if (n == size() && !isPartialView()) {
+      return this;
+    } else if (n == 0) {
+      return emptySet(comparator);
+    }
+    return new RegularImmutableSortedSet<E>(
+        ImmutableList.<E>asImmutableList(elements, n), comparator);
+  }
+
   /**
    * Returns the position of an element within the set, or -1 if not present.
    */
@@ -0,0 +1,502 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.CollectPreconditions.checkNonnegative;
+import static com.google.common.collect.CollectPreconditions.checkRemove;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtCompatible;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.primitives.Ints;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import com.google.j2objc.annotations.WeakOuter;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.annotation.Nullable;
+
+/**
+ * Multiset implementation which keeps its elements and their counts in a pair of parallel arrays,
+ * forming an open-addressed hash table. Unlike {@link HashMultiset}, which maps each distinct
+ * element to a mutable count object through a {@link java.util.HashMap}, this implementation
+ * allocates nothing per distinct element, so adding, counting and removing occurrences of an
+ * element which is already present allocates nothing at all. This makes it considerably faster and
+ * more compact for workloads such as counting words or building histograms.
+ *
+ * <p>Iteration order is unspecified, and may change whenever a distinct element is added. The
+ * entries of {@link #entrySet} are views, whose counts reflect later changes to the multiset.
+ *
+ * @since 20.0
+ */
+@Beta
+@GwtCompatible(serializable = true, emulated = true)
+public final class ObjectCountHashMultiset<E> extends AbstractMultiset<E> implements Serializable {
+
+  /**
+   * Creates a new, empty {@code ObjectCountHashMultiset} using the default initial capacity.
+   */
+  public static <E> ObjectCountHashMultiset<E> create() {
+    return new ObjectCountHashMultiset<E>(DEFAULT_DISTINCT_ELEMENTS);
+  }
+
+  /**
+   * Creates a new, empty {@code ObjectCountHashMultiset} with the specified expected number of
+   * distinct elements.
+   *
+   * @param distinctElements the expected number of distinct elements
+   * @throws IllegalArgumentException if {@code distinctElements} is negative
+   */
+  public static <E> ObjectCountHashMultiset<E> create(int distinctElements) {
+    checkNonnegative(distinctElements, "distinctElements");
+    return new ObjectCountHashMultiset<E>(distinctElements);
+  }
+
+  /**
+   * Creates a new {@code ObjectCountHashMultiset} containing the specified elements.
+   *
+   * <p>This implementation is highly efficient when {@code elements} is itself a {@link Multiset}.
+   *
+   * @param elements the elements that the multiset should contain
+   */
+  public static <E> ObjectCountHashMultiset<E> create(Iterable<? extends E> elements) {
+    ObjectCountHashMultiset<E> multiset = create(Multisets.inferDistinctElements(elements));
+    Iterables.addAll(multiset, elements);
+    return multiset;
+  }
+
+  private static final int DEFAULT_DISTINCT_ELEMENTS = 8;
+
+  /**
+   * The maximum fraction of the table which may be in use, counting removed slots. Linear probing
+   * needs some empty slots to keep its probe sequences short.
+   */
+  private static final double LOAD_FACTOR = 0.7;
+
+  // stands in for a null element, since null marks a slot which has never been used
+  private static final Object NULL_ELEMENT = new Object();
+
+  // marks a slot whose element was removed, which lookups must probe past
+  private static final Object REMOVED = new Object();
+
+  // the (masked) element in each slot, or null, or REMOVED
+  private transient Object[] elements;
+  // the count of the element in each slot, or 0 if there is no element
+  private transient int[] counts;
+  private transient int distinctElements;
+  // the number of slots which are not null, including those which are REMOVED
+  private transient int usedSlots;
+  private transient long size;
+  // incremented when a distinct element is added or removed, or the table is rebuilt
+  private transient int modCount;
+
+  private ObjectCountHashMultiset(int distinctElements) {
+    init(Hashing.closedTableSize(distinctElements, LOAD_FACTOR));
+  }
+
+  private void init(int tableSize) {
+    elements = new Object[tableSize];
+    counts = new int[tableSize];
+    distinctElements = 0;
+    usedSlots = 0;
+    size = 0;
+  }
+
+  private static Object maskNull(@Nullable Object element) {
+    return (element == null) ? NULL_ELEMENT : element;
+  }
+
+  @SuppressWarnings("unchecked") // we only put masked Es in elements
+  private E elementAt(int index) {
+    Object element = elements[index];
+    return (element == NULL_ELEMENT) ? null : (E) element;
+  }
+
+  /**
+   * Returns the slot containing {@code element}, or -1 if it isn't present.
+   */
+  private int indexOf(@Nullable Object element) {
+    Object masked = maskNull(element);
+    Object[] elements = this.elements;
+    int mask = elements.length - 1;
+    for (int i = Hashing.smearedHash(element); ; i++) {
+      i &= mask;
+      Object candidate = elements[i];
+      if (candidate == null) {
+        return -1;
+      } else if (candidate != REMOVED && masked.equals(candidate)) {
+        return i;
+      }
+    }
+  }
+
+  /**
+   * Adds {@code element}, which must not already be present, with the specified count.
+   */
+  private void insert(@Nullable E element, int count) {
+    Object[] elements = this.elements;
+    int mask = elements.length - 1;
+    for (int i = Hashing.smearedHash(element); ; i++) {
+      i &= mask;
+      Object candidate = elements[i];
+      if (candidate == null || candidate == REMOVED) {
+        elements[i] = maskNull(element);
+        counts[i] = count;
+        distinctElements++;
+        size += count;
+        modCount++;
+        if (candidate == null) {
+          usedSlots++;
+          if (Hashing.needsResizing(usedSlots, elements.length, LOAD_FACTOR)) {
+            rebuild();
+          }
+        }
+        return;
+      }
+    }
+  }
+
+  /**
+   * Removes the element in slot {@code index}, along with all its occurrences.
+   */
+  private void removeAt(int index) {
+    Object[] elements = this.elements;
+    int mask = elements.length - 1;
+    size -= counts[index];
+    counts[index] = 0;
+    distinctElements--;
+    modCount++;
+    if (elements[(index + 1) & mask] == null) {
+      // No probe sequence passes through this slot, or through any removed slots just before it.
+      do {
+        elements[index] = null;
+        usedSlots--;
+        index = (index - 1) & mask;
+      } while (elements[index] == REMOVED);
+    } else {
+      elements[index] = REMOVED;
+    }
+  }
+
+  /**
+   * Rehashes the elements into a new table, which is larger if more than half of the maximum
+   * load is taken up by elements, and otherwise just free of removed slots.
+   */
+  private void rebuild() {
+    Object[] oldElements = elements;
+    int[] oldCounts = counts;
+    long oldSize = size;
+    int tableSize = oldElements.length;
+    if (Hashing.needsResizing(2 * distinctElements, tableSize, LOAD_FACTOR)) {
+      tableSize *= 2;
+    }
+    init(tableSize);
+    int mask = tableSize - 1;
+    for (int oldIndex = 0; oldIndex < oldElements.length; oldIndex++) {
+      Object element = oldElements[oldIndex];
+      if (element != null && element != REMOVED) {
+        int i = Hashing.smearedHash((element == NULL_ELEMENT) ? null : element) & mask;
+        while (elements[i] != null) {
+          i = (i + 1) & mask;
+        }
+        elements[i] = element;
+        counts[i] = oldCounts[oldIndex];
+        distinctElements++;
+        usedSlots++;
+      }
+    }
+    size = oldSize;
+    modCount++;
+  }
+
+  // Query Operations
+
+  @Override
+  public int size() {
+    return Ints.saturatedCast(size);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return distinctElements == 0;
+  }
+
+  @Override
+  public int count(@Nullable Object element) {
+    int index = indexOf(element);
+    return (index == -1) ? 0 : counts[index];
+  }
+
+  // Modification Operations
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalArgumentException if the call would result in more than
+   *     {@link Integer#MAX_VALUE} occurrences of {@code element} in this
+   *     multiset.
+   */
+  @CanIgnoreReturnValue
+  @Override
+  public int add(@Nullable E element, int occurrences) {
+    if (occurrences == 0) {
+      return count(element);
+    }
+    checkArgument(occurrences > 0, "occurrences cannot be negative: %s", occurrences);
+    int index = indexOf(element);
+    if (index == -1) {
+      insert(element, occurrences);
+      return 0;
+    }
+    int oldCount = counts[index];
+    long newCount = (long) oldCount + (long) occurrences;
+    checkArgument(newCount <= Integer.MAX_VALUE, "too many occurrences: %s", newCount);
+    counts[index] = (int) newCount;
+    size += occurrences;
+    return oldCount;
+  }
+
+  @CanIgnoreReturnValue
+  @Override
+  public int remove(@Nullable Object element, int occurrences) {
+    if (occurrences == 0) {
+      return count(element);
+    }
+    checkArgument(occurrences > 0, "occurrences cannot be negative: %s", occurrences);
+    int index = indexOf(element);
+    if (index == -1) {
+      return 0;
+    }
+    int oldCount = counts[index];
+    if (oldCount > occurrences) {
+      counts[index] = oldCount - occurrences;
+      size -= occurrences;
+    } else {
+      removeAt(index);
+    }
+    return oldCount;
+  }
+
+  @CanIgnoreReturnValue
+  @Override
+  public int setCount(@Nullable E element, int count) {
+    checkNonnegative(count, "count");
+    int index = indexOf(element);
+    if (index == -1) {
+      if (count > 0) {
+        insert(element, count);
+      }
+      return 0;
+    }
+    int oldCount = counts[index];
+    if (count == 0) {
+      removeAt(index);
+    } else {
+      counts[index] = count;
+      size += count - oldCount;
+    }
+    return oldCount;
+  }
+
+  @Override
+  public void clear() {
+    if (usedSlots > 0) {
+      Arrays.fill(elements, null);
+      Arrays.fill(counts, 0);
+      distinctElements = 0;
+      usedSlots = 0;
+      size = 0;
+      modCount++;
+    }
+  }
+
+  // Views
+
+  @Override
+  int distinctElements() {
+    return distinctElements;
+  }
+
+  /** Returns the first slot at or after {@code index} which contains an element, or -1. */
+  private int nextIndex(int index) {
+    Object[] elements = this.elements;
+    for (; index < elements.length; index++) {
+      Object element = elements[index];
+      if (element != null && element != REMOVED) {
+        return index;
+      }
+    }
+    return -1;
+  }
+
+  /** Iterates over the slots which contain elements. */
+  @WeakOuter
+  private abstract class SlotIterator<T> implements Iterator<T> {
+    int nextIndex = nextIndex(0);
+    int expectedModCount = modCount;
+
+    @Override
+    public boolean hasNext() {
+      return nextIndex != -1;
+    }
+
+    /** Returns the next slot. */
+    int nextSlot() {
+      checkForComodification();
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      int index = nextIndex;
+      nextIndex = nextIndex(index + 1);
+      return index;
+    }
+
+    void checkForComodification() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+    }
+  }
+
+  @Override
+  Iterator<Entry<E>> entryIterator() {
+    return new SlotIterator<Entry<E>>() {
+      int lastIndex = -1;
+
+      @Override
+      public Entry<E> next() {
+        lastIndex = nextSlot();
+        return new SlotEntry(lastIndex);
+      }
+
+      @Override
+      public void remove() {
+        checkForComodification();
+        checkRemove(lastIndex != -1);
+        removeAt(lastIndex);
+        lastIndex = -1;
+        expectedModCount = modCount;
+      }
+    };
+  }
+
+  /*
+   * Iterates over the slots directly, rather than through entrySet(), so that neither iteration
+   * nor removal needs to look elements up or create entries.
+   */
+  @Override
+  public Iterator<E> iterator() {
+    return new SlotIterator<E>() {
+      int currentIndex;
+      int occurrencesLeft;
+      boolean canRemove;
+
+      @Override
+      public boolean hasNext() {
+        return occurrencesLeft > 0 || super.hasNext();
+      }
+
+      @Override
+      public E next() {
+        if (occurrencesLeft == 0) {
+          currentIndex = nextSlot();
+          occurrencesLeft = counts[currentIndex];
+        } else {
+          checkForComodification();
+        }
+        occurrencesLeft--;
+        canRemove = true;
+        return elementAt(currentIndex);
+      }
+
+      @Override
+      public void remove() {
+        checkForComodification();
+        checkRemove(canRemove);
+        int count = counts[currentIndex];
+        if (count == 1) {
+          removeAt(currentIndex);
+          expectedModCount = modCount;
+        } else {
+          counts[currentIndex] = count - 1;
+          size--;
+        }
+        canRemove = false;
+      }
+    };
+  }
+
+  /**
+   * An entry which reads its count from the slot its element was last seen in, and looks the
+   * element up again if it has since moved.
+   */
+  @WeakOuter
+  private final class SlotEntry extends Multisets.AbstractEntry<E> {
+    @Nullable private final E element;
+    private int lastKnownIndex;
+
+    SlotEntry(int index) {
+      this.element = elementAt(index);
+      this.lastKnownIndex = index;
+    }
+
+    @Override
+    public E getElement() {
+      return element;
+    }
+
+    @Override
+    public int getCount() {
+      Object[] elements = ObjectCountHashMultiset.this.elements;
+      if (lastKnownIndex == -1
+          || lastKnownIndex >= elements.length
+          || elements[lastKnownIndex] != maskNull(element)) {
+        lastKnownIndex = indexOf(element);
+      }
+      return (lastKnownIndex == -1) ? 0 : counts[lastKnownIndex];
+    }
+  }
+
+  /**
+   * @serialData the number of distinct elements, the first element, its count,
+   *     the second element, its count, and so on
+   */
+  @GwtIncompatible // java.io.ObjectOutputStream
+  private void writeObject(ObjectOutputStream stream) throws IOException {
+    stream.defaultWriteObject();
+    Serialization.writeMultiset(this, stream);
+  }
+
+  @GwtIncompatible // java.io.ObjectInputStream
+  private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+    stream.defaultReadObject();
+    int distinctElements = Serialization.readCount(stream);
+    init(Hashing.closedTableSize(distinctElements, LOAD_FACTOR));
+    Serialization.populateMultiset(this, stream, distinctElements);
+  }
+
+  @GwtIncompatible // Not needed in emulated source.
+  private static final long serialVersionUID = 0;
+}
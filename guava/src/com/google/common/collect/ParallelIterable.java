@@ -0,0 +1,364 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.base.Throwables;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A pipeline of {@linkplain #filter filters} and {@linkplain #transform transformations} over the
+ * elements of an iterable, whose results are computed in parallel on an {@link Executor}. Obtained
+ * from {@link FluentIterable#parallel}.
+ *
+ * <p>Unlike the chaining methods of {@code FluentIterable}, which each wrap the iterator of the
+ * previous stage, the stages of a parallel iterable are fused: each element is passed through all
+ * of them in a single loop, without intermediate iterators. When one of the terminal operations
+ * such as {@link #toList} is called, the source is split into contiguous chunks, which are
+ * submitted to the executor; the calling thread also processes any chunk that has not been started
+ * by the time it gets to it, so the operation makes progress even when the executor is busy, and
+ * does not deadlock when called from one of the executor's own threads. The results of the chunks
+ * are combined in encounter order.
+ *
+ * <p>Sources that are {@link RandomAccess} lists or {@link ImmutableCollection}s are split in
+ * place, and must not be modified while a terminal operation is running. Any other source is first
+ * copied into a list by the calling thread. As with {@code FluentIterable}, nothing is computed
+ * until a terminal operation is called, and a parallel iterable may be used any number of times.
+ *
+ * <p>The filters and transformations may be called concurrently from several threads, and must
+ * not depend on the order in which elements are processed. If one of them throws an unchecked
+ * exception, the terminal operation cancels the chunks that have not started and rethrows it.
+ *
+ * @since 20.0
+ */
+@Beta
+@GwtIncompatible // Executor
+public final class ParallelIterable<E> {
+  /** The smallest number of elements worth handing to another thread. */
+  private static final int MIN_CHUNK_SIZE = 256;
+
+  /** The maximum number of chunks per processor, which lets idle threads take on more work. */
+  private static final int CHUNKS_PER_PROCESSOR = 4;
+
+  /** Returned by a stage to drop the element it was given. */
+  private static final Object SKIP = new Object();
+
+  private final Iterable<?> source;
+  private final Executor executor;
+  private final ImmutableList<Function<Object, Object>> stages;
+
+  private ParallelIterable(
+      Iterable<?> source, Executor executor, ImmutableList<Function<Object, Object>> stages) {
+    this.source = source;
+    this.executor = executor;
+    this.stages = stages;
+  }
+
+  static <E> ParallelIterable<E> from(Iterable<E> source, Executor executor) {
+    return new ParallelIterable<E>(
+        checkNotNull(source), checkNotNull(executor), ImmutableList.<Function<Object, Object>>of());
+  }
+
+  /**
+   * Returns a parallel iterable of the elements that satisfy {@code predicate}.
+   */
+  public ParallelIterable<E> filter(final Predicate<? super E> predicate) {
+    checkNotNull(predicate);
+    return then(
+        new Function<Object, Object>() {
+          @Override
+          @SuppressWarnings("unchecked") // the element is an E, the output of the previous stage
+          public Object apply(Object element) {
+            return predicate.apply((E) element) ? element : SKIP;
+          }
+        });
+  }
+
+  /**
+   * Returns a parallel iterable of the results of applying {@code function} to each element.
+   */
+  public <T> ParallelIterable<T> transform(final Function<? super E, T> function) {
+    checkNotNull(function);
+    return then(
+        new Function<Object, Object>() {
+          @Override
+          @SuppressWarnings("unchecked") // the element is an E, the output of the previous stage
+          public Object apply(Object element) {
+            return function.apply((E) element);
+          }
+        });
+  }
+
+  private <T> ParallelIterable<T> then(Function<Object, Object> stage) {
+    return new ParallelIterable<T>(
+        source,
+        executor,
+        ImmutableList.<Function<Object, Object>>builder().addAll(stages).add(stage).build());
+  }
+
+  /**
+   * Returns an {@code ImmutableList} of the elements of this parallel iterable, in the order of the
+   * source.
+   *
+   * @throws NullPointerException if any element is null
+   */
+  public ImmutableList<E> toList() {
+    List<Object[]> chunks =
+        run(
+            new ChunkTask<Object[]>() {
+              @Override
+              Object[] process(List<?> list, int from, int to, Object[] stages) {
+                Object[] results = new Object[to - from];
+                int size = 0;
+                for (int i = from; i < to; i++) {
+                  Object result = applyStages(stages, list.get(i));
+                  if (result != SKIP) {
+                    results[size++] = result;
+                  }
+                }
+                return (size == results.length) ? results : Arrays.copyOf(results, size);
+              }
+            });
+    int size = 0;
+    for (Object[] chunk : chunks) {
+      size += chunk.length;
+    }
+    Object[] elements = new Object[size];
+    int offset = 0;
+    for (Object[] chunk : chunks) {
+      System.arraycopy(chunk, 0, elements, offset, chunk.length);
+      offset += chunk.length;
+    }
+    return ImmutableList.asImmutableList(ObjectArrays.checkElementsNotNull(elements));
+  }
+
+  /**
+   * Returns an {@code ImmutableSet} of the elements of this parallel iterable with duplicates
+   * removed, in the order in which they first appear in the source. Duplicates are removed by the
+   * calling thread.
+   *
+   * @throws NullPointerException if any element is null
+   */
+  public ImmutableSet<E> toSet() {
+    return ImmutableSet.copyOf(toList());
+  }
+
+  /**
+   * Returns the number of elements in this parallel iterable.
+   */
+  public int size() {
+    List<Integer> chunkSizes =
+        run(
+            new ChunkTask<Integer>() {
+              @Override
+              Integer process(List<?> list, int from, int to, Object[] stages) {
+                int size = 0;
+                for (int i = from; i < to; i++) {
+                  if (applyStages(stages, list.get(i)) != SKIP) {
+                    size++;
+                  }
+                }
+                return size;
+              }
+            });
+    int size = 0;
+    for (int chunkSize : chunkSizes) {
+      size += chunkSize;
+    }
+    return size;
+  }
+
+  /**
+   * Returns {@code true} if any element of this parallel iterable satisfies {@code predicate}. Once
+   * such an element has been found, the chunks still being processed stop early.
+   */
+  public boolean anyMatch(final Predicate<? super E> predicate) {
+    checkNotNull(predicate);
+    final AtomicBoolean found = new AtomicBoolean();
+    run(
+        new ChunkTask<Void>() {
+          @Override
+          @SuppressWarnings("unchecked") // the element is an E, the output of the last stage
+          Void process(List<?> list, int from, int to, Object[] stages) {
+            for (int i = from; i < to && !found.get(); i++) {
+              Object result = applyStages(stages, list.get(i));
+              if (result != SKIP && predicate.apply((E) result)) {
+                found.set(true);
+              }
+            }
+            return null;
+          }
+        });
+    return found.get();
+  }
+
+  /**
+   * Returns {@code true} if every element of this parallel iterable satisfies {@code predicate},
+   * including if there are no elements.
+   */
+  public boolean allMatch(Predicate<? super E> predicate) {
+    return !anyMatch(Predicates.not(predicate));
+  }
+
+  private static Object applyStages(Object[] stages, Object element) {
+    for (Object stage : stages) {
+      @SuppressWarnings("unchecked") // all stages are Function<Object, Object>
+      Function<Object, Object> function = (Function<Object, Object>) stage;
+      element = function.apply(element);
+      if (element == SKIP) {
+        break;
+      }
+    }
+    return element;
+  }
+
+  /** The work done on one chunk of the source by a terminal operation. */
+  private abstract static class ChunkTask<R> {
+    abstract R process(List<?> list, int from, int to, Object[] stages);
+  }
+
+  /**
+   * Splits the source into chunks, runs {@code task} on each of them, and returns the results in
+   * the order of the chunks.
+   */
+  private <R> List<R> run(final ChunkTask<R> task) {
+    final List<?> list = randomAccessList(source);
+    final Object[] stages = this.stages.toArray();
+    int size = list.size();
+    int chunkCount =
+        Math.max(
+            1,
+            Math.min(
+                size / MIN_CHUNK_SIZE,
+                CHUNKS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors()));
+    if (chunkCount == 1) {
+      return Collections.singletonList(task.process(list, 0, size, stages));
+    }
+
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    List<FutureTask<R>> futures = Lists.newArrayListWithCapacity(chunkCount);
+    for (int i = 0; i < chunkCount; i++) {
+      final int from = (int) ((long) size * i / chunkCount);
+      final int to = (int) ((long) size * (i + 1) / chunkCount);
+      futures.add(
+          new FutureTask<R>(
+              new Callable<R>() {
+                @Override
+                public R call() {
+                  try {
+                    return task.process(list, from, to, stages);
+                  } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                    throw e;
+                  } catch (Error e) {
+                    failure.compareAndSet(null, e);
+                    throw e;
+                  }
+                }
+              }));
+    }
+    try {
+      // The first chunk is left for the calling thread, which will start on it right away.
+      for (int i = 1; i < chunkCount; i++) {
+        try {
+          executor.execute(futures.get(i));
+        } catch (RejectedExecutionException e) {
+          // The calling thread will run this chunk and the rest itself.
+          break;
+        }
+      }
+      for (FutureTask<R> future : futures) {
+        if (failure.get() != null) {
+          break;
+        }
+        // Does nothing if the executor has already started this chunk.
+        future.run();
+      }
+      Throwable thrown = failure.get();
+      if (thrown != null) {
+        Throwables.propagateIfPossible(thrown);
+      }
+      // Every chunk has now been started, so waiting for them cannot hang.
+      List<R> results = Lists.newArrayListWithCapacity(chunkCount);
+      for (FutureTask<R> future : futures) {
+        results.add(getUninterruptibly(future));
+      }
+      return results;
+    } finally {
+      // Keeps the executor from starting the remaining chunks of a failed operation.
+      for (FutureTask<R> future : futures) {
+        future.cancel(false);
+      }
+    }
+  }
+
+  private static List<?> randomAccessList(Iterable<?> source) {
+    if (source instanceof ImmutableCollection) {
+      return ((ImmutableCollection<?>) source).asList();
+    } else if (source instanceof List && source instanceof RandomAccess) {
+      return (List<?>) source;
+    } else {
+      return Lists.newArrayList(source);
+    }
+  }
+
+  /**
+   * Returns the result of {@code future}, rethrowing any unchecked exception thrown while computing
+   * it, and restoring the interrupt status of the calling thread if it is interrupted while
+   * waiting.
+   */
+  private static <R> R getUninterruptibly(FutureTask<R> future) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return future.get();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          Throwables.propagateIfPossible(cause);
+          throw new AssertionError(cause); // the chunk tasks throw no checked exceptions
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "ParallelIterable(" + source + ", " + stages.size() + " stages)";
+  }
+}
@@ -16,12 +16,16 @@
 
 package com.google.common.collect;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
 import static com.google.common.base.Preconditions.checkPositionIndex;
 import static com.google.common.collect.CollectPreconditions.checkEntryNotNull;
-import static com.google.common.collect.ImmutableMapEntry.createEntryArray;
 
 import com.google.common.annotations.GwtCompatible;
-import com.google.common.collect.ImmutableMapEntry.NonTerminalImmutableMapEntry;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.j2objc.annotations.Weak;
+
+import java.io.Serializable;
 
 import javax.annotation.Nullable;
 
@@ -35,11 +39,16 @@ import javax.annotation.Nullable;
 @GwtCompatible(serializable = true, emulated = true)
 final class RegularImmutableMap<K, V> extends ImmutableMap<K, V> {
 
-  // entries in insertion order
-  private final transient Entry<K, V>[] entries;
-  // array of linked lists of entries
-  private final transient ImmutableMapEntry<K, V>[] table;
-  // 'and' with an int to get a table index
+  /*
+   * The keys and values are stored in a single open-addressed hash table with linear probing, each
+   * key at an even index immediately followed by its value. This avoids an entry object, and the
+   * memory and indirection that comes with it, per mapping; entry objects are only created as
+   * they're requested from entrySet().
+   */
+  private final transient Object[] table;
+  // the index in table of each key, in insertion order
+  private final transient int[] keyIndices;
+  // 'and' with an int to get a bucket, which is stored at table[2 * bucket]
   private final transient int mask;
 
   static <K, V> RegularImmutableMap<K, V> fromEntries(Entry<K, V>... entries) {
@@ -47,48 +56,43 @@ final class RegularImmutableMap<K, V> extends ImmutableMap<K, V> {
   }
 
   /**
-   * Creates a RegularImmutableMap from the first n entries in entryArray.  This implementation
-   * may replace the entries in entryArray with its own entry objects (though they will have the
-   * same key/value contents), and may take ownership of entryArray.
+   * Creates a RegularImmutableMap from the first n entries in entryArray. This implementation
+   * doesn't modify entryArray, or keep any reference to it or its entries.
    */
   static <K, V> RegularImmutableMap<K, V> fromEntryArray(int n, Entry<K, V>[] entryArray) {
     checkPositionIndex(n, entryArray.length);
-    Entry<K, V>[] entries;
-    if (n == entryArray.length) {
-      entries = entryArray;
-    } else {
-      entries = createEntryArray(n);
-    }
     int tableSize = Hashing.closedTableSize(n, MAX_LOAD_FACTOR);
-    ImmutableMapEntry<K, V>[] table = createEntryArray(tableSize);
+    checkArgument(tableSize <= MAX_TABLE_SIZE, "map too large");
+    Object[] table = new Object[2 * tableSize];
+    int[] keyIndices = new int[n];
     int mask = tableSize - 1;
     for (int entryIndex = 0; entryIndex < n; entryIndex++) {
       Entry<K, V> entry = entryArray[entryIndex];
       K key = entry.getKey();
       V value = entry.getValue();
       checkEntryNotNull(key, value);
-      int tableIndex = Hashing.smear(key.hashCode()) & mask;
-      @Nullable ImmutableMapEntry<K, V> existing = table[tableIndex];
-      // prepend, not append, so the entries can be immutable
-      ImmutableMapEntry<K, V> newEntry;
-      if (existing == null) {
-        boolean reusable =
-            entry instanceof ImmutableMapEntry && ((ImmutableMapEntry<K, V>) entry).isReusable();
-        newEntry =
-            reusable ? (ImmutableMapEntry<K, V>) entry : new ImmutableMapEntry<K, V>(key, value);
-      } else {
-        newEntry = new NonTerminalImmutableMapEntry<K, V>(key, value, existing);
+      for (int bucket = Hashing.smear(key.hashCode()); ; bucket++) {
+        int index = 2 * (bucket & mask);
+        Object existingKey = table[index];
+        if (existingKey == null) {
+          table[index] = key;
+          table[index + 1] = value;
+          keyIndices[entryIndex] = index;
+          break;
+        }
+        checkNoConflict(
+            !key.equals(existingKey),
+            "key",
+            entry,
+            Maps.immutableEntry(existingKey, table[index + 1]));
       }
-      table[tableIndex] = newEntry;
-      entries[entryIndex] = newEntry;
-      checkNoConflictInKeyBucket(key, newEntry, existing);
     }
-    return new RegularImmutableMap<K, V>(entries, table, mask);
+    return new RegularImmutableMap<K, V>(table, keyIndices, mask);
   }
 
-  private RegularImmutableMap(Entry<K, V>[] entries, ImmutableMapEntry<K, V>[] table, int mask) {
-    this.entries = entries;
+  private RegularImmutableMap(Object[] table, int[] keyIndices, int mask) {
     this.table = table;
+    this.keyIndices = keyIndices;
     this.mask = mask;
   }
 
@@ -100,17 +104,39 @@ final class RegularImmutableMap<K, V> extends ImmutableMap<K, V> {
   }
 
   /**
-   * Closed addressing tends to perform well even with high load factors.
-   * Being conservative here ensures that the table is still likely to be
-   * relatively sparse (hence it misses fast) while saving space.
+   * Linear probing needs a sparser table than closed addressing to keep probe sequences short, but
+   * a table slot here is only two references, rather than a reference and an entry object.
    */
-  private static final double MAX_LOAD_FACTOR = 1.2;
+  private static final double MAX_LOAD_FACTOR = 0.7;
+
+  // the largest table whose keys and values fit in a single array
+  private static final int MAX_TABLE_SIZE = ImmutableSet.MAX_TABLE_SIZE / 2;
 
   @Override
   public V get(@Nullable Object key) {
-    return get(key, table, mask);
+    if (key == null) {
+      return null;
+    }
+    Object[] table = this.table;
+    for (int bucket = Hashing.smear(key.hashCode()); ; bucket++) {
+      int index = 2 * (bucket & mask);
+      Object candidateKey = table[index];
+      if (candidateKey == null) {
+        return null;
+      }
+      // see the comment in get(Object, ImmutableMapEntry[], int) below
+      if (key.equals(candidateKey)) {
+        @SuppressWarnings("unchecked") // we only put Vs after Ks
+        V value = (V) table[index + 1];
+        return value;
+      }
+    }
   }
 
+  /**
+   * Returns the value for {@code key} in a closed-addressing table of entries, such as that of a
+   * {@link RegularImmutableBiMap}.
+   */
   @Nullable
   static <V> V get(@Nullable Object key, ImmutableMapEntry<?, V>[] keyTable, int mask) {
     if (key == null) {
@@ -137,7 +163,17 @@ final class RegularImmutableMap<K, V> extends ImmutableMap<K, V> {
 
   @Override
   public int size() {
-    return entries.length;
+    return keyIndices.length;
+  }
+
+  @SuppressWarnings("unchecked") // we only put Ks at the indices in keyIndices
+  K keyAt(int entryIndex) {
+    return (K) table[keyIndices[entryIndex]];
+  }
+
+  @SuppressWarnings("unchecked") // we only put Vs after Ks
+  V valueAt(int entryIndex) {
+    return (V) table[keyIndices[entryIndex] + 1];
   }
 
   @Override
@@ -147,7 +183,145 @@ final class RegularImmutableMap<K, V> extends ImmutableMap<K, V> {
 
   @Override
   ImmutableSet<Entry<K, V>> createEntrySet() {
-    return new ImmutableMapEntrySet.RegularEntrySet<K, V>(this, entries);
+    return new EntrySet<K, V>(this);
+  }
+
+  @Override
+  ImmutableSet<K> createKeySet() {
+    return new KeySet<K>(this);
+  }
+
+  @Override
+  ImmutableCollection<V> createValues() {
+    return new Values<V>(this);
+  }
+
+  private static final class EntrySet<K, V> extends ImmutableMapEntrySet<K, V> {
+    @Weak private final transient RegularImmutableMap<K, V> map;
+
+    EntrySet(RegularImmutableMap<K, V> map) {
+      this.map = map;
+    }
+
+    @Override
+    ImmutableMap<K, V> map() {
+      return map;
+    }
+
+    @Override
+    public UnmodifiableIterator<Entry<K, V>> iterator() {
+      return asList().iterator();
+    }
+
+    @Override
+    ImmutableList<Entry<K, V>> createAsList() {
+      return new ImmutableAsList<Entry<K, V>>() {
+        @Override
+        public Entry<K, V> get(int index) {
+          checkElementIndex(index, size());
+          return new ImmutableEntry<K, V>(map.keyAt(index), map.valueAt(index));
+        }
+
+        @Override
+        ImmutableCollection<Entry<K, V>> delegateCollection() {
+          return EntrySet.this;
+        }
+      };
+    }
+  }
+
+  private static final class KeySet<K> extends ImmutableSet.Indexed<K> {
+    @Weak private final transient RegularImmutableMap<K, ?> map;
+
+    KeySet(RegularImmutableMap<K, ?> map) {
+      this.map = map;
+    }
+
+    @Override
+    K get(int index) {
+      checkElementIndex(index, size());
+      return map.keyAt(index);
+    }
+
+    @Override
+    public boolean contains(@Nullable Object object) {
+      return map.containsKey(object);
+    }
+
+    @Override
+    public int size() {
+      return map.size();
+    }
+
+    @Override
+    boolean isPartialView() {
+      return true;
+    }
+  }
+
+  private static final class Values<V> extends ImmutableCollection<V> {
+    @Weak private final transient RegularImmutableMap<?, V> map;
+
+    Values(RegularImmutableMap<?, V> map) {
+      this.map = map;
+    }
+
+    @Override
+    public UnmodifiableIterator<V> iterator() {
+      return asList().iterator();
+    }
+
+    @Override
+    public boolean contains(@Nullable Object object) {
+      return object != null && Iterators.contains(iterator(), object);
+    }
+
+    @Override
+    public int size() {
+      return map.size();
+    }
+
+    @Override
+    boolean isPartialView() {
+      return true;
+    }
+
+    @Override
+    ImmutableList<V> createAsList() {
+      return new ImmutableAsList<V>() {
+        @Override
+        public V get(int index) {
+          checkElementIndex(index, size());
+          return map.valueAt(index);
+        }
+
+        @Override
+        ImmutableCollection<V> delegateCollection() {
+          return Values.this;
+        }
+      };
+    }
+
+    @GwtIncompatible // serialization
+    @Override
+    Object writeReplace() {
+      return new SerializedForm<V>(map);
+    }
+
+    @GwtIncompatible // serialization
+    private static class SerializedForm<V> implements Serializable {
+      final ImmutableMap<?, V> map;
+
+      SerializedForm(ImmutableMap<?, V> map) {
+        this.map = map;
+      }
+
+      Object readResolve() {
+        return map.values();
+      }
+
+      private static final long serialVersionUID = 0;
+    }
   }
 
   // This class is never actually serialized directly, but we have to make the
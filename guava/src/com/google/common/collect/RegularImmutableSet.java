@@ -48,11 +48,19 @@ final class RegularImmutableSet<E> extends ImmutableSet<E> {
 
   @Override
   public boolean contains(@Nullable Object target) {
+    return target != null && contains(target, target.hashCode());
+  }
+
+  /**
+   * Returns {@code true} if this set contains {@code target}, whose {@code hashCode()} is {@code
+   * hash}. Lets callers that need the hash code anyway avoid computing it twice.
+   */
+  boolean contains(Object target, int hash) {
     Object[] table = this.table;
-    if (target == null || table == null) {
+    if (table == null) {
       return false;
     }
-    for (int i = Hashing.smearedHash(target); ; i++) {
+    for (int i = Hashing.smear(hash); ; i++) {
       i &= mask;
       Object candidate = table[i];
       if (candidate == null) {
@@ -68,6 +76,36 @@ final class RegularImmutableSet<E> extends ImmutableSet<E> {
     return elements.length;
   }
 
+  /**
+   * Returns an immutable set of the elements of this set followed by the first {@code n} elements
+   * of {@code extras}, which must be non-null, distinct from each other and from the elements of
+   * this set, and have the hash codes in {@code hashes}. If the table of this set is large enough
+   * to hold them all, it is copied rather than rebuilt, so that the existing elements are not
+   * hashed again.
+   */
+  ImmutableSet<E> plusDistinct(int n, Object[] extras, int[] hashes) {
+    int size = elements.length + n;
+    if (table == null || ImmutableSet.chooseTableSize(size) != table.length) {
+      Object[] allElements = ObjectArrays.arraysCopyOf(elements, size);
+      int[] allHashes = new int[size];
+      for (int i = 0; i < elements.length; i++) {
+        allHashes[i] = elements[i].hashCode();
+      }
+      System.arraycopy(extras, 0, allElements, elements.length, n);
+      System.arraycopy(hashes, 0, allHashes, elements.length, n);
+      return ImmutableSet.constructDistinct(size, allElements, allHashes);
+    }
+    Object[] newElements = ObjectArrays.arraysCopyOf(elements, size);
+    Object[] newTable = table.clone();
+    int newHashCode = hashCode;
+    for (int i = 0; i < n; i++) {
+      newElements[elements.length + i] = extras[i];
+      ImmutableSet.insertDistinct(newTable, mask, extras[i], hashes[i]);
+      newHashCode += hashes[i];
+    }
+    return new RegularImmutableSet<E>(newElements, newHashCode, newTable, mask);
+  }
+
   @SuppressWarnings("unchecked") // all elements are E's
   @Override
   public UnmodifiableIterator<E> iterator() {
@@ -48,11 +48,39 @@ final class RegularImmutableSortedSet<E> extends ImmutableSortedSet<E> {
   static final RegularImmutableSortedSet<Comparable> NATURAL_EMPTY_SET =
       new RegularImmutableSortedSet<Comparable>(ImmutableList.<Comparable>of(), Ordering.natural());
 
+  /** The smallest set for which a binary search is slow enough to be worth an index. */
+  private static final int MIN_INDEXED_SIZE = 64;
+
   private final transient ImmutableList<E> elements;
 
+  /** Used instead of a binary search by {@link #indexOf} and {@link #contains}, if nonnull. */
+  @Nullable private final transient SortedLookupIndex lookupIndex;
+
   RegularImmutableSortedSet(ImmutableList<E> elements, Comparator<? super E> comparator) {
+    this(elements, comparator, null);
+  }
+
+  private RegularImmutableSortedSet(
+      ImmutableList<E> elements,
+      Comparator<? super E> comparator,
+      @Nullable SortedLookupIndex lookupIndex) {
     super(comparator);
     this.elements = elements;
+    this.lookupIndex = lookupIndex;
+  }
+
+  /**
+   * Returns a set with the same elements and comparator as this one, that finds elements using a
+   * {@link SortedLookupIndex}. The index searches by interpolation if {@code domain} is nonnull.
+   * Subsets and the descending set do not use the index.
+   */
+  @GwtIncompatible // SortedLookupIndex
+  RegularImmutableSortedSet<E> withLookupIndex(@Nullable DiscreteDomain<?> domain) {
+    if (size() < MIN_INDEXED_SIZE) {
+      return this;
+    }
+    return new RegularImmutableSortedSet<E>(
+        elements, comparator, SortedLookupIndex.create(elements, comparator, domain));
   }
 
   @Override
@@ -74,7 +102,8 @@ final class RegularImmutableSortedSet<E> extends ImmutableSortedSet<E> {
   @Override
   public boolean contains(@Nullable Object o) {
     try {
-      return o != null && unsafeBinarySearch(o) >= 0;
+      return o != null
+          && ((lookupIndex != null) ? lookupIndex.indexOf(o) : unsafeBinarySearch(o)) >= 0;
     } catch (ClassCastException e) {
       return false;
     }
@@ -282,6 +311,9 @@ final class RegularImmutableSortedSet<E> extends ImmutableSortedSet<E> {
     }
     int position;
     try {
+      if (lookupIndex != null) {
+        return lookupIndex.indexOf(target);
+      }
       position =
           SortedLists.binarySearch(
               elements, target, unsafeComparator(), ANY_PRESENT, INVERTED_INSERTION_INDEX);
@@ -557,7 +557,18 @@ public final class Sets {
      * Object#equals(Object)}.
      */
     public ImmutableSet<E> immutableCopy() {
-      return ImmutableSet.copyOf(this);
+      ImmutableSet<E> copy = materialize();
+      return (copy != null) ? copy : ImmutableSet.copyOf(this);
+    }
+
+    /**
+     * Returns an immutable copy of the current contents of this set view computed directly from
+     * its backing sets, or {@code null} if this view knows no faster way than iterating over
+     * itself. Also used by {@link ImmutableSet#copyOf(Collection)}.
+     */
+    @Nullable
+    ImmutableSet<E> materialize() {
+      return null;
     }
 
     /**
@@ -623,8 +634,8 @@ public final class Sets {
       }
 
       @Override
-      public ImmutableSet<E> immutableCopy() {
-        return new ImmutableSet.Builder<E>().addAll(set1).addAll(set2).build();
+      ImmutableSet<E> materialize() {
+        return ImmutableSet.copyOfUnion(set1, set2);
       }
     };
   }
@@ -685,6 +696,11 @@ public final class Sets {
       public boolean containsAll(Collection<?> collection) {
         return set1.containsAll(collection) && set2.containsAll(collection);
       }
+
+      @Override
+      ImmutableSet<E> materialize() {
+        return ImmutableSet.copyOfIntersection(set1, set2);
+      }
     };
   }
 
@@ -724,6 +740,11 @@ public final class Sets {
       public boolean contains(Object element) {
         return set1.contains(element) && !set2.contains(element);
       }
+
+      @Override
+      ImmutableSet<E> materialize() {
+        return ImmutableSet.copyOfDifference(set1, set2);
+      }
     };
   }
 
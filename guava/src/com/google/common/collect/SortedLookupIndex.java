@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.collect;
+
+import com.google.common.annotations.GwtIncompatible;
+
+import java.util.Comparator;
+
+import javax.annotation.Nullable;
+
+/**
+ * An auxiliary search structure over the sorted, distinct elements of a {@link
+ * RegularImmutableSortedSet}, used in place of a plain binary search to find the position of an
+ * element. Created by {@link ImmutableSortedSet.Builder#indexForLookups()} and its overloads.
+ *
+ * @author Guava Authors
+ */
+@GwtIncompatible
+abstract class SortedLookupIndex {
+  /**
+   * Returns the position of the element equivalent to {@code target}, or -1 if there is none.
+   *
+   * @throws ClassCastException if {@code target} cannot be compared to the elements
+   */
+  abstract int indexOf(Object target);
+
+  /**
+   * Returns an index over {@code elements}, which are sorted by {@code comparator}, that finds an
+   * element by interpolation search if {@code domain} is nonnull and can measure the distances
+   * between all of them, and by a blocked Eytzinger search otherwise.
+   */
+  @SuppressWarnings({"rawtypes", "unchecked"}) // the elements are Comparable if there is a domain
+  static SortedLookupIndex create(
+      ImmutableList<?> elements, Comparator<?> comparator, @Nullable DiscreteDomain<?> domain) {
+    if (domain != null) {
+      SortedLookupIndex index =
+          InterpolationIndex.create((ImmutableList<Comparable>) elements, (DiscreteDomain) domain);
+      if (index != null) {
+        return index;
+      }
+    }
+    return new EytzingerIndex(elements, comparator);
+  }
+
+  /**
+   * Finds elements by a binary search over the first element of each block of {@link #BLOCK_SIZE}
+   * consecutive elements, followed by a binary search within the block. The first elements are
+   * stored in a separate array in Eytzinger (breadth-first) order: the root at index 1 and the
+   * children of index {@code k} at {@code 2k} and {@code 2k + 1}. The first levels of the search,
+   * which every lookup visits, thus share a few cache lines, and each level of the search reads the
+   * next element from a predictable location instead of from the middle of a large range. The
+   * final search within a block touches at most two cache lines of the element array.
+   *
+   * <p>This costs a reference and an {@code int} per block, and as many comparisons as a plain
+   * binary search.
+   */
+  static final class EytzingerIndex extends SortedLookupIndex {
+    static final int BLOCK_SIZE = 16;
+
+    private final ImmutableList<?> elements;
+    private final Comparator<Object> comparator;
+
+    /** The first element of each block, in Eytzinger order; index 0 is unused. */
+    private final Object[] tree;
+
+    /** The block of each element of {@link #tree}. */
+    private final int[] blocks;
+
+    @SuppressWarnings("unchecked") // the elements are all comparable by comparator
+    EytzingerIndex(ImmutableList<?> elements, Comparator<?> comparator) {
+      this.elements = elements;
+      this.comparator = (Comparator<Object>) comparator;
+      int blockCount = (elements.size() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+      this.tree = new Object[blockCount + 1];
+      this.blocks = new int[blockCount + 1];
+      fill(1, 0);
+    }
+
+    /**
+     * Fills the subtree rooted at {@code k} with the blocks from {@code block} on, in order, and
+     * returns the first block not used.
+     */
+    private int fill(int k, int block) {
+      if (k < tree.length) {
+        block = fill(2 * k, block);
+        tree[k] = elements.get(block * BLOCK_SIZE);
+        blocks[k] = block;
+        block = fill(2 * k + 1, block + 1);
+      }
+      return block;
+    }
+
+    @Override
+    int indexOf(Object target) {
+      int candidate = 0;
+      for (int k = 1; k < tree.length; ) {
+        int cmp = comparator.compare(tree[k], target);
+        if (cmp == 0) {
+          return blocks[k] * BLOCK_SIZE;
+        } else if (cmp < 0) {
+          candidate = k;
+          k = 2 * k + 1;
+        } else {
+          k = 2 * k;
+        }
+      }
+      if (candidate == 0) {
+        return -1;
+      }
+      // The first element of the block is less than the target, so it need not be searched.
+      int low = blocks[candidate] * BLOCK_SIZE + 1;
+      int high = Math.min(low + BLOCK_SIZE - 1, elements.size()) - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        int cmp = comparator.compare(elements.get(mid), target);
+        if (cmp < 0) {
+          low = mid + 1;
+        } else if (cmp > 0) {
+          high = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return -1;
+    }
+  }
+
+  /**
+   * Finds elements by interpolation search over the {@linkplain DiscreteDomain#distance distances}
+   * from the first element to each element, which are stored in a {@code long[]}. Each lookup
+   * calls the domain once, to measure the distance to the target, and no comparator at all. When
+   * the elements are spread evenly, the search takes about {@code log(log(n))} steps; a step that
+   * fails to halve the range is followed by a bisection, so it never takes more than about twice
+   * as many steps as a binary search.
+   *
+   * <p>This costs a {@code long} per element.
+   */
+  @SuppressWarnings({"rawtypes", "unchecked"}) // allow ungenerified Comparable types
+  static final class InterpolationIndex extends SortedLookupIndex {
+    private final Comparable first;
+    private final DiscreteDomain<Comparable> domain;
+    private final long[] distances;
+
+    private InterpolationIndex(
+        Comparable first, DiscreteDomain<Comparable> domain, long[] distances) {
+      this.first = first;
+      this.domain = domain;
+      this.distances = distances;
+    }
+
+    /**
+     * Returns an index over {@code elements}, or null if the distances between some of them are
+     * too large to be told apart, or too large to tell apart from the distances of larger targets.
+     */
+    @Nullable
+    static InterpolationIndex create(
+        ImmutableList<Comparable> elements, DiscreteDomain<Comparable> domain) {
+      Comparable first = elements.get(0);
+      long[] distances = new long[elements.size()];
+      for (int i = 1; i < distances.length; i++) {
+        distances[i] = domain.distance(first, elements.get(i));
+        // distance() saturates, so distinct elements may not have distinct distances, and a
+        // saturated distance would also be shared by every larger target.
+        if (distances[i] <= distances[i - 1] || distances[i] == Long.MAX_VALUE) {
+          return null;
+        }
+      }
+      return new InterpolationIndex(first, domain, distances);
+    }
+
+    @Override
+    int indexOf(Object target) {
+      long distance = domain.distance(first, (Comparable) target);
+      int low = 0;
+      int high = distances.length - 1;
+      boolean bisect = false;
+      while (low <= high) {
+        long lowDistance = distances[low];
+        long highDistance = distances[high];
+        if (distance < lowDistance || distance > highDistance) {
+          return -1;
+        }
+        int width = high - low;
+        int mid;
+        if (bisect || highDistance == lowDistance) {
+          mid = (low + high) >>> 1;
+        } else {
+          // Both differences are nonnegative, since so are all distances.
+          mid =
+              low
+                  + (int)
+                      ((double) (distance - lowDistance) / (highDistance - lowDistance) * width);
+          mid = Math.min(Math.max(mid, low), high);
+        }
+        long midDistance = distances[mid];
+        if (midDistance < distance) {
+          low = mid + 1;
+        } else if (midDistance > distance) {
+          high = mid - 1;
+        } else {
+          return mid;
+        }
+        bisect = !bisect && high - low > width / 2;
+      }
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,594 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.CollectPreconditions.checkNonnegative;
+import static com.google.common.collect.CollectPreconditions.checkPositive;
+import static com.google.common.collect.CollectPreconditions.checkRemove;
+import static com.google.common.collect.StripedCounter.SEALED;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.collect.Serialization.FieldSetter;
+import com.google.common.primitives.Ints;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import com.google.j2objc.annotations.WeakOuter;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * A multiset that supports concurrent modifications and whose per-element counts are striped
+ * across several cells in the style of {@code LongAdder}, so that many threads can increment the
+ * count of the same element without contending on a single memory location. Null elements are not
+ * supported.
+ *
+ * <p>This class is intended for write-heavy counting, such as tallying events keyed by a small
+ * number of hot elements from many threads at once. Compared to {@link ConcurrentHashMultiset}:
+ *
+ * <ul>
+ * <li>{@link #add(Object)} usually just increments a single cell, and scales with the number of
+ *     threads even when they all add the same element. It may fail to detect a count exceeding
+ *     {@code Integer.MAX_VALUE} while other threads are adding the same element; such counts
+ *     saturate when read.
+ * <li>{@link #add(Object, int)} must read every cell of the element's count, both to return the
+ *     previous count and to check for overflow, and so is more expensive. The previous count it
+ *     returns may miss increments made concurrently by other threads.
+ * <li>{@link #count}, {@link #size} and iteration sum the cells, so they are slower than for
+ *     {@code ConcurrentHashMultiset}, and may wait briefly while another thread is removing
+ *     occurrences of the same element.
+ * <li>Operations that can decrease a count ({@link #remove(Object, int)}, {@link #removeExactly}
+ *     and both {@code setCount} methods) are serialized per element, and are atomic.
+ * <li>A contended element's count takes one cache line per available processor, so this class uses
+ *     considerably more memory than {@code ConcurrentHashMultiset} when many elements are hot.
+ * </ul>
+ *
+ * @since 20.0
+ */
+@Beta
+@GwtIncompatible
+public final class StripedConcurrentHashMultiset<E> extends AbstractMultiset<E>
+    implements Serializable {
+
+  /*
+   * Each element maps to a StripedCounter, which is never zero while it is in the map. Increments
+   * only ever add to the current counter. Anything that can decrease a count does so while holding
+   * the counter's monitor: if the decrease certainly leaves the count positive, it simply subtracts
+   * from the counter, which is safe because the only concurrent updates are increments. Otherwise
+   * it seals the counter, which yields its exact total and makes every later increment fail, and
+   * then replaces the sealed counter in the map with a fresh one holding the new count (or removes
+   * it). A thread that finds a sealed counter just looks it up again.
+   */
+
+  /** The number of occurrences of each element. */
+  private final transient ConcurrentMap<E, StripedCounter> countMap;
+
+  // This constant allows the deserialization code to set a final field. This holder class
+  // makes sure it is not initialized unless an instance is deserialized.
+  private static class FieldSettersHolder {
+    static final FieldSetter<StripedConcurrentHashMultiset> COUNT_MAP_FIELD_SETTER =
+        Serialization.getFieldSetter(StripedConcurrentHashMultiset.class, "countMap");
+  }
+
+  /**
+   * Creates a new, empty {@code StripedConcurrentHashMultiset} using the default initial capacity,
+   * load factor, and concurrency settings.
+   */
+  public static <E> StripedConcurrentHashMultiset<E> create() {
+    return new StripedConcurrentHashMultiset<E>(new ConcurrentHashMap<E, StripedCounter>());
+  }
+
+  /**
+   * Creates a new {@code StripedConcurrentHashMultiset} containing the specified elements, using
+   * the default initial capacity, load factor, and concurrency settings.
+   *
+   * @param elements the elements that the multiset should contain
+   */
+  public static <E> StripedConcurrentHashMultiset<E> create(Iterable<? extends E> elements) {
+    StripedConcurrentHashMultiset<E> multiset = StripedConcurrentHashMultiset.create();
+    Iterables.addAll(multiset, elements);
+    return multiset;
+  }
+
+  private StripedConcurrentHashMultiset(ConcurrentMap<E, StripedCounter> countMap) {
+    this.countMap = countMap;
+  }
+
+  // Query Operations
+
+  /**
+   * Returns the number of occurrences of {@code element} in this multiset.
+   *
+   * @param element the element to look for
+   * @return the nonnegative number of occurrences of the element
+   */
+  @Override
+  public int count(@Nullable Object element) {
+    while (true) {
+      StripedCounter counter = Maps.safeGet(countMap, element);
+      if (counter == null) {
+        return 0;
+      }
+      long count = counter.sum();
+      if (count != SEALED) {
+        return Ints.saturatedCast(count);
+      }
+      // Another thread is replacing the counter.
+      Thread.yield();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>If the data in the multiset is modified by any other threads during this method,
+   * it is undefined which (if any) of these modifications will be reflected in the result.
+   */
+  @Override
+  public int size() {
+    long sum = 0L;
+    for (StripedCounter counter : countMap.values()) {
+      long count = counter.sum();
+      if (count > 0) {
+        sum += count;
+      }
+    }
+    return Ints.saturatedCast(sum);
+  }
+
+  /*
+   * Note: the superclass toArray() methods assume that size() gives a correct
+   * answer, which ours does not.
+   */
+
+  @Override
+  public Object[] toArray() {
+    return snapshot().toArray();
+  }
+
+  @Override
+  public <T> T[] toArray(T[] array) {
+    return snapshot().toArray(array);
+  }
+
+  /*
+   * We'd love to use 'new ArrayList(this)' or 'list.addAll(this)', but
+   * either of these would recurse back to us again!
+   */
+  private List<E> snapshot() {
+    List<E> list = Lists.newArrayListWithExpectedSize(size());
+    for (Multiset.Entry<E> entry : entrySet()) {
+      E element = entry.getElement();
+      for (int i = entry.getCount(); i > 0; i--) {
+        list.add(element);
+      }
+    }
+    return list;
+  }
+
+  // Modification Operations
+
+  /**
+   * Adds a single occurrence of the specified element to this multiset.
+   *
+   * <p>Unlike {@link #add(Object, int)}, this method does not read the current count until it
+   * gets close to {@code Integer.MAX_VALUE}, and it may then fail to detect that the count would
+   * exceed {@code Integer.MAX_VALUE} if other threads are adding the same element.
+   *
+   * @param element the element to add
+   * @return {@code true} always
+   * @throws NullPointerException if {@code element} is null
+   * @throws IllegalArgumentException if the resulting count would exceed {@link Integer#MAX_VALUE}
+   */
+  @CanIgnoreReturnValue
+  @Override
+  public boolean add(E element) {
+    checkNotNull(element);
+    while (true) {
+      StripedCounter counter = countMap.get(element);
+      if (counter == null) {
+        counter = countMap.putIfAbsent(element, new StripedCounter(1));
+        if (counter == null) {
+          return true;
+        }
+      }
+      try {
+        if (counter.add(1)) {
+          return true;
+        }
+      } catch (ArithmeticException overflow) {
+        throw new IllegalArgumentException("Overflow adding an occurrence of " + element);
+      }
+      Thread.yield();
+    }
+  }
+
+  /**
+   * Adds a number of occurrences of the specified element to this multiset.
+   *
+   * <p>The returned count does not reflect occurrences added by other threads while this call was
+   * in progress.
+   *
+   * @param element the element to add
+   * @param occurrences the number of occurrences to add
+   * @return the previous count of the element before the operation; possibly zero
+   * @throws IllegalArgumentException if {@code occurrences} is negative, or if
+   *     the resulting amount would exceed {@link Integer#MAX_VALUE}
+   */
+  @CanIgnoreReturnValue
+  @Override
+  public int add(E element, int occurrences) {
+    checkNotNull(element);
+    if (occurrences == 0) {
+      return count(element);
+    }
+    checkPositive(occurrences, "occurences");
+
+    while (true) {
+      StripedCounter counter = countMap.get(element);
+      if (counter == null) {
+        counter = countMap.putIfAbsent(element, new StripedCounter(occurrences));
+        if (counter == null) {
+          return 0;
+        }
+      }
+      long oldCount = counter.sum();
+      if (oldCount != SEALED) {
+        try {
+          if (oldCount + occurrences > Integer.MAX_VALUE) {
+            throw new ArithmeticException();
+          }
+          if (counter.add(occurrences)) {
+            return (int) oldCount;
+          }
+        } catch (ArithmeticException overflow) {
+          throw new IllegalArgumentException(
+              "Overflow adding " + occurrences + " occurrences to a count of " + oldCount);
+        }
+      }
+      Thread.yield();
+    }
+  }
+
+  /**
+   * Removes a number of occurrences of the specified element from this multiset. If the multiset
+   * contains fewer than this number of occurrences to begin with, all occurrences will be removed.
+   *
+   * @param element the element whose occurrences should be removed
+   * @param occurrences the number of occurrences of the element to remove
+   * @return the count of the element before the operation; possibly zero
+   * @throws IllegalArgumentException if {@code occurrences} is negative
+   */
+  @CanIgnoreReturnValue
+  @Override
+  public int remove(@Nullable Object element, int occurrences) {
+    if (occurrences == 0) {
+      return count(element);
+    }
+    checkPositive(occurrences, "occurences");
+
+    while (true) {
+      StripedCounter counter = Maps.safeGet(countMap, element);
+      if (counter == null) {
+        return 0;
+      }
+      synchronized (counter) {
+        long oldCount = counter.sum();
+        if (oldCount == SEALED) {
+          continue;
+        }
+        if (oldCount <= occurrences || !counter.subtract(occurrences)) {
+          oldCount = counter.seal();
+          replaceSealed(element, counter, Math.max(0, oldCount - occurrences));
+        }
+        return Ints.saturatedCast(oldCount);
+      }
+    }
+  }
+
+  /**
+   * Removes exactly the specified number of occurrences of {@code element}, or makes no
+   * change if this is not possible.
+   *
+   * @param element the element to remove
+   * @param occurrences the number of occurrences of {@code element} to remove
+   * @return {@code true} if the removal was possible (including if {@code occurrences} is zero)
+   * @throws IllegalArgumentException if {@code occurrences} is negative
+   */
+  @CanIgnoreReturnValue
+  public boolean removeExactly(@Nullable Object element, int occurrences) {
+    if (occurrences == 0) {
+      return true;
+    }
+    checkPositive(occurrences, "occurences");
+
+    while (true) {
+      StripedCounter counter = Maps.safeGet(countMap, element);
+      if (counter == null) {
+        return false;
+      }
+      synchronized (counter) {
+        long oldCount = counter.sum();
+        if (oldCount == SEALED) {
+          continue;
+        }
+        if (oldCount > occurrences && counter.subtract(occurrences)) {
+          return true;
+        }
+        oldCount = counter.seal();
+        boolean possible = oldCount >= occurrences;
+        replaceSealed(element, counter, possible ? oldCount - occurrences : oldCount);
+        return possible;
+      }
+    }
+  }
+
+  /**
+   * Adds or removes occurrences of {@code element} such that the {@link #count} of the
+   * element becomes {@code count}.
+   *
+   * @return the count of {@code element} in the multiset before this call
+   * @throws IllegalArgumentException if {@code count} is negative
+   */
+  @CanIgnoreReturnValue
+  @Override
+  public int setCount(E element, int count) {
+    checkNotNull(element);
+    checkNonnegative(count, "count");
+    while (true) {
+      StripedCounter counter = countMap.get(element);
+      if (counter == null) {
+        if (count == 0
+            || countMap.putIfAbsent(element, new StripedCounter(count)) == null) {
+          return 0;
+        }
+        continue;
+      }
+      synchronized (counter) {
+        if (counter.isSealed()) {
+          continue;
+        }
+        long oldCount = counter.seal();
+        replaceSealed(element, counter, count);
+        return Ints.saturatedCast(oldCount);
+      }
+    }
+  }
+
+  /**
+   * Sets the number of occurrence of {@code element} to {@code newCount}, but only if
+   * the count is currently {@code expectedOldCount}. If {@code element} does not appear
+   * in the multiset exactly {@code expectedOldCount} times, no changes will be made.
+   *
+   * @return {@code true} if the change was successful. This usually indicates
+   *     that the multiset has been modified, but not always: in the case that
+   *     {@code expectedOldCount == newCount}, the method will return {@code true} if
+   *     the condition was met.
+   * @throws IllegalArgumentException if {@code expectedOldCount} or {@code newCount} is negative
+   */
+  @CanIgnoreReturnValue
+  @Override
+  public boolean setCount(E element, int expectedOldCount, int newCount) {
+    checkNotNull(element);
+    checkNonnegative(expectedOldCount, "oldCount");
+    checkNonnegative(newCount, "newCount");
+
+    while (true) {
+      StripedCounter counter = countMap.get(element);
+      if (counter == null) {
+        if (expectedOldCount != 0) {
+          return false;
+        } else if (newCount == 0) {
+          return true;
+        } else {
+          // if our write lost the race, it must have lost to a nonzero value, so we can stop
+          return countMap.putIfAbsent(element, new StripedCounter(newCount)) == null;
+        }
+      }
+      synchronized (counter) {
+        long oldCount = counter.sum();
+        if (oldCount == SEALED) {
+          continue;
+        }
+        if (oldCount > expectedOldCount) {
+          // Concurrent updates can only increase the count, so it can't match.
+          return false;
+        }
+        oldCount = counter.seal();
+        boolean matches = oldCount == expectedOldCount;
+        replaceSealed(element, counter, matches ? newCount : oldCount);
+        return matches;
+      }
+    }
+  }
+
+  /**
+   * Replaces the sealed counter for {@code element} with one holding {@code newCount}, or removes
+   * it if {@code newCount} is zero. This fails only if the element was concurrently removed by
+   * {@link #clear} or through the {@link #elementSet}, in which case that removal wins.
+   */
+  private void replaceSealed(Object element, StripedCounter sealed, long newCount) {
+    if (newCount == 0) {
+      countMap.remove(element, sealed);
+    } else {
+      @SuppressWarnings("unchecked") // the element was found in countMap
+      E e = (E) element;
+      countMap.replace(e, sealed, new StripedCounter(newCount));
+    }
+  }
+
+  // Views
+
+  @Override
+  Set<E> createElementSet() {
+    final Set<E> delegate = countMap.keySet();
+    return new ForwardingSet<E>() {
+      @Override
+      protected Set<E> delegate() {
+        return delegate;
+      }
+
+      @Override
+      public boolean contains(@Nullable Object object) {
+        return object != null && Collections2.safeContains(delegate, object);
+      }
+
+      @Override
+      public boolean containsAll(Collection<?> collection) {
+        return standardContainsAll(collection);
+      }
+
+      @Override
+      public boolean remove(Object object) {
+        return object != null && Collections2.safeRemove(delegate, object);
+      }
+
+      @Override
+      public boolean removeAll(Collection<?> c) {
+        return standardRemoveAll(c);
+      }
+    };
+  }
+
+  @Override
+  public Set<Multiset.Entry<E>> createEntrySet() {
+    return new EntrySet();
+  }
+
+  @Override
+  int distinctElements() {
+    return countMap.size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return countMap.isEmpty();
+  }
+
+  @Override
+  Iterator<Entry<E>> entryIterator() {
+    // AbstractIterator makes this fairly clean, but it doesn't support remove(). To support
+    // remove(), we create an AbstractIterator, and then use ForwardingIterator to delegate to it.
+    final Iterator<Entry<E>> readOnlyIterator =
+        new AbstractIterator<Entry<E>>() {
+          private final Iterator<Map.Entry<E, StripedCounter>> mapEntries =
+              countMap.entrySet().iterator();
+
+          @Override
+          protected Entry<E> computeNext() {
+            while (true) {
+              if (!mapEntries.hasNext()) {
+                return endOfData();
+              }
+              Map.Entry<E, StripedCounter> mapEntry = mapEntries.next();
+              long count = mapEntry.getValue().sum();
+              // skips sealed counters, which are about to be replaced or removed
+              if (count > 0) {
+                return Multisets.immutableEntry(mapEntry.getKey(), Ints.saturatedCast(count));
+              }
+            }
+          }
+        };
+
+    return new ForwardingIterator<Entry<E>>() {
+      private Entry<E> last;
+
+      @Override
+      protected Iterator<Entry<E>> delegate() {
+        return readOnlyIterator;
+      }
+
+      @Override
+      public Entry<E> next() {
+        last = super.next();
+        return last;
+      }
+
+      @Override
+      public void remove() {
+        checkRemove(last != null);
+        StripedConcurrentHashMultiset.this.setCount(last.getElement(), 0);
+        last = null;
+      }
+    };
+  }
+
+  @Override
+  public void clear() {
+    countMap.clear();
+  }
+
+  @WeakOuter
+  private class EntrySet extends AbstractMultiset<E>.EntrySet {
+    @Override
+    StripedConcurrentHashMultiset<E> multiset() {
+      return StripedConcurrentHashMultiset.this;
+    }
+
+    /*
+     * Note: the superclass toArray() methods assume that size() gives a correct
+     * answer, which ours does not.
+     */
+
+    @Override
+    public Object[] toArray() {
+      return snapshot().toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] array) {
+      return snapshot().toArray(array);
+    }
+
+    private List<Multiset.Entry<E>> snapshot() {
+      List<Multiset.Entry<E>> list = Lists.newArrayListWithExpectedSize(size());
+      // Not Iterables.addAll(list, this), because that'll forward right back here.
+      Iterators.addAll(list, iterator());
+      return list;
+    }
+  }
+
+  /**
+   * @serialData the number of distinct elements, the first element, its count, the second
+   *     element, its count, and so on
+   */
+  private void writeObject(ObjectOutputStream stream) throws IOException {
+    stream.defaultWriteObject();
+    Serialization.writeMultiset(this, stream);
+  }
+
+  private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+    stream.defaultReadObject();
+    FieldSettersHolder.COUNT_MAP_FIELD_SETTER.set(
+        this, new ConcurrentHashMap<Object, StripedCounter>());
+    Serialization.populateMultiset(this, stream);
+  }
+
+  private static final long serialVersionUID = 0;
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.collect;
+
+import com.google.common.annotations.GwtIncompatible;
+import com.google.common.math.IntMath;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A counter in the style of {@code LongAdder} that can be permanently <i>sealed</i>, after which
+ * every further update fails. Used by {@link StripedConcurrentHashMultiset} to hold the count of a
+ * single element.
+ *
+ * <p>Updates are first attempted on a single {@code base} value. The first time such an update
+ * fails because of contention, the counter inflates a fixed table of cells, one per available
+ * processor (rounded up to a power of two) and each on its own cache line, and from then on
+ * threads update the cell chosen by a per-thread probe, moving to another cell whenever they
+ * collide. Unlike {@code Striped64}, the table is never resized, which keeps sealing simple: a
+ * counter is sealed by atomically swapping {@link #SEALED} into the base and into every cell, which
+ * both collects the exact final total and makes any later {@link #add} fail.
+ *
+ * <p>Decrements always go to the base, so the cells never decrease. Because of that, an increment
+ * that would take the total past a limit must find its own cell or the base above {@link
+ * #CHECK_THRESHOLD} (that is, above the limit divided by the number of places the total is spread
+ * over), and only then does it need to sum the counter to check the limit.
+ */
+@GwtIncompatible
+final class StripedCounter {
+  /**
+   * The value of a sealed base or cell, and the value of {@link #sum} once a counter has been
+   * sealed. Counts never get anywhere near it.
+   */
+  static final long SEALED = Long.MIN_VALUE;
+
+  private static final int CELLS =
+      IntMath.ceilingPowerOfTwo(Runtime.getRuntime().availableProcessors());
+
+  /**
+   * The value above which a cell or the base may be holding enough of the total for an increment to
+   * push it past {@code Integer.MAX_VALUE}.
+   */
+  static final long CHECK_THRESHOLD = Integer.MAX_VALUE / (CELLS + 1);
+
+  /**
+   * The distance, in longs, between two cells. Cell {@code i} is stored at index {@code
+   * (i + 1) * PAD}, so that no two cells, and no cell and the array header, share a cache line.
+   */
+  private static final int PAD = 8;
+
+  /** Installed in place of the cells of a counter that was sealed before it ever inflated. */
+  private static final AtomicLongArray SEALED_CELLS = new AtomicLongArray((CELLS + 1) * PAD);
+
+  static {
+    for (int i = 0; i < SEALED_CELLS.length(); i++) {
+      SEALED_CELLS.set(i, SEALED);
+    }
+  }
+
+  /** The per-thread hash used to pick a cell; always nonzero. */
+  private static final ThreadLocal<int[]> probe =
+      new ThreadLocal<int[]>() {
+        private final Random seeds = new Random();
+
+        @Override
+        protected int[] initialValue() {
+          synchronized (seeds) {
+            return new int[] {seeds.nextInt() | 1};
+          }
+        }
+      };
+
+  private static final AtomicLongFieldUpdater<StripedCounter> BASE_UPDATER =
+      AtomicLongFieldUpdater.newUpdater(StripedCounter.class, "base");
+
+  private static final AtomicReferenceFieldUpdater<StripedCounter, AtomicLongArray>
+      CELLS_UPDATER =
+          AtomicReferenceFieldUpdater.newUpdater(
+              StripedCounter.class, AtomicLongArray.class, "cells");
+
+  private volatile long base;
+  private volatile AtomicLongArray cells;
+
+  StripedCounter(long initialValue) {
+    this.base = initialValue;
+  }
+
+  /**
+   * Adds {@code delta}, which must be positive, to this counter, returning {@code false} without
+   * changing anything if the counter has been sealed.
+   *
+   * @throws ArithmeticException if the total would exceed {@code Integer.MAX_VALUE}. This is
+   *     always detected when the counter has only been updated by one thread, but may be missed
+   *     when other threads are adding to it at the same time.
+   */
+  boolean add(long delta) {
+    AtomicLongArray cs = cells;
+    if (cs == null) {
+      long b = base;
+      if (b == SEALED || (b + delta > CHECK_THRESHOLD && !checkedSum(delta))) {
+        return false;
+      }
+      if (BASE_UPDATER.compareAndSet(this, b, b + delta)) {
+        return true;
+      }
+      cs = inflate();
+    }
+    int[] threadProbe = probe.get();
+    int h = threadProbe[0];
+    while (true) {
+      int index = ((h & (CELLS - 1)) + 1) * PAD;
+      long v = cs.get(index);
+      if (v == SEALED || (v + delta > CHECK_THRESHOLD && !checkedSum(delta))) {
+        return false;
+      }
+      if (cs.compareAndSet(index, v, v + delta)) {
+        threadProbe[0] = h;
+        return true;
+      }
+      // Collided with another thread; move to a different cell (xorshift, as in Striped64).
+      h ^= h << 13;
+      h ^= h >>> 17;
+      h ^= h << 5;
+    }
+  }
+
+  /**
+   * Returns {@code false} if the counter has been sealed, and otherwise checks that adding {@code
+   * delta} would not take the total past {@code Integer.MAX_VALUE}.
+   */
+  private boolean checkedSum(long delta) {
+    long sum = sum();
+    if (sum == SEALED) {
+      return false;
+    }
+    if (sum + delta > Integer.MAX_VALUE) {
+      throw new ArithmeticException("overflow: " + sum + " + " + delta);
+    }
+    return true;
+  }
+
+  /**
+   * Subtracts {@code delta}, which must be positive and less than the total, from this counter,
+   * which must not be sealed. Returns {@code false} without changing anything if this would leave
+   * the base so far below zero that the counter should be replaced by a fresh one instead, which
+   * keeps the cells from growing without bound under a mix of increments and decrements.
+   *
+   * <p>Callers must prevent concurrent calls to this method and to {@link #seal}.
+   */
+  boolean subtract(long delta) {
+    while (true) {
+      long b = base;
+      if (b - delta < -CHECK_THRESHOLD) {
+        return false;
+      }
+      if (BASE_UPDATER.compareAndSet(this, b, b - delta)) {
+        return true;
+      }
+    }
+  }
+
+  private AtomicLongArray inflate() {
+    AtomicLongArray cs = cells;
+    if (cs == null) {
+      CELLS_UPDATER.compareAndSet(this, null, new AtomicLongArray((CELLS + 1) * PAD));
+      cs = cells;
+    }
+    return cs;
+  }
+
+  /**
+   * Returns the current total, or {@link #SEALED} if the counter has been sealed. The total is
+   * not an atomic snapshot: updates made while the cells are being read may or may not be
+   * included.
+   */
+  long sum() {
+    long sum = base;
+    if (sum == SEALED) {
+      return SEALED;
+    }
+    AtomicLongArray cs = cells;
+    if (cs != null) {
+      for (int index = PAD; index < cs.length(); index += PAD) {
+        long v = cs.get(index);
+        if (v == SEALED) {
+          return SEALED;
+        }
+        sum += v;
+      }
+    }
+    return sum;
+  }
+
+  boolean isSealed() {
+    return base == SEALED;
+  }
+
+  /**
+   * Seals this counter and returns its exact final total, which includes every {@link #add} that
+   * returned {@code true}. Must be called at most once per counter.
+   */
+  long seal() {
+    AtomicLongArray cs = cells;
+    if (cs == null && CELLS_UPDATER.compareAndSet(this, null, SEALED_CELLS)) {
+      return BASE_UPDATER.getAndSet(this, SEALED);
+    }
+    cs = cells;
+    long sum = BASE_UPDATER.getAndSet(this, SEALED);
+    for (int index = PAD; index < cs.length(); index += PAD) {
+      sum += cs.getAndSet(index, SEALED);
+    }
+    return sum;
+  }
+
+  @Override
+  public String toString() {
+    return Long.toString(sum());
+  }
+}
@@ -22,6 +22,9 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
 import com.google.common.base.Predicate;
 import com.google.common.hash.BloomFilterStrategies.BitArray;
+import com.google.common.hash.BloomFilterStrategies.LockFreeBitArray;
+import com.google.common.math.DoubleMath;
+import com.google.common.math.LongMath;
 import com.google.common.primitives.SignedBytes;
 import com.google.common.primitives.UnsignedBytes;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
@@ -32,6 +35,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.math.RoundingMode;
 
 import javax.annotation.Nullable;
 
@@ -54,6 +58,14 @@ import javax.annotation.Nullable;
  * of the code may not be readable by older versions of the code (e.g., a serialized bloom filter
  * generated today may <i>not</i> be readable by a binary that was compiled 6 months ago).
  *
+ * <p>As of Guava 20.0, this class is thread-safe and lock-free. It internally uses atomics and
+ * compare-and-swap to ensure correctness when multiple threads are used to access it, so any number
+ * of threads may {@linkplain #put put} elements and call {@link #mightContain} at the same time
+ * without external synchronization. An element that has been put is visible to every
+ * {@code mightContain} call that starts after {@code put} returns. {@link #putAll} is atomic per
+ * word of the bit array rather than as a whole, and the statistics {@link #expectedFpp} and {@link
+ * #approximateElementCount} may lag slightly behind puts that are still in progress.
+ *
  * @param <T> the type of instances that the {@code BloomFilter} accepts
  * @author Dimitris Andreou
  * @author Kevin Bourrillion
@@ -73,7 +85,8 @@ public final class BloomFilter<T> implements Predicate<T>, Serializable {
      *
      * <p>Returns whether any bits changed as a result of this operation.
      */
-    <T> boolean put(T object, Funnel<? super T> funnel, int numHashFunctions, BitArray bits);
+    <T> boolean put(
+        T object, Funnel<? super T> funnel, int numHashFunctions, LockFreeBitArray bits);
 
     /**
      * Queries {@code numHashFunctions} bits of the given bit array, by hashing a user element;
@@ -82,6 +95,12 @@ public final class BloomFilter<T> implements Predicate<T>, Serializable {
     <T> boolean mightContain(
         T object, Funnel<? super T> funnel, int numHashFunctions, BitArray bits);
 
+    /**
+     * Returns the probability that {@link #mightContain} erroneously returns {@code true}, for a
+     * bit array of {@code bitSize} bits of which {@code bitCount} are set.
+     */
+    double expectedFpp(long bitCount, long bitSize, int numHashFunctions);
+
     /**
      * Identifier used to encode this strategy, when marshalled as part of a BloomFilter. Only
      * values in the [-128, 127] range are valid for the compact serial form. Non-negative values
@@ -93,7 +112,7 @@ public final class BloomFilter<T> implements Predicate<T>, Serializable {
   }
 
   /** The bit set of the BloomFilter (not necessarily power of 2!) */
-  private final BitArray bits;
+  private final LockFreeBitArray bits;
 
   /** Number of hashes per element */
   private final int numHashFunctions;
@@ -110,7 +129,7 @@ public final class BloomFilter<T> implements Predicate<T>, Serializable {
    * Creates a BloomFilter.
    */
   private BloomFilter(
-      BitArray bits, int numHashFunctions, Funnel<? super T> funnel, Strategy strategy) {
+      LockFreeBitArray bits, int numHashFunctions, Funnel<? super T> funnel, Strategy strategy) {
     checkArgument(numHashFunctions > 0, "numHashFunctions (%s) must be > 0", numHashFunctions);
     checkArgument(
         numHashFunctions <= 255, "numHashFunctions (%s) must be <= 255", numHashFunctions);
@@ -177,7 +196,25 @@ public final class BloomFilter<T> implements Predicate<T>, Serializable {
    */
   public double expectedFpp() {
     // You down with FPP? (Yeah you know me!) Who's down with FPP? (Every last homie!)
-    return Math.pow((double) bits.bitCount() / bitSize(), numHashFunctions);
+    return strategy.expectedFpp(bits.bitCount(), bitSize(), numHashFunctions);
+  }
+
+  /**
+   * Returns an estimate for the total number of distinct elements that have been added to this
+   * Bloom filter. This approximation is reasonably accurate if it does not exceed the value of
+   * {@code expectedInsertions} that was used when constructing the filter.
+   *
+   * @since 20.0
+   */
+  public long approximateElementCount() {
+    long bitSize = bits.bitSize();
+    long bitCount = bits.bitCount();
+
+    // After n distinct insertions, the expected fraction of bits set is about
+    // 1 - e^(-n * numHashFunctions / bitSize). Solving that for n gives the estimate below.
+    double fractionOfBitsSet = (double) bitCount / bitSize;
+    return DoubleMath.roundToLong(
+        -Math.log1p(-fractionOfBitsSet) * bitSize / numHashFunctions, RoundingMode.HALF_UP);
   }
 
   /**
@@ -319,6 +356,38 @@ public final class BloomFilter<T> implements Predicate<T>, Serializable {
     return create(funnel, expectedInsertions, fpp, BloomFilterStrategies.MURMUR128_MITZ_64);
   }
 
+  /**
+   * Creates a {@link BloomFilter BloomFilter<T>} with the expected number of insertions and
+   * expected false positive probability, which sets and tests all the bits of an element within a
+   * single 64-byte block of its bit array.
+   *
+   * <p>A standard Bloom filter spreads the bits of each element across the whole bit array, so
+   * {@link #put} and {@link #mightContain} may incur a cache miss for each of them once the filter
+   * is larger than the processor caches. A blocked filter incurs at most one per call, which
+   * matters most for puts and for lookups of elements that are present, since a negative lookup
+   * usually stops at the first clear bit. In exchange, it needs somewhat more bits to reach the
+   * same false positive probability, since some blocks receive more elements than others. This
+   * method sizes the filter for that: it uses about 5-20% more memory than {@link #create(Funnel,
+   * long, double)} for probabilities of 1% to 0.01%, and more for smaller ones. It uses at most
+   * about four times as much, which may leave {@link #expectedFpp} above {@code fpp} when {@code
+   * fpp} is extremely small.
+   *
+   * <p>Blocked filters are only {@linkplain #isCompatible compatible} with other blocked filters.
+   * They are serializable, and may be written with {@link #writeTo} and read back with {@link
+   * #readFrom}, like any other filter.
+   *
+   * @param funnel the funnel of T's that the constructed {@code BloomFilter<T>} will use
+   * @param expectedInsertions the number of expected insertions to the constructed
+   *     {@code BloomFilter<T>}; must be positive
+   * @param fpp the desired false positive probability (must be positive and less than 1.0)
+   * @return a {@code BloomFilter}
+   * @since 20.0
+   */
+  public static <T> BloomFilter<T> createBlocked(
+      Funnel<? super T> funnel, long expectedInsertions, double fpp) {
+    return create(funnel, expectedInsertions, fpp, BloomFilterStrategies.MURMUR128_BLOCKED_64);
+  }
+
   @VisibleForTesting
   static <T> BloomFilter<T> create(
       Funnel<? super T> funnel, long expectedInsertions, double fpp, Strategy strategy) {
@@ -337,10 +406,13 @@ public final class BloomFilter<T> implements Predicate<T>, Serializable {
      * is proportional to -log(p), but there is not much of a point after all, e.g.
      * optimalM(1000, 0.0000000000000001) = 76680 which is less than 10kb. Who cares!
      */
-    long numBits = optimalNumOfBits(expectedInsertions, fpp);
+    long numBits =
+        (strategy == BloomFilterStrategies.MURMUR128_BLOCKED_64)
+            ? optimalNumOfBlockedBits(expectedInsertions, fpp)
+            : optimalNumOfBits(expectedInsertions, fpp);
     int numHashFunctions = optimalNumOfHashFunctions(expectedInsertions, numBits);
     try {
-      return new BloomFilter<T>(new BitArray(numBits), numHashFunctions, funnel, strategy);
+      return new BloomFilter<T>(new LockFreeBitArray(numBits), numHashFunctions, funnel, strategy);
     } catch (IllegalArgumentException e) {
       throw new IllegalArgumentException("Could not create BloomFilter of " + numBits + " bits", e);
     }
@@ -437,6 +509,29 @@ public final class BloomFilter<T> implements Predicate<T>, Serializable {
     return (long) (-n * Math.log(p) / (Math.log(2) * Math.log(2)));
   }
 
+  /**
+   * Computes m for a filter using {@link BloomFilterStrategies#MURMUR128_BLOCKED_64}: the smallest
+   * multiple of the block size, up to four times {@link #optimalNumOfBits}, for which the expected
+   * false positive probability after {@code n} insertions is at most {@code p}.
+   *
+   * @param n expected insertions (must be positive)
+   * @param p false positive rate (must be 0 < p < 1)
+   */
+  @VisibleForTesting
+  static long optimalNumOfBlockedBits(long n, double p) {
+    long blockBits = BloomFilterStrategies.BLOCK_BITS;
+    long unblockedBits = Math.max(optimalNumOfBits(n, p), 1);
+    long maxBits = LongMath.checkedMultiply(unblockedBits, 4);
+    long numBits = LongMath.divide(unblockedBits, blockBits, RoundingMode.CEILING) * blockBits;
+    while (numBits < maxBits
+        && BloomFilterStrategies.blockedFpp(n, numBits, optimalNumOfHashFunctions(n, numBits))
+            > p) {
+      // Grow by about 1/32, which is precise enough given how little the probability changes.
+      numBits += LongMath.divide(numBits / 32 + 1, blockBits, RoundingMode.CEILING) * blockBits;
+    }
+    return numBits;
+  }
+
   private Object writeReplace() {
     return new SerialForm<T>(this);
   }
@@ -448,14 +543,14 @@ public final class BloomFilter<T> implements Predicate<T>, Serializable {
     final Strategy strategy;
 
     SerialForm(BloomFilter<T> bf) {
-      this.data = bf.bits.data;
+      this.data = LockFreeBitArray.toPlainArray(bf.bits.data);
       this.numHashFunctions = bf.numHashFunctions;
       this.funnel = bf.funnel;
       this.strategy = bf.strategy;
     }
 
     Object readResolve() {
-      return new BloomFilter<T>(new BitArray(data), numHashFunctions, funnel, strategy);
+      return new BloomFilter<T>(new LockFreeBitArray(data), numHashFunctions, funnel, strategy);
     }
 
     private static final long serialVersionUID = 1;
@@ -477,9 +572,9 @@ public final class BloomFilter<T> implements Predicate<T>, Serializable {
     DataOutputStream dout = new DataOutputStream(out);
     dout.writeByte(SignedBytes.checkedCast(strategy.ordinal()));
     dout.writeByte(UnsignedBytes.checkedCast(numHashFunctions)); // note: checked at the c'tor
-    dout.writeInt(bits.data.length);
-    for (long value : bits.data) {
-      dout.writeLong(value);
+    dout.writeInt(bits.data.length());
+    for (int i = 0; i < bits.data.length(); i++) {
+      dout.writeLong(bits.data.get(i));
     }
   }
 
@@ -491,6 +586,9 @@ public final class BloomFilter<T> implements Predicate<T>, Serializable {
    * <b>Warning:</b> the funnel provided <b>must</b> behave identically to the one used to populate
    * the original Bloom filter!
    *
+   * <p>To query a filter that was written to a file without reading it onto the heap, see {@link
+   * MappedBloomFilter}.
+   *
    * @throws IOException if the InputStream throws an {@code IOException}, or if its data does not
    *     appear to be a BloomFilter serialized using the {@linkplain #writeTo(OutputStream)} method.
    */
@@ -514,7 +612,7 @@ public final class BloomFilter<T> implements Predicate<T>, Serializable {
       for (int i = 0; i < data.length; i++) {
         data[i] = din.readLong();
       }
-      return new BloomFilter<T>(new BitArray(data), numHashFunctions, funnel, strategy);
+      return new BloomFilter<T>(new LockFreeBitArray(data), numHashFunctions, funnel, strategy);
     } catch (RuntimeException e) {
       IOException ioException =
           new IOException(
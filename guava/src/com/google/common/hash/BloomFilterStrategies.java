@@ -21,7 +21,7 @@ import com.google.common.primitives.Ints;
 import com.google.common.primitives.Longs;
 
 import java.math.RoundingMode;
-import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
 import javax.annotation.Nullable;
 
 /**
@@ -45,7 +45,7 @@ enum BloomFilterStrategies implements BloomFilter.Strategy {
   MURMUR128_MITZ_32() {
     @Override
     public <T> boolean put(
-        T object, Funnel<? super T> funnel, int numHashFunctions, BitArray bits) {
+        T object, Funnel<? super T> funnel, int numHashFunctions, LockFreeBitArray bits) {
       long bitSize = bits.bitSize();
       long hash64 = Hashing.murmur3_128().hashObject(object, funnel).asLong();
       int hash1 = (int) hash64;
@@ -93,7 +93,7 @@ enum BloomFilterStrategies implements BloomFilter.Strategy {
   MURMUR128_MITZ_64() {
     @Override
     public <T> boolean put(
-        T object, Funnel<? super T> funnel, int numHashFunctions, BitArray bits) {
+        T object, Funnel<? super T> funnel, int numHashFunctions, LockFreeBitArray bits) {
       long bitSize = bits.bitSize();
       byte[] bytes = Hashing.murmur3_128().hashObject(object, funnel).getBytesInternal();
       long hash1 = lowerEight(bytes);
@@ -127,92 +127,319 @@ enum BloomFilterStrategies implements BloomFilter.Strategy {
       }
       return true;
     }
+  },
+  /**
+   * Like MURMUR128_MITZ_64, but confines all the bits of an element to a single block of {@link
+   * #BLOCK_BITS} bits, which is one 64-byte cache line of the bit array. The lower 64 bits of the
+   * hash choose the block, and the upper 64 bits seed a pseudorandom sequence of probes within the
+   * block, so {@code put} and {@code mightContain} touch one cache line instead of up to {@code
+   * numHashFunctions} of them. This makes the false positive probability somewhat higher for the
+   * same number of bits, since some blocks receive more elements than others; see {@link
+   * #blockedFpp}.
+   */
+  MURMUR128_BLOCKED_64() {
+    @Override
+    public <T> boolean put(
+        T object, Funnel<? super T> funnel, int numHashFunctions, LockFreeBitArray bits) {
+      long bitSize = bits.bitSize();
+      int blockBits = blockBits(bitSize);
+      byte[] bytes = Hashing.murmur3_128().hashObject(object, funnel).getBytesInternal();
+      long hash1 = lowerEight(bytes);
+      long hash2 = upperEight(bytes);
+
+      long blockStart = ((hash1 & Long.MAX_VALUE) % (bitSize / blockBits)) * blockBits;
+      long probe = hash2;
+      boolean bitsChanged = false;
+      for (int i = 0; i < numHashFunctions; i++) {
+        probe = nextProbe(probe);
+        bitsChanged |= bits.set(blockStart + offsetInBlock(probe, blockBits));
+      }
+      return bitsChanged;
+    }
+
+    @Override
+    public <T> boolean mightContain(
+        T object, Funnel<? super T> funnel, int numHashFunctions, BitArray bits) {
+      long bitSize = bits.bitSize();
+      int blockBits = blockBits(bitSize);
+      byte[] bytes = Hashing.murmur3_128().hashObject(object, funnel).getBytesInternal();
+      long hash1 = lowerEight(bytes);
+      long hash2 = upperEight(bytes);
 
-    private /* static */ long lowerEight(byte[] bytes) {
-      return Longs.fromBytes(
-          bytes[7], bytes[6], bytes[5], bytes[4], bytes[3], bytes[2], bytes[1], bytes[0]);
+      long blockStart = ((hash1 & Long.MAX_VALUE) % (bitSize / blockBits)) * blockBits;
+      long probe = hash2;
+      for (int i = 0; i < numHashFunctions; i++) {
+        probe = nextProbe(probe);
+        if (!bits.get(blockStart + offsetInBlock(probe, blockBits))) {
+          return false;
+        }
+      }
+      return true;
     }
 
-    private /* static */ long upperEight(byte[] bytes) {
-      return Longs.fromBytes(
-          bytes[15], bytes[14], bytes[13], bytes[12], bytes[11], bytes[10], bytes[9], bytes[8]);
+    @Override
+    public double expectedFpp(long bitCount, long bitSize, int numHashFunctions) {
+      if (bitCount == bitSize) {
+        return 1.0;
+      }
+      // With a Poisson-distributed number of elements per block, the expected fraction of bits
+      // set is 1 - e^(-mean * (1 - clearPerElement)); solve that for the mean.
+      int blockBits = blockBits(bitSize);
+      long usableBits = bitSize - bitSize % blockBits;
+      double clearPerElement = Math.pow(1.0 - 1.0 / blockBits, numHashFunctions);
+      double mean = -Math.log1p(-(double) bitCount / usableBits) / (1.0 - clearPerElement);
+      return blockedFpp(mean * usableBits / blockBits, bitSize, numHashFunctions);
     }
   };
 
-  // Note: We use this instead of java.util.BitSet because we need access to the long[] data field
-  static final class BitArray {
-    final long[] data;
-    long bitCount;
+  /** The number of bits in a block of MURMUR128_BLOCKED_64: one 64-byte cache line. */
+  static final int BLOCK_BITS = 512;
+
+  /**
+   * Returns the probability that {@code mightContain} erroneously returns {@code true}, given that
+   * {@code bitCount} of the {@code bitSize} bits are set.
+   */
+  @Override
+  public double expectedFpp(long bitCount, long bitSize, int numHashFunctions) {
+    return Math.pow((double) bitCount / bitSize, numHashFunctions);
+  }
 
-    BitArray(long bits) {
+  /** Returns the number of bits in each block of a blocked bit array of {@code bitSize} bits. */
+  static int blockBits(long bitSize) {
+    return (int) Math.min(BLOCK_BITS, bitSize);
+  }
+
+  /**
+   * Returns the expected false positive probability of MURMUR128_BLOCKED_64 once {@code elements}
+   * distinct elements have been put in a filter of {@code bitSize} bits.
+   *
+   * <p>The number of elements in a given block follows a Poisson distribution with mean {@code
+   * elements * blockBits / bitSize}, and a block holding {@code j} elements answers a query falsely
+   * with the probability of a standard Bloom filter of {@code blockBits} bits and {@code j}
+   * elements. This sums those probabilities, starting from the most likely {@code j}, until the
+   * remaining terms are negligible.
+   */
+  static double blockedFpp(double elements, long bitSize, int numHashFunctions) {
+    int blockBits = blockBits(bitSize);
+    double mean = elements * blockBits / (bitSize - bitSize % blockBits);
+    if (mean <= 0) {
+      return 0.0;
+    }
+    // Each term is weighted relative to the Poisson probability of the mode, to avoid underflow.
+    int mode = (int) Math.min(mean, Integer.MAX_VALUE / 2);
+    double clearPerElement = Math.pow(1.0 - 1.0 / blockBits, numHashFunctions);
+    double totalWeight = 0;
+    double fpp = 0;
+    double weight = 1;
+    for (int j = mode; weight > 1e-12; j++) {
+      totalWeight += weight;
+      fpp += weight * Math.pow(1.0 - Math.pow(clearPerElement, j), numHashFunctions);
+      weight *= mean / (j + 1);
+    }
+    weight = 1;
+    for (int j = mode - 1; j >= 0; j--) {
+      weight *= (j + 1) / mean;
+      if (weight <= 1e-12) {
+        break;
+      }
+      totalWeight += weight;
+      fpp += weight * Math.pow(1.0 - Math.pow(clearPerElement, j), numHashFunctions);
+    }
+    return fpp / totalWeight;
+  }
+
+  /**
+   * Advances the probe sequence of MURMUR128_BLOCKED_64, a linear congruential generator seeded by
+   * the upper 64 bits of the hash. Unlike the arithmetic sequences of the other strategies, whose
+   * few possible steps within a small block make the probes of different elements overlap
+   * systematically, its high bits behave as independent choices for each probe.
+   */
+  private static long nextProbe(long probe) {
+    return probe * 6364136223846793005L + 1442695040888963407L;
+  }
+
+  /** Maps the high 32 bits of {@code probe} uniformly onto {@code [0, blockBits)}. */
+  private static long offsetInBlock(long probe, int blockBits) {
+    return ((probe >>> 32) * blockBits) >>> 32;
+  }
+
+  static long lowerEight(byte[] bytes) {
+    return Longs.fromBytes(
+        bytes[7], bytes[6], bytes[5], bytes[4], bytes[3], bytes[2], bytes[1], bytes[0]);
+  }
+
+  static long upperEight(byte[] bytes) {
+    return Longs.fromBytes(
+        bytes[15], bytes[14], bytes[13], bytes[12], bytes[11], bytes[10], bytes[9], bytes[8]);
+  }
+
+  /**
+   * The bits that {@link BloomFilter.Strategy#mightContain} queries: either a {@link
+   * LockFreeBitArray}, or the read-only bits of a {@link MappedBloomFilter}.
+   */
+  abstract static class BitArray {
+    abstract boolean get(long bitIndex);
+
+    /** Number of bits */
+    abstract long bitSize();
+  }
+
+  /**
+   * Models a lock-free array of bits.
+   *
+   * <p>We use this instead of java.util.BitSet because we need access to the array of longs and we
+   * need compare-and-swap.
+   */
+  static final class LockFreeBitArray extends BitArray {
+    private static final int LONG_ADDRESSABLE_BITS = 6;
+    final AtomicLongArray data;
+    private final LongAddable bitCount;
+
+    LockFreeBitArray(long bits) {
       this(new long[Ints.checkedCast(LongMath.divide(bits, 64, RoundingMode.CEILING))]);
     }
 
     // Used by serialization
-    BitArray(long[] data) {
+    LockFreeBitArray(long[] data) {
       checkArgument(data.length > 0, "data length is zero!");
-      this.data = data;
+      // We use an AtomicLongArray for fast, lock-free updates to the individual words of the bit
+      // array. Each set() only needs a compare-and-swap on the word holding the bit, so concurrent
+      // puts of different elements rarely contend.
+      this.data = new AtomicLongArray(data);
+      // The number of set bits is only ever increased, by however many threads are setting bits at
+      // once, so it is kept in a striped counter rather than a single contended AtomicLong.
+      this.bitCount = LongAddables.create();
       long bitCount = 0;
       for (long value : data) {
         bitCount += Long.bitCount(value);
       }
-      this.bitCount = bitCount;
+      this.bitCount.add(bitCount);
     }
 
     /** Returns true if the bit changed value. */
-    boolean set(long index) {
-      if (!get(index)) {
-        data[(int) (index >>> 6)] |= (1L << index);
-        bitCount++;
-        return true;
+    boolean set(long bitIndex) {
+      if (get(bitIndex)) {
+        return false;
       }
-      return false;
+
+      int longIndex = (int) (bitIndex >>> LONG_ADDRESSABLE_BITS);
+      long mask = 1L << bitIndex; // only cares about low 6 bits of bitIndex
+
+      long oldValue;
+      long newValue;
+      do {
+        oldValue = data.get(longIndex);
+        newValue = oldValue | mask;
+        if (oldValue == newValue) {
+          return false;
+        }
+      } while (!data.compareAndSet(longIndex, oldValue, newValue));
+
+      // We turned the bit on, so increment bitCount.
+      bitCount.increment();
+      return true;
     }
 
-    boolean get(long index) {
-      return (data[(int) (index >>> 6)] & (1L << index)) != 0;
+    @Override
+    boolean get(long bitIndex) {
+      return (data.get((int) (bitIndex >>> LONG_ADDRESSABLE_BITS)) & (1L << bitIndex)) != 0;
     }
 
-    /** Number of bits */
+    /**
+     * Careful here: if threads are mutating the atomicLongArray while this method is executing, the
+     * final long[] will be a "rolling snapshot" of the state of the bit array. This is usually good
+     * enough, but should be kept in mind.
+     */
+    static long[] toPlainArray(AtomicLongArray atomicLongArray) {
+      long[] array = new long[atomicLongArray.length()];
+      for (int i = 0; i < array.length; ++i) {
+        array[i] = atomicLongArray.get(i);
+      }
+      return array;
+    }
+
+    @Override
     long bitSize() {
-      return (long) data.length * Long.SIZE;
+      return (long) data.length() * Long.SIZE;
     }
 
-    /** Number of set bits (1s) */
+    /**
+     * Number of set bits (1s).
+     *
+     * <p>Note that because of concurrent set calls and uses of atomics, this bitCount is a (very)
+     * close *estimate* of the actual number of bits set. It's not possible to do better than an
+     * estimate without locking. Note that the number, if not exactly accurate, is *always*
+     * underestimating, never overestimating.
+     */
     long bitCount() {
-      return bitCount;
+      return bitCount.sum();
     }
 
-    BitArray copy() {
-      return new BitArray(data.clone());
+    LockFreeBitArray copy() {
+      return new LockFreeBitArray(toPlainArray(data));
     }
 
-    /** Combines the two BitArrays using bitwise OR. */
-    void putAll(BitArray array) {
+    /**
+     * Combines {@code other} into {@code this} using bitwise OR.
+     *
+     * <p>Note that this operation is performed atomically on every long, but not on the array as a
+     * whole: a concurrent reader may observe some of the words of {@code other} combined, and
+     * others not yet.
+     */
+    void putAll(LockFreeBitArray other) {
       checkArgument(
-          data.length == array.data.length,
+          data.length() == other.data.length(),
           "BitArrays must be of equal length (%s != %s)",
-          data.length,
-          array.data.length);
-      bitCount = 0;
-      for (int i = 0; i < data.length; i++) {
-        data[i] |= array.data[i];
-        bitCount += Long.bitCount(data[i]);
+          data.length(),
+          other.data.length());
+      for (int i = 0; i < data.length(); i++) {
+        long otherLong = other.data.get(i);
+
+        long ourLongOld;
+        long ourLongNew;
+        boolean changedAnyBits = true;
+        do {
+          ourLongOld = data.get(i);
+          ourLongNew = ourLongOld | otherLong;
+          if (ourLongOld == ourLongNew) {
+            changedAnyBits = false;
+            break;
+          }
+        } while (!data.compareAndSet(i, ourLongOld, ourLongNew));
+
+        if (changedAnyBits) {
+          int bitsAdded = Long.bitCount(ourLongNew) - Long.bitCount(ourLongOld);
+          bitCount.add(bitsAdded);
+        }
       }
     }
 
     @Override
     public boolean equals(@Nullable Object o) {
-      if (o instanceof BitArray) {
-        BitArray bitArray = (BitArray) o;
-        return Arrays.equals(data, bitArray.data);
+      if (o instanceof LockFreeBitArray) {
+        AtomicLongArray otherData = ((LockFreeBitArray) o).data;
+        if (data.length() != otherData.length()) {
+          return false;
+        }
+        for (int i = 0; i < data.length(); i++) {
+          if (data.get(i) != otherData.get(i)) {
+            return false;
+          }
+        }
+        return true;
       }
       return false;
     }
 
     @Override
     public int hashCode() {
-      return Arrays.hashCode(data);
+      // Same as Arrays.hashCode(toPlainArray(data)), without the copy.
+      int result = 1;
+      for (int i = 0; i < data.length(); i++) {
+        long value = data.get(i);
+        result = 31 * result + (int) (value ^ (value >>> 32));
+      }
+      return result;
     }
   }
 }
@@ -0,0 +1,346 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.hash;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.base.Predicate;
+import com.google.common.hash.BloomFilterStrategies.LockFreeBitArray;
+import com.google.common.math.DoubleMath;
+import com.google.common.math.LongMath;
+import com.google.common.primitives.Ints;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+
+import java.io.Serializable;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.Nullable;
+
+/**
+ * A Bloom filter that supports removing elements. Where a {@link BloomFilter} keeps one bit per
+ * position, a counting Bloom filter keeps a 4-bit counter, which {@link #put} increments and
+ * {@link #remove} decrements; an element might be contained if all of its counters are nonzero.
+ * It uses the same hashing as the filters returned by {@link BloomFilter#create(Funnel, long,
+ * double)}, and four times as much memory as they do for the same expected insertions and false
+ * positive probability.
+ *
+ * <p>Only elements that have been put may be removed: removing any other element can decrement
+ * the counters of elements that were put, and cause {@link #mightContain} to return {@code false}
+ * for them. A counter that reaches its maximum of 15 is never changed again, since its true count
+ * is no longer known; this is rare unless the filter holds many more elements than expected, or
+ * the same element many times.
+ *
+ * <p>This class is thread-safe and lock-free: counters are updated by compare-and-swap, so any
+ * number of threads may put, remove and query elements at the same time.
+ *
+ * <p>Counting Bloom filters are serializable if their funnel is.
+ *
+ * @param <T> the type of instances that the {@code CountingBloomFilter} accepts
+ * @since 20.0
+ */
+@Beta
+public final class CountingBloomFilter<T> implements Predicate<T>, Serializable {
+  private static final int COUNTERS_PER_LONG = Long.SIZE / 4;
+  private static final long COUNTER_MASK = 0xFL;
+  private static final long MAX_COUNT = COUNTER_MASK;
+
+  /** Sixteen 4-bit counters per long, the first in the lowest bits. */
+  private final AtomicLongArray counters;
+
+  /** Number of nonzero counters. */
+  private final LongAddable nonZeroCount;
+
+  /** Number of hashes per element */
+  private final int numHashFunctions;
+
+  /** The funnel to translate Ts to bytes */
+  private final Funnel<? super T> funnel;
+
+  private CountingBloomFilter(long[] counters, int numHashFunctions, Funnel<? super T> funnel) {
+    checkArgument(counters.length > 0, "data length is zero!");
+    checkArgument(numHashFunctions > 0, "numHashFunctions (%s) must be > 0", numHashFunctions);
+    this.counters = new AtomicLongArray(counters);
+    this.numHashFunctions = numHashFunctions;
+    this.funnel = checkNotNull(funnel);
+    this.nonZeroCount = LongAddables.create();
+    long nonZeroCount = 0;
+    for (long word : counters) {
+      for (int i = 0; i < COUNTERS_PER_LONG; i++) {
+        if (((word >>> (i * 4)) & COUNTER_MASK) != 0) {
+          nonZeroCount++;
+        }
+      }
+    }
+    this.nonZeroCount.add(nonZeroCount);
+  }
+
+  /**
+   * Creates a {@code CountingBloomFilter} with the expected number of insertions and expected
+   * false positive probability.
+   *
+   * @param funnel the funnel of T's that the constructed filter will use
+   * @param expectedInsertions the number of expected insertions to the constructed filter; must be
+   *     positive
+   * @param fpp the desired false positive probability (must be positive and less than 1.0)
+   */
+  public static <T> CountingBloomFilter<T> create(
+      Funnel<? super T> funnel, long expectedInsertions, double fpp) {
+    checkNotNull(funnel);
+    checkArgument(
+        expectedInsertions >= 0, "Expected insertions (%s) must be >= 0", expectedInsertions);
+    checkArgument(fpp > 0.0, "False positive probability (%s) must be > 0.0", fpp);
+    checkArgument(fpp < 1.0, "False positive probability (%s) must be < 1.0", fpp);
+
+    if (expectedInsertions == 0) {
+      expectedInsertions = 1;
+    }
+    long numCounters = BloomFilter.optimalNumOfBits(expectedInsertions, fpp);
+    int numHashFunctions = BloomFilter.optimalNumOfHashFunctions(expectedInsertions, numCounters);
+    try {
+      long[] counters =
+          new long
+              [Ints.checkedCast(
+                  LongMath.divide(numCounters, COUNTERS_PER_LONG, RoundingMode.CEILING))];
+      return new CountingBloomFilter<T>(counters, numHashFunctions, funnel);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(
+          "Could not create CountingBloomFilter of " + numCounters + " counters", e);
+    }
+  }
+
+  /**
+   * Creates a {@code CountingBloomFilter} with the expected number of insertions and a default
+   * expected false positive probability of 3%.
+   *
+   * @param funnel the funnel of T's that the constructed filter will use
+   * @param expectedInsertions the number of expected insertions to the constructed filter; must be
+   *     positive
+   */
+  public static <T> CountingBloomFilter<T> create(
+      Funnel<? super T> funnel, long expectedInsertions) {
+    return create(funnel, expectedInsertions, 0.03);
+  }
+
+  /**
+   * Creates a new {@code CountingBloomFilter} that's a copy of this instance. The new instance is
+   * equal to this instance but shares no mutable state.
+   */
+  public CountingBloomFilter<T> copy() {
+    return new CountingBloomFilter<T>(
+        LockFreeBitArray.toPlainArray(counters), numHashFunctions, funnel);
+  }
+
+  /**
+   * Returns {@code true} if the element <i>might</i> have been put in this filter and not removed
+   * since, {@code false} if this is <i>definitely</i> not the case.
+   */
+  public boolean mightContain(T object) {
+    long[] indexes = indexes(object);
+    for (long index : indexes) {
+      if (count(index) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @deprecated Provided only to satisfy the {@link Predicate} interface; use {@link #mightContain}
+   *     instead.
+   */
+  @Deprecated
+  @Override
+  public boolean apply(T input) {
+    return mightContain(input);
+  }
+
+  /**
+   * Puts an element into this filter. Ensures that subsequent invocations of {@link
+   * #mightContain(Object)} with the same element will return {@code true}, until it is removed as
+   * many times as it was put.
+   *
+   * @return true if any counter of the element was zero, in which case the element was
+   *     <i>definitely</i> not in the filter before; false if it might have been
+   */
+  @CanIgnoreReturnValue
+  public boolean put(T object) {
+    boolean countersChanged = false;
+    for (long index : indexes(object)) {
+      countersChanged |= increment(index);
+    }
+    return countersChanged;
+  }
+
+  /**
+   * Removes one occurrence of an element from this filter, if it might be contained in it.
+   *
+   * <p>The element must have been put in this filter more times than it has been removed;
+   * otherwise, this may cause other elements to be reported as absent.
+   *
+   * @return true if the element might have been contained and had its counters decremented, false
+   *     if it was definitely not contained
+   */
+  @CanIgnoreReturnValue
+  public boolean remove(T object) {
+    long[] indexes = indexes(object);
+    for (long index : indexes) {
+      if (count(index) == 0) {
+        return false;
+      }
+    }
+    for (long index : indexes) {
+      decrement(index);
+    }
+    return true;
+  }
+
+  /**
+   * Returns the probability that {@linkplain #mightContain(Object)} will erroneously return
+   * {@code true} for an object that is not in this filter.
+   */
+  public double expectedFpp() {
+    return Math.pow((double) nonZeroCount.sum() / counterCount(), numHashFunctions);
+  }
+
+  /**
+   * Returns an estimate for the total number of distinct elements in this filter, which is
+   * reasonably accurate if it does not exceed the value of {@code expectedInsertions} that was used
+   * when constructing the filter.
+   */
+  public long approximateElementCount() {
+    long counterCount = counterCount();
+    double fractionNonZero = (double) nonZeroCount.sum() / counterCount;
+    return DoubleMath.roundToLong(
+        -Math.log1p(-fractionNonZero) * counterCount / numHashFunctions, RoundingMode.HALF_UP);
+  }
+
+  @VisibleForTesting
+  long counterCount() {
+    return (long) counters.length() * COUNTERS_PER_LONG;
+  }
+
+  /** Returns the indexes of the counters of {@code object}, as in MURMUR128_MITZ_64. */
+  private long[] indexes(T object) {
+    long counterCount = counterCount();
+    byte[] bytes = Hashing.murmur3_128().hashObject(object, funnel).getBytesInternal();
+    long hash1 = BloomFilterStrategies.lowerEight(bytes);
+    long hash2 = BloomFilterStrategies.upperEight(bytes);
+
+    long[] indexes = new long[numHashFunctions];
+    long combinedHash = hash1;
+    for (int i = 0; i < numHashFunctions; i++) {
+      // Make the combined hash positive and indexable
+      indexes[i] = (combinedHash & Long.MAX_VALUE) % counterCount;
+      combinedHash += hash2;
+    }
+    return indexes;
+  }
+
+  private long count(long index) {
+    return (counters.get((int) (index / COUNTERS_PER_LONG)) >>> shift(index)) & COUNTER_MASK;
+  }
+
+  /** Increments a counter unless it is saturated. Returns true if the counter was zero. */
+  private boolean increment(long index) {
+    int word = (int) (index / COUNTERS_PER_LONG);
+    int shift = shift(index);
+    long oldValue;
+    long count;
+    do {
+      oldValue = counters.get(word);
+      count = (oldValue >>> shift) & COUNTER_MASK;
+      if (count == MAX_COUNT) {
+        return false;
+      }
+    } while (!counters.compareAndSet(word, oldValue, oldValue + (1L << shift)));
+    if (count == 0) {
+      nonZeroCount.increment();
+      return true;
+    }
+    return false;
+  }
+
+  /** Decrements a counter unless it is zero or saturated. */
+  private void decrement(long index) {
+    int word = (int) (index / COUNTERS_PER_LONG);
+    int shift = shift(index);
+    long oldValue;
+    long count;
+    do {
+      oldValue = counters.get(word);
+      count = (oldValue >>> shift) & COUNTER_MASK;
+      if (count == 0 || count == MAX_COUNT) {
+        return;
+      }
+    } while (!counters.compareAndSet(word, oldValue, oldValue - (1L << shift)));
+    if (count == 1) {
+      nonZeroCount.add(-1);
+    }
+  }
+
+  private static int shift(long index) {
+    return (int) (index % COUNTERS_PER_LONG) * 4;
+  }
+
+  @Override
+  public boolean equals(@Nullable Object object) {
+    if (object == this) {
+      return true;
+    }
+    if (object instanceof CountingBloomFilter) {
+      CountingBloomFilter<?> that = (CountingBloomFilter<?>) object;
+      return this.numHashFunctions == that.numHashFunctions
+          && this.funnel.equals(that.funnel)
+          && Arrays.equals(
+              LockFreeBitArray.toPlainArray(this.counters),
+              LockFreeBitArray.toPlainArray(that.counters));
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(
+        numHashFunctions, funnel, Arrays.hashCode(LockFreeBitArray.toPlainArray(counters)));
+  }
+
+  private Object writeReplace() {
+    return new SerialForm<T>(this);
+  }
+
+  private static class SerialForm<T> implements Serializable {
+    final long[] counters;
+    final int numHashFunctions;
+    final Funnel<? super T> funnel;
+
+    SerialForm(CountingBloomFilter<T> filter) {
+      this.counters = LockFreeBitArray.toPlainArray(filter.counters);
+      this.numHashFunctions = filter.numHashFunctions;
+      this.funnel = filter.funnel;
+    }
+
+    Object readResolve() {
+      return new CountingBloomFilter<T>(counters, numHashFunctions, funnel);
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+}
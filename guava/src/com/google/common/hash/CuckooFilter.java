@@ -0,0 +1,678 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.hash;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.base.Predicate;
+import com.google.common.math.DoubleMath;
+import com.google.common.math.LongMath;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.UnsignedBytes;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+
+/**
+ * A cuckoo filter for instances of {@code T}. Like a {@link BloomFilter}, a cuckoo filter offers an
+ * approximate containment test with one-sided error: if it claims that an element is contained in
+ * it, this might be in error, but if it claims that an element is <i>not</i> contained in it, then
+ * this is definitely true. Unlike a Bloom filter, it also supports {@linkplain #remove removing}
+ * elements.
+ *
+ * <p>A cuckoo filter, after "Cuckoo Filter: Practically Better Than Bloom" by Fan, Andersen,
+ * Kaminsky and Mitzenmacher, stores a short fingerprint of each element in one of two buckets of
+ * four slots. The second bucket is derived from the first and the fingerprint alone, so that a
+ * fingerprint can be moved between its buckets to make room for another, without knowing which
+ * element it came from. A lookup reads just two buckets, and compares fingerprints instead of
+ * probing several bits.
+ *
+ * <p>Each element takes about {@code (log2(1/fpp) + 3) / 0.95} bits, against {@code 1.44 *
+ * log2(1/fpp)} bits for a Bloom filter, so a cuckoo filter is smaller than the equivalent Bloom
+ * filter for false positive probabilities below about 0.2%, and larger above it.
+ *
+ * <p>Unlike a Bloom filter, a cuckoo filter can be full: once it holds about as many elements as
+ * it was created for, {@link #put} may return {@code false} and leave the filter unchanged. The
+ * same element may be put several times, and then occupies several slots; it must be removed as
+ * many times before {@link #mightContain} returns {@code false} for it. Only elements that have
+ * been put may be removed: removing any other element can remove the fingerprint of an element
+ * that was put, if the two happen to share it.
+ *
+ * <p>The false positive probability ({@code FPP}) of a cuckoo filter is defined as the probability
+ * that {@linkplain #mightContain(Object)} will erroneously return {@code true} for an object that
+ * has not actually been put in the {@code CuckooFilter}.
+ *
+ * <p>Cuckoo filters are serializable. They also support a more compact serial representation via
+ * the {@link #writeTo} and {@link #readFrom} methods.
+ *
+ * <p>This class is thread-safe. Since putting an element may move the fingerprints of several
+ * others, every method locks the filter, including {@link #mightContain}: concurrent lookups are
+ * serialized with each other as well as with updates, and contend for the lock when many threads
+ * query the same filter. A {@link BloomFilter}, whose lookups never lock, may suit such uses
+ * better.
+ *
+ * @param <T> the type of instances that the {@code CuckooFilter} accepts
+ * @since 20.0
+ */
+@Beta
+public final class CuckooFilter<T> implements Predicate<T>, Serializable {
+  /** Number of fingerprints per bucket. */
+  private static final int BUCKET_SIZE = 4;
+
+  /** The fraction of the slots that are filled when the filter holds its expected insertions. */
+  private static final double LOAD_FACTOR = 0.95;
+
+  /** Number of fingerprints to move before giving up on putting an element. */
+  private static final int MAX_KICKS = 500;
+
+  /** The fingerprints, {@code fingerprintBits} each, packed into longs; 0 is an empty slot. */
+  private final long[] data;
+
+  /** Number of buckets, of {@link #BUCKET_SIZE} fingerprints each. */
+  private final long numBuckets;
+
+  /** Number of bits per fingerprint, between 1 and 64. */
+  private final int fingerprintBits;
+
+  /** The funnel to translate Ts to bytes */
+  private final Funnel<? super T> funnel;
+
+  /**
+   * A fingerprint that was moved out of its bucket and could not be put in its other one, or 0.
+   * While there is one, the filter is full.
+   */
+  private long victimFingerprint;
+
+  /** The bucket of {@link #victimFingerprint}. */
+  private long victimBucket;
+
+  /** Number of nonempty slots, including the victim. */
+  private long size;
+
+  /** State of the generator that chooses which fingerprint to move. */
+  private long random = 0x9E3779B97F4A7C15L;
+
+  private CuckooFilter(
+      long[] data,
+      long numBuckets,
+      int fingerprintBits,
+      long victimFingerprint,
+      long victimBucket,
+      Funnel<? super T> funnel) {
+    checkArgument(numBuckets > 0, "numBuckets (%s) must be > 0", numBuckets);
+    checkArgument(
+        fingerprintBits > 0 && fingerprintBits <= Long.SIZE,
+        "fingerprintBits (%s) must be between 1 and 64",
+        fingerprintBits);
+    checkArgument(
+        data.length == dataLength(numBuckets, fingerprintBits),
+        "data length (%s) does not match %s buckets of %s-bit fingerprints",
+        data.length,
+        numBuckets,
+        fingerprintBits);
+    checkArgument(
+        victimBucket >= 0 && victimBucket < numBuckets,
+        "victimBucket (%s) must be between 0 and %s",
+        victimBucket,
+        numBuckets);
+    checkArgument(
+        (victimFingerprint & ~(-1L >>> (Long.SIZE - fingerprintBits))) == 0,
+        "victimFingerprint (%s) must fit in %s bits",
+        victimFingerprint,
+        fingerprintBits);
+    this.data = data;
+    this.numBuckets = numBuckets;
+    this.fingerprintBits = fingerprintBits;
+    this.victimFingerprint = victimFingerprint;
+    this.victimBucket = victimBucket;
+    this.funnel = checkNotNull(funnel);
+    for (long slot = 0; slot < numBuckets * BUCKET_SIZE; slot++) {
+      if (get(slot) != 0) {
+        size++;
+      }
+    }
+    if (victimFingerprint != 0) {
+      size++;
+    }
+  }
+
+  /**
+   * Returns the number of longs needed for {@code numBuckets} buckets of {@code fingerprintBits}
+   * fingerprints.
+   */
+  private static int dataLength(long numBuckets, int fingerprintBits) {
+    long bits = LongMath.checkedMultiply(numBuckets, BUCKET_SIZE * fingerprintBits);
+    return Ints.checkedCast(LongMath.divide(bits, Long.SIZE, RoundingMode.CEILING));
+  }
+
+  /**
+   * Creates a {@code CuckooFilter} with the expected number of insertions and expected false
+   * positive probability.
+   *
+   * <p>The filter is sized to hold {@code expectedInsertions} elements; puts beyond that are
+   * increasingly likely to fail.
+   *
+   * @param funnel the funnel of T's that the constructed filter will use
+   * @param expectedInsertions the number of expected insertions to the constructed filter; must be
+   *     positive
+   * @param fpp the desired false positive probability (must be positive and less than 1.0)
+   * @throws IllegalArgumentException if the filter would need more than {@code 2^31 - 1} longs
+   */
+  public static <T> CuckooFilter<T> create(
+      Funnel<? super T> funnel, long expectedInsertions, double fpp) {
+    checkNotNull(funnel);
+    checkArgument(
+        expectedInsertions >= 0, "Expected insertions (%s) must be >= 0", expectedInsertions);
+    checkArgument(fpp > 0.0, "False positive probability (%s) must be > 0.0", fpp);
+    checkArgument(fpp < 1.0, "False positive probability (%s) must be < 1.0", fpp);
+
+    if (expectedInsertions == 0) {
+      expectedInsertions = 1;
+    }
+    long numBuckets = optimalNumOfBuckets(expectedInsertions);
+    int fingerprintBits = optimalFingerprintBits(fpp);
+    try {
+      return new CuckooFilter<T>(
+          new long[dataLength(numBuckets, fingerprintBits)],
+          numBuckets,
+          fingerprintBits,
+          0,
+          0,
+          funnel);
+    } catch (ArithmeticException e) {
+      throw new IllegalArgumentException(
+          "Could not create CuckooFilter of " + numBuckets + " buckets", e);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(
+          "Could not create CuckooFilter of " + numBuckets + " buckets", e);
+    }
+  }
+
+  /**
+   * Creates a {@code CuckooFilter} with the expected number of insertions and a default expected
+   * false positive probability of 3%.
+   *
+   * @param funnel the funnel of T's that the constructed filter will use
+   * @param expectedInsertions the number of expected insertions to the constructed filter; must be
+   *     positive
+   */
+  public static <T> CuckooFilter<T> create(Funnel<? super T> funnel, long expectedInsertions) {
+    return create(funnel, expectedInsertions, 0.03);
+  }
+
+  /**
+   * Computes the number of buckets that hold {@code n} fingerprints at the maximum load factor.
+   *
+   * @param n expected insertions (must be positive)
+   */
+  @VisibleForTesting
+  static long optimalNumOfBuckets(long n) {
+    return Math.max(1, (long) Math.ceil(n / (BUCKET_SIZE * LOAD_FACTOR)));
+  }
+
+  /**
+   * Computes the number of bits per fingerprint for the desired false positive probability. A
+   * lookup compares the fingerprint of the element with up to {@code 2 * BUCKET_SIZE} others, each
+   * of which matches with probability about {@code 2^-f}.
+   *
+   * @param p false positive rate (must be 0 < p < 1)
+   */
+  @VisibleForTesting
+  static int optimalFingerprintBits(double p) {
+    // log2(2 * BUCKET_SIZE / p), without overflowing for tiny p
+    double bits = DoubleMath.log2(2 * BUCKET_SIZE) - DoubleMath.log2(p);
+    return Math.min(DoubleMath.roundToInt(bits, RoundingMode.CEILING), Long.SIZE);
+  }
+
+  /**
+   * Creates a new {@code CuckooFilter} that's a copy of this instance. The new instance is equal to
+   * this instance but shares no mutable state.
+   */
+  public synchronized CuckooFilter<T> copy() {
+    return new CuckooFilter<T>(
+        data.clone(), numBuckets, fingerprintBits, victimFingerprint, victimBucket, funnel);
+  }
+
+  /**
+   * Returns {@code true} if the element <i>might</i> have been put in this filter and not removed
+   * since, {@code false} if this is <i>definitely</i> not the case.
+   */
+  public synchronized boolean mightContain(T object) {
+    byte[] hash = hash(object);
+    long fingerprint = fingerprint(hash);
+    long bucket = bucket(hash);
+    long altBucket = altBucket(bucket, fingerprint);
+    return findSlot(bucket, fingerprint) >= 0
+        || findSlot(altBucket, fingerprint) >= 0
+        || (victimFingerprint == fingerprint
+            && (victimBucket == bucket || victimBucket == altBucket));
+  }
+
+  /**
+   * @deprecated Provided only to satisfy the {@link Predicate} interface; use {@link #mightContain}
+   *     instead.
+   */
+  @Deprecated
+  @Override
+  public boolean apply(T input) {
+    return mightContain(input);
+  }
+
+  /**
+   * Puts an element into this filter, unless it is full. Ensures that subsequent invocations of
+   * {@link #mightContain(Object)} with the same element will return {@code true}, until it is
+   * removed as many times as it was put.
+   *
+   * @return true if the element was put; false if this filter is full, in which case it is
+   *     unchanged
+   */
+  public synchronized boolean put(T object) {
+    if (victimFingerprint != 0) {
+      return false;
+    }
+    byte[] hash = hash(object);
+    insert(bucket(hash), fingerprint(hash));
+    return true;
+  }
+
+  /**
+   * Puts {@code fingerprint} in {@code bucket} or its alternate bucket, moving other fingerprints
+   * to their alternate buckets to make room if needed. If that fails, the last fingerprint moved
+   * becomes the victim. Must only be called when there is no victim.
+   */
+  private void insert(long bucket, long fingerprint) {
+    size++;
+    if (tryInsert(bucket, fingerprint)) {
+      return;
+    }
+    bucket = altBucket(bucket, fingerprint);
+    for (int kick = 0; kick < MAX_KICKS; kick++) {
+      if (tryInsert(bucket, fingerprint)) {
+        return;
+      }
+      long slot = bucket * BUCKET_SIZE + nextRandom(BUCKET_SIZE);
+      long evicted = get(slot);
+      set(slot, fingerprint);
+      fingerprint = evicted;
+      bucket = altBucket(bucket, fingerprint);
+    }
+    victimFingerprint = fingerprint;
+    victimBucket = bucket;
+  }
+
+  /** Puts {@code fingerprint} in an empty slot of {@code bucket}, if there is one. */
+  private boolean tryInsert(long bucket, long fingerprint) {
+    int slot = findSlot(bucket, 0);
+    if (slot < 0) {
+      return false;
+    }
+    set(bucket * BUCKET_SIZE + slot, fingerprint);
+    return true;
+  }
+
+  /**
+   * Removes one occurrence of an element from this filter, if it might be contained in it.
+   *
+   * <p>The element must have been put in this filter more times than it has been removed;
+   * otherwise, this may cause other elements to be reported as absent.
+   *
+   * @return true if the element might have been contained and had a fingerprint removed, false if
+   *     it was definitely not contained
+   */
+  public synchronized boolean remove(T object) {
+    byte[] hash = hash(object);
+    long fingerprint = fingerprint(hash);
+    long bucket = bucket(hash);
+    long altBucket = altBucket(bucket, fingerprint);
+    if (victimFingerprint == fingerprint
+        && (victimBucket == bucket || victimBucket == altBucket)) {
+      victimFingerprint = 0;
+      size--;
+      return true;
+    }
+    if (!tryRemove(bucket, fingerprint) && !tryRemove(altBucket, fingerprint)) {
+      return false;
+    }
+    size--;
+    if (victimFingerprint != 0) {
+      // There may be room for the victim now.
+      long victim = victimFingerprint;
+      victimFingerprint = 0;
+      size--;
+      insert(victimBucket, victim);
+    }
+    return true;
+  }
+
+  private boolean tryRemove(long bucket, long fingerprint) {
+    int slot = findSlot(bucket, fingerprint);
+    if (slot < 0) {
+      return false;
+    }
+    set(bucket * BUCKET_SIZE + slot, 0);
+    return true;
+  }
+
+  /**
+   * Determines whether a given cuckoo filter is compatible with this cuckoo filter. For two cuckoo
+   * filters to be compatible, they must:
+   *
+   * <ul>
+   * <li>not be the same instance
+   * <li>have the same number of buckets
+   * <li>have the same number of bits per fingerprint
+   * <li>have equal funnels
+   * </ul>
+   *
+   * @param that The cuckoo filter to check for compatibility.
+   */
+  public boolean isCompatible(CuckooFilter<T> that) {
+    checkNotNull(that);
+    return (this != that)
+        && (this.numBuckets == that.numBuckets)
+        && (this.fingerprintBits == that.fingerprintBits)
+        && (this.funnel.equals(that.funnel));
+  }
+
+  /**
+   * Puts all the elements of {@code that} into this filter, as if each of them had been
+   * {@linkplain #put put}. The elements are put one by one, so the two filters together must not
+   * hold more elements than one of them was created for.
+   *
+   * @param that The cuckoo filter to put into this one
+   * @return true if all the elements of {@code that} were put; false if this filter became full,
+   *     in which case only some of them were
+   * @throws IllegalArgumentException if {@code isCompatible(that) == false}
+   */
+  public boolean putAll(CuckooFilter<T> that) {
+    checkNotNull(that);
+    checkArgument(this != that, "Cannot combine a CuckooFilter with itself.");
+    checkArgument(
+        this.numBuckets == that.numBuckets,
+        "CuckooFilters must have the same number of buckets (%s != %s)",
+        this.numBuckets,
+        that.numBuckets);
+    checkArgument(
+        this.fingerprintBits == that.fingerprintBits,
+        "CuckooFilters must have the same fingerprint size (%s != %s)",
+        this.fingerprintBits,
+        that.fingerprintBits);
+    checkArgument(
+        this.funnel.equals(that.funnel),
+        "CuckooFilters must have equal funnels (%s != %s)",
+        this.funnel,
+        that.funnel);
+    // Snapshot that filter rather than lock both, which could deadlock with that.putAll(this).
+    CuckooFilter<T> source = that.copy();
+    synchronized (this) {
+      for (long slot = 0; slot < numBuckets * BUCKET_SIZE; slot++) {
+        long fingerprint = source.get(slot);
+        if (fingerprint != 0) {
+          if (victimFingerprint != 0) {
+            return false;
+          }
+          insert(slot / BUCKET_SIZE, fingerprint);
+        }
+      }
+      if (source.victimFingerprint != 0) {
+        if (victimFingerprint != 0) {
+          return false;
+        }
+        insert(source.victimBucket, source.victimFingerprint);
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Returns the probability that {@linkplain #mightContain(Object)} will erroneously return
+   * {@code true} for an object that has not actually been put in this filter.
+   */
+  public synchronized double expectedFpp() {
+    // A lookup compares with the fingerprints in two buckets, which are filled to the load factor.
+    double load = (double) size / (numBuckets * BUCKET_SIZE);
+    double matchProbability = 1.0 / (Math.pow(2, fingerprintBits) - 1);
+    return -Math.expm1(2 * BUCKET_SIZE * load * Math.log1p(-matchProbability));
+  }
+
+  /**
+   * Returns the number of elements in this filter: the number of successful puts, less the number
+   * of successful removes. This is exact unless elements that were not put have been removed, or
+   * this filter was combined with another by {@link #putAll}.
+   */
+  public synchronized long approximateElementCount() {
+    return size;
+  }
+
+  /** Returns the number of bits used to store the fingerprints. */
+  @VisibleForTesting
+  long bitSize() {
+    return (long) data.length * Long.SIZE;
+  }
+
+  private byte[] hash(T object) {
+    return Hashing.murmur3_128().hashObject(object, funnel).getBytesInternal();
+  }
+
+  /** Returns the nonzero fingerprint of an element, from the top bits of its hash. */
+  private long fingerprint(byte[] hash) {
+    long fingerprint = BloomFilterStrategies.upperEight(hash) >>> (Long.SIZE - fingerprintBits);
+    return fingerprint == 0 ? 1 : fingerprint;
+  }
+
+  /** Returns the first bucket of an element, from the other half of its hash. */
+  private long bucket(byte[] hash) {
+    return (BloomFilterStrategies.lowerEight(hash) & Long.MAX_VALUE) % numBuckets;
+  }
+
+  /**
+   * Returns the other bucket of a fingerprint in {@code bucket}. The two buckets of a fingerprint
+   * always sum to the same value modulo {@code numBuckets}, so this maps each of them to the other,
+   * without requiring the number of buckets to be a power of two.
+   */
+  private long altBucket(long bucket, long fingerprint) {
+    long mixed = fingerprint * 0xC6A4A7935BD1E995L;
+    mixed ^= mixed >>> 47;
+    long alt = (mixed & Long.MAX_VALUE) % numBuckets - bucket;
+    return alt < 0 ? alt + numBuckets : alt;
+  }
+
+  /** Returns the first slot of {@code bucket} that holds {@code fingerprint}, or -1. */
+  private int findSlot(long bucket, long fingerprint) {
+    long first = bucket * BUCKET_SIZE;
+    for (int i = 0; i < BUCKET_SIZE; i++) {
+      if (get(first + i) == fingerprint) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private long get(long slot) {
+    long bitIndex = slot * fingerprintBits;
+    int word = (int) (bitIndex >>> 6);
+    int shift = (int) (bitIndex & 63);
+    long value = data[word] >>> shift;
+    if (shift + fingerprintBits > Long.SIZE) {
+      value |= data[word + 1] << (Long.SIZE - shift);
+    }
+    return value & mask();
+  }
+
+  private void set(long slot, long fingerprint) {
+    long bitIndex = slot * fingerprintBits;
+    int word = (int) (bitIndex >>> 6);
+    int shift = (int) (bitIndex & 63);
+    long mask = mask();
+    data[word] = (data[word] & ~(mask << shift)) | (fingerprint << shift);
+    if (shift + fingerprintBits > Long.SIZE) {
+      int spill = Long.SIZE - shift;
+      data[word + 1] = (data[word + 1] & ~(mask >>> spill)) | (fingerprint >>> spill);
+    }
+  }
+
+  private long mask() {
+    return -1L >>> (Long.SIZE - fingerprintBits);
+  }
+
+  /** Returns a pseudorandom int between 0 and {@code bound}, a power of two, exclusive. */
+  private int nextRandom(int bound) {
+    // xorshift64
+    random ^= random << 13;
+    random ^= random >>> 7;
+    random ^= random << 17;
+    return (int) (random >>> 32) & (bound - 1);
+  }
+
+  @Override
+  public boolean equals(@Nullable Object object) {
+    if (object == this) {
+      return true;
+    }
+    if (object instanceof CuckooFilter) {
+      // Compare a snapshot rather than lock both, which could deadlock with that.equals(this).
+      CuckooFilter<?> that = ((CuckooFilter<?>) object).copy();
+      synchronized (this) {
+        return this.numBuckets == that.numBuckets
+            && this.fingerprintBits == that.fingerprintBits
+            && this.funnel.equals(that.funnel)
+            && this.victimFingerprint == that.victimFingerprint
+            && (this.victimFingerprint == 0 || this.victimBucket == that.victimBucket)
+            && Arrays.equals(this.data, that.data);
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public synchronized int hashCode() {
+    return Objects.hashCode(
+        numBuckets, fingerprintBits, funnel, victimFingerprint, Arrays.hashCode(data));
+  }
+
+  private Object writeReplace() {
+    return new SerialForm<T>(copy());
+  }
+
+  private static class SerialForm<T> implements Serializable {
+    final long[] data;
+    final long numBuckets;
+    final int fingerprintBits;
+    final long victimFingerprint;
+    final long victimBucket;
+    final Funnel<? super T> funnel;
+
+    SerialForm(CuckooFilter<T> filter) {
+      this.data = filter.data;
+      this.numBuckets = filter.numBuckets;
+      this.fingerprintBits = filter.fingerprintBits;
+      this.victimFingerprint = filter.victimFingerprint;
+      this.victimBucket = filter.victimBucket;
+      this.funnel = filter.funnel;
+    }
+
+    Object readResolve() {
+      return new CuckooFilter<T>(
+          data, numBuckets, fingerprintBits, victimFingerprint, victimBucket, funnel);
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+
+  /**
+   * Writes this {@code CuckooFilter} to an output stream, with a custom format (not Java
+   * serialization).
+   *
+   * <p>Use {@linkplain #readFrom(InputStream, Funnel)} to reconstruct the written CuckooFilter.
+   */
+  public synchronized void writeTo(OutputStream out) throws IOException {
+    // Serial form:
+    // 1 unsigned byte for the number of bits per fingerprint
+    // 1 big endian long, the number of buckets
+    // 1 big endian long, the victim fingerprint (0 if none)
+    // 1 big endian long, the bucket of the victim
+    // 1 big endian int, the number of longs of fingerprints
+    // N big endian longs of fingerprints
+    DataOutputStream dout = new DataOutputStream(out);
+    dout.writeByte(UnsignedBytes.checkedCast(fingerprintBits)); // note: checked at the c'tor
+    dout.writeLong(numBuckets);
+    dout.writeLong(victimFingerprint);
+    dout.writeLong(victimBucket);
+    dout.writeInt(data.length);
+    for (long word : data) {
+      dout.writeLong(word);
+    }
+  }
+
+  /**
+   * Reads a byte stream, which was written by {@linkplain #writeTo(OutputStream)}, into a
+   * {@code CuckooFilter<T>}.
+   *
+   * <p>The {@code Funnel} to be used is not encoded in the stream, so it must be provided here.
+   * <b>Warning:</b> the funnel provided <b>must</b> behave identically to the one used to populate
+   * the original cuckoo filter!
+   *
+   * @throws IOException if the InputStream throws an {@code IOException}, or if its data does not
+   *     appear to be a CuckooFilter serialized using the {@linkplain #writeTo(OutputStream)}
+   *     method.
+   */
+  public static <T> CuckooFilter<T> readFrom(InputStream in, Funnel<T> funnel)
+      throws IOException {
+    checkNotNull(in, "InputStream");
+    checkNotNull(funnel, "Funnel");
+    int fingerprintBits = -1;
+    long numBuckets = -1;
+    int dataLength = -1;
+    try {
+      DataInputStream din = new DataInputStream(in);
+      fingerprintBits = UnsignedBytes.toInt(din.readByte());
+      numBuckets = din.readLong();
+      long victimFingerprint = din.readLong();
+      long victimBucket = din.readLong();
+      dataLength = din.readInt();
+
+      long[] data = new long[dataLength];
+      for (int i = 0; i < data.length; i++) {
+        data[i] = din.readLong();
+      }
+      return new CuckooFilter<T>(
+          data, numBuckets, fingerprintBits, victimFingerprint, victimBucket, funnel);
+    } catch (RuntimeException e) {
+      IOException ioException =
+          new IOException(
+              "Unable to deserialize CuckooFilter from InputStream."
+                  + " fingerprintBits: "
+                  + fingerprintBits
+                  + " numBuckets: "
+                  + numBuckets
+                  + " dataLength: "
+                  + dataLength);
+      ioException.initCause(e);
+      throw ioException;
+    }
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.hash;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Predicate;
+import com.google.common.hash.BloomFilter.Strategy;
+import com.google.common.hash.BloomFilterStrategies.BitArray;
+import com.google.common.primitives.UnsignedBytes;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * A read-only view of a {@link BloomFilter} that answers {@link #mightContain} directly from a file
+ * written by {@link BloomFilter#writeTo}, which is mapped into memory rather than read. Opening a
+ * filter takes the same short time whatever its size, and uses no heap for its bits: pages of the
+ * file are read by the operating system as lookups touch them, and are shared through the page
+ * cache by every process on the host that maps the same file.
+ *
+ * <p>A mapped filter answers every query exactly as the {@code BloomFilter} that was written would
+ * have, as long as it is opened with a funnel that behaves identically to that filter's. To put
+ * more elements in the filter, read it with {@link BloomFilter#readFrom} instead.
+ *
+ * <p>This class is thread-safe. The file must not be modified while it is mapped; if it is, the
+ * results of {@code mightContain} are unspecified. The mapping is released when the filter is
+ * garbage collected, and mapped filters are not serializable.
+ *
+ * @param <T> the type of instances that the {@code MappedBloomFilter} accepts
+ * @since 20.0
+ */
+@Beta
+public final class MappedBloomFilter<T> implements Predicate<T> {
+  /** Length of the header written by {@link BloomFilter#writeTo}. */
+  private static final int HEADER_BYTES = 1 + 1 + 4;
+
+  /** Number of longs mapped by each buffer, which must be a power of two. */
+  private static final int DEFAULT_LONGS_PER_BUFFER = 1 << 27;
+
+  private final MappedBitArray bits;
+  private final int numHashFunctions;
+  private final Funnel<? super T> funnel;
+  private final Strategy strategy;
+
+  private MappedBloomFilter(
+      MappedBitArray bits, int numHashFunctions, Funnel<? super T> funnel, Strategy strategy) {
+    this.bits = bits;
+    this.numHashFunctions = numHashFunctions;
+    this.funnel = funnel;
+    this.strategy = strategy;
+  }
+
+  /**
+   * Maps a file, which was written by {@linkplain BloomFilter#writeTo(java.io.OutputStream)}, into
+   * memory, and returns a filter that queries it there.
+   *
+   * <p>The {@code Funnel} to be used is not encoded in the file, so it must be provided here.
+   * <b>Warning:</b> the funnel provided <b>must</b> behave identically to the one used to populate
+   * the original Bloom filter!
+   *
+   * @throws IOException if the file cannot be read or mapped, or if its contents do not appear to
+   *     be a BloomFilter serialized using the {@link BloomFilter#writeTo} method
+   */
+  public static <T> MappedBloomFilter<T> open(File file, Funnel<T> funnel) throws IOException {
+    return open(file, funnel, DEFAULT_LONGS_PER_BUFFER);
+  }
+
+  @VisibleForTesting
+  static <T> MappedBloomFilter<T> open(File file, Funnel<T> funnel, int longsPerBuffer)
+      throws IOException {
+    checkNotNull(file, "File");
+    checkNotNull(funnel, "Funnel");
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      return map(raf.getChannel(), funnel, longsPerBuffer);
+    } finally {
+      // The mapping stays valid after the file is closed.
+      raf.close();
+    }
+  }
+
+  private static <T> MappedBloomFilter<T> map(
+      FileChannel channel, Funnel<T> funnel, int longsPerBuffer) throws IOException {
+    int strategyOrdinal = -1;
+    int numHashFunctions = -1;
+    int dataLength = -1;
+    long fileLength = channel.size();
+    try {
+      // The same serial form as BloomFilter.readFrom reads.
+      ByteBuffer header = channel.map(MapMode.READ_ONLY, 0, Math.min(fileLength, HEADER_BYTES));
+      strategyOrdinal = header.get();
+      numHashFunctions = UnsignedBytes.toInt(header.get());
+      dataLength = header.getInt();
+
+      Strategy strategy = BloomFilterStrategies.values()[strategyOrdinal];
+      checkArgument(numHashFunctions > 0, "numHashFunctions (%s) must be > 0", numHashFunctions);
+      checkArgument(dataLength > 0, "data length is zero!");
+      checkArgument(
+          fileLength == HEADER_BYTES + (long) dataLength * 8,
+          "file length (%s) does not match the data length",
+          fileLength);
+      MappedBitArray bits = new MappedBitArray(channel, dataLength, longsPerBuffer);
+      return new MappedBloomFilter<T>(bits, numHashFunctions, funnel, strategy);
+    } catch (RuntimeException e) {
+      IOException ioException =
+          new IOException(
+              "Unable to map BloomFilter from file."
+                  + " strategyOrdinal: "
+                  + strategyOrdinal
+                  + " numHashFunctions: "
+                  + numHashFunctions
+                  + " dataLength: "
+                  + dataLength
+                  + " fileLength: "
+                  + fileLength);
+      ioException.initCause(e);
+      throw ioException;
+    }
+  }
+
+  /**
+   * Returns {@code true} if the element <i>might</i> have been put in the Bloom filter that was
+   * written to the file, {@code false} if this is <i>definitely</i> not the case.
+   */
+  public boolean mightContain(T object) {
+    return strategy.mightContain(object, funnel, numHashFunctions, bits);
+  }
+
+  /**
+   * @deprecated Provided only to satisfy the {@link Predicate} interface; use {@link #mightContain}
+   *     instead.
+   */
+  @Deprecated
+  @Override
+  public boolean apply(T input) {
+    return mightContain(input);
+  }
+
+  /**
+   * Returns the probability that {@linkplain #mightContain(Object)} will erroneously return
+   * {@code true} for an object that has not actually been put in the Bloom filter.
+   *
+   * <p>Unlike {@link BloomFilter#expectedFpp}, this reads the whole file, to count its set bits.
+   */
+  public double expectedFpp() {
+    return strategy.expectedFpp(bits.bitCount(), bits.bitSize(), numHashFunctions);
+  }
+
+  @VisibleForTesting
+  long bitSize() {
+    return bits.bitSize();
+  }
+
+  /**
+   * The bits of a serialized Bloom filter, mapped by as many buffers as needed. A single buffer
+   * cannot map more than 2GB, which is an eighth of the largest filter.
+   */
+  private static final class MappedBitArray extends BitArray {
+    private final ByteBuffer[] buffers;
+    private final long dataLength;
+    private final int bufferShift;
+    private final int bufferMask;
+
+    MappedBitArray(FileChannel channel, int dataLength, int longsPerBuffer) throws IOException {
+      checkArgument(
+          Integer.bitCount(longsPerBuffer) == 1,
+          "longsPerBuffer (%s) must be a power of two",
+          longsPerBuffer);
+      this.dataLength = dataLength;
+      this.bufferShift = Integer.numberOfTrailingZeros(longsPerBuffer);
+      this.bufferMask = longsPerBuffer - 1;
+      this.buffers = new ByteBuffer[(int) (((long) dataLength + bufferMask) >>> bufferShift)];
+      for (int i = 0; i < buffers.length; i++) {
+        long firstLong = (long) i << bufferShift;
+        long longCount = Math.min(longsPerBuffer, dataLength - firstLong);
+        // The longs are big endian, the default byte order of a ByteBuffer.
+        buffers[i] = channel.map(MapMode.READ_ONLY, HEADER_BYTES + firstLong * 8, longCount * 8);
+      }
+    }
+
+    private long getLong(long longIndex) {
+      // Absolute gets do not move the position of the buffer, so they are safe to share.
+      ByteBuffer buffer = buffers[(int) (longIndex >>> bufferShift)];
+      return buffer.getLong(((int) longIndex & bufferMask) << 3);
+    }
+
+    @Override
+    boolean get(long bitIndex) {
+      return (getLong(bitIndex >>> 6) & (1L << bitIndex)) != 0;
+    }
+
+    @Override
+    long bitSize() {
+      return dataLength * Long.SIZE;
+    }
+
+    long bitCount() {
+      long bitCount = 0;
+      for (long i = 0; i < dataLength; i++) {
+        bitCount += Long.bitCount(getLong(i));
+      }
+      return bitCount;
+    }
+  }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.hash;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.base.Predicate;
+import com.google.common.math.LongMath;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+/**
+ * A Bloom filter that grows as elements are put in it, keeping its false positive probability
+ * below a fixed bound however many elements it holds. A {@link BloomFilter} must be sized for its
+ * expected insertions up front, and its false positive probability degrades sharply once it holds
+ * more than that.
+ *
+ * <p>A scalable Bloom filter is a sequence of {@code BloomFilter}s, after "Scalable Bloom Filters"
+ * by Almeida, Baquero, Preguiça and Hutchison. Elements are put in the last filter of the sequence
+ * until it holds as many as it was created for; then a new filter, with twice the capacity and
+ * half the false positive probability of the previous one, is appended. An element might be
+ * contained if any of the filters might contain it. Since the probabilities of the filters form a
+ * geometric series, the probability that any of them returns a false positive stays below the
+ * {@code fpp} the scalable filter was created with.
+ *
+ * <p>Lookups take time proportional to the number of filters, which grows with the logarithm of
+ * the number of elements: the initial expected insertions should still be a reasonable guess.
+ *
+ * <p>This class is thread-safe. Puts and lookups do not lock; appending a new filter does.
+ *
+ * <p>Scalable Bloom filters are serializable if their funnel is.
+ *
+ * @param <T> the type of instances that the {@code ScalableBloomFilter} accepts
+ * @since 20.0
+ */
+@Beta
+public final class ScalableBloomFilter<T> implements Predicate<T>, Serializable {
+  /** The ratio of the capacity of each filter to that of the previous one. */
+  private static final int GROWTH_FACTOR = 2;
+
+  /** The ratio of the false positive probability of each filter to that of the previous one. */
+  private static final double TIGHTENING_RATIO = 0.5;
+
+  /** One filter of the sequence, with the number of distinct elements put in it. */
+  private static final class Stage<T> {
+    final BloomFilter<T> filter;
+    final long capacity;
+    final AtomicLong size;
+
+    Stage(BloomFilter<T> filter, long capacity, long size) {
+      this.filter = filter;
+      this.capacity = capacity;
+      this.size = new AtomicLong(size);
+    }
+  }
+
+  private final Funnel<? super T> funnel;
+  private final long initialExpectedInsertions;
+  private final double fpp;
+
+  /** The filters, oldest first. Only appended to, while holding the lock on this object. */
+  private final List<Stage<T>> stages = new CopyOnWriteArrayList<Stage<T>>();
+
+  private ScalableBloomFilter(
+      Funnel<? super T> funnel, long initialExpectedInsertions, double fpp) {
+    this.funnel = funnel;
+    this.initialExpectedInsertions = initialExpectedInsertions;
+    this.fpp = fpp;
+  }
+
+  /**
+   * Creates a {@code ScalableBloomFilter} whose first filter is sized for the given number of
+   * insertions, and whose false positive probability stays below {@code fpp}.
+   *
+   * @param funnel the funnel of T's that the constructed filter will use
+   * @param initialExpectedInsertions the number of insertions the first filter is sized for; must
+   *     be positive
+   * @param fpp the desired false positive probability (must be positive and less than 1.0)
+   */
+  public static <T> ScalableBloomFilter<T> create(
+      Funnel<? super T> funnel, long initialExpectedInsertions, double fpp) {
+    checkNotNull(funnel);
+    checkArgument(
+        initialExpectedInsertions > 0,
+        "Initial expected insertions (%s) must be > 0",
+        initialExpectedInsertions);
+    checkArgument(fpp > 0.0, "False positive probability (%s) must be > 0.0", fpp);
+    checkArgument(fpp < 1.0, "False positive probability (%s) must be < 1.0", fpp);
+    ScalableBloomFilter<T> result =
+        new ScalableBloomFilter<T>(funnel, initialExpectedInsertions, fpp);
+    result.stages.add(result.newStage(0));
+    return result;
+  }
+
+  /**
+   * Creates a {@code ScalableBloomFilter} whose first filter is sized for the given number of
+   * insertions, and whose false positive probability stays below 3%.
+   *
+   * @param funnel the funnel of T's that the constructed filter will use
+   * @param initialExpectedInsertions the number of insertions the first filter is sized for; must
+   *     be positive
+   */
+  public static <T> ScalableBloomFilter<T> create(
+      Funnel<? super T> funnel, long initialExpectedInsertions) {
+    return create(funnel, initialExpectedInsertions, 0.03);
+  }
+
+  /** Returns the number of elements the filter at {@code index} is sized for. */
+  private long capacity(int index) {
+    return LongMath.saturatedMultiply(
+        initialExpectedInsertions, LongMath.saturatedPow(GROWTH_FACTOR, index));
+  }
+
+  /** Returns a new, empty filter to follow the {@code index} filters before it. */
+  private Stage<T> newStage(int index) {
+    long capacity = capacity(index);
+    // The probabilities sum to at most fpp: fpp * (1 - r) * (1 + r + r^2 + ...) = fpp.
+    double stageFpp = fpp * (1 - TIGHTENING_RATIO) * Math.pow(TIGHTENING_RATIO, index);
+    return new Stage<T>(BloomFilter.create(funnel, capacity, stageFpp), capacity, 0);
+  }
+
+  /**
+   * Returns {@code true} if the element <i>might</i> have been put in this filter, {@code false} if
+   * this is <i>definitely</i> not the case.
+   */
+  public boolean mightContain(T object) {
+    for (Stage<T> stage : stages) {
+      if (stage.filter.mightContain(object)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @deprecated Provided only to satisfy the {@link Predicate} interface; use {@link #mightContain}
+   *     instead.
+   */
+  @Deprecated
+  @Override
+  public boolean apply(T input) {
+    return mightContain(input);
+  }
+
+  /**
+   * Puts an element into this filter, unless it might already be contained in it. Ensures that
+   * subsequent invocations of {@link #mightContain(Object)} with the same element will always
+   * return {@code true}.
+   *
+   * @return true if the element was <i>definitely</i> not in this filter before, and has now been
+   *     put in it; false if it might already have been
+   */
+  @CanIgnoreReturnValue
+  public boolean put(T object) {
+    for (Stage<T> stage : stages) {
+      if (stage.filter.mightContain(object)) {
+        return false;
+      }
+    }
+    int count = stages.size();
+    Stage<T> last = stages.get(count - 1);
+    if (!last.filter.put(object)) {
+      return false;
+    }
+    if (last.size.incrementAndGet() == last.capacity) {
+      grow(count);
+    }
+    return true;
+  }
+
+  /** Appends a new filter, unless one has been appended since there were {@code count}. */
+  private synchronized void grow(int count) {
+    if (stages.size() == count) {
+      stages.add(newStage(count));
+    }
+  }
+
+  /**
+   * Returns the probability that {@linkplain #mightContain(Object)} will erroneously return
+   * {@code true} for an object that has not actually been put in this filter. This is at most the
+   * {@code fpp} that the filter was created with, unless elements have been put in it from several
+   * threads at once, which may slightly overfill a filter before the next one is appended.
+   */
+  public double expectedFpp() {
+    double allNegative = 1.0;
+    for (Stage<T> stage : stages) {
+      allNegative *= 1.0 - stage.filter.expectedFpp();
+    }
+    return 1.0 - allNegative;
+  }
+
+  /**
+   * Returns the number of elements that have been put in this filter, not counting the puts that
+   * returned {@code false}, which were either already contained or false positives.
+   */
+  public long approximateElementCount() {
+    long count = 0;
+    for (Stage<T> stage : stages) {
+      count += stage.size.get();
+    }
+    return count;
+  }
+
+  @VisibleForTesting
+  int filterCount() {
+    return stages.size();
+  }
+
+  @Override
+  public boolean equals(@Nullable Object object) {
+    if (object == this) {
+      return true;
+    }
+    if (object instanceof ScalableBloomFilter) {
+      ScalableBloomFilter<?> that = (ScalableBloomFilter<?>) object;
+      Object[] theseStages = this.stages.toArray();
+      Object[] thoseStages = that.stages.toArray();
+      if (this.initialExpectedInsertions != that.initialExpectedInsertions
+          || this.fpp != that.fpp
+          || !this.funnel.equals(that.funnel)
+          || theseStages.length != thoseStages.length) {
+        return false;
+      }
+      for (int i = 0; i < theseStages.length; i++) {
+        if (!((Stage<?>) theseStages[i]).filter.equals(((Stage<?>) thoseStages[i]).filter)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = Objects.hashCode(funnel, initialExpectedInsertions, fpp);
+    for (Stage<T> stage : stages) {
+      result = 31 * result + stage.filter.hashCode();
+    }
+    return result;
+  }
+
+  private Object writeReplace() {
+    return new SerialForm<T>(this);
+  }
+
+  private static class SerialForm<T> implements Serializable {
+    final Funnel<? super T> funnel;
+    final long initialExpectedInsertions;
+    final double fpp;
+    final BloomFilter<T>[] filters;
+    final long[] sizes;
+
+    @SuppressWarnings("unchecked") // generic array creation, and stages holds only Stage<T>s
+    SerialForm(ScalableBloomFilter<T> filter) {
+      this.funnel = filter.funnel;
+      this.initialExpectedInsertions = filter.initialExpectedInsertions;
+      this.fpp = filter.fpp;
+      Object[] stages = filter.stages.toArray();
+      this.filters = new BloomFilter[stages.length];
+      this.sizes = new long[stages.length];
+      for (int i = 0; i < stages.length; i++) {
+        Stage<T> stage = (Stage<T>) stages[i];
+        filters[i] = stage.filter;
+        sizes[i] = stage.size.get();
+      }
+    }
+
+    Object readResolve() {
+      ScalableBloomFilter<T> result =
+          new ScalableBloomFilter<T>(funnel, initialExpectedInsertions, fpp);
+      for (int i = 0; i < filters.length; i++) {
+        result.stages.add(new Stage<T>(filters[i], result.capacity(i), sizes[i]));
+      }
+      return result;
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.primitives;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtCompatible;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+
+import javax.annotation.Nullable;
+
+/**
+ * An immutable {@link IntObjectMap} with reliable, user-specified iteration order. Does not permit
+ * null values. Like {@link com.google.common.collect.ImmutableMap}, it is built with a {@link
+ * Builder} that rejects duplicate keys, and iterates in the order the entries were put.
+ *
+ * <p>The keys and values are held in insertion order in two arrays, indexed by an open-addressing
+ * hash table of {@code int} positions.
+ *
+ * @since 20.0
+ */
+@Beta
+@GwtCompatible
+public final class ImmutableIntObjectMap<V> extends IntObjectMap<V> {
+  private static final ImmutableIntObjectMap<Object> EMPTY =
+      new ImmutableIntObjectMap<Object>(new int[0], new Object[0]);
+
+  /** Returns the empty map. */
+  @SuppressWarnings("unchecked") // it contains no values
+  public static <V> ImmutableIntObjectMap<V> of() {
+    return (ImmutableIntObjectMap<V>) EMPTY;
+  }
+
+  /** Returns an immutable map containing a single entry. */
+  public static <V> ImmutableIntObjectMap<V> of(int k1, V v1) {
+    return new Builder<V>(1).put(k1, v1).build();
+  }
+
+  /**
+   * Returns an immutable map containing the given entries, in order.
+   *
+   * @throws IllegalArgumentException if duplicate keys are provided
+   */
+  public static <V> ImmutableIntObjectMap<V> of(int k1, V v1, int k2, V v2) {
+    return new Builder<V>(2).put(k1, v1).put(k2, v2).build();
+  }
+
+  /**
+   * Returns an immutable map containing the given entries, in order.
+   *
+   * @throws IllegalArgumentException if duplicate keys are provided
+   */
+  public static <V> ImmutableIntObjectMap<V> of(int k1, V v1, int k2, V v2, int k3, V v3) {
+    return new Builder<V>(3).put(k1, v1).put(k2, v2).put(k3, v3).build();
+  }
+
+  /**
+   * Returns an immutable map containing the same entries as {@code map}, in the iteration order of
+   * {@code map}. Returns {@code map} itself if it is already an {@code ImmutableIntObjectMap}.
+   */
+  public static <V> ImmutableIntObjectMap<V> copyOf(IntObjectMap<? extends V> map) {
+    if (map instanceof ImmutableIntObjectMap) {
+      @SuppressWarnings("unchecked") // safe since the map is immutable
+      ImmutableIntObjectMap<V> result = (ImmutableIntObjectMap<V>) map;
+      return result;
+    }
+    return new Builder<V>(map.size()).putAll(map).build();
+  }
+
+  /** Returns a new builder. */
+  public static <V> Builder<V> builder() {
+    return new Builder<V>(PrimitiveHashTables.DEFAULT_EXPECTED_SIZE);
+  }
+
+  /**
+   * A builder for creating {@link ImmutableIntObjectMap} instances, with the same semantics as
+   * {@link com.google.common.collect.ImmutableMap.Builder}: entries appear in the built map in the
+   * order they were put, and {@link #build} throws if a key was put more than once.
+   */
+  public static final class Builder<V> {
+    private int[] keys;
+    private Object[] values;
+    private int size;
+
+    /**
+     * Creates a new builder. The returned builder is equivalent to the builder generated by {@link
+     * ImmutableIntObjectMap#builder}.
+     */
+    public Builder() {
+      this(PrimitiveHashTables.DEFAULT_EXPECTED_SIZE);
+    }
+
+    Builder(int initialCapacity) {
+      keys = new int[initialCapacity];
+      values = new Object[initialCapacity];
+    }
+
+    /**
+     * Associates {@code key} with {@code value} in the built map. Duplicate keys are not allowed,
+     * and will cause {@link #build} to fail.
+     */
+    @CanIgnoreReturnValue
+    public Builder<V> put(int key, V value) {
+      checkNotNull(value);
+      if (size == keys.length) {
+        int newCapacity = PrimitiveHashTables.expandedCapacity(keys.length, size + 1);
+        keys = PrimitiveHashTables.copyOf(keys, newCapacity);
+        values = PrimitiveHashTables.copyOf(values, newCapacity);
+      }
+      keys[size] = key;
+      values[size] = value;
+      size++;
+      return this;
+    }
+
+    /**
+     * Associates all of the given map's keys and values in the built map. Duplicate keys are not
+     * allowed, and will cause {@link #build} to fail.
+     */
+    @CanIgnoreReturnValue
+    public Builder<V> putAll(IntObjectMap<? extends V> map) {
+      for (IntObjectMap.Cursor<? extends V> cursor = map.cursor(); cursor.advance(); ) {
+        put(cursor.key(), cursor.value());
+      }
+      return this;
+    }
+
+    /**
+     * Returns a newly-created immutable map.
+     *
+     * @throws IllegalArgumentException if duplicate keys were added
+     */
+    public ImmutableIntObjectMap<V> build() {
+      if (size == 0) {
+        return of();
+      }
+      return new ImmutableIntObjectMap<V>(
+          PrimitiveHashTables.copyOf(keys, size), PrimitiveHashTables.copyOf(values, size));
+    }
+  }
+
+  private final int[] keys;
+  private final Object[] values;
+
+  /** Holds one plus the position of each key in {@link #keys}, or 0 for a free slot. */
+  private final int[] table;
+
+  private final int mask;
+
+  private ImmutableIntObjectMap(int[] keys, Object[] values) {
+    int size = keys.length;
+    int tableSize = PrimitiveHashTables.tableSize(size);
+    int[] table = new int[tableSize];
+    int mask = tableSize - 1;
+    for (int position = 0; position < size; position++) {
+      int key = keys[position];
+      int i = PrimitiveHashTables.smear(key) & mask;
+      for (int p; (p = table[i]) != 0; i = (i + 1) & mask) {
+        if (keys[p - 1] == key) {
+          throw new IllegalArgumentException(
+              "Multiple entries with same key: "
+                  + key + "=" + values[p - 1] + " and " + key + "=" + values[position]);
+        }
+      }
+      table[i] = position + 1;
+    }
+    this.keys = keys;
+    this.values = values;
+    this.table = table;
+    this.mask = mask;
+  }
+
+  @Override
+  public int size() {
+    return keys.length;
+  }
+
+  @Override
+  public boolean containsKey(int key) {
+    return positionOf(key) >= 0;
+  }
+
+  @Override
+  @Nullable
+  public V get(int key) {
+    int position = positionOf(key);
+    return (position < 0) ? null : valueAt(position);
+  }
+
+  private int positionOf(int key) {
+    for (int i = PrimitiveHashTables.smear(key) & mask; ; i = (i + 1) & mask) {
+      int p = table[i];
+      if (p == 0) {
+        return -1;
+      } else if (keys[p - 1] == key) {
+        return p - 1;
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked") // only V values are stored
+  private V valueAt(int position) {
+    return (V) values[position];
+  }
+
+  /** Returns a new cursor over the entries of this map, in the order they were put. */
+  @Override
+  public Cursor<V> cursor() {
+    return new Cursor<V>() {
+      private int position = -1;
+
+      @Override
+      public boolean advance() {
+        if (position < keys.length) {
+          position++;
+        }
+        return position < keys.length;
+      }
+
+      @Override
+      public int key() {
+        checkState(position >= 0 && position < keys.length, "no current entry");
+        return keys[position];
+      }
+
+      @Override
+      public V value() {
+        checkState(position >= 0 && position < keys.length, "no current entry");
+        return valueAt(position);
+      }
+    };
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.primitives;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtCompatible;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+
+/**
+ * An immutable {@link IntSet} with reliable, user-specified iteration order. Like {@link
+ * com.google.common.collect.ImmutableSet}, it iterates in the order each element was first added,
+ * and silently ignores duplicates.
+ *
+ * <p>The elements are held in insertion order in an array, indexed by an open-addressing hash
+ * table of {@code int} positions.
+ *
+ * @since 20.0
+ */
+@Beta
+@GwtCompatible
+public final class ImmutableIntSet extends IntSet {
+  private static final ImmutableIntSet EMPTY = new ImmutableIntSet(new int[0], new int[1]);
+
+  /** Returns the empty set. */
+  public static ImmutableIntSet of() {
+    return EMPTY;
+  }
+
+  /**
+   * Returns an immutable set containing the given elements, minus duplicates, in the order each
+   * appears first.
+   */
+  public static ImmutableIntSet of(int... elements) {
+    return copyOf(elements);
+  }
+
+  /**
+   * Returns an immutable set containing the given elements, minus duplicates, in the order each
+   * appears first.
+   */
+  public static ImmutableIntSet copyOf(int[] elements) {
+    return new Builder(elements.length).addAll(elements).build();
+  }
+
+  /**
+   * Returns an immutable set containing the elements of {@code set}, in its iteration order.
+   * Returns {@code set} itself if it is already an {@code ImmutableIntSet}.
+   */
+  public static ImmutableIntSet copyOf(IntSet set) {
+    if (set instanceof ImmutableIntSet) {
+      return (ImmutableIntSet) set;
+    }
+    return new Builder(set.size()).addAll(set).build();
+  }
+
+  /** Returns a new builder. */
+  public static Builder builder() {
+    return new Builder(PrimitiveHashTables.DEFAULT_EXPECTED_SIZE);
+  }
+
+  /**
+   * A builder for creating {@link ImmutableIntSet} instances, with the same semantics as {@link
+   * com.google.common.collect.ImmutableSet.Builder}: elements appear in the built set in the order
+   * they were first added, and duplicates are ignored.
+   */
+  public static final class Builder {
+    private int[] elements;
+    private int size;
+
+    /**
+     * Creates a new builder. The returned builder is equivalent to the builder generated by {@link
+     * ImmutableIntSet#builder}.
+     */
+    public Builder() {
+      this(PrimitiveHashTables.DEFAULT_EXPECTED_SIZE);
+    }
+
+    Builder(int initialCapacity) {
+      elements = new int[initialCapacity];
+    }
+
+    /** Adds {@code element} to the built set, unless it is already present. */
+    @CanIgnoreReturnValue
+    public Builder add(int element) {
+      if (size == elements.length) {
+        elements =
+            PrimitiveHashTables.copyOf(
+                elements, PrimitiveHashTables.expandedCapacity(elements.length, size + 1));
+      }
+      elements[size++] = element;
+      return this;
+    }
+
+    /** Adds each of {@code elements} to the built set, unless it is already present. */
+    @CanIgnoreReturnValue
+    public Builder addAll(int... elements) {
+      for (int element : elements) {
+        add(element);
+      }
+      return this;
+    }
+
+    /** Adds each element of {@code set} to the built set, unless it is already present. */
+    @CanIgnoreReturnValue
+    public Builder addAll(IntSet set) {
+      for (IntSet.Cursor cursor = set.cursor(); cursor.advance(); ) {
+        add(cursor.element());
+      }
+      return this;
+    }
+
+    /** Returns a newly-created immutable set. */
+    public ImmutableIntSet build() {
+      if (size == 0) {
+        return EMPTY;
+      }
+      int[] table = new int[PrimitiveHashTables.tableSize(size)];
+      int mask = table.length - 1;
+      int[] unique = new int[size];
+      int uniqueCount = 0;
+      elements:
+      for (int j = 0; j < size; j++) {
+        int element = elements[j];
+        int i = PrimitiveHashTables.smear(element) & mask;
+        for (int p; (p = table[i]) != 0; i = (i + 1) & mask) {
+          if (unique[p - 1] == element) {
+            continue elements;
+          }
+        }
+        unique[uniqueCount++] = element;
+        table[i] = uniqueCount;
+      }
+      if (uniqueCount < size) {
+        unique = PrimitiveHashTables.copyOf(unique, uniqueCount);
+      }
+      return new ImmutableIntSet(unique, table);
+    }
+  }
+
+  private final int[] elements;
+
+  /** Holds one plus the position of each element in {@link #elements}, or 0 for a free slot. */
+  private final int[] table;
+
+  private final int mask;
+
+  private ImmutableIntSet(int[] elements, int[] table) {
+    this.elements = elements;
+    this.table = table;
+    this.mask = table.length - 1;
+  }
+
+  @Override
+  public int size() {
+    return elements.length;
+  }
+
+  @Override
+  public boolean contains(int element) {
+    for (int i = PrimitiveHashTables.smear(element) & mask; ; i = (i + 1) & mask) {
+      int p = table[i];
+      if (p == 0) {
+        return false;
+      } else if (elements[p - 1] == element) {
+        return true;
+      }
+    }
+  }
+
+  @Override
+  public int[] toArray() {
+    return PrimitiveHashTables.copyOf(elements, elements.length);
+  }
+
+  /** Returns a new cursor over the elements of this set, in the order they were first added. */
+  @Override
+  public Cursor cursor() {
+    return new Cursor() {
+      private int position = -1;
+
+      @Override
+      public boolean advance() {
+        if (position < elements.length) {
+          position++;
+        }
+        return position < elements.length;
+      }
+
+      @Override
+      public int element() {
+        checkState(position >= 0 && position < elements.length, "no current element");
+        return elements[position];
+      }
+    };
+  }
+}
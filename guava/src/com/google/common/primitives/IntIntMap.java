@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.primitives;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtCompatible;
+
+import javax.annotation.Nullable;
+
+/**
+ * A map from {@code int} keys to {@code int} values, stored without boxing. Its behavior matches
+ * that of a {@code Map<Integer, Integer>}, including the definition of {@link #equals} and {@link
+ * #hashCode}, but it offers no {@code Map} view.
+ *
+ * <p>The two implementations are the mutable {@link IntIntHashMap} and the insertion-ordered {@link
+ * ImmutableIntIntMap}. Both are open-addressing hash tables, so {@link #get}, {@link #containsKey}
+ * and iteration with a {@link #cursor} allocate nothing.
+ *
+ * @since 20.0
+ */
+@Beta
+@GwtCompatible
+public abstract class IntIntMap {
+  IntIntMap() {}
+
+  /**
+   * An allocation-free iterator over the entries of an {@link IntIntMap}. A cursor starts out
+   * positioned before the first entry; each call to {@link #advance} moves it to the next one.
+   *
+   * <p>Typical usage: <pre>   {@code
+   *
+   *   for (IntIntMap.Cursor cursor = map.cursor(); cursor.advance(); ) {
+   *     process(cursor.key(), cursor.value());
+   *   }}</pre>
+   */
+  public interface Cursor {
+    /**
+     * Moves to the next entry, returning {@code false} if there are no more.
+     *
+     * @throws java.util.ConcurrentModificationException if the map was structurally modified since
+     *     the cursor was created
+     */
+    boolean advance();
+
+    /**
+     * Returns the key of the current entry.
+     *
+     * @throws IllegalStateException if the cursor is not positioned on an entry
+     */
+    int key();
+
+    /**
+     * Returns the value of the current entry.
+     *
+     * @throws IllegalStateException if the cursor is not positioned on an entry
+     */
+    int value();
+  }
+
+  /** Returns the number of entries in this map. */
+  public abstract int size();
+
+  /** Returns {@code true} if this map contains no entries. */
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /** Returns {@code true} if this map contains an entry for {@code key}. */
+  public abstract boolean containsKey(int key);
+
+  /**
+   * Returns the value associated with {@code key}, or {@code defaultValue} if there is none.
+   */
+  public abstract int get(int key, int defaultValue);
+
+  /** Returns a new cursor over the entries of this map. */
+  public abstract Cursor cursor();
+
+  /**
+   * Returns {@code true} if {@code object} is an {@code IntIntMap} with the same entries as this
+   * one, as with {@link java.util.Map#equals}.
+   */
+  @Override
+  public boolean equals(@Nullable Object object) {
+    if (object == this) {
+      return true;
+    }
+    if (!(object instanceof IntIntMap)) {
+      return false;
+    }
+    IntIntMap that = (IntIntMap) object;
+    if (size() != that.size()) {
+      return false;
+    }
+    for (Cursor cursor = cursor(); cursor.advance(); ) {
+      int key = cursor.key();
+      if (!that.containsKey(key) || that.get(key, 0) != cursor.value()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the hash code that a {@code Map<Integer, Integer>} with the same entries as this map
+   * would have.
+   */
+  @Override
+  public int hashCode() {
+    int hash = 0;
+    for (Cursor cursor = cursor(); cursor.advance(); ) {
+      hash += Ints.hashCode(cursor.key()) ^ Ints.hashCode(cursor.value());
+    }
+    return hash;
+  }
+
+  /**
+   * Returns a string representation of this map in the same form as {@link
+   * java.util.AbstractMap#toString}, for example {@code "{1=10, 2=20}"}.
+   */
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder(size() * 8).append('{');
+    boolean first = true;
+    for (Cursor cursor = cursor(); cursor.advance(); ) {
+      if (!first) {
+        builder.append(", ");
+      }
+      first = false;
+      builder.append(cursor.key()).append('=').append(cursor.value());
+    }
+    return builder.append('}').toString();
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.primitives;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtCompatible;
+
+import javax.annotation.Nullable;
+
+/**
+ * A set of {@code int} values, stored without boxing. Its behavior matches that of a {@code
+ * Set<Integer>}, including the definition of {@link #equals} and {@link #hashCode}, but it offers
+ * no {@code Set} view.
+ *
+ * <p>The two implementations are the mutable {@link IntHashSet} and the insertion-ordered {@link
+ * ImmutableIntSet}. Both are open-addressing hash tables, so {@link #contains} and iteration with a
+ * {@link #cursor} allocate nothing.
+ *
+ * @since 20.0
+ */
+@Beta
+@GwtCompatible
+public abstract class IntSet {
+  IntSet() {}
+
+  /**
+   * An allocation-free iterator over the elements of an {@link IntSet}. A cursor starts out
+   * positioned before the first element; each call to {@link #advance} moves it to the next one.
+   *
+   * <p>Typical usage: <pre>   {@code
+   *
+   *   for (IntSet.Cursor cursor = set.cursor(); cursor.advance(); ) {
+   *     process(cursor.element());
+   *   }}</pre>
+   */
+  public interface Cursor {
+    /**
+     * Moves to the next element, returning {@code false} if there are no more.
+     *
+     * @throws java.util.ConcurrentModificationException if the set was structurally modified since
+     *     the cursor was created
+     */
+    boolean advance();
+
+    /**
+     * Returns the current element.
+     *
+     * @throws IllegalStateException if the cursor is not positioned on an element
+     */
+    int element();
+  }
+
+  /** Returns the number of elements in this set. */
+  public abstract int size();
+
+  /** Returns {@code true} if this set contains no elements. */
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /** Returns {@code true} if this set contains {@code element}. */
+  public abstract boolean contains(int element);
+
+  /** Returns a new cursor over the elements of this set. */
+  public abstract Cursor cursor();
+
+  /** Returns a new array containing the elements of this set, in iteration order. */
+  public int[] toArray() {
+    int[] array = new int[size()];
+    int i = 0;
+    for (Cursor cursor = cursor(); cursor.advance(); ) {
+      array[i++] = cursor.element();
+    }
+    return array;
+  }
+
+  /**
+   * Returns {@code true} if {@code object} is an {@code IntSet} with the same elements as this one,
+   * as with {@link java.util.Set#equals}.
+   */
+  @Override
+  public boolean equals(@Nullable Object object) {
+    if (object == this) {
+      return true;
+    }
+    if (!(object instanceof IntSet)) {
+      return false;
+    }
+    IntSet that = (IntSet) object;
+    if (size() != that.size()) {
+      return false;
+    }
+    for (Cursor cursor = cursor(); cursor.advance(); ) {
+      if (!that.contains(cursor.element())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the hash code that a {@code Set<Integer>} with the same elements as this set would
+   * have.
+   */
+  @Override
+  public int hashCode() {
+    int hash = 0;
+    for (Cursor cursor = cursor(); cursor.advance(); ) {
+      hash += Ints.hashCode(cursor.element());
+    }
+    return hash;
+  }
+
+  /**
+   * Returns a string representation of this set in the same form as {@link
+   * java.util.AbstractCollection#toString}, for example {@code "[1, 2, 3]"}.
+   */
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder(size() * 5).append('[');
+    boolean first = true;
+    for (Cursor cursor = cursor(); cursor.advance(); ) {
+      if (!first) {
+        builder.append(", ");
+      }
+      first = false;
+      builder.append(cursor.element());
+    }
+    return builder.append(']').toString();
+  }
+}
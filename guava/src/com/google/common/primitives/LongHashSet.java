@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.primitives;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtCompatible;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+
+/**
+ * A mutable {@link LongSet}, implemented as an open-addressing hash table with linear probing over
+ * an array of elements. Unlike a {@code HashSet<Long>}, it allocates neither a boxed element nor an
+ * entry object per element.
+ *
+ * <p>Iteration order is unspecified, and can change when elements are added. This class is not
+ * thread-safe.
+ *
+ * @since 20.0
+ */
+@Beta
+@GwtCompatible
+public final class LongHashSet extends LongSet {
+  /*
+   * The element 0 marks a free slot, so it is recorded outside the table. Removal shifts later
+   * elements of the same probe sequence back rather than leaving tombstones.
+   */
+
+  /** Creates a new, empty set with a default initial capacity. */
+  public static LongHashSet create() {
+    return new LongHashSet(PrimitiveHashTables.DEFAULT_EXPECTED_SIZE);
+  }
+
+  /**
+   * Creates a new, empty set that can hold {@code expectedSize} elements without growing.
+   *
+   * @throws IllegalArgumentException if {@code expectedSize} is negative
+   */
+  public static LongHashSet create(int expectedSize) {
+    return new LongHashSet(expectedSize);
+  }
+
+  /** Creates a new set containing the same elements as {@code set}. */
+  public static LongHashSet create(LongSet set) {
+    LongHashSet result = new LongHashSet(set.size());
+    result.addAll(set);
+    return result;
+  }
+
+  private long[] table;
+  private int mask;
+  private int tableEntries;
+  private boolean hasZero;
+  private int modCount;
+
+  private LongHashSet(int expectedSize) {
+    allocate(PrimitiveHashTables.tableSize(expectedSize));
+  }
+
+  private void allocate(int tableSize) {
+    table = new long[tableSize];
+    mask = tableSize - 1;
+  }
+
+  @Override
+  public int size() {
+    return hasZero ? tableEntries + 1 : tableEntries;
+  }
+
+  @Override
+  public boolean contains(long element) {
+    return (element == 0) ? hasZero : indexOf(element) >= 0;
+  }
+
+  private int indexOf(long element) {
+    for (int i = PrimitiveHashTables.smear(element) & mask; ; i = (i + 1) & mask) {
+      long e = table[i];
+      if (e == element) {
+        return i;
+      } else if (e == 0) {
+        return -1;
+      }
+    }
+  }
+
+  /**
+   * Adds {@code element} to this set.
+   *
+   * @return {@code true} if the set did not already contain {@code element}
+   */
+  @CanIgnoreReturnValue
+  public boolean add(long element) {
+    if (element == 0) {
+      if (hasZero) {
+        return false;
+      }
+      hasZero = true;
+      modCount++;
+      return true;
+    }
+    int i = PrimitiveHashTables.smear(element) & mask;
+    for (long e; (e = table[i]) != 0; i = (i + 1) & mask) {
+      if (e == element) {
+        return false;
+      }
+    }
+    table[i] = element;
+    modCount++;
+    if (PrimitiveHashTables.needsResizing(++tableEntries, table.length)) {
+      resize(PrimitiveHashTables.grownTableSize(table.length));
+    }
+    return true;
+  }
+
+  /**
+   * Adds all of the elements of {@code set} to this set.
+   *
+   * @return {@code true} if this set changed as a result
+   */
+  @CanIgnoreReturnValue
+  public boolean addAll(LongSet set) {
+    boolean changed = false;
+    for (LongSet.Cursor cursor = set.cursor(); cursor.advance(); ) {
+      changed |= add(cursor.element());
+    }
+    return changed;
+  }
+
+  /**
+   * Removes {@code element} from this set, if present.
+   *
+   * @return {@code true} if the set contained {@code element}
+   */
+  @CanIgnoreReturnValue
+  public boolean remove(long element) {
+    if (element == 0) {
+      if (!hasZero) {
+        return false;
+      }
+      hasZero = false;
+      modCount++;
+      return true;
+    }
+    int index = indexOf(element);
+    if (index < 0) {
+      return false;
+    }
+    shiftBack(index);
+    tableEntries--;
+    modCount++;
+    return true;
+  }
+
+  /**
+   * Frees the slot at {@code index} by moving back any later element whose probe sequence passes
+   * through it.
+   */
+  private void shiftBack(int index) {
+    int free = index;
+    for (int i = (index + 1) & mask; ; i = (i + 1) & mask) {
+      long e = table[i];
+      if (e == 0) {
+        break;
+      }
+      int home = PrimitiveHashTables.smear(e) & mask;
+      // Move the element at i to the free slot unless its home lies cyclically in (free, i].
+      if (((i - home) & mask) >= ((i - free) & mask)) {
+        table[free] = e;
+        free = i;
+      }
+    }
+    table[free] = 0;
+  }
+
+  private void resize(int newTableSize) {
+    long[] oldTable = table;
+    allocate(newTableSize);
+    for (long element : oldTable) {
+      if (element != 0) {
+        int i = PrimitiveHashTables.smear(element) & mask;
+        while (table[i] != 0) {
+          i = (i + 1) & mask;
+        }
+        table[i] = element;
+      }
+    }
+  }
+
+  /** Removes all of the elements from this set. */
+  public void clear() {
+    Arrays.fill(table, (long) 0);
+    tableEntries = 0;
+    hasZero = false;
+    modCount++;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The cursor is fail-fast: it throws {@link ConcurrentModificationException} if an element is
+   * added to or removed from the set after it was created.
+   */
+  @Override
+  public Cursor cursor() {
+    return new HashCursor();
+  }
+
+  private final class HashCursor implements Cursor {
+    // -2 before the first element, -1 for the element 0, and then indexes into the table
+    private int index = -2;
+    private final int expectedModCount = modCount;
+
+    @Override
+    public boolean advance() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (index == -2) {
+        index = -1;
+        if (hasZero) {
+          return true;
+        }
+      }
+      while (++index < table.length) {
+        if (table[index] != 0) {
+          return true;
+        }
+      }
+      index = table.length;
+      return false;
+    }
+
+    @Override
+    public long element() {
+      checkState(index != -2 && index < table.length, "no current element");
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      return (index == -1) ? 0 : table[index];
+    }
+  }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.primitives;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.GwtCompatible;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+
+/**
+ * A mutable {@link LongLongMap}, implemented as an open-addressing hash table with linear probing
+ * over parallel arrays of keys and values. Unlike a {@code HashMap<Long, Long>}, it allocates
+ * neither boxed keys and values nor an entry object per mapping. Its {@link #addTo} method makes it
+ * a natural fit for counting.
+ *
+ * <p>Iteration order is unspecified, and can change when entries are added. This class is not
+ * thread-safe.
+ *
+ * @since 20.0
+ */
+@Beta
+@GwtCompatible
+public final class LongLongHashMap extends LongLongMap {
+  /*
+   * The key 0 marks a free slot, so a mapping for 0 is held outside the table. Removal shifts later
+   * entries of the same probe sequence back rather than leaving tombstones.
+   */
+
+  /** Creates a new, empty map with a default initial capacity. */
+  public static LongLongHashMap create() {
+    return new LongLongHashMap(PrimitiveHashTables.DEFAULT_EXPECTED_SIZE);
+  }
+
+  /**
+   * Creates a new, empty map that can hold {@code expectedSize} entries without growing.
+   *
+   * @throws IllegalArgumentException if {@code expectedSize} is negative
+   */
+  public static LongLongHashMap create(int expectedSize) {
+    return new LongLongHashMap(expectedSize);
+  }
+
+  /** Creates a new map containing the same entries as {@code map}. */
+  public static LongLongHashMap create(LongLongMap map) {
+    LongLongHashMap result = new LongLongHashMap(map.size());
+    result.putAll(map);
+    return result;
+  }
+
+  private long[] keys;
+  private long[] values;
+  private int mask;
+  private int tableEntries;
+  private boolean hasZeroKey;
+  private long zeroValue;
+  private int modCount;
+
+  private LongLongHashMap(int expectedSize) {
+    allocate(PrimitiveHashTables.tableSize(expectedSize));
+  }
+
+  private void allocate(int tableSize) {
+    keys = new long[tableSize];
+    values = new long[tableSize];
+    mask = tableSize - 1;
+  }
+
+  @Override
+  public int size() {
+    return hasZeroKey ? tableEntries + 1 : tableEntries;
+  }
+
+  @Override
+  public boolean containsKey(long key) {
+    return (key == 0) ? hasZeroKey : indexOf(key) >= 0;
+  }
+
+  @Override
+  public long get(long key, long defaultValue) {
+    if (key == 0) {
+      return hasZeroKey ? zeroValue : defaultValue;
+    }
+    int index = indexOf(key);
+    return (index < 0) ? defaultValue : values[index];
+  }
+
+  private int indexOf(long key) {
+    for (int i = PrimitiveHashTables.smear(key) & mask; ; i = (i + 1) & mask) {
+      long k = keys[i];
+      if (k == key) {
+        return i;
+      } else if (k == 0) {
+        return -1;
+      }
+    }
+  }
+
+  /** Associates {@code value} with {@code key}, replacing any previous value. */
+  public void put(long key, long value) {
+    if (key == 0) {
+      addZeroKey();
+      zeroValue = value;
+    } else {
+      int index = insertionIndex(key);
+      values[index] = value;
+    }
+  }
+
+  /**
+   * Adds {@code delta} to the value associated with {@code key}, treating a missing value as zero,
+   * and returns the new value. Overflow wraps around silently, as with the {@code +} operator.
+   */
+  @CanIgnoreReturnValue
+  public long addTo(long key, long delta) {
+    if (key == 0) {
+      addZeroKey();
+      return zeroValue += delta;
+    }
+    int index = insertionIndex(key);
+    return values[index] += delta;
+  }
+
+  private void addZeroKey() {
+    if (!hasZeroKey) {
+      hasZeroKey = true;
+      zeroValue = 0;
+      modCount++;
+    }
+  }
+
+  /**
+   * Returns the index of the slot holding {@code key}, which must not be 0, first adding it with
+   * the value 0 if it is absent.
+   */
+  private int insertionIndex(long key) {
+    int i = PrimitiveHashTables.smear(key) & mask;
+    for (long k; (k = keys[i]) != 0; i = (i + 1) & mask) {
+      if (k == key) {
+        return i;
+      }
+    }
+    keys[i] = key;
+    values[i] = 0;
+    modCount++;
+    if (PrimitiveHashTables.needsResizing(++tableEntries, keys.length)) {
+      resize(PrimitiveHashTables.grownTableSize(keys.length));
+      return indexOf(key);
+    }
+    return i;
+  }
+
+  /** Copies all of the entries of {@code map} into this map. */
+  public void putAll(LongLongMap map) {
+    for (LongLongMap.Cursor cursor = map.cursor(); cursor.advance(); ) {
+      put(cursor.key(), cursor.value());
+    }
+  }
+
+  /**
+   * Removes the mapping for {@code key}, if present.
+   *
+   * @return {@code true} if there was a mapping for {@code key}
+   */
+  @CanIgnoreReturnValue
+  public boolean remove(long key) {
+    if (key == 0) {
+      if (!hasZeroKey) {
+        return false;
+      }
+      hasZeroKey = false;
+      zeroValue = 0;
+      modCount++;
+      return true;
+    }
+    int index = indexOf(key);
+    if (index < 0) {
+      return false;
+    }
+    shiftBack(index);
+    tableEntries--;
+    modCount++;
+    return true;
+  }
+
+  /**
+   * Frees the slot at {@code index} by moving back any later entry whose probe sequence passes
+   * through it.
+   */
+  private void shiftBack(int index) {
+    int free = index;
+    for (int i = (index + 1) & mask; ; i = (i + 1) & mask) {
+      long k = keys[i];
+      if (k == 0) {
+        break;
+      }
+      int home = PrimitiveHashTables.smear(k) & mask;
+      // Move the entry at i to the free slot unless its home lies cyclically in (free, i].
+      if (((i - home) & mask) >= ((i - free) & mask)) {
+        keys[free] = k;
+        values[free] = values[i];
+        free = i;
+      }
+    }
+    keys[free] = 0;
+    values[free] = 0;
+  }
+
+  private void resize(int newTableSize) {
+    long[] oldKeys = keys;
+    long[] oldValues = values;
+    allocate(newTableSize);
+    for (int j = 0; j < oldKeys.length; j++) {
+      long key = oldKeys[j];
+      if (key != 0) {
+        int i = PrimitiveHashTables.smear(key) & mask;
+        while (keys[i] != 0) {
+          i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = oldValues[j];
+      }
+    }
+  }
+
+  /** Removes all of the entries from this map. */
+  public void clear() {
+    Arrays.fill(keys, (long) 0);
+    Arrays.fill(values, (long) 0);
+    tableEntries = 0;
+    hasZeroKey = false;
+    zeroValue = 0;
+    modCount++;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The cursor is fail-fast: it throws {@link ConcurrentModificationException} if a key is added
+   * to or removed from the map after it was created.
+   */
+  @Override
+  public Cursor cursor() {
+    return new HashCursor();
+  }
+
+  private final class HashCursor implements Cursor {
+    // -2 before the first entry, -1 for the zero key, and then indexes into the table
+    private int index = -2;
+    private final int expectedModCount = modCount;
+
+    @Override
+    public boolean advance() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (index == -2) {
+        index = -1;
+        if (hasZeroKey) {
+          return true;
+        }
+      }
+      while (++index < keys.length) {
+        if (keys[index] != 0) {
+          return true;
+        }
+      }
+      index = keys.length;
+      return false;
+    }
+
+    @Override
+    public long key() {
+      checkValid();
+      return (index == -1) ? 0 : keys[index];
+    }
+
+    @Override
+    public long value() {
+      checkValid();
+      return (index == -1) ? zeroValue : values[index];
+    }
+
+    private void checkValid() {
+      checkState(index != -2 && index < keys.length, "no current entry");
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+    }
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2016 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.common.primitives;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.annotations.GwtCompatible;
+
+/**
+ * Helpers shared by the open-addressing hash tables keyed by primitive values, such as {@link
+ * IntObjectHashMap} and {@link ImmutableLongSet}. All of them use linear probing over a
+ * power-of-two sized table, and keep it at most half full.
+ */
+@GwtCompatible
+final class PrimitiveHashTables {
+  private PrimitiveHashTables() {}
+
+  static final int MAX_TABLE_SIZE = Ints.MAX_POWER_OF_TWO;
+
+  /** The default number of entries a new mutable table can hold before it has to grow. */
+  static final int DEFAULT_EXPECTED_SIZE = 8;
+
+  /**
+   * Spreads the bits of {@code key}, so that keys that differ only in their high bits, or that are
+   * multiples of a large power of two, still land in different slots.
+   */
+  static int smear(int key) {
+    int h = key * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  /** Like {@link #smear(int)}, but for {@code long} keys. */
+  static int smear(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  /** Returns the size of a table that can hold {@code expectedSize} keys without growing. */
+  static int tableSize(int expectedSize) {
+    checkArgument(expectedSize >= 0, "expectedSize cannot be negative but was: %s", expectedSize);
+    checkArgument(expectedSize <= MAX_TABLE_SIZE / 2, "table too large: %s", expectedSize);
+    int tableSize = 4;
+    while (tableSize < 2 * expectedSize) {
+      tableSize <<= 1;
+    }
+    return tableSize;
+  }
+
+  /** Returns whether a table of {@code tableSize} slots holding {@code size} keys must grow. */
+  static boolean needsResizing(int size, int tableSize) {
+    return 2 * size > tableSize;
+  }
+
+  /** Returns the size of the table to grow a full table of {@code tableSize} slots into. */
+  static int grownTableSize(int tableSize) {
+    checkArgument(tableSize < MAX_TABLE_SIZE, "table too large");
+    return tableSize << 1;
+  }
+
+  // Unfortunately this is pasted from ImmutableCollection.Builder.
+  static int expandedCapacity(int oldCapacity, int minCapacity) {
+    if (minCapacity < 0) {
+      throw new AssertionError("cannot store more than MAX_VALUE elements");
+    }
+    // careful of overflow!
+    int newCapacity = oldCapacity + (oldCapacity >> 1) + 1;
+    if (newCapacity < minCapacity) {
+      newCapacity = Integer.highestOneBit(minCapacity - 1) << 1;
+    }
+    if (newCapacity < 0) {
+      newCapacity = Integer.MAX_VALUE; // guaranteed to be >= newCapacity
+    }
+    return newCapacity;
+  }
+
+  // Arrays.copyOf() is not available under GWT
+
+  static int[] copyOf(int[] original, int length) {
+    int[] copy = new int[length];
+    System.arraycopy(original, 0, copy, 0, Math.min(original.length, length));
+    return copy;
+  }
+
+  static long[] copyOf(long[] original, int length) {
+    long[] copy = new long[length];
+    System.arraycopy(original, 0, copy, 0, Math.min(original.length, length));
+    return copy;
+  }
+
+  static Object[] copyOf(Object[] original, int length) {
+    Object[] copy = new Object[length];
+    System.arraycopy(original, 0, copy, 0, Math.min(original.length, length));
+    return copy;
+  }
+}
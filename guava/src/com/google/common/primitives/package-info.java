@@ -58,6 +58,23 @@
  * <li>{@link com.google.common.primitives.UnsignedInteger}
  * <li>{@link com.google.common.primitives.UnsignedLong}
  * </ul>
+ *
+ * <h3>Immutable arrays</h3>
+ * <ul>
+ * <li>{@link com.google.common.primitives.ImmutableDoubleArray}
+ * <li>{@link com.google.common.primitives.ImmutableIntArray}
+ * <li>{@link com.google.common.primitives.ImmutableLongArray}
+ * </ul>
+ *
+ * <h3>Primitive-keyed maps and sets</h3>
+ * <ul>
+ * <li>{@link com.google.common.primitives.IntIntMap}
+ * <li>{@link com.google.common.primitives.IntObjectMap}
+ * <li>{@link com.google.common.primitives.IntSet}
+ * <li>{@link com.google.common.primitives.LongLongMap}
+ * <li>{@link com.google.common.primitives.LongObjectMap}
+ * <li>{@link com.google.common.primitives.LongSet}
+ * </ul>
  */
 @ParametersAreNonnullByDefault
 @CheckReturnValue